@@ -0,0 +1,115 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.benchmark;
+
+import java.io.Serializable;
+
+import javax.portlet.faces.annotation.ExcludeFromManagedRequestScope;
+
+
+/**
+ * This enumeration defines the types of request attribute values that the benchmarks are parameterized with.
+ *
+ * @author  Neil Griffin
+ */
+public enum AttributeValueType {
+
+	/** Values are {@link String} instances. */
+	STRING,
+
+	/** Values are boxed {@link Integer} instances. */
+	BOXED,
+
+	/** Values are serializable beans. */
+	BEAN,
+
+	/** Values are beans whose class is annotated with {@link ExcludeFromManagedRequestScope}. */
+	EXCLUDED_BEAN,
+
+	/** Values cycle through all of the other types. */
+	MIXED;
+
+	/**
+	 * Returns a new value of this type for the attribute at the specified index.
+	 */
+	public Object newValue(int index) {
+
+		AttributeValueType valueType = this;
+
+		if (valueType == MIXED) {
+			valueType = values()[index % MIXED.ordinal()];
+		}
+
+		switch (valueType) {
+
+		case STRING: {
+			return "value-" + index;
+		}
+
+		case BOXED: {
+			return Integer.valueOf(1000 + index);
+		}
+
+		case BEAN: {
+			return new Bean(index);
+		}
+
+		default: {
+			return new ExcludedBean(index);
+		}
+		}
+	}
+
+	/**
+	 * @author  Neil Griffin
+	 */
+	public static class Bean implements Serializable {
+
+		// serialVersionUID
+		private static final long serialVersionUID = 2854118720434718321L;
+
+		// Private Data Members
+		private int id;
+		private String name;
+
+		public Bean(int id) {
+			this.id = id;
+			this.name = "bean-" + id;
+		}
+
+		public int getId() {
+			return id;
+		}
+
+		public String getName() {
+			return name;
+		}
+	}
+
+	/**
+	 * @author  Neil Griffin
+	 */
+	@ExcludeFromManagedRequestScope
+	public static class ExcludedBean extends Bean {
+
+		// serialVersionUID
+		private static final long serialVersionUID = 6095402613279925310L;
+
+		public ExcludedBean(int id) {
+			super(id);
+		}
+	}
+}
@@ -0,0 +1,189 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.benchmark;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import javax.faces.context.FacesContext;
+import javax.portlet.PortletMode;
+import javax.portlet.RenderRequest;
+import javax.portlet.faces.Bridge;
+
+import com.liferay.faces.bridge.scope.BoundedBridgeRequestScopeCache;
+import com.liferay.faces.bridge.scope.BridgeRequestScope;
+import com.liferay.faces.bridge.scope.BridgeRequestScopeIdGenerator;
+import com.liferay.faces.bridge.scope.RequestAttributeChangeTracker;
+import com.liferay.faces.bridge.scope.RequestAttributeInspector;
+
+
+/**
+ * This class is a minimal {@link BridgeRequestScope} whose {@link #saveState(FacesContext)} and {@link
+ * #restoreState(FacesContext)} follow the algorithm of the bridge implementation: every request attribute that is not
+ * excluded by the {@link RequestAttributeInspector} is preserved, and every preserved attribute is put back into the
+ * request. If a {@link RequestAttributeChangeTracker} is set, then unchanged attributes are skipped while saving.
+ *
+ * @author  Neil Griffin
+ */
+public class BenchmarkBridgeRequestScope extends HashMap<String, Object> implements BridgeRequestScope {
+
+	// serialVersionUID
+	private static final long serialVersionUID = 4424730580398627641L;
+
+	// Private Data Members
+	private transient RequestAttributeChangeTracker changeTracker;
+	private final long dateCreated = System.currentTimeMillis();
+	private boolean facesLifecycleExecuted;
+	private String idPrefix = "benchmark" + BoundedBridgeRequestScopeCache.ID_SEPARATOR;
+	private final String idSuffix = BridgeRequestScopeIdGenerator.getInstance().nextId();
+	private boolean navigationOccurred;
+	private String portletMode = PortletMode.VIEW.toString();
+	private boolean portletModeChanged;
+	private boolean redirectOccurred;
+	private final Set<String> removedAttributeNames = new HashSet<String>();
+	private transient RequestAttributeInspector requestAttributeInspector;
+
+	public BenchmarkBridgeRequestScope(RequestAttributeInspector requestAttributeInspector) {
+		this.requestAttributeInspector = requestAttributeInspector;
+	}
+
+	@Override
+	public void removeExcludedAttributes(RenderRequest renderRequest) {
+		// no-op
+	}
+
+	@Override
+	public void restoreState(FacesContext facesContext) {
+		facesContext.getExternalContext().getRequestMap().putAll(this);
+	}
+
+	@Override
+	public void saveState(FacesContext facesContext) {
+
+		Map<String, Object> requestMap = facesContext.getExternalContext().getRequestMap();
+
+		for (Map.Entry<String, Object> entry : requestMap.entrySet()) {
+
+			String name = entry.getKey();
+			Object value = entry.getValue();
+
+			if ((changeTracker != null) && !changeTracker.isChanged(name, value)) {
+				continue;
+			}
+
+			if (!requestAttributeInspector.containsExcludedNamespace(name) &&
+					!requestAttributeInspector.isExcludedByPreExisting(name, value) &&
+					!requestAttributeInspector.isExcludedByConfig(name, value) &&
+					!requestAttributeInspector.isExcludedByType(name, value) &&
+					!requestAttributeInspector.isExcludedByAnnotation(name, value)) {
+				put(name, value);
+			}
+		}
+	}
+
+	@Override
+	public Bridge.PortletPhase getBeganInPhase() {
+		return Bridge.PortletPhase.ACTION_PHASE;
+	}
+
+	public void setChangeTracker(RequestAttributeChangeTracker changeTracker) {
+		this.changeTracker = changeTracker;
+	}
+
+	@Override
+	public long getDateCreated() {
+		return dateCreated;
+	}
+
+	@Override
+	public boolean isFacesLifecycleExecuted() {
+		return facesLifecycleExecuted;
+	}
+
+	@Override
+	public void setFacesLifecycleExecuted(boolean facesLifecycleExecuted) {
+		this.facesLifecycleExecuted = facesLifecycleExecuted;
+	}
+
+	@Override
+	public String getId() {
+		return idPrefix + idSuffix;
+	}
+
+	@Override
+	public void setIdPrefix(String idPrefix) {
+		this.idPrefix = idPrefix;
+	}
+
+	@Override
+	public boolean isNavigationOccurred() {
+		return navigationOccurred;
+	}
+
+	@Override
+	public void setNavigationOccurred(boolean navigationOccurred) {
+		this.navigationOccurred = navigationOccurred;
+	}
+
+	@Override
+	public PortletMode getPortletMode() {
+		return new PortletMode(portletMode);
+	}
+
+	@Override
+	public void setPortletMode(PortletMode portletMode) {
+		// Since PortletMode is not serializable, only its name is retained.
+		this.portletMode = portletMode.toString();
+	}
+
+	@Override
+	public boolean isPortletModeChanged() {
+		return portletModeChanged;
+	}
+
+	@Override
+	public void setPortletModeChanged(boolean portletModeChanged) {
+		this.portletModeChanged = portletModeChanged;
+	}
+
+	@Override
+	public Map<String, String> getPreservedActionParameterMap() {
+		return Collections.emptyMap();
+	}
+
+	@Override
+	public String getPreservedViewStateParam() {
+		return null;
+	}
+
+	@Override
+	public boolean isRedirectOccurred() {
+		return redirectOccurred;
+	}
+
+	@Override
+	public void setRedirectOccurred(boolean redirectOccurred) {
+		this.redirectOccurred = redirectOccurred;
+	}
+
+	@Override
+	public Set<String> getRemovedAttributeNames() {
+		return removedAttributeNames;
+	}
+}
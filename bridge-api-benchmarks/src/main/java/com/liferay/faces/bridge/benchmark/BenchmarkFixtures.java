@@ -0,0 +1,98 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.portlet.PortletRequest;
+
+
+/**
+ * This class provides the request attributes and configuration that are shared by the benchmarks.
+ *
+ * @author  Neil Griffin
+ */
+public final class BenchmarkFixtures {
+
+	/** The name prefix of the attributes that are set by the application during the Faces lifecycle. */
+	public static final String APPLICATION_ATTRIBUTE_PREFIX = "com.example.app.attribute";
+
+	/** The names of the attributes that are set by the portlet container before the bridge acquires the context. */
+	public static final List<String> PRE_EXISTING_ATTRIBUTE_NAMES = Collections.unmodifiableList(Arrays.asList(
+				"javax.portlet.config", "javax.portlet.request", "javax.portlet.response", "javax.portlet.lifecycle_phase",
+				"javax.servlet.include.request_uri", "javax.servlet.include.context_path",
+				"com.liferay.portal.kernel.servlet.PortletServletRequest", "LIFERAY_SHARED_THEME_DISPLAY"));
+
+	private BenchmarkFixtures() {
+		throw new AssertionError();
+	}
+
+	/**
+	 * Returns the names of the application attributes that {@link #populate(PortletRequest, int, AttributeValueType)}
+	 * sets.
+	 */
+	public static List<String> getApplicationAttributeNames(int attributeCount) {
+
+		List<String> names = new ArrayList<String>(attributeCount);
+
+		for (int i = 0; i < attributeCount; i++) {
+			names.add(APPLICATION_ATTRIBUTE_PREFIX + i);
+		}
+
+		return names;
+	}
+
+	/**
+	 * Returns the specified number of excluded attribute entries, as they would be configured in faces-config.xml and
+	 * portlet.xml. Every fourth entry is a namespace wildcard. None of the entries match an application attribute, so
+	 * that each attribute has to be checked against all of them.
+	 */
+	public static List<String> getExcludedAttributes(int excludedCount) {
+
+		List<String> excludedAttributes = new ArrayList<String>(excludedCount);
+
+		for (int i = 0; i < excludedCount; i++) {
+
+			if ((i % 4) == 3) {
+				excludedAttributes.add("com.example.excluded.namespace" + i + ".*");
+			}
+			else {
+				excludedAttributes.add("com.example.excluded.attribute" + i);
+			}
+		}
+
+		return excludedAttributes;
+	}
+
+	/**
+	 * Sets the pre-existing container attributes and the specified number of application attributes on the request.
+	 */
+	public static void populate(PortletRequest portletRequest, int attributeCount, AttributeValueType valueType) {
+
+		for (String name : PRE_EXISTING_ATTRIBUTE_NAMES) {
+			portletRequest.setAttribute(name, name);
+		}
+
+		List<String> names = getApplicationAttributeNames(attributeCount);
+
+		for (int i = 0; i < attributeCount; i++) {
+			portletRequest.setAttribute(names.get(i), valueType.newValue(i));
+		}
+	}
+}
@@ -0,0 +1,172 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import javax.portlet.faces.Bridge;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.liferay.faces.bridge.scope.BridgeRequestScopeCodec;
+import com.liferay.faces.bridge.scope.BridgeRequestScopeState;
+
+
+/**
+ * This class compares the size and the throughput of {@link BridgeRequestScopeCodec} with default Java serialization
+ * of a {@link Serializable} object that holds the same state. The encoded sizes of both representations are printed
+ * once per trial.
+ *
+ * @author  Neil Griffin
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+public class BridgeRequestScopeCodecBenchmark {
+
+	@Param({ "8", "64", "512" })
+	public int attributeCount;
+
+	@Param({ "STRING", "BOXED", "BEAN", "MIXED" })
+	public AttributeValueType valueType;
+
+	// Private Data Members
+	private byte[] encodedState;
+	private SerializableState serializableState;
+	private byte[] serializedState;
+	private BridgeRequestScopeState state;
+
+	private static byte[] serialize(Object object) throws IOException {
+
+		ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+		ObjectOutputStream objectOutputStream = new ObjectOutputStream(byteArrayOutputStream);
+		objectOutputStream.writeObject(object);
+		objectOutputStream.close();
+
+		return byteArrayOutputStream.toByteArray();
+	}
+
+	@Benchmark
+	public BridgeRequestScopeState codecDecode() throws IOException, ClassNotFoundException {
+		return BridgeRequestScopeCodec.decode(encodedState);
+	}
+
+	@Benchmark
+	public byte[] codecEncode() throws IOException {
+		return BridgeRequestScopeCodec.encode(state);
+	}
+
+	@Benchmark
+	public Object serializationDecode() throws IOException, ClassNotFoundException {
+
+		ObjectInputStream objectInputStream = new ObjectInputStream(new ByteArrayInputStream(serializedState));
+
+		return objectInputStream.readObject();
+	}
+
+	@Benchmark
+	public byte[] serializationEncode() throws IOException {
+		return serialize(serializableState);
+	}
+
+	@Setup
+	public void setUp() throws IOException {
+
+		BenchmarkBridgeRequestScope bridgeRequestScope = new BenchmarkBridgeRequestScope(null);
+		bridgeRequestScope.setIdPrefix("orders_WAR_ordersportlet:::B4D6A1F0C2E3:::");
+		bridgeRequestScope.setFacesLifecycleExecuted(true);
+
+		List<String> names = BenchmarkFixtures.getApplicationAttributeNames(attributeCount);
+
+		for (int i = 0; i < attributeCount; i++) {
+			bridgeRequestScope.put(names.get(i), valueType.newValue(i));
+		}
+
+		state = new BridgeRequestScopeState(bridgeRequestScope, bridgeRequestScope);
+		serializableState = new SerializableState(state);
+		encodedState = BridgeRequestScopeCodec.encode(state);
+		serializedState = serialize(serializableState);
+
+		System.out.println("Encoded size=[" + encodedState.length + "] bytes, serialized size=[" +
+			serializedState.length + "] bytes");
+	}
+
+	/**
+	 * This class holds the same state as {@link BridgeRequestScopeState} with the collection types that the codec
+	 * decodes to, and relies on default Java serialization.
+	 *
+	 * @author  Neil Griffin
+	 */
+	private static final class SerializableState implements Serializable {
+
+		// serialVersionUID
+		private static final long serialVersionUID = 5270919213706524402L;
+
+		// Private Data Members
+		private Bridge.PortletPhase beganInPhase;
+		private long dateCreated;
+		private boolean facesLifecycleExecuted;
+		private String id;
+		private boolean navigationOccurred;
+		private String portletMode;
+		private boolean portletModeChanged;
+		private Map<String, String> preservedActionParameterMap;
+		private Map<String, Object> preservedAttributes;
+		private String preservedViewStateParam;
+		private boolean redirectOccurred;
+		private Set<String> removedAttributeNames;
+
+		SerializableState(BridgeRequestScopeState state) {
+			this.beganInPhase = state.getBeganInPhase();
+			this.dateCreated = state.getDateCreated();
+			this.facesLifecycleExecuted = state.isFacesLifecycleExecuted();
+			this.id = state.getId();
+			this.navigationOccurred = state.isNavigationOccurred();
+			this.portletMode = (state.getPortletMode() == null) ? null : state.getPortletMode().toString();
+			this.portletModeChanged = state.isPortletModeChanged();
+			this.preservedActionParameterMap = new LinkedHashMap<String, String>(
+					state.getPreservedActionParameterMap());
+			this.preservedAttributes = new LinkedHashMap<String, Object>(state.getPreservedAttributes());
+			this.preservedViewStateParam = state.getPreservedViewStateParam();
+			this.redirectOccurred = state.isRedirectOccurred();
+			this.removedAttributeNames = new LinkedHashSet<String>(state.getRemovedAttributeNames());
+		}
+	}
+}
@@ -0,0 +1,77 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.benchmark;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.liferay.faces.bridge.scope.BridgeRequestScopeIdGenerator;
+
+
+/**
+ * This class measures the generation of the unique part of {@link
+ * com.liferay.faces.bridge.scope.BridgeRequestScope#getId()} by all available cores at once. The throughput of {@link
+ * BridgeRequestScopeIdGenerator} is expected to scale with the number of threads, whereas the synchronized counter and
+ * {@link UUID#randomUUID()} (which contends on its shared {@link java.security.SecureRandom}) are not.
+ *
+ * @author  Neil Griffin
+ */
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Threads(Threads.MAX)
+@Warmup(iterations = 3, time = 1)
+public class BridgeRequestScopeIdBenchmark {
+
+	// Private Data Members
+	private long counter;
+	private final BridgeRequestScopeIdGenerator generator = new BridgeRequestScopeIdGenerator("benchmark");
+
+	@Benchmark
+	public String generator() {
+		return generator.nextId();
+	}
+
+	@Benchmark
+	public String synchronizedCounter() {
+
+		long value;
+
+		synchronized (this) {
+			value = counter++;
+		}
+
+		return Long.toString(value, Character.MAX_RADIX);
+	}
+
+	@Benchmark
+	public String uuid() {
+		return UUID.randomUUID().toString();
+	}
+}
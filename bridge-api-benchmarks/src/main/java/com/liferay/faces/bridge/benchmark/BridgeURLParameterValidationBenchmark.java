@@ -0,0 +1,221 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.benchmark;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import javax.portlet.faces.Bridge;
+import javax.portlet.faces.BridgeFactoryFinder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.liferay.faces.bridge.PortletModeValidator;
+import com.liferay.faces.bridge.PortletModeValidatorFactory;
+import com.liferay.faces.bridge.WindowStateValidator;
+import com.liferay.faces.bridge.WindowStateValidatorFactory;
+import com.liferay.faces.bridge.context.url.BridgeURLParameterValidator;
+
+
+/**
+ * This class approximates the cost of rendering the links of a data table with {@link
+ * com.liferay.faces.bridge.context.url.BridgeURLBase#_toString(boolean, java.util.Set)}, where every link carries the
+ * "javax.portlet.faces.PortletMode" and "javax.portlet.faces.WindowState" parameters. Each invocation renders every
+ * row of the table, building the URL string in the same manner as the bridge, and validates the mode and window state
+ * either by looking up the validator factories for each parameter (as the bridge formerly did) or with a {@link
+ * BridgeURLParameterValidator} that is created once per render (as it would be once per {@link
+ * com.liferay.faces.bridge.context.BridgeContext}). The factories are looked up from a map-backed {@link
+ * BridgeFactoryFinder} and the validators match their values with regular expressions, like those of the bridge
+ * implementation.
+ *
+ * @author  Neil Griffin
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+public class BridgeURLParameterValidationBenchmark {
+
+	@Param({ "1000" })
+	public int rowCount;
+
+	// Private Data Members
+	private BridgeFactoryFinder bridgeFactoryFinder;
+	private List<Map<String, String>> rows;
+
+	@Benchmark
+	public int renderTableWithFactoryLookups() {
+
+		int length = 0;
+
+		for (Map<String, String> row : rows) {
+
+			StringBuilder buf = new StringBuilder("/views/orders.xhtml?");
+
+			for (Map.Entry<String, String> entry : row.entrySet()) {
+
+				String parameterName = entry.getKey();
+				String parameterValue = entry.getValue();
+				boolean addParameter;
+
+				if (Bridge.PORTLET_MODE_PARAMETER.equals(parameterName)) {
+					PortletModeValidatorFactory portletModeValidatorFactory = (PortletModeValidatorFactory)
+						bridgeFactoryFinder.getFactoryInstance(PortletModeValidatorFactory.class);
+					PortletModeValidator portletModeValidator = portletModeValidatorFactory.getPortletModeValidator();
+					addParameter = portletModeValidator.isValid(parameterValue);
+				}
+				else if (Bridge.PORTLET_WINDOWSTATE_PARAMETER.equals(parameterName)) {
+					WindowStateValidatorFactory windowStateValidatorFactory = (WindowStateValidatorFactory)
+						bridgeFactoryFinder.getFactoryInstance(WindowStateValidatorFactory.class);
+					WindowStateValidator windowStateValidator = windowStateValidatorFactory.getWindowStateValidator();
+					addParameter = windowStateValidator.isValid(parameterValue);
+				}
+				else {
+					addParameter = true;
+				}
+
+				if (addParameter) {
+					buf.append(parameterName).append('=').append(parameterValue).append('&');
+				}
+			}
+
+			length += buf.toString().length();
+		}
+
+		return length;
+	}
+
+	@Benchmark
+	public int renderTableWithParameterValidator() {
+
+		PortletModeValidatorFactory portletModeValidatorFactory = (PortletModeValidatorFactory)
+			bridgeFactoryFinder.getFactoryInstance(PortletModeValidatorFactory.class);
+		WindowStateValidatorFactory windowStateValidatorFactory = (WindowStateValidatorFactory)
+			bridgeFactoryFinder.getFactoryInstance(WindowStateValidatorFactory.class);
+		BridgeURLParameterValidator bridgeURLParameterValidator = new BridgeURLParameterValidator(
+				portletModeValidatorFactory.getPortletModeValidator(),
+				windowStateValidatorFactory.getWindowStateValidator());
+		int length = 0;
+
+		for (Map<String, String> row : rows) {
+
+			StringBuilder buf = new StringBuilder("/views/orders.xhtml?");
+
+			for (Map.Entry<String, String> entry : row.entrySet()) {
+
+				String parameterName = entry.getKey();
+				String parameterValue = entry.getValue();
+				boolean addParameter;
+
+				if (Bridge.PORTLET_MODE_PARAMETER.equals(parameterName)) {
+					addParameter = bridgeURLParameterValidator.isValidPortletMode(parameterValue);
+				}
+				else if (Bridge.PORTLET_WINDOWSTATE_PARAMETER.equals(parameterName)) {
+					addParameter = bridgeURLParameterValidator.isValidWindowState(parameterValue);
+				}
+				else {
+					addParameter = true;
+				}
+
+				if (addParameter) {
+					buf.append(parameterName).append('=').append(parameterValue).append('&');
+				}
+			}
+
+			length += buf.toString().length();
+		}
+
+		return length;
+	}
+
+	@Setup
+	public void setUp() {
+
+		final Map<Class<?>, Object> factories = new ConcurrentHashMap<Class<?>, Object>();
+		factories.put(PortletModeValidatorFactory.class, new PortletModeValidatorFactory() {
+
+				@Override
+				public PortletModeValidator getPortletModeValidator() {
+					return new PatternValidator();
+				}
+
+				@Override
+				public PortletModeValidatorFactory getWrapped() {
+					return null;
+				}
+			});
+		factories.put(WindowStateValidatorFactory.class, new WindowStateValidatorFactory() {
+
+				@Override
+				public WindowStateValidator getWindowStateValidator() {
+					return new PatternValidator();
+				}
+
+				@Override
+				public WindowStateValidatorFactory getWrapped() {
+					return null;
+				}
+			});
+
+		bridgeFactoryFinder = new BridgeFactoryFinder() {
+
+				@Override
+				public Object getFactoryInstance(Class<?> clazz) {
+					return factories.get(clazz);
+				}
+			};
+
+		rows = new ArrayList<Map<String, String>>(rowCount);
+
+		for (int i = 0; i < rowCount; i++) {
+
+			Map<String, String> row = new LinkedHashMap<String, String>();
+			row.put("orderId", Integer.toString(i));
+			row.put(Bridge.PORTLET_MODE_PARAMETER, ((i % 10) == 0) ? "edit" : "view");
+			row.put(Bridge.PORTLET_WINDOWSTATE_PARAMETER, "maximized");
+			row.put("sortColumn", "customerName");
+			rows.add(row);
+		}
+	}
+
+	private static final class PatternValidator implements PortletModeValidator, WindowStateValidator {
+
+		// Private Constants
+		private static final Pattern PATTERN = Pattern.compile("^([\\p{Alnum}_])+$");
+
+		@Override
+		public boolean isValid(String value) {
+			return (value != null) && PATTERN.matcher(value).matches();
+		}
+	}
+}
@@ -0,0 +1,109 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.liferay.faces.bridge.scope.BoundedBridgeRequestScopeCache;
+import com.liferay.faces.bridge.scope.BridgeRequestScope;
+import com.liferay.faces.bridge.scope.ClusteredBridgeRequestScopeCache;
+
+
+/**
+ * This class measures reads from a {@link ClusteredBridgeRequestScopeCache} that are served by the near-cache and
+ * reads that have to fetch the scope (saved by another node) from a {@link SimulatedBridgeRequestScopeGrid} with the
+ * specified latency.
+ *
+ * @author  Neil Griffin
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+public class ClusteredBridgeRequestScopeCacheBenchmark {
+
+	@Param({ "16", "256" })
+	public int attributeCount;
+
+	@Param({ "0", "200" })
+	public long latencyMicros;
+
+	// Private Data Members
+	private SimulatedBridgeRequestScopeGrid grid;
+	private String id;
+	private ClusteredBridgeRequestScopeCache renderNodeCache;
+
+	@Benchmark
+	public BridgeRequestScope getNearHit() {
+		return renderNodeCache.get(id);
+	}
+
+	@Benchmark
+	public BridgeRequestScope getRemoteHit() {
+
+		// Drop the near copy so that every read goes to the grid and unmarshals the scope.
+		renderNodeCache.invalidated(id);
+
+		return renderNodeCache.get(id);
+	}
+
+	@Setup
+	public void setUp() throws Exception {
+
+		grid = new SimulatedBridgeRequestScopeGrid(latencyMicros, latencyMicros / 4);
+
+		ClusteredBridgeRequestScopeCache actionNodeCache = new ClusteredBridgeRequestScopeCache(
+				new BoundedBridgeRequestScopeCache(100), grid.createNode("action"));
+		renderNodeCache = new ClusteredBridgeRequestScopeCache(new BoundedBridgeRequestScopeCache(100),
+				grid.createNode("render"));
+
+		BenchmarkBridgeRequestScope bridgeRequestScope = new BenchmarkBridgeRequestScope(null);
+		bridgeRequestScope.setIdPrefix("benchmark_WAR_benchmark:::session:::");
+
+		for (int i = 0; i < attributeCount; i++) {
+			bridgeRequestScope.put(BenchmarkFixtures.APPLICATION_ATTRIBUTE_PREFIX + i,
+				AttributeValueType.MIXED.newValue(i));
+		}
+
+		id = bridgeRequestScope.getId();
+		actionNodeCache.put(id, bridgeRequestScope);
+
+		// Wait for the put to be replicated.
+		while (grid.size() == 0) {
+			Thread.sleep(1L);
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		grid.shutdown();
+	}
+}
@@ -0,0 +1,79 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.benchmark;
+
+import java.util.Map;
+
+import javax.faces.context.ExternalContext;
+import javax.faces.context.ExternalContextWrapper;
+import javax.faces.context.FacesContext;
+import javax.faces.context.FacesContextWrapper;
+import javax.portlet.PortletRequest;
+
+
+/**
+ * This class is a lightweight in-memory stand-in for a {@link FacesContext} whose {@link ExternalContext} exposes the
+ * attributes of a {@link PortletRequest} as the request map. All other methods delegate to a <code>null</code> wrapped
+ * instance, since they are not exercised by the benchmarks.
+ *
+ * @author  Neil Griffin
+ */
+public class InMemoryFacesContext extends FacesContextWrapper {
+
+	// Private Data Members
+	private final ExternalContext externalContext;
+
+	public InMemoryFacesContext(PortletRequest portletRequest) {
+		this.externalContext = new InMemoryExternalContext(portletRequest);
+	}
+
+	@Override
+	public ExternalContext getExternalContext() {
+		return externalContext;
+	}
+
+	@Override
+	public FacesContext getWrapped() {
+		return null;
+	}
+
+	private static final class InMemoryExternalContext extends ExternalContextWrapper {
+
+		// Private Data Members
+		private final PortletRequest portletRequest;
+		private final Map<String, Object> requestMap;
+
+		InMemoryExternalContext(PortletRequest portletRequest) {
+			this.portletRequest = portletRequest;
+			this.requestMap = new PortletRequestAttributeMap(portletRequest);
+		}
+
+		@Override
+		public Object getRequest() {
+			return portletRequest;
+		}
+
+		@Override
+		public Map<String, Object> getRequestMap() {
+			return requestMap;
+		}
+
+		@Override
+		public ExternalContext getWrapped() {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,99 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.benchmark;
+
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.ResourceBundle;
+
+import javax.portlet.PortletConfig;
+import javax.portlet.PortletContext;
+import javax.xml.namespace.QName;
+
+
+/**
+ * This class is a lightweight in-memory stand-in for a {@link PortletConfig}. Only {@link #getPortletName()} is
+ * functional, since it is the only method that is exercised by the bridge request scope factories on the measured
+ * paths.
+ *
+ * @author  Neil Griffin
+ */
+public class InMemoryPortletConfig implements PortletConfig {
+
+	// Private Data Members
+	private final String portletName;
+
+	public InMemoryPortletConfig(String portletName) {
+		this.portletName = portletName;
+	}
+
+	@Override
+	public Map<String, String[]> getContainerRuntimeOptions() {
+		return Collections.emptyMap();
+	}
+
+	@Override
+	public String getDefaultNamespace() {
+		return null;
+	}
+
+	@Override
+	public String getInitParameter(String name) {
+		return null;
+	}
+
+	@Override
+	public Enumeration<String> getInitParameterNames() {
+		return Collections.enumeration(Collections.<String>emptyList());
+	}
+
+	@Override
+	public PortletContext getPortletContext() {
+		return null;
+	}
+
+	@Override
+	public String getPortletName() {
+		return portletName;
+	}
+
+	@Override
+	public Enumeration<QName> getProcessingEventQNames() {
+		return Collections.enumeration(Collections.<QName>emptyList());
+	}
+
+	@Override
+	public Enumeration<String> getPublicRenderParameterNames() {
+		return Collections.enumeration(Collections.<String>emptyList());
+	}
+
+	@Override
+	public Enumeration<QName> getPublishingEventQNames() {
+		return Collections.enumeration(Collections.<QName>emptyList());
+	}
+
+	@Override
+	public ResourceBundle getResourceBundle(Locale locale) {
+		return null;
+	}
+
+	@Override
+	public Enumeration<Locale> getSupportedLocales() {
+		return Collections.enumeration(Collections.<Locale>emptyList());
+	}
+}
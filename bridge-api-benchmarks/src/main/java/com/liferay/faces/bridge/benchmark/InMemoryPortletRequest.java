@@ -0,0 +1,249 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.benchmark;
+
+import java.security.Principal;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.portlet.PortalContext;
+import javax.portlet.PortletMode;
+import javax.portlet.PortletPreferences;
+import javax.portlet.PortletRequest;
+import javax.portlet.PortletSession;
+import javax.portlet.WindowState;
+import javax.servlet.http.Cookie;
+
+
+/**
+ * This class is a lightweight in-memory stand-in for a {@link PortletRequest}. Only the request attribute and property
+ * methods are functional, since those are the only methods that are exercised by the bridge request scope and by the
+ * partial request fast path on the measured paths.
+ *
+ * @author  Neil Griffin
+ */
+public class InMemoryPortletRequest implements PortletRequest {
+
+	// Private Data Members
+	private final Map<String, Object> attributes = new HashMap<String, Object>();
+	private final Map<String, String> properties = new HashMap<String, String>();
+
+	@Override
+	public void removeAttribute(String name) {
+		attributes.remove(name);
+	}
+
+	@Override
+	public Object getAttribute(String name) {
+		return attributes.get(name);
+	}
+
+	@Override
+	public void setAttribute(String name, Object value) {
+
+		if (value == null) {
+			attributes.remove(name);
+		}
+		else {
+			attributes.put(name, value);
+		}
+	}
+
+	@Override
+	public Enumeration<String> getAttributeNames() {
+		return Collections.enumeration(attributes.keySet());
+	}
+
+	@Override
+	public String getAuthType() {
+		return null;
+	}
+
+	@Override
+	public String getContextPath() {
+		return "/benchmark";
+	}
+
+	@Override
+	public Cookie[] getCookies() {
+		return new Cookie[0];
+	}
+
+	@Override
+	public Locale getLocale() {
+		return Locale.getDefault();
+	}
+
+	@Override
+	public Enumeration<Locale> getLocales() {
+		return Collections.enumeration(Collections.singletonList(Locale.getDefault()));
+	}
+
+	@Override
+	public String getParameter(String name) {
+		return null;
+	}
+
+	@Override
+	public Map<String, String[]> getParameterMap() {
+		return Collections.emptyMap();
+	}
+
+	@Override
+	public Enumeration<String> getParameterNames() {
+		return Collections.enumeration(Collections.<String>emptyList());
+	}
+
+	@Override
+	public String[] getParameterValues(String name) {
+		return null;
+	}
+
+	@Override
+	public PortalContext getPortalContext() {
+		return null;
+	}
+
+	@Override
+	public PortletMode getPortletMode() {
+		return PortletMode.VIEW;
+	}
+
+	@Override
+	public boolean isPortletModeAllowed(PortletMode portletMode) {
+		return true;
+	}
+
+	@Override
+	public PortletSession getPortletSession() {
+		return null;
+	}
+
+	@Override
+	public PortletSession getPortletSession(boolean create) {
+		return null;
+	}
+
+	@Override
+	public PortletPreferences getPreferences() {
+		return null;
+	}
+
+	@Override
+	public Map<String, String[]> getPrivateParameterMap() {
+		return Collections.emptyMap();
+	}
+
+	@Override
+	public Enumeration<String> getProperties(String name) {
+		return Collections.enumeration(Collections.<String>emptyList());
+	}
+
+	@Override
+	public String getProperty(String name) {
+		return properties.get(name);
+	}
+
+	/**
+	 * Sets the value of the specified property (request header).
+	 */
+	public void setProperty(String name, String value) {
+		properties.put(name, value);
+	}
+
+	@Override
+	public Enumeration<String> getPropertyNames() {
+		return Collections.enumeration(Collections.<String>emptyList());
+	}
+
+	@Override
+	public Map<String, String[]> getPublicParameterMap() {
+		return Collections.emptyMap();
+	}
+
+	@Override
+	public String getRemoteUser() {
+		return null;
+	}
+
+	@Override
+	public String getRequestedSessionId() {
+		return null;
+	}
+
+	@Override
+	public boolean isRequestedSessionIdValid() {
+		return false;
+	}
+
+	@Override
+	public String getResponseContentType() {
+		return "text/html";
+	}
+
+	@Override
+	public Enumeration<String> getResponseContentTypes() {
+		return Collections.enumeration(Collections.singletonList("text/html"));
+	}
+
+	@Override
+	public String getScheme() {
+		return "http";
+	}
+
+	@Override
+	public boolean isSecure() {
+		return false;
+	}
+
+	@Override
+	public String getServerName() {
+		return "localhost";
+	}
+
+	@Override
+	public int getServerPort() {
+		return 8080;
+	}
+
+	@Override
+	public Principal getUserPrincipal() {
+		return null;
+	}
+
+	@Override
+	public boolean isUserInRole(String role) {
+		return false;
+	}
+
+	@Override
+	public String getWindowID() {
+		return "benchmark";
+	}
+
+	@Override
+	public WindowState getWindowState() {
+		return WindowState.NORMAL;
+	}
+
+	@Override
+	public boolean isWindowStateAllowed(WindowState windowState) {
+		return true;
+	}
+}
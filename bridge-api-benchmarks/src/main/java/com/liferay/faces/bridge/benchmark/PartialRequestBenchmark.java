@@ -0,0 +1,135 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.faces.context.FacesContext;
+import javax.portlet.PortletConfig;
+import javax.portlet.PortletRequest;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.liferay.faces.bridge.PartialRequestBridgePhaseFactory;
+import com.liferay.faces.bridge.config.BridgeConfig;
+import com.liferay.faces.bridge.scope.BridgeRequestScope;
+import com.liferay.faces.bridge.scope.BridgeRequestScopeFactory;
+import com.liferay.faces.bridge.scope.CachingRequestAttributeInspector;
+import com.liferay.faces.bridge.scope.CompiledRequestAttributeInspector;
+import com.liferay.faces.bridge.scope.CompiledRequestAttributeInspectorFactory;
+import com.liferay.faces.bridge.scope.PartialRequestBridgeRequestScopeFactory;
+import com.liferay.faces.bridge.scope.RequestAttributeInspector;
+import com.liferay.faces.bridge.scope.RequestAttributeNameTrie;
+
+
+/**
+ * This class measures the per-request cost of the bridge request scope bookkeeping of a Faces partial (Ajax) request
+ * served in the RESOURCE_PHASE, both with the scope that is created by the {@link BridgeRequestScopeFactory} (which is
+ * restored and then saved, inspecting every request attribute) and with the fast path of {@link
+ * PartialRequestBridgePhaseFactory} and {@link PartialRequestBridgeRequestScopeFactory}. The request attributes are
+ * those of a typical Ajax-heavy portlet with a mix of value types.
+ *
+ * @author  Neil Griffin
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+public class PartialRequestBenchmark {
+
+	// Private Constants
+	private static final int EXCLUDED_ATTRIBUTE_COUNT = 16;
+
+	@Param({ "16", "64" })
+	public int attributeCount;
+
+	// Private Data Members
+	private BridgeRequestScopeFactory bridgeRequestScopeFactory;
+	private FacesContext facesContext;
+	private PortletConfig portletConfig;
+	private InMemoryPortletRequest portletRequest;
+
+	@Benchmark
+	public BridgeRequestScope partialRequestFastPath() {
+
+		if (PartialRequestBridgePhaseFactory.isPartialRequest(portletRequest)) {
+			portletRequest.setAttribute(PartialRequestBridgePhaseFactory.PARTIAL_REQUEST_FAST_PATH, Boolean.TRUE);
+		}
+
+		BridgeRequestScope bridgeRequestScope = bridgeRequestScopeFactory.getBridgeRequestScope(portletRequest,
+				portletConfig, null);
+		bridgeRequestScope.restoreState(facesContext);
+		bridgeRequestScope.saveState(facesContext);
+		portletRequest.removeAttribute(PartialRequestBridgePhaseFactory.PARTIAL_REQUEST_FAST_PATH);
+
+		return bridgeRequestScope;
+	}
+
+	@Benchmark
+	public BridgeRequestScope partialRequestWithScope() {
+
+		BridgeRequestScope bridgeRequestScope = bridgeRequestScopeFactory.getBridgeRequestScope(portletRequest,
+				portletConfig, null);
+		bridgeRequestScope.restoreState(facesContext);
+		bridgeRequestScope.saveState(facesContext);
+
+		return bridgeRequestScope;
+	}
+
+	@Setup
+	public void setUp() {
+
+		portletConfig = new InMemoryPortletConfig("benchmark_WAR_benchmark");
+		portletRequest = new InMemoryPortletRequest();
+		portletRequest.setProperty("Faces-Request", "partial/ajax");
+		BenchmarkFixtures.populate(portletRequest, attributeCount, AttributeValueType.MIXED);
+		facesContext = new InMemoryFacesContext(portletRequest);
+
+		List<String> excludedAttributes = BenchmarkFixtures.getExcludedAttributes(EXCLUDED_ATTRIBUTE_COUNT);
+		final RequestAttributeInspector requestAttributeInspector = new CompiledRequestAttributeInspector(
+				new CachingRequestAttributeInspector(new ReferenceRequestAttributeInspector(excludedAttributes,
+						BenchmarkFixtures.PRE_EXISTING_ATTRIBUTE_NAMES)),
+				RequestAttributeNameTrie.compile(CompiledRequestAttributeInspectorFactory.EXCLUDED_NAMESPACES),
+				RequestAttributeNameTrie.compile(excludedAttributes));
+
+		bridgeRequestScopeFactory = new PartialRequestBridgeRequestScopeFactory(new BridgeRequestScopeFactory() {
+
+					@Override
+					public BridgeRequestScope getBridgeRequestScope(PortletRequest portletRequest,
+						PortletConfig portletConfig, BridgeConfig bridgeConfig) {
+						return new BenchmarkBridgeRequestScope(requestAttributeInspector);
+					}
+
+					@Override
+					public BridgeRequestScopeFactory getWrapped() {
+						return null;
+					}
+				});
+	}
+}
@@ -0,0 +1,128 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.benchmark;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import javax.portlet.PortletRequest;
+
+
+/**
+ * This class is a {@link Map} view of the attributes of a {@link PortletRequest}, similar to the request-scope map
+ * that the bridge implementation returns from {@link javax.faces.context.ExternalContext#getRequestMap()}, so that the
+ * benchmarks pay the same cost of going through the request for each attribute.
+ *
+ * @author  Neil Griffin
+ */
+public class PortletRequestAttributeMap extends AbstractMap<String, Object> {
+
+	// Private Data Members
+	private final PortletRequest portletRequest;
+
+	public PortletRequestAttributeMap(PortletRequest portletRequest) {
+		this.portletRequest = portletRequest;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return portletRequest.getAttribute((String) key) != null;
+	}
+
+	@Override
+	public Set<Map.Entry<String, Object>> entrySet() {
+		return new EntrySet();
+	}
+
+	@Override
+	public Object get(Object key) {
+		return portletRequest.getAttribute((String) key);
+	}
+
+	@Override
+	public Object put(String key, Object value) {
+
+		Object oldValue = portletRequest.getAttribute(key);
+		portletRequest.setAttribute(key, value);
+
+		return oldValue;
+	}
+
+	@Override
+	public Object remove(Object key) {
+
+		String name = (String) key;
+		Object oldValue = portletRequest.getAttribute(name);
+		portletRequest.removeAttribute(name);
+
+		return oldValue;
+	}
+
+	private final class EntryIterator implements Iterator<Map.Entry<String, Object>> {
+
+		// Private Data Members
+		private String currentName;
+		private final Enumeration<String> names;
+
+		EntryIterator() {
+
+			// Take a snapshot of the names, so that the request can be modified while iterating.
+			this.names = Collections.enumeration(Collections.list(
+						portletRequest.getAttributeNames()));
+		}
+
+		@Override
+		public boolean hasNext() {
+			return names.hasMoreElements();
+		}
+
+		@Override
+		public Map.Entry<String, Object> next() {
+
+			if (!names.hasMoreElements()) {
+				throw new NoSuchElementException();
+			}
+
+			currentName = names.nextElement();
+
+			return new SimpleImmutableEntry<String, Object>(currentName, portletRequest.getAttribute(currentName));
+		}
+
+		@Override
+		public void remove() {
+			portletRequest.removeAttribute(currentName);
+		}
+	}
+
+	private final class EntrySet extends AbstractSet<Map.Entry<String, Object>> {
+
+		@Override
+		public Iterator<Map.Entry<String, Object>> iterator() {
+			return new EntryIterator();
+		}
+
+		@Override
+		public int size() {
+			return Collections.list(portletRequest.getAttributeNames()).size();
+		}
+	}
+}
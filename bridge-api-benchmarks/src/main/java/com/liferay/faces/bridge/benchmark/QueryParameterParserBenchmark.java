@@ -0,0 +1,111 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.benchmark;
+
+import java.net.MalformedURLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.liferay.faces.bridge.context.url.QueryParameterParser;
+
+
+/**
+ * This class compares the cost of copying the query parameters of a URL (as done by {@link
+ * com.liferay.faces.bridge.context.url.BridgeURLBase#copyParameters(String, javax.portlet.BaseURL)}) when they are
+ * parsed by {@link ReferenceQueryParameterParser} and when they are scanned by {@link QueryParameterParser}. The URLs
+ * resemble those that are encoded for the links and buttons of a Faces view.
+ *
+ * @author  Neil Griffin
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+public class QueryParameterParserBenchmark {
+
+	@Param({ "2", "8" })
+	public int parameterCount;
+
+	// Private Data Members
+	private String url;
+
+	@Benchmark
+	public void queryParameterParser(final Blackhole blackhole) throws MalformedURLException {
+
+		QueryParameterParser.parse(url, new QueryParameterParser.Handler() {
+
+				@Override
+				public void handleParameter(String name, String value) {
+					blackhole.consume(name);
+					blackhole.consume(value);
+				}
+			});
+	}
+
+	@Benchmark
+	public void referenceQueryParameterParser(Blackhole blackhole) throws MalformedURLException {
+
+		List<String[]> requestParameters = ReferenceQueryParameterParser.parse(url);
+
+		if (requestParameters != null) {
+
+			for (String[] requestParameter : requestParameters) {
+				blackhole.consume(requestParameter[0]);
+				blackhole.consume(requestParameter[1]);
+			}
+		}
+	}
+
+	@Setup
+	public void setUp() {
+
+		StringBuilder buf = new StringBuilder("/my-portlet/views/orders.faces?");
+
+		for (int i = 0; i < parameterCount; i++) {
+
+			if (i > 0) {
+				buf.append('&');
+			}
+
+			if (i == 0) {
+				buf.append("_jsfBridgeViewId=/views/orderDetail.xhtml");
+			}
+			else if (i == 1) {
+				buf.append("javax.portlet.faces.PortletMode=view");
+			}
+			else {
+				buf.append("orderId").append(i).append('=').append(1000 + i);
+			}
+		}
+
+		url = buf.toString();
+	}
+}
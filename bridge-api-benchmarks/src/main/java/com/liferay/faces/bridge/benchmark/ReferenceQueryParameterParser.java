@@ -0,0 +1,94 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.benchmark;
+
+import java.net.MalformedURLException;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * This class is a reference copy of the query parameter parsing that was formerly done by {@link
+ * com.liferay.faces.bridge.context.url.BridgeURLBase#parseRequestParameters(String)}, which splits the query string
+ * with regular expressions and collects the name/value pairs into a list. It is the baseline that {@link
+ * com.liferay.faces.bridge.context.url.QueryParameterParser} is measured (and checked) against.
+ *
+ * @author  Neil Griffin
+ */
+public final class ReferenceQueryParameterParser {
+
+	private ReferenceQueryParameterParser() {
+		throw new AssertionError();
+	}
+
+	/**
+	 * Parses the specified URL and returns a list of name/value pairs, or <code>null</code> if the URL does not have a
+	 * query component.
+	 */
+	public static List<String[]> parse(String url) throws MalformedURLException {
+
+		List<String[]> requestParameters = null;
+
+		if (url != null) {
+			int pos = url.indexOf("?");
+
+			if (pos >= 0) {
+				String queryString = url.substring(pos + 1);
+
+				if (queryString.length() > 0) {
+					requestParameters = new ArrayList<String[]>();
+
+					String[] queryParameters = queryString.split("[&]");
+
+					for (String queryParameter : queryParameters) {
+
+						String[] nameValueArray = queryParameter.split("[=]");
+
+						if (nameValueArray.length == 1) {
+
+							String name = nameValueArray[0].trim();
+
+							if (name.length() == 0) {
+								throw new MalformedURLException("Invalid name/value pair=[" + queryParameter +
+									"]: name cannot be empty.");
+							}
+							else {
+								requestParameters.add(new String[] { name, "" });
+							}
+						}
+						else if (nameValueArray.length == 2) {
+
+							String name = nameValueArray[0].trim();
+
+							if (name.length() == 0) {
+								throw new MalformedURLException("Invalid name/value pair=[" + queryParameter +
+									"]: name cannot be empty.");
+							}
+							else {
+								requestParameters.add(new String[] { name, nameValueArray[1] });
+							}
+						}
+						else {
+							throw new MalformedURLException("Invalid name/value pair: " + queryParameter);
+						}
+					}
+				}
+			}
+		}
+
+		return requestParameters;
+	}
+}
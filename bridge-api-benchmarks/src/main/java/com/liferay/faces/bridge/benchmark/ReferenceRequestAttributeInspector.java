@@ -0,0 +1,124 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.benchmark;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import javax.faces.context.ExternalContext;
+import javax.faces.context.FacesContext;
+import javax.portlet.PortalContext;
+import javax.portlet.PortletConfig;
+import javax.portlet.PortletContext;
+import javax.portlet.PortletPreferences;
+import javax.portlet.PortletRequest;
+import javax.portlet.PortletRequestDispatcher;
+import javax.portlet.PortletResponse;
+import javax.portlet.PortletSession;
+import javax.portlet.faces.annotation.ExcludeFromManagedRequestScope;
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpSession;
+
+import com.liferay.faces.bridge.scope.RequestAttributeInspector;
+
+
+/**
+ * This class is a reference implementation of {@link RequestAttributeInspector} that follows Section 5.1.2 of the
+ * Bridge Specification by scanning the lists of excluded namespaces and attributes for each request attribute, in the
+ * same manner as the bridge implementation. It is the baseline that the decorators of the API are measured against.
+ *
+ * @author  Neil Griffin
+ */
+public class ReferenceRequestAttributeInspector implements RequestAttributeInspector {
+
+	// Private Constants
+	private static final String[] EXCLUDED_NAMESPACES = new String[] {
+			"javax.faces", "javax.portlet", "javax.portlet.faces", "javax.servlet", "javax.servlet.include"
+		};
+
+	// Private Data Members
+	private final List<String> excludedAttributes;
+	private final List<String> preExistingAttributeNames;
+
+	public ReferenceRequestAttributeInspector(Collection<String> excludedAttributes,
+		Collection<String> preExistingAttributeNames) {
+
+		this.excludedAttributes = new ArrayList<String>(excludedAttributes);
+		this.preExistingAttributeNames = new ArrayList<String>(preExistingAttributeNames);
+	}
+
+	private static boolean isNamespaceMatch(String name, String namespace) {
+
+		int dotPos = name.lastIndexOf('.');
+
+		return (dotPos > 0) && namespace.equals(name.substring(0, dotPos));
+	}
+
+	@Override
+	public boolean containsExcludedNamespace(String name) {
+
+		for (String namespace : EXCLUDED_NAMESPACES) {
+
+			if (isNamespaceMatch(name, namespace)) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	@Override
+	public boolean isExcludedByAnnotation(String name, Object value) {
+		return (value != null) && (value.getClass().getAnnotation(ExcludeFromManagedRequestScope.class) != null);
+	}
+
+	@Override
+	public boolean isExcludedByConfig(String name, Object value) {
+
+		for (String excludedAttribute : excludedAttributes) {
+
+			if (name.equals(excludedAttribute)) {
+				return true;
+			}
+			else if (excludedAttribute.endsWith(".*") &&
+					isNamespaceMatch(name, excludedAttribute.substring(0, excludedAttribute.length() - 2))) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	@Override
+	public boolean isExcludedByPreExisting(String name, Object value) {
+		return preExistingAttributeNames.contains(name);
+	}
+
+	@Override
+	public boolean isExcludedByType(String name, Object value) {
+		return (value instanceof ExternalContext) || (value instanceof FacesContext) ||
+			(value instanceof HttpSession) || (value instanceof PortalContext) || (value instanceof PortletConfig) ||
+			(value instanceof PortletContext) || (value instanceof PortletPreferences) ||
+			(value instanceof PortletRequest) || (value instanceof PortletRequestDispatcher) ||
+			(value instanceof PortletResponse) || (value instanceof PortletSession) || (value instanceof ServletConfig) ||
+			(value instanceof ServletContext) || (value instanceof ServletRequest) ||
+			(value instanceof ServletResponse);
+	}
+}
@@ -0,0 +1,135 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.liferay.faces.bridge.scope.CachingRequestAttributeInspector;
+import com.liferay.faces.bridge.scope.CompiledRequestAttributeInspector;
+import com.liferay.faces.bridge.scope.CompiledRequestAttributeInspectorFactory;
+import com.liferay.faces.bridge.scope.RequestAttributeInspector;
+import com.liferay.faces.bridge.scope.RequestAttributeNameTrie;
+
+
+/**
+ * This class measures the checks of a {@link RequestAttributeInspector} for a typical mix of request attributes, as
+ * the number of configured excluded attributes grows. The cost of the <code>COMPILED</code> inspector is expected to
+ * remain flat, whereas the cost of the <code>REFERENCE</code> inspector grows linearly.
+ *
+ * @author  Neil Griffin
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+public class RequestAttributeInspectorBenchmark {
+
+	// Private Constants
+	private static final int ATTRIBUTE_COUNT = 64;
+
+	@Param({ "4", "64", "1024" })
+	public int excludedCount;
+
+	@Param({ "REFERENCE", "CACHING", "COMPILED" })
+	public String inspectorType;
+
+	// Private Data Members
+	private RequestAttributeInspector inspector;
+	private String[] names;
+	private Object[] values;
+
+	@Benchmark
+	public int inspect() {
+
+		int excluded = 0;
+
+		for (int i = 0; i < names.length; i++) {
+
+			String name = names[i];
+			Object value = values[i];
+
+			if (inspector.containsExcludedNamespace(name) || inspector.isExcludedByConfig(name, value) ||
+					inspector.isExcludedByType(name, value) || inspector.isExcludedByAnnotation(name, value)) {
+				excluded++;
+			}
+		}
+
+		return excluded;
+	}
+
+	@Setup
+	public void setUp() {
+
+		List<String> excludedAttributes = BenchmarkFixtures.getExcludedAttributes(excludedCount);
+		RequestAttributeInspector referenceInspector = new ReferenceRequestAttributeInspector(excludedAttributes,
+				BenchmarkFixtures.PRE_EXISTING_ATTRIBUTE_NAMES);
+
+		if ("REFERENCE".equals(inspectorType)) {
+			inspector = referenceInspector;
+		}
+		else if ("CACHING".equals(inspectorType)) {
+			inspector = new CachingRequestAttributeInspector(referenceInspector);
+		}
+		else {
+			inspector = new CompiledRequestAttributeInspector(new CachingRequestAttributeInspector(
+						referenceInspector),
+					RequestAttributeNameTrie.compile(CompiledRequestAttributeInspectorFactory.EXCLUDED_NAMESPACES),
+					RequestAttributeNameTrie.compile(excludedAttributes));
+		}
+
+		// A mix of container attributes, attributes in excluded namespaces, configured exclusions and application
+		// attributes of every value type.
+		List<String> nameList = new ArrayList<String>(BenchmarkFixtures.PRE_EXISTING_ATTRIBUTE_NAMES);
+		List<Object> valueList = new ArrayList<Object>(nameList);
+		int configuredCount = Math.min(excludedCount, 8);
+
+		for (int i = 0; i < configuredCount; i++) {
+
+			String excludedAttribute = excludedAttributes.get((i * excludedCount) / configuredCount);
+
+			if (excludedAttribute.endsWith(".*")) {
+				excludedAttribute = excludedAttribute.substring(0, excludedAttribute.length() - 1) + "value";
+			}
+
+			nameList.add(excludedAttribute);
+			valueList.add(excludedAttribute);
+		}
+
+		for (int i = nameList.size(); i < ATTRIBUTE_COUNT; i++) {
+			nameList.add(BenchmarkFixtures.APPLICATION_ATTRIBUTE_PREFIX + i);
+			valueList.add(AttributeValueType.MIXED.newValue(i));
+		}
+
+		names = nameList.toArray(new String[nameList.size()]);
+		values = valueList.toArray();
+	}
+}
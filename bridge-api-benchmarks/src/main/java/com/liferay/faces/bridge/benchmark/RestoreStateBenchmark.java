@@ -0,0 +1,118 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.benchmark;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.faces.context.FacesContext;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.liferay.faces.bridge.scope.LazyRestoreRequestScopeMap;
+
+
+/**
+ * This class measures {@link com.liferay.faces.bridge.scope.BridgeRequestScope#restoreState(FacesContext)} both eagerly
+ * and lazily with a {@link LazyRestoreRequestScopeMap}, in which case the view reads the specified percentage of the
+ * preserved attributes. The request is reset before each invocation so that every restore starts from a request that
+ * only contains the attributes of the portlet container.
+ *
+ * @author  Neil Griffin
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+public class RestoreStateBenchmark {
+
+	@Param({ "8", "64", "512" })
+	public int attributeCount;
+
+	@Param({ "10", "100" })
+	public int readPercentage;
+
+	@Param({ "STRING", "BOXED", "BEAN", "MIXED" })
+	public AttributeValueType valueType;
+
+	// Private Data Members
+	private List<String> applicationAttributeNames;
+	private FacesContext facesContext;
+	private InMemoryPortletRequest portletRequest;
+	private int readCount;
+	private BenchmarkBridgeRequestScope scope;
+
+	@Benchmark
+	public void restoreState(Blackhole blackhole) {
+
+		scope.restoreState(facesContext);
+
+		Map<String, Object> requestMap = facesContext.getExternalContext().getRequestMap();
+
+		for (int i = 0; i < readCount; i++) {
+			blackhole.consume(requestMap.get(applicationAttributeNames.get(i)));
+		}
+	}
+
+	@Benchmark
+	public void restoreStateLazy(Blackhole blackhole) {
+
+		Map<String, Object> requestMap = new LazyRestoreRequestScopeMap(facesContext.getExternalContext()
+				.getRequestMap(), scope);
+
+		for (int i = 0; i < readCount; i++) {
+			blackhole.consume(requestMap.get(applicationAttributeNames.get(i)));
+		}
+	}
+
+	@Setup(Level.Invocation)
+	public void resetRequest() {
+
+		for (String name : applicationAttributeNames) {
+			portletRequest.removeAttribute(name);
+		}
+	}
+
+	@Setup(Level.Trial)
+	public void setUp() {
+
+		portletRequest = new InMemoryPortletRequest();
+		BenchmarkFixtures.populate(portletRequest, attributeCount, valueType);
+		facesContext = new InMemoryFacesContext(portletRequest);
+		applicationAttributeNames = BenchmarkFixtures.getApplicationAttributeNames(attributeCount);
+		readCount = Math.max(1, (attributeCount * readPercentage) / 100);
+
+		// Values that are excluded by annotation are never preserved, so keep only the ones that would be.
+		scope = new BenchmarkBridgeRequestScope(new ReferenceRequestAttributeInspector(
+					BenchmarkFixtures.getExcludedAttributes(0), BenchmarkFixtures.PRE_EXISTING_ATTRIBUTE_NAMES));
+		scope.saveState(facesContext);
+	}
+}
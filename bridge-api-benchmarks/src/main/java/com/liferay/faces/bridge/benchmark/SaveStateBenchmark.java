@@ -0,0 +1,136 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.benchmark;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.faces.context.FacesContext;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.liferay.faces.bridge.scope.CachingRequestAttributeInspector;
+import com.liferay.faces.bridge.scope.CompiledRequestAttributeInspector;
+import com.liferay.faces.bridge.scope.CompiledRequestAttributeInspectorFactory;
+import com.liferay.faces.bridge.scope.RequestAttributeChangeTracker;
+import com.liferay.faces.bridge.scope.RequestAttributeInspector;
+import com.liferay.faces.bridge.scope.RequestAttributeNameTrie;
+
+
+/**
+ * This class measures {@link com.liferay.faces.bridge.scope.BridgeRequestScope#saveState(FacesContext)} with the
+ * reference {@link RequestAttributeInspector}, with the decorated inspectors of the API, and with a {@link
+ * RequestAttributeChangeTracker} that skips the attributes that were restored and not replaced (one in eight are
+ * replaced).
+ *
+ * @author  Neil Griffin
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+public class SaveStateBenchmark {
+
+	// Private Constants
+	private static final int EXCLUDED_ATTRIBUTE_COUNT = 16;
+
+	@Param({ "8", "64", "512" })
+	public int attributeCount;
+
+	@Param({ "STRING", "BOXED", "BEAN", "MIXED" })
+	public AttributeValueType valueType;
+
+	// Private Data Members
+	private BenchmarkBridgeRequestScope decoratedScope;
+	private BenchmarkBridgeRequestScope deltaScope;
+	private FacesContext facesContext;
+	private BenchmarkBridgeRequestScope referenceScope;
+
+	@Benchmark
+	public int saveState() {
+
+		referenceScope.clear();
+		referenceScope.saveState(facesContext);
+
+		return referenceScope.size();
+	}
+
+	@Benchmark
+	public int saveStateDecoratedInspector() {
+
+		decoratedScope.clear();
+		decoratedScope.saveState(facesContext);
+
+		return decoratedScope.size();
+	}
+
+	@Benchmark
+	public int saveStateDelta() {
+
+		// The previously preserved attributes are retained, as they would be by a scope that was restored.
+		deltaScope.saveState(facesContext);
+
+		return deltaScope.size();
+	}
+
+	@Setup
+	public void setUp() {
+
+		InMemoryPortletRequest portletRequest = new InMemoryPortletRequest();
+		BenchmarkFixtures.populate(portletRequest, attributeCount, valueType);
+		facesContext = new InMemoryFacesContext(portletRequest);
+
+		List<String> excludedAttributes = BenchmarkFixtures.getExcludedAttributes(EXCLUDED_ATTRIBUTE_COUNT);
+		RequestAttributeInspector referenceInspector = new ReferenceRequestAttributeInspector(excludedAttributes,
+				BenchmarkFixtures.PRE_EXISTING_ATTRIBUTE_NAMES);
+		RequestAttributeInspector decoratedInspector = new CompiledRequestAttributeInspector(
+				new CachingRequestAttributeInspector(referenceInspector),
+				RequestAttributeNameTrie.compile(CompiledRequestAttributeInspectorFactory.EXCLUDED_NAMESPACES),
+				RequestAttributeNameTrie.compile(excludedAttributes));
+
+		referenceScope = new BenchmarkBridgeRequestScope(referenceInspector);
+		decoratedScope = new BenchmarkBridgeRequestScope(decoratedInspector);
+
+		// Simulate a scope that was restored at the beginning of the request, after which the application replaced one
+		// in eight of the attributes.
+		Map<String, Object> requestMap = facesContext.getExternalContext().getRequestMap();
+		RequestAttributeChangeTracker changeTracker = new RequestAttributeChangeTracker(requestMap,
+				BenchmarkFixtures.PRE_EXISTING_ATTRIBUTE_NAMES);
+		deltaScope = new BenchmarkBridgeRequestScope(decoratedInspector);
+		deltaScope.saveState(facesContext);
+		changeTracker.addToBaseline(deltaScope);
+		deltaScope.setChangeTracker(changeTracker);
+
+		List<String> names = BenchmarkFixtures.getApplicationAttributeNames(attributeCount);
+
+		for (int i = 0; i < attributeCount; i += 8) {
+			portletRequest.setAttribute(names.get(i), valueType.newValue(i));
+		}
+	}
+}
@@ -0,0 +1,337 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.liferay.faces.bridge.scope.BoundedBridgeRequestScopeCache;
+import com.liferay.faces.bridge.scope.ClusteredBridgeRequestScopeCache;
+import com.liferay.faces.bridge.scope.RemoteBridgeRequestScopeStore;
+
+
+/**
+ * <p>This class simulates a data grid within a single JVM so that the behavior and latency of a {@link
+ * ClusteredBridgeRequestScopeCache} can be tested without a real grid. Each call to {@link #createNode(String)} returns
+ * the {@link RemoteBridgeRequestScopeStore} of a simulated node, and all of the nodes share the same entries.</p>
+ *
+ * <p>Every operation and every invalidation is executed by a pool of daemon threads after a simulated network latency
+ * (a fixed delay plus a random jitter), so that effects such as replication lag and stale near-cache reads can be
+ * observed. Bytes are copied when they are stored and retrieved, as they would be when sent over a network.</p>
+ *
+ * @author  Neil Griffin
+ */
+public class SimulatedBridgeRequestScopeGrid {
+
+	// Private Data Members
+	private final ConcurrentMap<String, byte[]> entries = new ConcurrentHashMap<String, byte[]>();
+	private final ScheduledThreadPoolExecutor executor;
+	private final AtomicLong getCount = new AtomicLong();
+	private final AtomicLong invalidationCount = new AtomicLong();
+	private final long jitterMicros;
+	private final long latencyMicros;
+	private final List<Node> nodes = new CopyOnWriteArrayList<Node>();
+	private final AtomicLong putCount = new AtomicLong();
+	private final AtomicLong removeCount = new AtomicLong();
+
+	/**
+	 * Constructs a grid without latency.
+	 */
+	public SimulatedBridgeRequestScopeGrid() {
+		this(0L, 0L);
+	}
+
+	/**
+	 * Constructs a grid with the specified simulated latency.
+	 *
+	 * @param  latencyMicros  The fixed delay of each operation and invalidation in microseconds.
+	 * @param  jitterMicros   The maximum random delay that is added to the fixed delay in microseconds.
+	 */
+	public SimulatedBridgeRequestScopeGrid(long latencyMicros, long jitterMicros) {
+
+		this.latencyMicros = latencyMicros;
+		this.jitterMicros = jitterMicros;
+
+		int threadCount = Math.max(2, Runtime.getRuntime().availableProcessors());
+		this.executor = new ScheduledThreadPoolExecutor(threadCount, new DaemonThreadFactory());
+	}
+
+	/**
+	 * Creates the store of a new simulated node.
+	 *
+	 * @param  nodeId  The id of the node, which is used only in diagnostic messages.
+	 */
+	public RemoteBridgeRequestScopeStore createNode(String nodeId) {
+
+		Node node = new Node(nodeId);
+		nodes.add(node);
+
+		return node;
+	}
+
+	/**
+	 * Stops the threads of the grid. Operations that have not yet been executed are discarded.
+	 */
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Returns the number of entries in the grid.
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	private void broadcast(Node originNode, final String key) {
+
+		for (final Node node : nodes) {
+
+			if ((node != originNode) && !node.closed) {
+				invalidationCount.incrementAndGet();
+				executor.schedule(new Runnable() {
+
+						@Override
+						public void run() {
+							node.notifyInvalidated(key);
+						}
+					}, getDelayMicros(), TimeUnit.MICROSECONDS);
+			}
+		}
+	}
+
+	private <T> Future<T> schedule(Callable<T> callable) {
+		return executor.schedule(callable, getDelayMicros(), TimeUnit.MICROSECONDS);
+	}
+
+	private int removeIf(Node originNode, boolean byPortlet, String owner) {
+
+		List<String> keys = new ArrayList<String>();
+
+		for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+
+			String key = entry.getKey();
+			String keyOwner = byPortlet ? BoundedBridgeRequestScopeCache.parsePortletName(key)
+										: BoundedBridgeRequestScopeCache.parseSessionId(key);
+
+			if (owner.equals(keyOwner) && entries.remove(key, entry.getValue())) {
+				keys.add(key);
+			}
+		}
+
+		for (String key : keys) {
+			broadcast(originNode, key);
+		}
+
+		return keys.size();
+	}
+
+	private long getDelayMicros() {
+
+		long delayMicros = latencyMicros;
+
+		if (jitterMicros > 0L) {
+			delayMicros += ThreadLocalRandom.current().nextLong(jitterMicros + 1L);
+		}
+
+		return delayMicros;
+	}
+
+	/**
+	 * Returns the number of get operations that were executed by all of the nodes.
+	 */
+	public long getGetCount() {
+		return getCount.get();
+	}
+
+	/**
+	 * Returns the number of invalidations that were broadcast to all of the nodes.
+	 */
+	public long getInvalidationCount() {
+		return invalidationCount.get();
+	}
+
+	/**
+	 * Returns the number of put operations that were executed by all of the nodes.
+	 */
+	public long getPutCount() {
+		return putCount.get();
+	}
+
+	/**
+	 * Returns the number of remove operations that were executed by all of the nodes.
+	 */
+	public long getRemoveCount() {
+		return removeCount.get();
+	}
+
+	private static final class DaemonThreadFactory implements ThreadFactory {
+
+		// Private Data Members
+		private final AtomicInteger threadNumber = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+
+			Thread thread = new Thread(runnable,
+					SimulatedBridgeRequestScopeGrid.class.getSimpleName() + "-" + threadNumber.incrementAndGet());
+			thread.setDaemon(true);
+
+			return thread;
+		}
+	}
+
+	private final class Node implements RemoteBridgeRequestScopeStore {
+
+		// Private Data Members
+		private volatile boolean closed;
+		private final List<InvalidationListener> invalidationListeners =
+			new CopyOnWriteArrayList<InvalidationListener>();
+		private final String nodeId;
+
+		Node(String nodeId) {
+			this.nodeId = nodeId;
+		}
+
+		@Override
+		public void addInvalidationListener(InvalidationListener invalidationListener) {
+			invalidationListeners.add(invalidationListener);
+		}
+
+		@Override
+		public void close() {
+			closed = true;
+			nodes.remove(this);
+		}
+
+		@Override
+		public Future<byte[]> get(final String key) {
+
+			return schedule(new Callable<byte[]>() {
+
+						@Override
+						public byte[] call() {
+
+							getCount.incrementAndGet();
+
+							byte[] bytes = entries.get(key);
+
+							return (bytes == null) ? null : bytes.clone();
+						}
+					});
+		}
+
+		@Override
+		public Future<Void> put(final String key, byte[] bytes) {
+
+			final byte[] copy = bytes.clone();
+
+			return schedule(new Callable<Void>() {
+
+						@Override
+						public Void call() {
+
+							putCount.incrementAndGet();
+							entries.put(key, copy);
+							broadcast(Node.this, key);
+
+							return null;
+						}
+					});
+		}
+
+		@Override
+		public Future<Void> remove(final String key) {
+
+			return schedule(new Callable<Void>() {
+
+						@Override
+						public Void call() {
+
+							removeCount.incrementAndGet();
+
+							if (entries.remove(key) != null) {
+								broadcast(Node.this, key);
+							}
+
+							return null;
+						}
+					});
+		}
+
+		@Override
+		public Future<Integer> removeByPortlet(final String portletName) {
+
+			return schedule(new Callable<Integer>() {
+
+						@Override
+						public Integer call() {
+
+							removeCount.incrementAndGet();
+
+							return removeIf(Node.this, true, portletName);
+						}
+					});
+		}
+
+		@Override
+		public Future<Integer> removeBySession(final String sessionId) {
+
+			return schedule(new Callable<Integer>() {
+
+						@Override
+						public Integer call() {
+
+							removeCount.incrementAndGet();
+
+							return removeIf(Node.this, false, sessionId);
+						}
+					});
+		}
+
+		@Override
+		public void removeInvalidationListener(InvalidationListener invalidationListener) {
+			invalidationListeners.remove(invalidationListener);
+		}
+
+		@Override
+		public String toString() {
+			return nodeId;
+		}
+
+		void notifyInvalidated(String key) {
+
+			if (!closed) {
+
+				for (InvalidationListener invalidationListener : invalidationListeners) {
+					invalidationListener.invalidated(key);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,121 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge;
+
+import javax.portlet.ActionRequest;
+import javax.portlet.ActionResponse;
+import javax.portlet.EventRequest;
+import javax.portlet.EventResponse;
+import javax.portlet.PortletConfig;
+import javax.portlet.PortletRequest;
+import javax.portlet.RenderRequest;
+import javax.portlet.RenderResponse;
+import javax.portlet.ResourceRequest;
+import javax.portlet.ResourceResponse;
+
+import com.liferay.faces.bridge.config.BridgeConfig;
+
+
+/**
+ * <p>This class is a factory that marks the RESOURCE_PHASE requests that are Faces partial (Ajax) requests, such as
+ * those submitted to a URL created by {@link javax.faces.context.ExternalContext#encodePartialActionURL(String)}, with
+ * the {@link #PARTIAL_REQUEST_FAST_PATH} request attribute before delegating to the wrapped factory. Since a partial
+ * request executes and renders the Faces lifecycle within a single portlet request, there is no ACTION_PHASE to
+ * RENDER_PHASE hop for a {@link com.liferay.faces.bridge.scope.BridgeRequestScope} to bridge, and so the components
+ * that are consulted by the {@link BridgePhase} can take a fast path for marked requests. In particular, {@link
+ * com.liferay.faces.bridge.scope.PartialRequestBridgeRequestScopeFactory} returns a shared, immutable scope that
+ * neither preserves nor inspects request attributes for them.</p>
+ *
+ * <p>In order to select it, register this class as the {@link BridgePhaseFactory} in the bridge factory
+ * configuration.</p>
+ *
+ * @author  Neil Griffin
+ */
+public class PartialRequestBridgePhaseFactory extends BridgePhaseFactory {
+
+	// Public Constants
+	public static final String PARTIAL_REQUEST_FAST_PATH = "com.liferay.faces.bridge.partialRequestFastPath";
+
+	// Private Constants
+	private static final String FACES_REQUEST_HEADER = "Faces-Request";
+	private static final String PARTIAL_AJAX_PARAM = "javax.faces.partial.ajax";
+	private static final String PARTIAL_REQUEST_HEADER_PREFIX = "partial/";
+
+	// Private Data Members
+	private BridgePhaseFactory wrappedBridgePhaseFactory;
+
+	public PartialRequestBridgePhaseFactory(BridgePhaseFactory bridgePhaseFactory) {
+		this.wrappedBridgePhaseFactory = bridgePhaseFactory;
+	}
+
+	/**
+	 * Determines whether or not the specified request has been marked by {@link #getBridgeResourcePhase(ResourceRequest,
+	 * ResourceResponse, PortletConfig, BridgeConfig)} as a partial request that takes the fast path.
+	 */
+	public static boolean isFastPath(PortletRequest portletRequest) {
+		return Boolean.TRUE.equals(portletRequest.getAttribute(PARTIAL_REQUEST_FAST_PATH));
+	}
+
+	/**
+	 * Determines whether or not the specified request is a Faces partial request, either because the <code>
+	 * Faces-Request</code> header starts with <code>partial/</code> or because the <code>javax.faces.partial.ajax</code>
+	 * parameter is <code>true</code>.
+	 */
+	public static boolean isPartialRequest(PortletRequest portletRequest) {
+
+		String facesRequest = portletRequest.getProperty(FACES_REQUEST_HEADER);
+
+		if ((facesRequest != null) && facesRequest.startsWith(PARTIAL_REQUEST_HEADER_PREFIX)) {
+			return true;
+		}
+
+		return Boolean.parseBoolean(portletRequest.getParameter(PARTIAL_AJAX_PARAM));
+	}
+
+	@Override
+	public BridgePhase getBridgeActionPhase(ActionRequest actionRequest, ActionResponse actionResponse,
+		PortletConfig portletConfig, BridgeConfig bridgeConfig) {
+		return getWrapped().getBridgeActionPhase(actionRequest, actionResponse, portletConfig, bridgeConfig);
+	}
+
+	@Override
+	public BridgePhase getBridgeEventPhase(EventRequest eventRequest, EventResponse eventResponse,
+		PortletConfig portletConfig, BridgeConfig bridgeConfig) {
+		return getWrapped().getBridgeEventPhase(eventRequest, eventResponse, portletConfig, bridgeConfig);
+	}
+
+	@Override
+	public BridgePhase getBridgeRenderPhase(RenderRequest renderRequest, RenderResponse renderResponse,
+		PortletConfig portletConfig, BridgeConfig bridgeConfig) {
+		return getWrapped().getBridgeRenderPhase(renderRequest, renderResponse, portletConfig, bridgeConfig);
+	}
+
+	@Override
+	public BridgePhase getBridgeResourcePhase(ResourceRequest resourceRequest, ResourceResponse resourceResponse,
+		PortletConfig portletConfig, BridgeConfig bridgeConfig) {
+
+		if (isPartialRequest(resourceRequest)) {
+			resourceRequest.setAttribute(PARTIAL_REQUEST_FAST_PATH, Boolean.TRUE);
+		}
+
+		return getWrapped().getBridgeResourcePhase(resourceRequest, resourceResponse, portletConfig, bridgeConfig);
+	}
+
+	@Override
+	public BridgePhaseFactory getWrapped() {
+		return wrappedBridgePhaseFactory;
+	}
+}
@@ -0,0 +1,141 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.context.url;
+
+import java.net.MalformedURLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.portlet.MimeResponse;
+import javax.portlet.PortletResponse;
+
+import com.liferay.faces.bridge.context.BridgeContext;
+
+
+/**
+ * This class holds the {@link PortletURLTemplate} instances that are compiled during a single request, keyed by the
+ * current view, the base URI (the part of the URL that precedes the query) and the names of the query parameters. It is
+ * only enabled when the {@link PortletURLTemplate#ACTION_URL_TEMPLATES} init-param is <code>true</code>. An instance is
+ * meant to be used by a single request (thread) and is not thread-safe.
+ *
+ * @author  Neil Griffin
+ */
+final class ActionURLTemplateCache {
+
+	// Private Constants
+	private static final String ATTRIBUTE_NAME = ActionURLTemplateCache.class.getName();
+	private static final int MAXIMUM_TEMPLATES = 64;
+
+	// Private Data Members
+	private final boolean enabled;
+	private final Map<String, PortletURLTemplate> templates;
+
+	private ActionURLTemplateCache(boolean enabled) {
+		this.enabled = enabled;
+		this.templates = new HashMap<String, PortletURLTemplate>();
+	}
+
+	public static ActionURLTemplateCache getInstance(BridgeContext bridgeContext) {
+
+		Map<String, Object> attributes = bridgeContext.getAttributes();
+		ActionURLTemplateCache actionURLTemplateCache = (ActionURLTemplateCache) attributes.get(ATTRIBUTE_NAME);
+
+		if (actionURLTemplateCache == null) {
+
+			boolean enabled = Boolean.parseBoolean(bridgeContext.getInitParameter(
+						PortletURLTemplate.ACTION_URL_TEMPLATES));
+			actionURLTemplateCache = new ActionURLTemplateCache(enabled);
+			attributes.put(ATTRIBUTE_NAME, actionURLTemplateCache);
+		}
+
+		return actionURLTemplateCache;
+	}
+
+	/**
+	 * Returns the string form of the action URL that {@link BridgeURLBase#createActionURL(String)} would create for
+	 * the specified URL, or <code>null</code> if the URL cannot be formatted with a template, in which case the caller
+	 * must create the action URL itself.
+	 */
+	public String format(BridgeContext bridgeContext, String viewId, String fromURL, boolean escapeXml)
+		throws MalformedURLException {
+
+		if (!enabled || (fromURL == null)) {
+			return null;
+		}
+
+		final List<String> parameterNames = new ArrayList<String>();
+		final List<String> parameterValues = new ArrayList<String>();
+		QueryParameterParser.parse(fromURL, new QueryParameterParser.Handler() {
+
+				@Override
+				public void handleParameter(String name, String value) {
+					parameterNames.add(name);
+					parameterValues.add(value);
+				}
+			});
+
+		// Some portlet containers omit parameters that have an empty value, which a template would not reproduce.
+		if (parameterValues.contains("")) {
+			return null;
+		}
+
+		int queryPos = fromURL.indexOf('?');
+		StringBuilder key = new StringBuilder();
+		key.append(escapeXml);
+		key.append('\n');
+		key.append(viewId);
+		key.append('\n');
+		key.append(fromURL, 0, (queryPos < 0) ? fromURL.length() : queryPos);
+
+		for (String parameterName : parameterNames) {
+			key.append('\n');
+			key.append(parameterName);
+		}
+
+		String templateKey = key.toString();
+		PortletURLTemplate portletURLTemplate = templates.get(templateKey);
+
+		if (portletURLTemplate == null) {
+
+			// A key that maps to null denotes a URL that is known not to be templatable.
+			if (templates.containsKey(templateKey) || (templates.size() >= MAXIMUM_TEMPLATES)) {
+				return null;
+			}
+
+			PortletResponse portletResponse = bridgeContext.getPortletResponse();
+
+			if (!(portletResponse instanceof MimeResponse)) {
+				return null;
+			}
+
+			portletURLTemplate = PortletURLTemplate.compile((MimeResponse) portletResponse, parameterNames,
+					escapeXml);
+			templates.put(templateKey, portletURLTemplate);
+
+			if (portletURLTemplate == null) {
+				return null;
+			}
+		}
+
+		return portletURLTemplate.format(parameterValues.toArray(new String[parameterValues.size()]));
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+}
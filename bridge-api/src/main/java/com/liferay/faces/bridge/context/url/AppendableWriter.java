@@ -0,0 +1,83 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.context.url;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.CharBuffer;
+
+
+/**
+ * This class is a {@link Writer} that forwards the characters that are written to it to an {@link Appendable} without
+ * copying them into an intermediate {@link String}.
+ *
+ * @author  Neil Griffin
+ */
+final class AppendableWriter extends Writer {
+
+	// Private Data Members
+	private final Appendable appendable;
+
+	public AppendableWriter(Appendable appendable) {
+		this.appendable = appendable;
+	}
+
+	@Override
+	public Writer append(char c) throws IOException {
+		appendable.append(c);
+
+		return this;
+	}
+
+	@Override
+	public Writer append(CharSequence charSequence) throws IOException {
+		appendable.append(charSequence);
+
+		return this;
+	}
+
+	@Override
+	public Writer append(CharSequence charSequence, int start, int end) throws IOException {
+		appendable.append(charSequence, start, end);
+
+		return this;
+	}
+
+	@Override
+	public void close() throws IOException {
+		// The appendable is owned by the caller, so it is neither flushed nor closed.
+	}
+
+	@Override
+	public void flush() throws IOException {
+		// The appendable is owned by the caller, so it is not flushed.
+	}
+
+	@Override
+	public void write(int c) throws IOException {
+		appendable.append((char) c);
+	}
+
+	@Override
+	public void write(String str, int off, int len) throws IOException {
+		appendable.append(str, off, off + len);
+	}
+
+	@Override
+	public void write(char[] cbuf, int off, int len) throws IOException {
+		appendable.append(CharBuffer.wrap(cbuf, off, len));
+	}
+}
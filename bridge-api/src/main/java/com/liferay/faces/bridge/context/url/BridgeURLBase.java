@@ -17,6 +17,7 @@ package com.liferay.faces.bridge.context.url;
 
 import java.io.IOException;
 import java.io.StringWriter;
+import java.io.Writer;
 import java.net.MalformedURLException;
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
@@ -38,12 +39,7 @@ import javax.portlet.ResourceURL;
 import javax.portlet.WindowState;
 import javax.portlet.WindowStateException;
 import javax.portlet.faces.Bridge;
-import javax.portlet.faces.BridgeFactoryFinder;
 
-import com.liferay.faces.bridge.PortletModeValidator;
-import com.liferay.faces.bridge.PortletModeValidatorFactory;
-import com.liferay.faces.bridge.WindowStateValidator;
-import com.liferay.faces.bridge.WindowStateValidatorFactory;
 import com.liferay.faces.bridge.config.BridgeConfig;
 import com.liferay.faces.bridge.context.BridgeContext;
 
@@ -53,6 +49,9 @@ import com.liferay.faces.bridge.context.BridgeContext;
  */
 public abstract class BridgeURLBase implements BridgeURL {
 
+	// Private Constants
+	private static final ClassValue<Boolean> TO_STRING_OVERRIDDEN = new ToStringOverridden(BridgeURLBase.class);
+
 	// Private Data Members
 	private BridgeContext bridgeContext;
 	private BridgeURI bridgeURI;
@@ -78,7 +77,11 @@ public abstract class BridgeURLBase implements BridgeURL {
 	@Override
 	public String toString() {
 
-		String stringValue = null;
+		String stringValue = toTemplatedActionURLString(bridgeURI.isEscaped());
+
+		if (stringValue != null) {
+			return stringValue;
+		}
 
 		try {
 
@@ -115,6 +118,215 @@ public abstract class BridgeURLBase implements BridgeURL {
 		return stringValue;
 	}
 
+	/**
+	 * Appends the specified value to the specified {@link Appendable}, escaping the XML special characters if
+	 * requested. An ampersand that already begins a character or entity reference (such as <code>&amp;amp;</code>) is
+	 * not escaped again, so that a URL that is already escaped is appended as is.
+	 */
+	static void append(Appendable appendable, String value, boolean escapeXml) throws IOException {
+
+		if (value == null) {
+			return;
+		}
+
+		if (!escapeXml) {
+			appendable.append(value);
+
+			return;
+		}
+
+		int length = value.length();
+
+		for (int i = 0; i < length; i++) {
+
+			char ch = value.charAt(i);
+
+			switch (ch) {
+
+			case '&':
+
+				if (isReferenceAt(value, i)) {
+					appendable.append(ch);
+				}
+				else {
+					appendable.append("&amp;");
+				}
+
+				break;
+
+			case '<':
+				appendable.append("&lt;");
+
+				break;
+
+			case '>':
+				appendable.append("&gt;");
+
+				break;
+
+			case '"':
+				appendable.append("&#034;");
+
+				break;
+
+			case '\'':
+				appendable.append("&#039;");
+
+				break;
+
+			default:
+				appendable.append(ch);
+			}
+		}
+	}
+
+	/**
+	 * Determines whether or not a character reference (such as <code>&amp;#034;</code> or <code>&amp;#x22;</code>) or
+	 * an entity reference (such as <code>&amp;amp;</code>) begins at the specified position of the specified value.
+	 */
+	private static boolean isReferenceAt(String value, int pos) {
+
+		int length = value.length();
+		int i = pos + 1;
+		boolean numeric = (i < length) && (value.charAt(i) == '#');
+		boolean hexadecimal = false;
+
+		if (numeric) {
+			i++;
+			hexadecimal = (i < length) && ((value.charAt(i) == 'x') || (value.charAt(i) == 'X'));
+
+			if (hexadecimal) {
+				i++;
+			}
+		}
+
+		int beginPos = i;
+
+		while (i < length) {
+
+			char ch = value.charAt(i);
+
+			if (ch == ';') {
+				return i > beginPos;
+			}
+
+			boolean valid;
+
+			if (hexadecimal) {
+				valid = Character.digit(ch, 16) >= 0;
+			}
+			else if (numeric) {
+				valid = (ch >= '0') && (ch <= '9');
+			}
+			else {
+				valid = ((ch >= 'a') && (ch <= 'z')) || ((ch >= 'A') && (ch <= 'Z')) || ((ch >= '0') && (ch <= '9'));
+			}
+
+			if (!valid) {
+				return false;
+			}
+
+			i++;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Returns the string form of the action URL for a <code>portlet:action</code> URL that is formatted by a {@link
+	 * PortletURLTemplate}, or <code>null</code> if the {@link PortletURLTemplate#ACTION_URL_TEMPLATES} init-param is
+	 * not <code>true</code> or the URL is not templatable, in which case the caller must ask {@link #toBaseURL()} for
+	 * the URL. URLs that are secure or that change the portlet mode or window state are not templatable, since
+	 * subclasses apply those to the {@link PortletURL} rather than copying them as parameters.
+	 */
+	private String toTemplatedActionURLString(boolean escapeXml) {
+
+		if (secure || !bridgeURI.isPortletScheme() ||
+				(bridgeURI.getPortletPhase() != Bridge.PortletPhase.ACTION_PHASE)) {
+			return null;
+		}
+
+		ActionURLTemplateCache actionURLTemplateCache = ActionURLTemplateCache.getInstance(bridgeContext);
+
+		if (!actionURLTemplateCache.isEnabled()) {
+			return null;
+		}
+
+		Map<String, String[]> parameterMap = getParameterMap();
+
+		if (parameterMap.containsKey(Bridge.PORTLET_MODE_PARAMETER) ||
+				parameterMap.containsKey(Bridge.PORTLET_SECURE_PARAMETER) ||
+				parameterMap.containsKey(Bridge.PORTLET_WINDOWSTATE_PARAMETER)) {
+			return null;
+		}
+
+		try {
+			return actionURLTemplateCache.format(bridgeContext, viewId, _toString(false), escapeXml);
+		}
+		catch (MalformedURLException e) {
+
+			// The caller reports the malformed URL when it asks toBaseURL() for the URL.
+			return null;
+		}
+	}
+
+	/**
+	 * Writes the same characters as {@link #toString()} to the specified {@link Appendable}, escaping the XML special
+	 * characters if requested. Unless a subclass overrides {@link #toString()}, the {@link BaseURL} that is returned by
+	 * {@link #toBaseURL()} is written directly to the appendable without first creating an intermediate {@link String}:
+	 * if the appendable is a {@link Writer} (such as a {@link javax.faces.context.ResponseWriter}) then the portlet
+	 * container writes to it directly, otherwise the characters are forwarded to it one chunk at a time. As with {@link
+	 * #toString()}, the portlet container is asked for an escaped representation if the {@link BridgeURI} is escaped.
+	 * If the URL is malformed, then nothing is written. If a subclass overrides {@link #toString()}, then its value is
+	 * appended instead. A <code>portlet:action</code> URL that is formatted by a {@link PortletURLTemplate} is
+	 * appended as is.
+	 *
+	 * @param   appendable  The target of the URL.
+	 * @param   escapeXml   <code>true</code> if XML special characters are to be escaped even though the {@link
+	 *                      BridgeURI} is not escaped, otherwise <code>false</code>. For more information, see {@link
+	 *                      BaseURL#write(java.io.Writer, boolean)}.
+	 *
+	 * @throws  IOException  If the URL cannot be written.
+	 */
+	public void writeTo(Appendable appendable, boolean escapeXml) throws IOException {
+
+		if (TO_STRING_OVERRIDDEN.get(getClass())) {
+			append(appendable, toString(), escapeXml);
+
+			return;
+		}
+
+		String actionURLString = toTemplatedActionURLString(escapeXml || bridgeURI.isEscaped());
+
+		if (actionURLString != null) {
+			appendable.append(actionURLString);
+
+			return;
+		}
+
+		BaseURL baseURL;
+
+		try {
+			baseURL = toBaseURL();
+		}
+		catch (MalformedURLException e) {
+			logError(e);
+
+			return;
+		}
+
+		Writer writer;
+
+		if (appendable instanceof Writer) {
+			writer = (Writer) appendable;
+		}
+		else {
+			writer = new AppendableWriter(appendable);
+		}
+
+		baseURL.write(writer, escapeXml || bridgeURI.isEscaped());
+	}
+
 	protected abstract void log(Level level, String message, Object... arguments);
 
 	protected abstract void logError(Throwable t);
@@ -159,6 +371,7 @@ public abstract class BridgeURLBase implements BridgeURL {
 		Set<String> parameterNames = getParameterMap().keySet();
 		boolean foundFacesViewIdParam = false;
 		boolean foundFacesViewPathParam = false;
+		BridgeURLParameterValidator bridgeURLParameterValidator = null;
 
 		for (String parameterName : parameterNames) {
 
@@ -170,10 +383,11 @@ public abstract class BridgeURLBase implements BridgeURL {
 				// Only add the "javax.portlet.faces.PortletMode" parameter if it has a valid value.
 				if (parameterValue != null) {
 
-					PortletModeValidatorFactory portletModeValidatorFactory = (PortletModeValidatorFactory)
-						BridgeFactoryFinder.getFactory(PortletModeValidatorFactory.class);
-					PortletModeValidator portletModeValidator = portletModeValidatorFactory.getPortletModeValidator();
-					addParameter = portletModeValidator.isValid(parameterValue);
+					if (bridgeURLParameterValidator == null) {
+						bridgeURLParameterValidator = BridgeURLParameterValidator.getInstance(bridgeContext);
+					}
+
+					addParameter = bridgeURLParameterValidator.isValidPortletMode(parameterValue);
 				}
 			}
 			else if (Bridge.PORTLET_SECURE_PARAMETER.equals(parameterName)) {
@@ -182,10 +396,11 @@ public abstract class BridgeURLBase implements BridgeURL {
 			}
 			else if (Bridge.PORTLET_WINDOWSTATE_PARAMETER.equals(parameterName)) {
 
-				WindowStateValidatorFactory windowStateValidatorFactory = (WindowStateValidatorFactory)
-					BridgeFactoryFinder.getFactory(WindowStateValidatorFactory.class);
-				WindowStateValidator windowStateValidator = windowStateValidatorFactory.getWindowStateValidator();
-				addParameter = windowStateValidator.isValid(parameterValue);
+				if (bridgeURLParameterValidator == null) {
+					bridgeURLParameterValidator = BridgeURLParameterValidator.getInstance(bridgeContext);
+				}
+
+				addParameter = bridgeURLParameterValidator.isValidWindowState(parameterValue);
 			}
 			else {
 
@@ -247,19 +462,16 @@ public abstract class BridgeURLBase implements BridgeURL {
 	/**
 	 * Copies any query paramters present in the specified "from" URL to the specified "to" URL.
 	 */
-	protected void copyParameters(String fromURL, BaseURL toURL) throws MalformedURLException {
-
-		List<RequestParameter> requestParameters = parseRequestParameters(fromURL);
+	protected void copyParameters(String fromURL, final BaseURL toURL) throws MalformedURLException {
 
-		if (requestParameters != null) {
+		QueryParameterParser.parse(fromURL, new QueryParameterParser.Handler() {
 
-			for (RequestParameter requestParameter : requestParameters) {
-				String name = requestParameter.getName();
-				String value = requestParameter.getValue();
-				toURL.setParameter(name, value);
-				log(Level.FINE, "Copied parameter to portletURL name=[{0}] value=[{1}]", name, value);
-			}
-		}
+				@Override
+				public void handleParameter(String name, String value) {
+					toURL.setParameter(name, value);
+					log(Level.FINE, "Copied parameter to portletURL name=[{0}] value=[{1}]", name, value);
+				}
+			});
 	}
 
 	protected PortletURL createActionURL(String fromURL) throws MalformedURLException {
@@ -279,6 +491,48 @@ public abstract class BridgeURLBase implements BridgeURL {
 		}
 	}
 
+	/**
+	 * Returns the string form of the action URL that is created by {@link #createActionURL(String)} for the specified
+	 * URL. If the {@link PortletURLTemplate#ACTION_URL_TEMPLATES} init-param is <code>true</code>, then the portlet
+	 * container is asked to create the action URL only once per request for each combination of the current view, the
+	 * base URI and the names of the query parameters, and subsequent URLs are formatted by a {@link
+	 * PortletURLTemplate}. This is intended for subclasses that would otherwise call {@link #createActionURL(String)}
+	 * and immediately convert the result to a string, such as for each row of a data table. Note that {@link
+	 * #toString()} and {@link #writeTo(Appendable, boolean)} already format <code>portlet:action</code> URLs this way.
+	 *
+	 * @param   fromURL    The URL whose query parameters are copied to the action URL.
+	 * @param   escapeXml  <code>true</code> if XML special characters are to be escaped, otherwise <code>false</code>.
+	 */
+	protected String createActionURLString(String fromURL, boolean escapeXml) throws MalformedURLException {
+
+		ActionURLTemplateCache actionURLTemplateCache = ActionURLTemplateCache.getInstance(bridgeContext);
+		String actionURLString = actionURLTemplateCache.format(bridgeContext, viewId, fromURL, escapeXml);
+
+		if (actionURLString == null) {
+
+			PortletURL actionURL = createActionURL(fromURL);
+
+			if (escapeXml) {
+
+				StringWriter urlWriter = new StringWriter();
+
+				try {
+					actionURL.write(urlWriter, true);
+					actionURLString = urlWriter.toString();
+				}
+				catch (IOException e) {
+					logError(e);
+					actionURLString = actionURL.toString();
+				}
+			}
+			else {
+				actionURLString = actionURL.toString();
+			}
+		}
+
+		return actionURLString;
+	}
+
 	protected ResourceURL createPartialActionURL(String fromURL) throws MalformedURLException {
 		log(Level.FINE, "createPartialActionURL fromURL=[{0}]", fromURL);
 
@@ -416,68 +670,34 @@ public abstract class BridgeURLBase implements BridgeURL {
 	}
 
 	/**
-	 * Parses the specified URL and returns a list of query parameters that are found.
+	 * Parses the specified URL and returns a list of query parameters that are found. Note that {@link
+	 * #copyParameters(String, BaseURL)} does not call this method, but instead copies the parameters found by {@link
+	 * QueryParameterParser} directly.
 	 *
 	 * @param   url  The URL to parse.
 	 *
-	 * @return  The list of query parameters found.
+	 * @return  The list of query parameters found, or <code>null</code> if the URL does not have a query component.
 	 *
 	 * @throws  MalformedURLException
 	 */
 	protected List<RequestParameter> parseRequestParameters(String url) throws MalformedURLException {
 
-		List<RequestParameter> requestParameters = null;
-
-		if (url != null) {
-			int pos = url.indexOf("?");
-
-			if (pos >= 0) {
-				String queryString = url.substring(pos + 1);
-
-				if (queryString.length() > 0) {
-					requestParameters = new ArrayList<RequestParameter>();
-
-					String[] queryParameters = queryString.split("[&]");
-
-					for (String queryParameter : queryParameters) {
-
-						String[] nameValueArray = queryParameter.split("[=]");
-
-						if (nameValueArray.length == 1) {
+		final List<RequestParameter> requestParameters = new ArrayList<RequestParameter>();
 
-							String name = nameValueArray[0].trim();
+		boolean hasQuery = QueryParameterParser.parse(url, new QueryParameterParser.Handler() {
 
-							if (name.length() == 0) {
-								throw new MalformedURLException("Invalid name/value pair=[" + queryParameter +
-									"]: name cannot be empty.");
-							}
-							else {
-								requestParameters.add(new RequestParameter(name, ""));
-							}
-						}
-						else if (nameValueArray.length == 2) {
-
-							String name = nameValueArray[0].trim();
-
-							if (name.length() == 0) {
-								throw new MalformedURLException("Invalid name/value pair=[" + queryParameter +
-									"]: name cannot be empty.");
-							}
-							else {
-
-								String value = nameValueArray[1];
-								requestParameters.add(new RequestParameter(name, value));
-							}
-						}
-						else {
-							throw new MalformedURLException("Invalid name/value pair: " + queryParameter);
-						}
+					@Override
+					public void handleParameter(String name, String value) {
+						requestParameters.add(new RequestParameter(name, value));
 					}
-				}
-			}
-		}
+				});
 
-		return requestParameters;
+		if (hasQuery) {
+			return requestParameters;
+		}
+		else {
+			return null;
+		}
 	}
 
 	protected String removeParameter(String name) {
@@ -0,0 +1,130 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.context.url;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.portlet.faces.BridgeFactoryFinder;
+
+import com.liferay.faces.bridge.PortletModeValidator;
+import com.liferay.faces.bridge.PortletModeValidatorFactory;
+import com.liferay.faces.bridge.WindowStateValidator;
+import com.liferay.faces.bridge.WindowStateValidatorFactory;
+import com.liferay.faces.bridge.context.BridgeContext;
+
+
+/**
+ * This class validates the values of the "javax.portlet.faces.PortletMode" and "javax.portlet.faces.WindowState" URL
+ * parameters on behalf of {@link BridgeURLBase}. The {@link PortletModeValidator} and {@link WindowStateValidator} are
+ * resolved from the {@link BridgeFactoryFinder} once per {@link BridgeContext} rather than once per URL parameter, and
+ * the result of validating each distinct value is remembered so that a view that encodes the same mode or window state
+ * for every row of a data table only validates it once. An instance is meant to be used by a single request (thread)
+ * and is not thread-safe.
+ *
+ * @author  Neil Griffin
+ */
+public final class BridgeURLParameterValidator {
+
+	// Private Constants
+	private static final String ATTRIBUTE_NAME = BridgeURLParameterValidator.class.getName();
+	private static final int MAXIMUM_MEMOIZED_VALUES = 64;
+
+	// Private Data Members
+	private final PortletModeValidator portletModeValidator;
+	private final Map<String, Boolean> portletModeVerdicts;
+	private final WindowStateValidator windowStateValidator;
+	private final Map<String, Boolean> windowStateVerdicts;
+
+	public BridgeURLParameterValidator(PortletModeValidator portletModeValidator,
+		WindowStateValidator windowStateValidator) {
+
+		this.portletModeValidator = portletModeValidator;
+		this.portletModeVerdicts = new HashMap<String, Boolean>();
+		this.windowStateValidator = windowStateValidator;
+		this.windowStateVerdicts = new HashMap<String, Boolean>();
+	}
+
+	/**
+	 * Returns the instance that is associated with the specified context, creating it (and resolving the validators
+	 * from the {@link BridgeFactoryFinder}) if necessary.
+	 */
+	public static BridgeURLParameterValidator getInstance(BridgeContext bridgeContext) {
+
+		Map<String, Object> attributes = bridgeContext.getAttributes();
+		BridgeURLParameterValidator bridgeURLParameterValidator = (BridgeURLParameterValidator) attributes.get(
+				ATTRIBUTE_NAME);
+
+		if (bridgeURLParameterValidator == null) {
+
+			PortletModeValidatorFactory portletModeValidatorFactory = (PortletModeValidatorFactory)
+				BridgeFactoryFinder.getFactory(PortletModeValidatorFactory.class);
+			WindowStateValidatorFactory windowStateValidatorFactory = (WindowStateValidatorFactory)
+				BridgeFactoryFinder.getFactory(WindowStateValidatorFactory.class);
+			bridgeURLParameterValidator = new BridgeURLParameterValidator(
+					portletModeValidatorFactory.getPortletModeValidator(),
+					windowStateValidatorFactory.getWindowStateValidator());
+			attributes.put(ATTRIBUTE_NAME, bridgeURLParameterValidator);
+		}
+
+		return bridgeURLParameterValidator;
+	}
+
+	private static void memoize(Map<String, Boolean> verdicts, String value, boolean valid) {
+
+		// The values are normally the handful of modes and window states that are supported by the portlet, so a
+		// request that encodes an unusually large number of distinct values simply stops remembering new ones.
+		if (verdicts.size() < MAXIMUM_MEMOIZED_VALUES) {
+			verdicts.put(value, valid);
+		}
+	}
+
+	/**
+	 * Determines whether or not the specified value of the "javax.portlet.faces.PortletMode" parameter is valid.
+	 */
+	public boolean isValidPortletMode(String portletMode) {
+
+		Boolean verdict = portletModeVerdicts.get(portletMode);
+
+		if (verdict == null) {
+
+			boolean valid = portletModeValidator.isValid(portletMode);
+			memoize(portletModeVerdicts, portletMode, valid);
+
+			return valid;
+		}
+
+		return verdict;
+	}
+
+	/**
+	 * Determines whether or not the specified value of the "javax.portlet.faces.WindowState" parameter is valid.
+	 */
+	public boolean isValidWindowState(String windowState) {
+
+		Boolean verdict = windowStateVerdicts.get(windowState);
+
+		if (verdict == null) {
+
+			boolean valid = windowStateValidator.isValid(windowState);
+			memoize(windowStateVerdicts, windowState, valid);
+
+			return valid;
+		}
+
+		return verdict;
+	}
+}
@@ -15,11 +15,51 @@
  */
 package com.liferay.faces.bridge.context.url;
 
+import java.io.IOException;
+
+
 /**
  * @author  Neil Griffin
  */
 public abstract class BridgeURLWrapper implements BridgeURL {
 
+	// Private Constants
+	private static final ClassValue<Boolean> TO_STRING_OVERRIDDEN = new ToStringOverridden(BridgeURLWrapper.class);
+
+	/**
+	 * Returns the value of {@link BridgeURL#toString()} of the wrapped URL.
+	 */
+	@Override
+	public String toString() {
+		return getWrapped().toString();
+	}
+
+	/**
+	 * Writes the same characters as {@link #toString()} to the specified {@link Appendable}, escaping the XML special
+	 * characters if requested. If a subclass overrides {@link #toString()}, then its value is appended. Otherwise, if
+	 * the wrapped URL is a {@link BridgeURLBase} or a {@link BridgeURLWrapper}, then it is written by its own <code>
+	 * writeTo</code> method (see {@link BridgeURLBase#writeTo(Appendable, boolean)}), and if not, the value of its
+	 * {@link BridgeURL#toString()} method is appended. Ampersands of a value that is already escaped are not escaped
+	 * again.
+	 */
+	public void writeTo(Appendable appendable, boolean escapeXml) throws IOException {
+
+		BridgeURL wrappedBridgeURL = getWrapped();
+
+		if (TO_STRING_OVERRIDDEN.get(getClass())) {
+			BridgeURLBase.append(appendable, toString(), escapeXml);
+		}
+		else if (wrappedBridgeURL instanceof BridgeURLBase) {
+			((BridgeURLBase) wrappedBridgeURL).writeTo(appendable, escapeXml);
+		}
+		else if (wrappedBridgeURL instanceof BridgeURLWrapper) {
+			((BridgeURLWrapper) wrappedBridgeURL).writeTo(appendable, escapeXml);
+		}
+		else {
+			BridgeURLBase.append(appendable, wrappedBridgeURL.toString(), escapeXml);
+		}
+	}
+
 	public boolean isSecure() {
 		return getWrapped().isSecure();
 	}
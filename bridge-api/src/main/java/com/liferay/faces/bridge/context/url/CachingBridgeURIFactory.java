@@ -0,0 +1,194 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.context.url;
+
+import java.net.URISyntaxException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * This class is a wrapping {@link BridgeURIFactory} that caches the {@link BridgeURI} that is parsed for each distinct
+ * URI string, since a typical view encodes the same few hundred URIs over and over again. Cached URIs are {@link
+ * ImmutableBridgeURI} snapshots so that they can be shared by concurrent requests. The cache is bounded: when it is
+ * full, the least recently used entry is evicted in order to make room for a new one, so that the URIs that are
+ * encoded by every request stay cached while one-off URIs age out. Strings that cannot be parsed are not cached, so
+ * that each call for such a string throws {@link URISyntaxException} just as the wrapped factory would. The hit and
+ * miss counts can be monitored with JMX by calling {@link
+ * com.liferay.faces.bridge.scope.BridgeRequestScopeMetricsRegistry#registerBridgeURIFactory(
+ * javax.portlet.PortletContext, CachingBridgeURIFactory)}.
+ *
+ * @author  Neil Griffin
+ */
+public class CachingBridgeURIFactory extends BridgeURIFactory {
+
+	// Public Constants
+	public static final int DEFAULT_MAXIMUM_SIZE = 1024;
+
+	// Private Data Members
+	private final Map<String, BridgeURI> cache;
+	private final AtomicLong hitCount;
+	private final int maximumSize;
+	private final AtomicLong missCount;
+	private final BridgeURIFactory wrappedBridgeURIFactory;
+
+	public CachingBridgeURIFactory(BridgeURIFactory bridgeURIFactory) {
+		this(bridgeURIFactory, DEFAULT_MAXIMUM_SIZE);
+	}
+
+	public CachingBridgeURIFactory(BridgeURIFactory bridgeURIFactory, int maximumSize) {
+
+		if (maximumSize < 1) {
+			throw new IllegalArgumentException("maximumSize must be positive");
+		}
+
+		this.wrappedBridgeURIFactory = bridgeURIFactory;
+		this.maximumSize = maximumSize;
+		this.cache = new LeastRecentlyUsedMap(maximumSize);
+		this.hitCount = new AtomicLong();
+		this.missCount = new AtomicLong();
+	}
+
+	/**
+	 * Removes all of the cached URIs and resets the hit and miss counts.
+	 */
+	public void clear() {
+
+		synchronized (cache) {
+			cache.clear();
+		}
+
+		hitCount.set(0);
+		missCount.set(0);
+	}
+
+	@Override
+	public BridgeURI getBridgeURI(String uri) throws URISyntaxException {
+
+		if (uri == null) {
+			return wrappedBridgeURIFactory.getBridgeURI(uri);
+		}
+
+		BridgeURI bridgeURI;
+
+		// Since the map is access-ordered, a lookup reorders its entries and must therefore hold the lock.
+		synchronized (cache) {
+			bridgeURI = cache.get(uri);
+		}
+
+		if (bridgeURI != null) {
+			hitCount.incrementAndGet();
+
+			return bridgeURI;
+		}
+
+		missCount.incrementAndGet();
+
+		BridgeURI parsedBridgeURI = wrappedBridgeURIFactory.getBridgeURI(uri);
+
+		if (parsedBridgeURI == null) {
+			return null;
+		}
+
+		bridgeURI = new ImmutableBridgeURI(parsedBridgeURI);
+
+		// The URI is parsed outside of the lock, and so another thread may have cached it in the meantime.
+		synchronized (cache) {
+
+			BridgeURI existingBridgeURI = cache.get(uri);
+
+			if (existingBridgeURI != null) {
+				return existingBridgeURI;
+			}
+
+			cache.put(uri, bridgeURI);
+		}
+
+		return bridgeURI;
+	}
+
+	/**
+	 * Returns the number of calls to {@link #getBridgeURI(String)} that were satisfied by the cache.
+	 */
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	/**
+	 * Returns the ratio of cache hits to the total number of calls to {@link #getBridgeURI(String)}, or
+	 * <code>0.0</code> if there have been no calls.
+	 */
+	public double getHitRate() {
+
+		long hits = hitCount.get();
+		long total = hits + missCount.get();
+
+		return (total == 0) ? 0.0 : ((double) hits / total);
+	}
+
+	public int getMaximumSize() {
+		return maximumSize;
+	}
+
+	/**
+	 * Returns the number of calls to {@link #getBridgeURI(String)} that had to be parsed by the wrapped factory.
+	 */
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	/**
+	 * Returns the number of URIs that are currently cached.
+	 */
+	public int getSize() {
+
+		synchronized (cache) {
+			return cache.size();
+		}
+	}
+
+	@Override
+	public BridgeURIFactory getWrapped() {
+		return wrappedBridgeURIFactory;
+	}
+
+	/**
+	 * This class is an access-ordered map that removes its least recently used entry when a put causes it to exceed
+	 * its maximum size. Instances are guarded by their own monitor.
+	 *
+	 * @author  Neil Griffin
+	 */
+	private static final class LeastRecentlyUsedMap extends LinkedHashMap<String, BridgeURI> {
+
+		// serialVersionUID
+		private static final long serialVersionUID = 3148223615906211874L;
+
+		// Private Data Members
+		private final int maximumSize;
+
+		LeastRecentlyUsedMap(int maximumSize) {
+
+			super(Math.min(maximumSize, 64), 0.75f, true);
+			this.maximumSize = maximumSize;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, BridgeURI> eldest) {
+			return size() > maximumSize;
+		}
+	}
+}
@@ -0,0 +1,212 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.context.url;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.portlet.faces.Bridge;
+
+
+/**
+ * This class is an immutable snapshot of a {@link BridgeURI}. Each of the properties that do not depend on a context
+ * path (such as {@link #isPortletScheme()}, {@link #isAbsolute()}, {@link #isOpaque()}, {@link #getPortletPhase()}
+ * and {@link #getParameterMap()}) is computed once by the constructor, so that an instance can be safely shared by
+ * concurrent requests (for example by {@link CachingBridgeURIFactory}). The results of {@link
+ * #getContextRelativePath(String)} and {@link #isExternal(String)} are computed by the wrapped URI the first time they
+ * are requested and are then remembered for the most recently requested context path, which in practice is the same
+ * for every request that is handled by a portlet application.
+ *
+ * @author  Neil Griffin
+ */
+public final class ImmutableBridgeURI implements BridgeURI {
+
+	// Private Data Members
+	private final boolean absolute;
+	private volatile ContextPathResult contextPathResult;
+	private final boolean escaped;
+	private final boolean hierarchical;
+	private final boolean opaque;
+	private final Map<String, String[]> parameterMap;
+	private final String path;
+	private final boolean pathRelative;
+	private final Bridge.PortletPhase portletPhase;
+	private final boolean portletScheme;
+	private final String query;
+	private final boolean relative;
+	private final String uri;
+	private final BridgeURI wrappedBridgeURI;
+
+	/**
+	 * Constructs a snapshot of the specified URI. The wrapped URI must not be modified after this constructor is called.
+	 */
+	public ImmutableBridgeURI(BridgeURI bridgeURI) {
+
+		this.wrappedBridgeURI = bridgeURI;
+		this.uri = bridgeURI.toString();
+		this.absolute = bridgeURI.isAbsolute();
+		this.escaped = bridgeURI.isEscaped();
+		this.hierarchical = bridgeURI.isHierarchical();
+		this.opaque = bridgeURI.isOpaque();
+		this.path = bridgeURI.getPath();
+		this.pathRelative = bridgeURI.isPathRelative();
+		this.portletPhase = bridgeURI.getPortletPhase();
+		this.portletScheme = bridgeURI.isPortletScheme();
+		this.query = bridgeURI.getQuery();
+		this.relative = bridgeURI.isRelative();
+
+		Map<String, String[]> parameterMap = bridgeURI.getParameterMap();
+
+		if ((parameterMap == null) || parameterMap.isEmpty()) {
+			this.parameterMap = Collections.emptyMap();
+		}
+		else {
+
+			Map<String, String[]> copy = new LinkedHashMap<String, String[]>(parameterMap.size());
+
+			for (Map.Entry<String, String[]> entry : parameterMap.entrySet()) {
+
+				String[] values = entry.getValue();
+
+				if (values != null) {
+					values = values.clone();
+				}
+
+				copy.put(entry.getKey(), values);
+			}
+
+			this.parameterMap = Collections.unmodifiableMap(copy);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return uri;
+	}
+
+	@Override
+	public boolean isAbsolute() {
+		return absolute;
+	}
+
+	@Override
+	public String getContextRelativePath(String contextPath) {
+		return getContextPathResult(contextPath).contextRelativePath;
+	}
+
+	private ContextPathResult getContextPathResult(String contextPath) {
+
+		ContextPathResult contextPathResult = this.contextPathResult;
+
+		if ((contextPathResult == null) || !contextPathResult.matches(contextPath)) {
+
+			// The wrapped URI is not necessarily thread-safe, so calls to it are serialized.
+			synchronized (wrappedBridgeURI) {
+				contextPathResult = new ContextPathResult(contextPath,
+						wrappedBridgeURI.getContextRelativePath(contextPath), wrappedBridgeURI.isExternal(contextPath));
+			}
+
+			this.contextPathResult = contextPathResult;
+		}
+
+		return contextPathResult;
+	}
+
+	@Override
+	public boolean isEscaped() {
+		return escaped;
+	}
+
+	@Override
+	public boolean isExternal(String contextPath) {
+		return getContextPathResult(contextPath).external;
+	}
+
+	@Override
+	public boolean isHierarchical() {
+		return hierarchical;
+	}
+
+	@Override
+	public boolean isOpaque() {
+		return opaque;
+	}
+
+	/**
+	 * Returns an immutable {@link Map} representing the URI parameters. The map and its value arrays are shared by every
+	 * caller, so the arrays must not be modified.
+	 */
+	@Override
+	public Map<String, String[]> getParameterMap() {
+		return parameterMap;
+	}
+
+	@Override
+	public String getPath() {
+		return path;
+	}
+
+	@Override
+	public boolean isPathRelative() {
+		return pathRelative;
+	}
+
+	@Override
+	public Bridge.PortletPhase getPortletPhase() {
+		return portletPhase;
+	}
+
+	@Override
+	public boolean isPortletScheme() {
+		return portletScheme;
+	}
+
+	@Override
+	public String getQuery() {
+		return query;
+	}
+
+	@Override
+	public boolean isRelative() {
+		return relative;
+	}
+
+	/**
+	 * Returns the URI that was snapshotted by this instance.
+	 */
+	public BridgeURI getWrapped() {
+		return wrappedBridgeURI;
+	}
+
+	private static final class ContextPathResult {
+
+		// Private Data Members
+		private final String contextPath;
+		private final String contextRelativePath;
+		private final boolean external;
+
+		public ContextPathResult(String contextPath, String contextRelativePath, boolean external) {
+			this.contextPath = contextPath;
+			this.contextRelativePath = contextRelativePath;
+			this.external = external;
+		}
+
+		public boolean matches(String contextPath) {
+			return (this.contextPath == null) ? (contextPath == null) : this.contextPath.equals(contextPath);
+		}
+	}
+}
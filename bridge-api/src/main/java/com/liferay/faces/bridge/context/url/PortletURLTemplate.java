@@ -0,0 +1,288 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.context.url;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.portlet.BaseURL;
+import javax.portlet.MimeResponse;
+
+
+/**
+ * <p>This class is the precomputed string form of a portlet action URL that has a fixed list of parameter names, such
+ * as the URLs that are encoded for each row of a data table or <code>ui:repeat</code> and differ only in the value of a
+ * row-key parameter. The action URL is created by the portlet container once, with a unique marker as the value of
+ * each parameter, and the string form is split at the markers. Subsequent URLs are formatted by splicing the
+ * URL-encoded values into the gaps, without asking the portlet container to create another URL.</p>
+ *
+ * <p>Since portlet containers differ in the way that they encode parameter values, {@link #compile(MimeResponse, List,
+ * boolean)} verifies the template by asking the portlet container to create further URLs with numeric probe values
+ * and with probe values that contain reserved and non-ASCII characters. If neither {@link URLEncoder form encoding}
+ * nor RFC 3986 percent-encoding of the probe values reproduces every probe URL exactly, then the URL is not
+ * templatable and <code>null</code> is returned. Instances of this class are immutable and thread-safe.</p>
+ *
+ * @author  Neil Griffin
+ */
+public final class PortletURLTemplate {
+
+	// Public Constants
+	public static final String ACTION_URL_TEMPLATES = "com.liferay.faces.bridge.actionURLTemplates";
+
+	// Private Constants
+	private static final int ENCODING_FORM = 0;
+	private static final int ENCODING_PERCENT = 1;
+	private static final String MARKER_PREFIX = "lfbtpl";
+	private static final String MARKER_SUFFIX = "x";
+	private static final String[] PROBE_VALUES = new String[] { "1024", " &=/?#%+*~\"<>'\u00e9\u20ac" };
+
+	// Private Data Members
+	private final int encoding;
+	private final int length;
+	private final int parameterCount;
+	private final int[] parameterIndexes;
+	private final String[] segments;
+
+	private PortletURLTemplate(String[] segments, int[] parameterIndexes, int parameterCount, int encoding) {
+
+		this.segments = segments;
+		this.parameterIndexes = parameterIndexes;
+		this.parameterCount = parameterCount;
+		this.encoding = encoding;
+
+		int length = 0;
+
+		for (String segment : segments) {
+			length += segment.length();
+		}
+
+		this.length = length;
+	}
+
+	/**
+	 * Compiles a template for action URLs that are created by the specified response and that have the specified
+	 * parameters.
+	 *
+	 * @param   mimeResponse    The response that creates the action URLs.
+	 * @param   parameterNames  The names of the parameters, in the order of the values that are passed to {@link
+	 *                          #format(String[])}. Each name must be distinct.
+	 * @param   escapeXml       <code>true</code> if the string form of the URL is to have XML special characters
+	 *                          escaped, otherwise <code>false</code>.
+	 *
+	 * @return  The template, or <code>null</code> if the action URLs of the portlet container cannot be reproduced by
+	 *          a template.
+	 */
+	public static PortletURLTemplate compile(MimeResponse mimeResponse, List<String> parameterNames,
+		boolean escapeXml) {
+
+		int parameterCount = parameterNames.size();
+		String[] markers = new String[parameterCount];
+		BaseURL markedURL = mimeResponse.createActionURL();
+
+		for (int i = 0; i < parameterCount; i++) {
+			markers[i] = MARKER_PREFIX + i + MARKER_SUFFIX;
+			markedURL.setParameter(parameterNames.get(i), markers[i]);
+		}
+
+		String markedString = toString(markedURL, escapeXml);
+
+		if (markedString == null) {
+			return null;
+		}
+
+		// Locate each marker, which must appear exactly once, and sort the markers by the position at which they
+		// appear, since the portlet container is free to write the parameters in any order.
+		long[] markerPositions = new long[parameterCount];
+
+		for (int i = 0; i < parameterCount; i++) {
+
+			int pos = markedString.indexOf(markers[i]);
+
+			if ((pos < 0) || (markedString.indexOf(markers[i], pos + 1) >= 0)) {
+				return null;
+			}
+
+			markerPositions[i] = (((long) pos) << 32) | i;
+		}
+
+		Arrays.sort(markerPositions);
+
+		String[] segments = new String[parameterCount + 1];
+		int[] parameterIndexes = new int[parameterCount];
+		int segmentStart = 0;
+
+		for (int i = 0; i < parameterCount; i++) {
+
+			int pos = (int) (markerPositions[i] >>> 32);
+			int parameterIndex = (int) markerPositions[i];
+			segments[i] = markedString.substring(segmentStart, pos);
+			parameterIndexes[i] = parameterIndex;
+			segmentStart = pos + markers[parameterIndex].length();
+		}
+
+		segments[parameterCount] = markedString.substring(segmentStart);
+
+		// Verify the template against URLs that the portlet container creates with numeric and non-numeric probe
+		// values, since a portlet container might treat values like row indexes differently than arbitrary text. Every
+		// probe URL must be reproduced by the same encoding, otherwise the URL is not templatable.
+		String[][] probeValues = new String[PROBE_VALUES.length][parameterCount];
+		String[] probeStrings = new String[PROBE_VALUES.length];
+
+		for (int i = 0; i < PROBE_VALUES.length; i++) {
+
+			BaseURL probeURL = mimeResponse.createActionURL();
+
+			for (int j = 0; j < parameterCount; j++) {
+				probeValues[i][j] = j + PROBE_VALUES[i];
+				probeURL.setParameter(parameterNames.get(j), probeValues[i][j]);
+			}
+
+			probeStrings[i] = toString(probeURL, escapeXml);
+
+			if (probeStrings[i] == null) {
+				return null;
+			}
+		}
+
+		for (int encoding = ENCODING_FORM; encoding <= ENCODING_PERCENT; encoding++) {
+
+			PortletURLTemplate portletURLTemplate = new PortletURLTemplate(segments, parameterIndexes, parameterCount,
+					encoding);
+			boolean verified = true;
+
+			for (int i = 0; verified && (i < PROBE_VALUES.length); i++) {
+				verified = probeStrings[i].equals(portletURLTemplate.format(probeValues[i]));
+			}
+
+			if (verified) {
+				return portletURLTemplate;
+			}
+		}
+
+		return null;
+	}
+
+	private static String encode(String value, int encoding) {
+
+		String encodedValue;
+
+		try {
+			encodedValue = URLEncoder.encode(value, "UTF-8");
+		}
+		catch (UnsupportedEncodingException e) {
+
+			// Every implementation of the Java platform is required to support UTF-8.
+			throw new IllegalStateException(e);
+		}
+
+		if (encoding == ENCODING_PERCENT) {
+
+			StringBuilder buf = null;
+			int length = encodedValue.length();
+
+			for (int i = 0; i < length; i++) {
+
+				char c = encodedValue.charAt(i);
+				String replacement = null;
+
+				if (c == '+') {
+					replacement = "%20";
+				}
+				else if (c == '*') {
+					replacement = "%2A";
+				}
+				else if ((c == '%') && encodedValue.startsWith("%7E", i)) {
+					replacement = "~";
+				}
+
+				if (replacement != null) {
+
+					if (buf == null) {
+						buf = new StringBuilder(length + 16);
+						buf.append(encodedValue, 0, i);
+					}
+
+					buf.append(replacement);
+
+					if (c == '%') {
+						i += 2;
+					}
+				}
+				else if (buf != null) {
+					buf.append(c);
+				}
+			}
+
+			if (buf != null) {
+				encodedValue = buf.toString();
+			}
+		}
+
+		return encodedValue;
+	}
+
+	private static String toString(BaseURL baseURL, boolean escapeXml) {
+
+		if (escapeXml) {
+
+			StringWriter stringWriter = new StringWriter();
+
+			try {
+				baseURL.write(stringWriter, true);
+			}
+			catch (IOException e) {
+				return null;
+			}
+
+			return stringWriter.toString();
+		}
+		else {
+			return baseURL.toString();
+		}
+	}
+
+	/**
+	 * Returns the string form of the action URL that has the specified parameter values.
+	 *
+	 * @param  values  The (unencoded) parameter values, in the order of the parameter names that were passed to {@link
+	 *                 #compile(MimeResponse, List, boolean)}.
+	 */
+	public String format(String[] values) {
+
+		if (values.length != parameterCount) {
+			throw new IllegalArgumentException("Expected " + parameterCount + " values but received " +
+				values.length);
+		}
+
+		StringBuilder buf = new StringBuilder(length + (parameterCount * 16));
+		buf.append(segments[0]);
+
+		for (int i = 0; i < parameterCount; i++) {
+			buf.append(encode(values[parameterIndexes[i]], encoding));
+			buf.append(segments[i + 1]);
+		}
+
+		return buf.toString();
+	}
+
+	public int getParameterCount() {
+		return parameterCount;
+	}
+}
@@ -0,0 +1,151 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.context.url;
+
+import java.net.MalformedURLException;
+
+
+/**
+ * <p>This class is a single-pass scanner for the query parameters of a URL. It walks the characters of the URL by
+ * index and passes each name/value pair to a {@link Handler} without splitting the query string with regular
+ * expressions or collecting the pairs into intermediate objects, so that the only strings that are created are the
+ * names and values themselves.</p>
+ *
+ * <p>The rules are the same as those historically applied by {@link BridgeURLBase#parseRequestParameters(String)}:
+ * names are trimmed but values are not, a pair without an equals-sign has an empty value, trailing ampersands and
+ * trailing equals-signs are ignored, and a pair with an empty name or with more than one (non-trailing) equals-sign
+ * causes a {@link MalformedURLException}.</p>
+ *
+ * @author  Neil Griffin
+ */
+public final class QueryParameterParser {
+
+	private QueryParameterParser() {
+		throw new AssertionError();
+	}
+
+	/**
+	 * Scans the query component of the specified URL and passes each query parameter to the specified handler.
+	 *
+	 * @param   url      The URL to scan, which may be <code>null</code>.
+	 * @param   handler  The handler that receives the query parameters.
+	 *
+	 * @return  <code>true</code> if the URL has a non-empty query component, otherwise <code>false</code>.
+	 *
+	 * @throws  MalformedURLException  If a query parameter has an empty name or is otherwise invalid. Parameters that
+	 *                                 precede the invalid parameter will already have been passed to the handler.
+	 */
+	public static boolean parse(String url, Handler handler) throws MalformedURLException {
+
+		if (url == null) {
+			return false;
+		}
+
+		int queryStart = url.indexOf('?');
+
+		if (queryStart < 0) {
+			return false;
+		}
+
+		queryStart++;
+
+		int queryEnd = url.length();
+
+		if (queryStart == queryEnd) {
+			return false;
+		}
+
+		// Trailing ampersands do not delimit any parameters.
+		while ((queryEnd > queryStart) && (url.charAt(queryEnd - 1) == '&')) {
+			queryEnd--;
+		}
+
+		int pairStart = queryStart;
+
+		while (pairStart < queryEnd) {
+
+			int pairEnd = url.indexOf('&', pairStart);
+
+			if ((pairEnd < 0) || (pairEnd > queryEnd)) {
+				pairEnd = queryEnd;
+			}
+
+			parsePair(url, pairStart, pairEnd, handler);
+			pairStart = pairEnd + 1;
+		}
+
+		return true;
+	}
+
+	private static void parsePair(String url, int pairStart, int pairEnd, Handler handler)
+		throws MalformedURLException {
+
+		// Trailing equals-signs do not delimit a value.
+		int end = pairEnd;
+
+		while ((end > pairStart) && (url.charAt(end - 1) == '=')) {
+			end--;
+		}
+
+		if ((end == pairStart) && (pairEnd > pairStart)) {
+			throw new MalformedURLException("Invalid name/value pair: " + url.substring(pairStart, pairEnd));
+		}
+
+		int equalsPos = url.indexOf('=', pairStart);
+
+		if ((equalsPos < 0) || (equalsPos >= end)) {
+			equalsPos = end;
+		}
+		else {
+
+			int nextEqualsPos = url.indexOf('=', equalsPos + 1);
+
+			if ((nextEqualsPos >= 0) && (nextEqualsPos < end)) {
+				throw new MalformedURLException("Invalid name/value pair: " + url.substring(pairStart, pairEnd));
+			}
+		}
+
+		// Trim the name without creating an untrimmed copy first.
+		int nameStart = pairStart;
+		int nameEnd = equalsPos;
+
+		while ((nameStart < nameEnd) && (url.charAt(nameStart) <= ' ')) {
+			nameStart++;
+		}
+
+		while ((nameEnd > nameStart) && (url.charAt(nameEnd - 1) <= ' ')) {
+			nameEnd--;
+		}
+
+		if (nameStart == nameEnd) {
+			throw new MalformedURLException("Invalid name/value pair=[" + url.substring(pairStart, pairEnd) +
+				"]: name cannot be empty.");
+		}
+
+		String name = url.substring(nameStart, nameEnd);
+		String value = (equalsPos < end) ? url.substring(equalsPos + 1, end) : "";
+		handler.handleParameter(name, value);
+	}
+
+	/**
+	 * This interface is implemented by receivers of the query parameters that are found by {@link
+	 * QueryParameterParser#parse(String, Handler)}.
+	 */
+	public interface Handler {
+
+		public void handleParameter(String name, String value) throws MalformedURLException;
+	}
+}
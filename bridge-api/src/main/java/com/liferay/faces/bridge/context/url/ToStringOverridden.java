@@ -0,0 +1,45 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.context.url;
+
+/**
+ * This class determines (once per class) whether or not a subclass of a base class overrides the {@link
+ * Object#toString()} method that is declared by the base class.
+ *
+ * @author  Neil Griffin
+ */
+final class ToStringOverridden extends ClassValue<Boolean> {
+
+	// Private Data Members
+	private final Class<?> baseClass;
+
+	public ToStringOverridden(Class<?> baseClass) {
+		this.baseClass = baseClass;
+	}
+
+	@Override
+	protected Boolean computeValue(Class<?> type) {
+
+		try {
+			return type.getMethod("toString").getDeclaringClass() != baseClass;
+		}
+		catch (NoSuchMethodException e) {
+
+			// Every class has a public toString() method, so this should never happen.
+			return Boolean.TRUE;
+		}
+	}
+}
@@ -0,0 +1,175 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.scope;
+
+import java.io.Closeable;
+
+import javax.portlet.PortletContext;
+import javax.portlet.faces.Bridge;
+
+
+/**
+ * This class is a factory that attaches an {@link AdaptiveBridgeRequestScopeCapacity} to the {@link
+ * BoundedBridgeRequestScopeCache} that is created (or wrapped) by the wrapped factory, so that the value of the {@link
+ * Bridge#MAX_MANAGED_REQUEST_SCOPES} init-param only serves as the initial maximum size. The cache is shrunk as far as
+ * the {@link #MIN_MANAGED_REQUEST_SCOPES} context init-param (by default a tenth of the initial size) and grown as far
+ * as the {@link #MAX_ADAPTIVE_MANAGED_REQUEST_SCOPES} context init-param (by default four times the initial size). In
+ * order to select it, register this class as the {@link BridgeRequestScopeCacheFactory} in the bridge factory
+ * configuration, after {@link BoundedBridgeRequestScopeCacheFactory}. The capacity is shut down by {@link
+ * BridgeRequestScopeContextListener} when the web application is destroyed. Since the shards of a {@link
+ * PortletShardedBridgeRequestScopeCache} are sized individually by init-params, this factory cannot be combined with
+ * {@link PortletShardedBridgeRequestScopeCacheFactory}, and {@link #getBridgeRequestScopeCache(PortletContext)} throws
+ * an {@link IllegalStateException} if the wrapped factory does not create (or wrap) a {@link
+ * BoundedBridgeRequestScopeCache}.
+ *
+ * @author  Neil Griffin
+ */
+public class AdaptiveBridgeRequestScopeCacheFactory extends BridgeRequestScopeCacheFactory {
+
+	// Public Constants
+	public static final String MAX_ADAPTIVE_MANAGED_REQUEST_SCOPES =
+		"com.liferay.faces.bridge.maxAdaptiveManagedRequestScopes";
+	public static final String MIN_MANAGED_REQUEST_SCOPES = "com.liferay.faces.bridge.minManagedRequestScopes";
+
+	// Private Constants
+	private static final String CAPACITY_ATTRIBUTE_NAME = AdaptiveBridgeRequestScopeCapacity.class.getName();
+
+	// Private Data Members
+	private BridgeRequestScopeCacheFactory wrappedBridgeRequestScopeCacheFactory;
+
+	public AdaptiveBridgeRequestScopeCacheFactory(BridgeRequestScopeCacheFactory bridgeRequestScopeCacheFactory) {
+		this.wrappedBridgeRequestScopeCacheFactory = bridgeRequestScopeCacheFactory;
+	}
+
+	/**
+	 * Returns the adaptive capacity of the specified {@link PortletContext}, or <code>null</code> if this factory has
+	 * not attached one.
+	 */
+	public static AdaptiveBridgeRequestScopeCapacity getAdaptiveBridgeRequestScopeCapacity(
+		PortletContext portletContext) {
+
+		Object capacity = portletContext.getAttribute(CAPACITY_ATTRIBUTE_NAME);
+
+		if (capacity instanceof AdaptiveBridgeRequestScopeCapacity) {
+			return (AdaptiveBridgeRequestScopeCapacity) capacity;
+		}
+
+		return null;
+	}
+
+	private static int getIntInitParameter(PortletContext portletContext, String name, int defaultValue) {
+
+		int intValue = defaultValue;
+		String initParameterValue = portletContext.getInitParameter(name);
+
+		if (initParameterValue != null) {
+
+			try {
+				int value = Integer.parseInt(initParameterValue.trim());
+
+				if (value > 0) {
+					intValue = value;
+				}
+			}
+			catch (NumberFormatException e) {
+
+				// Since the API can't use a logging system like SLF4J the best we can do is print to stderr.
+				System.err.println("Invalid value=[" + initParameterValue + "] for init-param=[" + name + "]");
+			}
+		}
+
+		return intValue;
+	}
+
+	private static IllegalStateException newConfigurationException(BridgeRequestScopeCache cache) {
+
+		String className = (cache == null) ? null : cache.getClass().getName();
+
+		if (cache instanceof PortletShardedBridgeRequestScopeCache) {
+			return new IllegalStateException(AdaptiveBridgeRequestScopeCacheFactory.class.getName() +
+					" cannot adapt the capacity of " + className + " since its shards are sized individually by the " +
+					PortletShardedBridgeRequestScopeCacheFactory.MAX_MANAGED_REQUEST_SCOPES_PREFIX +
+					"<portlet-name> init-params. Remove either " +
+					AdaptiveBridgeRequestScopeCacheFactory.class.getName() + " or " +
+					PortletShardedBridgeRequestScopeCacheFactory.class.getName() + " from the factory configuration.");
+		}
+
+		return new IllegalStateException(AdaptiveBridgeRequestScopeCacheFactory.class.getName() + " requires a " +
+				BoundedBridgeRequestScopeCache.class.getName() + " but the wrapped factory created an instance of " +
+				className + ". Configure " + BoundedBridgeRequestScopeCacheFactory.class.getName() +
+				" (or one of its subclasses) as the wrapped factory.");
+	}
+
+	@Override
+	public BridgeRequestScopeCache getBridgeRequestScopeCache(PortletContext portletContext) {
+
+		BridgeRequestScopeCache bridgeRequestScopeCache = getWrapped().getBridgeRequestScopeCache(portletContext);
+
+		if (portletContext.getAttribute(CAPACITY_ATTRIBUTE_NAME) == null) {
+
+			synchronized (this) {
+
+				if (portletContext.getAttribute(CAPACITY_ATTRIBUTE_NAME) == null) {
+
+					BridgeRequestScopeCache cache = bridgeRequestScopeCache;
+
+					while (cache instanceof BridgeRequestScopeCacheWrapper) {
+						cache = ((BridgeRequestScopeCacheWrapper) cache).getWrapped();
+					}
+
+					if (!(cache instanceof BoundedBridgeRequestScopeCache)) {
+						throw newConfigurationException(cache);
+					}
+
+					final AdaptiveBridgeRequestScopeCapacity capacity = newAdaptiveBridgeRequestScopeCapacity(
+							portletContext, (BoundedBridgeRequestScopeCache) cache);
+					portletContext.setAttribute(CAPACITY_ATTRIBUTE_NAME, capacity);
+					BridgeRequestScopeContextListener.addResource(portletContext, new Closeable() {
+
+							@Override
+							public void close() {
+								capacity.shutdown();
+							}
+						});
+				}
+			}
+		}
+
+		return bridgeRequestScopeCache;
+	}
+
+	/**
+	 * Creates the adaptive capacity for the specified cache. Subclasses may override this method in order to customize
+	 * the watermarks and factors.
+	 */
+	protected AdaptiveBridgeRequestScopeCapacity newAdaptiveBridgeRequestScopeCapacity(PortletContext portletContext,
+		BoundedBridgeRequestScopeCache boundedBridgeRequestScopeCache) {
+
+		int initialSize = boundedBridgeRequestScopeCache.getMaximumSize();
+		int minimumSize = getIntInitParameter(portletContext, MIN_MANAGED_REQUEST_SCOPES,
+				Math.max(1, initialSize / 10));
+		int maximumCeiling = getIntInitParameter(portletContext, MAX_ADAPTIVE_MANAGED_REQUEST_SCOPES,
+				initialSize * 4);
+
+		return new AdaptiveBridgeRequestScopeCapacity(boundedBridgeRequestScopeCache, Math.min(minimumSize, initialSize),
+				Math.max(maximumCeiling, initialSize));
+	}
+
+	@Override
+	public BridgeRequestScopeCacheFactory getWrapped() {
+		return wrappedBridgeRequestScopeCacheFactory;
+	}
+}
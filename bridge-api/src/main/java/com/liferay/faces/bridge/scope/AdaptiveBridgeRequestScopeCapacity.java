@@ -0,0 +1,395 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.scope;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+
+
+/**
+ * <p>This class adapts the maximum size of a {@link BoundedBridgeRequestScopeCache} to the pressure on the Java heap,
+ * so that a static value of {@link javax.portlet.faces.Bridge#MAX_MANAGED_REQUEST_SCOPES} neither loses the scopes of
+ * renders at peak load nor retains too many scopes while the garbage collector is struggling. The pressure is the
+ * highest ratio of used to maximum memory after a collection (see {@link MemoryPoolMXBean#getCollectionUsage()}) among
+ * the heap memory pools that support collection usage thresholds.</p>
+ *
+ * <p>A daemon thread re-evaluates the pressure periodically. It shrinks the cache by the shrink factor (at most once
+ * per collection) while the pressure is at or above the high watermark, and grows the cache by the grow factor (up to
+ * the ceiling) while the pressure is below the low watermark. When the cache is shrunk, scopes are evicted
+ * oldest-first by {@link BridgeRequestScope#getDateCreated()}. The collection usage thresholds of the memory pools are
+ * global to the JVM and are therefore never changed, but if other code has set them, then the pressure is also
+ * re-evaluated as soon as the JVM reports that a threshold was exceeded. Each resize decision is reported to the
+ * registered {@link ResizeListener} instances. {@link #shutdown()} should be called when the portlet application is
+ * undeployed (see {@link AdaptiveBridgeRequestScopeCacheFactory}).</p>
+ *
+ * @author  Neil Griffin
+ */
+public class AdaptiveBridgeRequestScopeCapacity {
+
+	// Public Constants
+	public static final double DEFAULT_GROW_FACTOR = 1.25d;
+	public static final double DEFAULT_HIGH_WATERMARK = 0.8d;
+	public static final double DEFAULT_LOW_WATERMARK = 0.6d;
+	public static final long DEFAULT_POLL_INTERVAL_MILLIS = 1000L;
+	public static final double DEFAULT_SHRINK_FACTOR = 0.5d;
+
+	// Private Data Members
+	private final BoundedBridgeRequestScopeCache boundedBridgeRequestScopeCache;
+	private final AtomicLong growCount = new AtomicLong();
+	private final double growFactor;
+	private final double highWatermark;
+	private long lastShrinkCollectionUsed = -1L;
+	private final double lowWatermark;
+	private final int maximumCeiling;
+	private final List<MemoryPoolMXBean> memoryPoolMXBeans;
+	private final int minimumSize;
+	private final PressureListener pressureListener;
+	private final Thread pressurePoller;
+	private final List<ResizeListener> resizeListeners = new CopyOnWriteArrayList<ResizeListener>();
+	private final AtomicLong shrinkCount = new AtomicLong();
+	private final double shrinkFactor;
+
+	/**
+	 * Constructs a new instance with the default watermarks and factors, and starts watching the heap.
+	 *
+	 * @param  boundedBridgeRequestScopeCache  The cache whose maximum size is to be adapted.
+	 * @param  minimumSize                     The maximum size below which the cache is never shrunk.
+	 * @param  maximumCeiling                  The maximum size above which the cache is never grown.
+	 */
+	public AdaptiveBridgeRequestScopeCapacity(BoundedBridgeRequestScopeCache boundedBridgeRequestScopeCache,
+		int minimumSize, int maximumCeiling) {
+		this(boundedBridgeRequestScopeCache, minimumSize, maximumCeiling, DEFAULT_LOW_WATERMARK, DEFAULT_HIGH_WATERMARK,
+			DEFAULT_SHRINK_FACTOR, DEFAULT_GROW_FACTOR, DEFAULT_POLL_INTERVAL_MILLIS);
+	}
+
+	/**
+	 * Constructs a new instance and starts watching the heap.
+	 *
+	 * @param  boundedBridgeRequestScopeCache  The cache whose maximum size is to be adapted.
+	 * @param  minimumSize                     The maximum size below which the cache is never shrunk.
+	 * @param  maximumCeiling                  The maximum size above which the cache is never grown.
+	 * @param  lowWatermark                    The pressure below which the cache is grown.
+	 * @param  highWatermark                   The pressure at or above which the cache is shrunk.
+	 * @param  shrinkFactor                    The factor (between zero and one) by which the cache is shrunk.
+	 * @param  growFactor                      The factor (greater than one) by which the cache is grown.
+	 * @param  pollIntervalMillis              The interval at which the pressure is re-evaluated, or zero in order
+	 *                                         to only react to threshold notifications (if thresholds have been set
+	 *                                         by other code) and calls to {@link #adjust()}.
+	 */
+	public AdaptiveBridgeRequestScopeCapacity(BoundedBridgeRequestScopeCache boundedBridgeRequestScopeCache,
+		int minimumSize, int maximumCeiling, double lowWatermark, double highWatermark, double shrinkFactor,
+		double growFactor, long pollIntervalMillis) {
+
+		if ((minimumSize <= 0) || (maximumCeiling < minimumSize)) {
+			throw new IllegalArgumentException("minimumSize must be greater than zero and must not exceed " +
+				"maximumCeiling");
+		}
+
+		if ((lowWatermark <= 0d) || (highWatermark <= lowWatermark) || (highWatermark >= 1d)) {
+			throw new IllegalArgumentException("Watermarks must satisfy 0 < lowWatermark < highWatermark < 1");
+		}
+
+		if ((shrinkFactor <= 0d) || (shrinkFactor >= 1d) || (growFactor <= 1d)) {
+			throw new IllegalArgumentException("Factors must satisfy 0 < shrinkFactor < 1 < growFactor");
+		}
+
+		this.boundedBridgeRequestScopeCache = boundedBridgeRequestScopeCache;
+		this.minimumSize = minimumSize;
+		this.maximumCeiling = maximumCeiling;
+		this.lowWatermark = lowWatermark;
+		this.highWatermark = highWatermark;
+		this.shrinkFactor = shrinkFactor;
+		this.growFactor = growFactor;
+		this.memoryPoolMXBeans = new ArrayList<MemoryPoolMXBean>();
+
+		for (MemoryPoolMXBean memoryPoolMXBean : ManagementFactory.getMemoryPoolMXBeans()) {
+
+			if ((memoryPoolMXBean.getType() == MemoryType.HEAP) &&
+					memoryPoolMXBean.isCollectionUsageThresholdSupported()) {
+
+				if (memoryPoolMXBean.getUsage().getMax() > 0L) {
+					memoryPoolMXBeans.add(memoryPoolMXBean);
+				}
+			}
+		}
+
+		this.pressureListener = new PressureListener(this);
+		((NotificationEmitter) ManagementFactory.getMemoryMXBean()).addNotificationListener(pressureListener, null,
+			null);
+
+		if (pollIntervalMillis > 0L) {
+			this.pressurePoller = new Thread(new PressurePoller(this, pollIntervalMillis),
+					AdaptiveBridgeRequestScopeCapacity.class.getSimpleName() + "-PressurePoller");
+			this.pressurePoller.setDaemon(true);
+			this.pressurePoller.start();
+		}
+		else {
+			this.pressurePoller = null;
+		}
+	}
+
+	/**
+	 * Registers a listener that is notified after each resize decision.
+	 */
+	public void addResizeListener(ResizeListener resizeListener) {
+		resizeListeners.add(resizeListener);
+	}
+
+	/**
+	 * Evaluates the current pressure and shrinks or grows the cache if necessary. This method is called periodically by
+	 * the poller thread and whenever a collection usage threshold is exceeded, but may also be called directly.
+	 *
+	 * @return  The new maximum size of the cache.
+	 */
+	public synchronized int adjust() {
+
+		double pressure = getPressure();
+		long collectionUsed = getCollectionUsed();
+		int maximumSize = boundedBridgeRequestScopeCache.getMaximumSize();
+		int newMaximumSize = maximumSize;
+
+		// The cache is shrunk at most once per collection, since the effect of a shrink cannot be observed until the
+		// next collection.
+		if ((pressure >= highWatermark) && (maximumSize > minimumSize) && (collectionUsed != lastShrinkCollectionUsed)) {
+			newMaximumSize = Math.max(minimumSize, (int) (maximumSize * shrinkFactor));
+			lastShrinkCollectionUsed = collectionUsed;
+		}
+		else if ((pressure < lowWatermark) && (maximumSize < maximumCeiling)) {
+			newMaximumSize = Math.min(maximumCeiling, Math.max(maximumSize + 1, (int) (maximumSize * growFactor)));
+		}
+
+		if (newMaximumSize != maximumSize) {
+
+			int size = boundedBridgeRequestScopeCache.size();
+			boolean shrink = (newMaximumSize < maximumSize);
+			boundedBridgeRequestScopeCache.setMaximumSize(newMaximumSize, shrink);
+
+			if (shrink) {
+				shrinkCount.incrementAndGet();
+			}
+			else {
+				growCount.incrementAndGet();
+			}
+
+			int evictedCount = Math.max(0, size - newMaximumSize);
+
+			for (ResizeListener resizeListener : resizeListeners) {
+				resizeListener.onResize(maximumSize, newMaximumSize, pressure, evictedCount);
+			}
+		}
+
+		return newMaximumSize;
+	}
+
+	/**
+	 * Unregisters the listener of the collection usage threshold notifications, stops the poller thread, and releases
+	 * the listeners.
+	 */
+	public void shutdown() {
+
+		try {
+			((NotificationEmitter) ManagementFactory.getMemoryMXBean()).removeNotificationListener(pressureListener);
+		}
+		catch (ListenerNotFoundException e) {
+			// The listener has already been removed.
+		}
+
+		if (pressurePoller != null) {
+			pressurePoller.interrupt();
+		}
+
+		resizeListeners.clear();
+	}
+
+	/**
+	 * Removes a listener that was registered with {@link #addResizeListener(ResizeListener)}.
+	 */
+	public void removeResizeListener(ResizeListener resizeListener) {
+		resizeListeners.remove(resizeListener);
+	}
+
+	/**
+	 * Returns the total number of bytes used by the watched memory pools after their most recent collections, which
+	 * {@link #adjust()} uses in order to detect that a collection has occurred since the previous shrink.
+	 */
+	protected long getCollectionUsed() {
+
+		long collectionUsed = 0L;
+
+		for (MemoryPoolMXBean memoryPoolMXBean : memoryPoolMXBeans) {
+
+			MemoryUsage collectionUsage = memoryPoolMXBean.getCollectionUsage();
+
+			if (collectionUsage != null) {
+				collectionUsed += collectionUsage.getUsed();
+			}
+		}
+
+		return collectionUsed;
+	}
+
+	/**
+	 * Returns the number of times that the cache was grown.
+	 */
+	public long getGrowCount() {
+		return growCount.get();
+	}
+
+	public int getMaximumCeiling() {
+		return maximumCeiling;
+	}
+
+	public int getMinimumSize() {
+		return minimumSize;
+	}
+
+	/**
+	 * Returns the highest ratio of used to maximum memory after the most recent collection among the watched memory
+	 * pools, or zero if no pool is watched.
+	 */
+	public double getPressure() {
+
+		double pressure = 0d;
+
+		for (MemoryPoolMXBean memoryPoolMXBean : memoryPoolMXBeans) {
+
+			MemoryUsage collectionUsage = memoryPoolMXBean.getCollectionUsage();
+
+			if ((collectionUsage != null) && (collectionUsage.getMax() > 0L)) {
+				pressure = Math.max(pressure, (double) collectionUsage.getUsed() / collectionUsage.getMax());
+			}
+		}
+
+		return pressure;
+	}
+
+	/**
+	 * Returns the number of times that the cache was shrunk.
+	 */
+	public long getShrinkCount() {
+		return shrinkCount.get();
+	}
+
+	/**
+	 * A listener that is notified after the maximum size of the cache has been changed.
+	 */
+	public interface ResizeListener {
+
+		/**
+		 * Called after the maximum size of the cache has been changed.
+		 *
+		 * @param  oldMaximumSize  The previous maximum size.
+		 * @param  newMaximumSize  The new maximum size.
+		 * @param  pressure        The heap pressure that led to the decision.
+		 * @param  evictedCount    The number of scopes that were evicted as a result.
+		 */
+		public void onResize(int oldMaximumSize, int newMaximumSize, double pressure, int evictedCount);
+	}
+
+	/**
+	 * Only a weak reference to the capacity is held, so that a capacity that was never shut down does not leak the
+	 * portlet application via the platform {@link java.lang.management.MemoryMXBean} forever.
+	 */
+	private static final class PressureListener implements NotificationListener {
+
+		// Private Data Members
+		private final WeakReference<AdaptiveBridgeRequestScopeCapacity> capacityReference;
+
+		PressureListener(AdaptiveBridgeRequestScopeCapacity capacity) {
+			this.capacityReference = new WeakReference<AdaptiveBridgeRequestScopeCapacity>(capacity);
+		}
+
+		@Override
+		public void handleNotification(Notification notification, Object handback) {
+
+			if (MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED.equals(notification.getType())) {
+
+				AdaptiveBridgeRequestScopeCapacity capacity = capacityReference.get();
+
+				if (capacity == null) {
+
+					try {
+						((NotificationEmitter) ManagementFactory.getMemoryMXBean()).removeNotificationListener(this);
+					}
+					catch (ListenerNotFoundException e) {
+						// The listener has already been removed.
+					}
+				}
+				else {
+					capacity.adjust();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Periodically re-evaluates the pressure. Only a weak reference to the capacity is held for the same reason as
+	 * {@link PressureListener}.
+	 */
+	private static final class PressurePoller implements Runnable {
+
+		// Private Data Members
+		private final WeakReference<AdaptiveBridgeRequestScopeCapacity> capacityReference;
+		private final long pollIntervalMillis;
+
+		PressurePoller(AdaptiveBridgeRequestScopeCapacity capacity, long pollIntervalMillis) {
+			this.capacityReference = new WeakReference<AdaptiveBridgeRequestScopeCapacity>(capacity);
+			this.pollIntervalMillis = pollIntervalMillis;
+		}
+
+		@Override
+		public void run() {
+
+			while (!Thread.currentThread().isInterrupted()) {
+
+				try {
+					Thread.sleep(pollIntervalMillis);
+				}
+				catch (InterruptedException e) {
+					break;
+				}
+
+				AdaptiveBridgeRequestScopeCapacity capacity = capacityReference.get();
+
+				if (capacity == null) {
+					break;
+				}
+
+				try {
+					capacity.adjust();
+				}
+				catch (RuntimeException e) {
+
+					// Since the API can't use a logging system like SLF4J the best we can do is print to stderr.
+					e.printStackTrace();
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,384 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.scope;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * <p>This class is a {@link BridgeRequestScopeCache} that removes the scopes of an invalidated session on a background
+ * thread, so that the container thread that calls {@link
+ * javax.servlet.http.HttpSessionListener#sessionDestroyed(javax.servlet.http.HttpSessionEvent)} (by way of {@link
+ * BridgeRequestScopeManager#removeBridgeRequestScopesBySession(javax.servlet.http.HttpSession)}) is not blocked when
+ * many sessions expire at once. {@link #removeBridgeRequestScopesBySession(String)} enqueues the session id and
+ * returns zero, and the background thread removes the scopes of up to {@link #getBatchSize()} queued sessions at a
+ * time from the wrapped cache.</p>
+ *
+ * <p>From the moment that a session id is enqueued until its scopes have been removed, {@link #get(Object)} and {@link
+ * #containsKey(Object)} do not return the scopes of the session and {@link #put(String, BridgeRequestScope)} does not
+ * store them, so that a scope is never served once its session is gone. (The scopes are still visible to {@link
+ * #size()} and to iteration during that time.) Once the scopes have been removed, the session id is kept as a
+ * tombstone for {@link #getTombstoneLifetimeMillis()} (by default, a typical session timeout), so that a request of
+ * the session that is still in flight cannot store a scope afterwards. Since the check of a put cannot be atomic with
+ * the removal, a put checks again after storing the scope and removes it if the session has been removed in the
+ * meantime. If the queue is full, then the scopes are removed synchronously by the
+ * calling thread, which slows down the producer of session ids rather than letting the backlog grow without bound.
+ * Batches and synchronous removals are recorded to the {@link BridgeRequestScopeMetrics} of the portlet application,
+ * and the depth of the queue is available from {@link #getQueueDepth()}. {@link #shutdown()} should be called when the
+ * portlet application is undeployed (as {@link AsynchronousSessionRemovalBridgeRequestScopeCacheFactory} arranges by
+ * means of {@link BridgeRequestScopeContextListener}). Since the background thread only holds a weak reference to the
+ * cache, it stops by itself once the cache has been garbage collected.</p>
+ *
+ * @author  Neil Griffin
+ */
+public class AsynchronousSessionRemovalBridgeRequestScopeCache extends IndexedBridgeRequestScopeCacheWrapper {
+
+	// Public Constants
+	public static final int DEFAULT_BATCH_SIZE = 256;
+	public static final long DEFAULT_TOMBSTONE_LIFETIME_MILLIS = 30L * 60L * 1000L;
+
+	// Private Constants
+	private static final long POLL_INTERVAL_MILLIS = 1000L;
+
+	// Private Data Members
+	private final AtomicLong backpressureCount = new AtomicLong();
+	private final int batchSize;
+	private final BridgeRequestScopeMetrics bridgeRequestScopeMetrics;
+	private final Set<String> pendingSessionIds = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+	private final BlockingQueue<String> queue;
+	private final Thread remover;
+	private final ConcurrentMap<String, Long> removedSessionIds = new ConcurrentHashMap<String, Long>();
+	private volatile boolean shutdown;
+	private final long tombstoneLifetimeMillis;
+	private volatile long tombstonePurgeTime;
+	private final IndexedBridgeRequestScopeCache wrappedBridgeRequestScopeCache;
+
+	/**
+	 * Constructs a new cache and starts its background thread.
+	 *
+	 * @param  bridgeRequestScopeCache    The wrapped cache.
+	 * @param  queueCapacity              The maximum number of session ids that may be waiting for removal.
+	 * @param  batchSize                  The maximum number of sessions whose scopes are removed in one batch.
+	 * @param  bridgeRequestScopeMetrics  The metrics to which removals are recorded, or <code>null</code>.
+	 */
+	public AsynchronousSessionRemovalBridgeRequestScopeCache(IndexedBridgeRequestScopeCache bridgeRequestScopeCache,
+		int queueCapacity, int batchSize, BridgeRequestScopeMetrics bridgeRequestScopeMetrics) {
+		this(bridgeRequestScopeCache, queueCapacity, batchSize, bridgeRequestScopeMetrics,
+			DEFAULT_TOMBSTONE_LIFETIME_MILLIS);
+	}
+
+	/**
+	 * Constructs a new cache and starts its background thread.
+	 *
+	 * @param  bridgeRequestScopeCache    The wrapped cache.
+	 * @param  queueCapacity              The maximum number of session ids that may be waiting for removal.
+	 * @param  batchSize                  The maximum number of sessions whose scopes are removed in one batch.
+	 * @param  bridgeRequestScopeMetrics  The metrics to which removals are recorded, or <code>null</code>.
+	 * @param  tombstoneLifetimeMillis    The number of milliseconds during which the id of a removed session is
+	 *                                    remembered, which should be at least the session timeout.
+	 */
+	public AsynchronousSessionRemovalBridgeRequestScopeCache(IndexedBridgeRequestScopeCache bridgeRequestScopeCache,
+		int queueCapacity, int batchSize, BridgeRequestScopeMetrics bridgeRequestScopeMetrics,
+		long tombstoneLifetimeMillis) {
+
+		if (queueCapacity <= 0) {
+			throw new IllegalArgumentException("queueCapacity must be greater than zero");
+		}
+
+		if (batchSize <= 0) {
+			throw new IllegalArgumentException("batchSize must be greater than zero");
+		}
+
+		this.wrappedBridgeRequestScopeCache = bridgeRequestScopeCache;
+		this.queue = new ArrayBlockingQueue<String>(queueCapacity);
+		this.batchSize = batchSize;
+		this.bridgeRequestScopeMetrics = bridgeRequestScopeMetrics;
+		this.tombstoneLifetimeMillis = tombstoneLifetimeMillis;
+		this.remover = new Thread(new Remover(this, queue, batchSize),
+				AsynchronousSessionRemovalBridgeRequestScopeCache.class.getSimpleName() + "-Remover");
+		this.remover.setDaemon(true);
+		this.remover.start();
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return super.containsKey(key) && !isRemoved(super.get(key));
+	}
+
+	@Override
+	public BridgeRequestScope get(Object key) {
+
+		BridgeRequestScope bridgeRequestScope = super.get(key);
+
+		if (isRemoved(bridgeRequestScope)) {
+			return null;
+		}
+
+		return bridgeRequestScope;
+	}
+
+	/**
+	 * Stores the specified scope in the wrapped cache, unless the scopes of its session are waiting to be removed or
+	 * have been removed, in which case the scope is discarded.
+	 */
+	@Override
+	public BridgeRequestScope put(String key, BridgeRequestScope value) {
+
+		if (isRemoved(value)) {
+			return null;
+		}
+
+		BridgeRequestScope oldValue = super.put(key, value);
+
+		// The scopes of the session may have been removed after the check but before the scope was stored, in which
+		// case the tombstone (or pending id) of the session is visible now, since it is added before the removal.
+		if (isRemoved(value)) {
+			super.remove(key);
+
+			return null;
+		}
+
+		return oldValue;
+	}
+
+	/**
+	 * Enqueues the specified session id so that the scopes of the session are removed by the background thread.
+	 *
+	 * @return  Zero if the session id was enqueued (or was already enqueued), otherwise the number of scopes that were
+	 *          removed synchronously because the queue was full or the cache has been shut down.
+	 */
+	@Override
+	public int removeBridgeRequestScopesBySession(String sessionId) {
+
+		if (shutdown) {
+			return removeSession(sessionId);
+		}
+
+		if (!pendingSessionIds.add(sessionId)) {
+			return 0;
+		}
+
+		if (queue.offer(sessionId)) {
+			return 0;
+		}
+
+		backpressureCount.incrementAndGet();
+
+		if (bridgeRequestScopeMetrics != null) {
+			bridgeRequestScopeMetrics.recordSessionRemovalBackpressure();
+		}
+
+		try {
+			return removeSession(sessionId);
+		}
+		finally {
+			pendingSessionIds.remove(sessionId);
+		}
+	}
+
+	/**
+	 * Stops the background thread and then removes the scopes of the sessions that are still queued on the calling
+	 * thread. Subsequent calls to {@link #removeBridgeRequestScopesBySession(String)} are synchronous.
+	 */
+	public void shutdown() {
+
+		shutdown = true;
+		remover.interrupt();
+
+		try {
+			remover.join();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		List<String> batch = new ArrayList<String>();
+		queue.drainTo(batch);
+		removeBatch(batch);
+	}
+
+	private void purgeTombstones() {
+
+		long now = System.currentTimeMillis();
+
+		// Tombstones are purged at most once per poll interval, since every tombstone is visited.
+		if ((now - tombstonePurgeTime) < POLL_INTERVAL_MILLIS) {
+			return;
+		}
+
+		tombstonePurgeTime = now;
+
+		for (Iterator<Long> iterator = removedSessionIds.values().iterator(); iterator.hasNext();) {
+
+			if ((now - iterator.next()) > tombstoneLifetimeMillis) {
+				iterator.remove();
+			}
+		}
+	}
+
+	private void removeBatch(List<String> batch) {
+
+		if (batch.isEmpty()) {
+			return;
+		}
+
+		long startTime = System.nanoTime();
+		int scopeCount = 0;
+
+		for (String sessionId : batch) {
+
+			try {
+				scopeCount += removeSession(sessionId);
+			}
+			catch (RuntimeException e) {
+
+				// Since the API can't use a logging system like SLF4J the best we can do is print to stderr.
+				System.err.println("Unable to remove the scopes of session id=[" + sessionId + "]: " + e);
+			}
+			finally {
+				pendingSessionIds.remove(sessionId);
+			}
+		}
+
+		if (bridgeRequestScopeMetrics != null) {
+			bridgeRequestScopeMetrics.recordSessionRemovalBatch(batch.size(), scopeCount, System.nanoTime() - startTime);
+		}
+	}
+
+	private int removeSession(String sessionId) {
+
+		// The tombstone is added before the scopes are removed (and before the session id stops being pending) so
+		// that a concurrent put that stores a scope after the removal finds the tombstone when it checks again.
+		removedSessionIds.put(sessionId, System.currentTimeMillis());
+		purgeTombstones();
+
+		return super.removeBridgeRequestScopesBySession(sessionId);
+	}
+
+	/**
+	 * Returns the number of times that the queue was full, causing the scopes of a session to be removed synchronously.
+	 */
+	public long getBackpressureCount() {
+		return backpressureCount.get();
+	}
+
+	/**
+	 * Returns the maximum number of sessions whose scopes are removed in one batch.
+	 */
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	private boolean isRemoved(BridgeRequestScope bridgeRequestScope) {
+
+		if ((bridgeRequestScope == null) || (pendingSessionIds.isEmpty() && removedSessionIds.isEmpty())) {
+			return false;
+		}
+
+		String sessionId = BridgeRequestScopeIndex.parseSessionId(bridgeRequestScope.getId());
+
+		return (sessionId != null) &&
+			(pendingSessionIds.contains(sessionId) || removedSessionIds.containsKey(sessionId));
+	}
+
+	/**
+	 * Returns the number of session ids that are waiting for their scopes to be removed.
+	 */
+	public int getQueueDepth() {
+		return queue.size();
+	}
+
+	/**
+	 * Returns the number of milliseconds during which the id of a removed session is remembered.
+	 */
+	public long getTombstoneLifetimeMillis() {
+		return tombstoneLifetimeMillis;
+	}
+
+	/**
+	 * Returns the number of removed sessions whose ids are currently remembered.
+	 */
+	public int getTombstoneCount() {
+		return removedSessionIds.size();
+	}
+
+	@Override
+	public IndexedBridgeRequestScopeCache getWrapped() {
+		return wrappedBridgeRequestScopeCache;
+	}
+
+	private static final class Remover implements Runnable {
+
+		// Private Data Members
+		private final int batchSize;
+		private final WeakReference<AsynchronousSessionRemovalBridgeRequestScopeCache> cacheReference;
+		private final BlockingQueue<String> queue;
+
+		Remover(AsynchronousSessionRemovalBridgeRequestScopeCache cache, BlockingQueue<String> queue, int batchSize) {
+			this.cacheReference = new WeakReference<AsynchronousSessionRemovalBridgeRequestScopeCache>(cache);
+			this.queue = queue;
+			this.batchSize = batchSize;
+		}
+
+		@Override
+		public void run() {
+
+			List<String> batch = new ArrayList<String>(batchSize);
+
+			while (!Thread.currentThread().isInterrupted()) {
+
+				String sessionId;
+
+				try {
+					sessionId = queue.poll(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+				}
+				catch (InterruptedException e) {
+					break;
+				}
+
+				AsynchronousSessionRemovalBridgeRequestScopeCache cache = cacheReference.get();
+
+				if (cache == null) {
+					break;
+				}
+
+				cache.purgeTombstones();
+
+				if (sessionId != null) {
+					batch.clear();
+					batch.add(sessionId);
+					queue.drainTo(batch, batchSize - 1);
+					cache.removeBatch(batch);
+				}
+
+				if (cache.shutdown) {
+					break;
+				}
+			}
+		}
+	}
+}
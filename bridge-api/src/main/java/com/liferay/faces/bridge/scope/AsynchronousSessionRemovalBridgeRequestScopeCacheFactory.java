@@ -0,0 +1,136 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.scope;
+
+import java.io.Closeable;
+
+import javax.portlet.PortletContext;
+
+
+/**
+ * This class is a factory that decorates the {@link BridgeRequestScopeCache} created by the wrapped factory with an
+ * {@link AsynchronousSessionRemovalBridgeRequestScopeCache}, provided that the {@link #SESSION_REMOVAL_QUEUE_CAPACITY}
+ * context init-param specifies the maximum number of session ids that may be waiting for removal. Otherwise the cache
+ * of the wrapped factory is returned as is, and scopes are removed synchronously. Batches are recorded to the {@link
+ * BridgeRequestScopeMetrics} of the portlet application. In order to select it, register this class as the {@link
+ * BridgeRequestScopeCacheFactory} in the bridge factory configuration.
+ *
+ * @author  Neil Griffin
+ */
+public class AsynchronousSessionRemovalBridgeRequestScopeCacheFactory extends BridgeRequestScopeCacheFactory {
+
+	// Public Constants
+	public static final String SESSION_REMOVAL_QUEUE_CAPACITY = "com.liferay.faces.bridge.sessionRemovalQueueCapacity";
+
+	// Private Constants
+	private static final String CACHE_ATTRIBUTE_NAME = AsynchronousSessionRemovalBridgeRequestScopeCacheFactory.class
+		.getName();
+
+	// Private Data Members
+	private BridgeRequestScopeCacheFactory wrappedBridgeRequestScopeCacheFactory;
+
+	public AsynchronousSessionRemovalBridgeRequestScopeCacheFactory(
+		BridgeRequestScopeCacheFactory bridgeRequestScopeCacheFactory) {
+		this.wrappedBridgeRequestScopeCacheFactory = bridgeRequestScopeCacheFactory;
+	}
+
+	/**
+	 * Returns the value of the {@link #SESSION_REMOVAL_QUEUE_CAPACITY} init-param of the specified {@link
+	 * PortletContext}, or zero if the init-param is not specified or is not a positive integer.
+	 */
+	public static int getSessionRemovalQueueCapacity(PortletContext portletContext) {
+
+		int sessionRemovalQueueCapacity = 0;
+		String initParameterValue = portletContext.getInitParameter(SESSION_REMOVAL_QUEUE_CAPACITY);
+
+		if (initParameterValue != null) {
+
+			try {
+				int value = Integer.parseInt(initParameterValue.trim());
+
+				if (value > 0) {
+					sessionRemovalQueueCapacity = value;
+				}
+			}
+			catch (NumberFormatException e) {
+
+				// Since the API can't use a logging system like SLF4J the best we can do is print to stderr.
+				System.err.println("Invalid value=[" + initParameterValue + "] for init-param=[" +
+					SESSION_REMOVAL_QUEUE_CAPACITY + "]");
+			}
+		}
+
+		return sessionRemovalQueueCapacity;
+	}
+
+	@Override
+	public BridgeRequestScopeCache getBridgeRequestScopeCache(PortletContext portletContext) {
+
+		BridgeRequestScopeCache bridgeRequestScopeCache = (BridgeRequestScopeCache) portletContext.getAttribute(
+				CACHE_ATTRIBUTE_NAME);
+
+		if (bridgeRequestScopeCache == null) {
+
+			synchronized (this) {
+
+				bridgeRequestScopeCache = (BridgeRequestScopeCache) portletContext.getAttribute(CACHE_ATTRIBUTE_NAME);
+
+				if (bridgeRequestScopeCache == null) {
+					bridgeRequestScopeCache = newBridgeRequestScopeCache(portletContext);
+					portletContext.setAttribute(CACHE_ATTRIBUTE_NAME, bridgeRequestScopeCache);
+				}
+			}
+		}
+
+		return bridgeRequestScopeCache;
+	}
+
+	/**
+	 * Creates the cache for the specified {@link PortletContext}.
+	 */
+	protected BridgeRequestScopeCache newBridgeRequestScopeCache(PortletContext portletContext) {
+
+		BridgeRequestScopeCache wrappedBridgeRequestScopeCache = getWrapped().getBridgeRequestScopeCache(
+				portletContext);
+		int sessionRemovalQueueCapacity = getSessionRemovalQueueCapacity(portletContext);
+
+		if (sessionRemovalQueueCapacity == 0) {
+			return wrappedBridgeRequestScopeCache;
+		}
+
+		IndexedBridgeRequestScopeCache indexedBridgeRequestScopeCache =
+			IndexedBridgeRequestScopeCacheWrapper.toIndexedBridgeRequestScopeCache(wrappedBridgeRequestScopeCache,
+				AsynchronousSessionRemovalBridgeRequestScopeCache.class);
+		final AsynchronousSessionRemovalBridgeRequestScopeCache bridgeRequestScopeCache =
+			new AsynchronousSessionRemovalBridgeRequestScopeCache(indexedBridgeRequestScopeCache,
+				sessionRemovalQueueCapacity, AsynchronousSessionRemovalBridgeRequestScopeCache.DEFAULT_BATCH_SIZE,
+				BridgeRequestScopeMetricsRegistry.getBridgeRequestScopeMetrics(portletContext));
+		BridgeRequestScopeContextListener.addResource(portletContext, new Closeable() {
+
+				@Override
+				public void close() {
+					bridgeRequestScopeCache.shutdown();
+				}
+			});
+
+		return bridgeRequestScopeCache;
+	}
+
+	@Override
+	public BridgeRequestScopeCacheFactory getWrapped() {
+		return wrappedBridgeRequestScopeCacheFactory;
+	}
+}
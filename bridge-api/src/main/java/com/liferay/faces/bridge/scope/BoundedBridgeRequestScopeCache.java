@@ -0,0 +1,1113 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.scope;
+
+import java.lang.ref.WeakReference;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+
+/**
+ * <p>This class is a bounded, concurrent implementation of {@link BridgeRequestScopeCache} that limits the number of
+ * managed request scopes to a maximum size, typically the value of the {@link
+ * javax.portlet.faces.Bridge#MAX_MANAGED_REQUEST_SCOPES} init-param.</p>
+ *
+ * <p>Entries are stored in a {@link ConcurrentHashMap} so that lookups never block. The eviction policy is W-TinyLFU:
+ * newly added scopes enter an LRU "window" and must then win an admission contest (decided by a {@link
+ * FrequencySketch}) against the least valuable scope of the segmented-LRU "main" space. Since a scope is typically
+ * written in the ACTION_PHASE and read by the next RENDER_PHASE, the window holds 20% of the maximum size (rather than
+ * the customary 1%) so that a scope normally receives its render, and with it a higher estimated frequency, before it
+ * has to compete. Scopes whose renders never arrive lose the contest like any other one-hit wonder, and are otherwise
+ * best reclaimed by a time-to-live (see below). Policy bookkeeping is guarded by a single lock that is only held for
+ * short periods: writes acquire it directly, while reads are recorded in lossy, striped buffers that are drained in
+ * batches whenever the lock can be acquired without waiting.</p>
+ *
+ * <p>Optionally, scopes can be expired after a time-to-live that is measured from {@link
+ * BridgeRequestScope#getDateCreated()}. This is useful for reclaiming scopes that were created in the ACTION_PHASE or
+ * EVENT_PHASE but whose RENDER_PHASE never arrived (for example, because the user closed the browser tab after a
+ * POST). Expiration is scheduled in a hierarchical {@link TimerWheel} so that each scope costs O(1) to schedule and
+ * expire, and the wheel is advanced by a single daemon thread rather than by scanning the entire cache. Expired scopes
+ * are never returned by {@link #get(Object)}, even if the sweeper thread has not yet removed them.</p>
+ *
+ * <p>The cache also maintains secondary indexes by portlet name and by session id so that {@link
+ * #removeBridgeRequestScopesByPortlet(String)} and {@link #removeBridgeRequestScopesBySession(String)} only visit the
+ * scopes held by the specified owner. By default the owners are parsed from {@link BridgeRequestScope#getId()}, which
+ * the bridge prefixes (via {@link BridgeRequestScope#setIdPrefix(String)}) with the portlet name and the session id,
+ * each followed by the {@link #ID_SEPARATOR}.</p>
+ *
+ * @author  Neil Griffin
+ */
+public class BoundedBridgeRequestScopeCache extends AbstractMap<String, BridgeRequestScope>
+	implements IndexedBridgeRequestScopeCache {
+
+	// Public Constants
+	public static final int DEFAULT_MAXIMUM_SIZE = 100;
+	public static final String ID_SEPARATOR = BridgeRequestScopeIndex.ID_SEPARATOR;
+
+	// Private Constants
+	private static final int NCPU = Runtime.getRuntime().availableProcessors();
+	private static final int READ_BUFFER_STRIPES = ceilingPowerOfTwo(Math.max(4, NCPU));
+
+	/**
+	 * @author  Neil Griffin
+	 */
+	public static enum RemovalCause {
+
+		/** Indicates that the scope was removed by a call to {@link Map#remove(Object)} or {@link Map#clear()}. */
+		EXPLICIT,
+
+		/** Indicates that the scope was expired because its time-to-live elapsed. */
+		EXPIRED,
+
+		/** Indicates that the scope was evicted because the cache exceeded its maximum size. */
+		SIZE
+	}
+
+	/**
+	 * This interface defines a contract for being notified after a scope has been removed from the cache (see {@link
+	 * BoundedBridgeRequestScopeCache#onRemoval(String, BridgeRequestScope, RemovalCause)}).
+	 *
+	 * @author  Neil Griffin
+	 */
+	public interface RemovalListener {
+
+		public void onRemoval(String key, BridgeRequestScope bridgeRequestScope, RemovalCause removalCause);
+	}
+
+	// Private Data Members
+	private final ConcurrentMap<String, Node> data;
+	private final AtomicLong evictionCount;
+	private final ReentrantLock evictionLock;
+	private final AtomicLong expirationCount;
+	private final Thread expirationSweeper;
+	private final long expireAfterCreateMillis;
+	private final FrequencySketch frequencySketch;
+	private int mainProtectedMaximum;
+	private final AccessOrderDeque mainProbationDeque;
+	private final AccessOrderDeque mainProtectedDeque;
+	private volatile int maximumSize;
+	private final BridgeRequestScopeIndex portletIndex;
+	private final ReadBuffer[] readBuffers;
+	private final List<RemovalListener> removalListeners = new CopyOnWriteArrayList<RemovalListener>();
+	private final BridgeRequestScopeIndex sessionIndex;
+	private final TimerWheel timerWheel;
+	private int windowMaximum;
+	private final AccessOrderDeque windowDeque;
+
+	/**
+	 * Constructs a new bounded cache with the specified maximum number of {@link BridgeRequestScope} instances.
+	 *
+	 * @param  maximumSize  The maximum number of scopes to retain. Must be greater than zero.
+	 */
+	public BoundedBridgeRequestScopeCache(int maximumSize) {
+		this(maximumSize, 0L);
+	}
+
+	/**
+	 * Constructs a new bounded cache with the specified maximum number of {@link BridgeRequestScope} instances that
+	 * expires scopes after the specified time-to-live. If the time-to-live is greater than zero, then a daemon thread is
+	 * started in order to sweep expired scopes, and {@link #shutdown()} should be called when the cache is no longer
+	 * needed.
+	 *
+	 * @param  maximumSize              The maximum number of scopes to retain. Must be greater than zero.
+	 * @param  expireAfterCreateMillis  The number of milliseconds after {@link BridgeRequestScope#getDateCreated()} at
+	 *                                  which a scope expires, or zero if scopes do not expire.
+	 */
+	public BoundedBridgeRequestScopeCache(int maximumSize, long expireAfterCreateMillis) {
+		this(maximumSize, expireAfterCreateMillis, true);
+	}
+
+	/**
+	 * Constructs a new bounded cache with the specified maximum number of {@link BridgeRequestScope} instances that
+	 * expires scopes after the specified time-to-live, and optionally starts a daemon thread that sweeps expired
+	 * scopes. If the thread is not started, then the caller is responsible for calling {@link #expireScopes()}
+	 * periodically, so that several caches (such as the shards of a {@link PortletShardedBridgeRequestScopeCache}) can
+	 * share one thread.
+	 *
+	 * @param  maximumSize              The maximum number of scopes to retain. Must be greater than zero.
+	 * @param  expireAfterCreateMillis  The number of milliseconds after {@link BridgeRequestScope#getDateCreated()} at
+	 *                                  which a scope expires, or zero if scopes do not expire.
+	 * @param  startExpirationSweeper   <code>true</code> if a daemon thread is to be started in order to sweep expired
+	 *                                  scopes, otherwise <code>false</code>.
+	 */
+	public BoundedBridgeRequestScopeCache(int maximumSize, long expireAfterCreateMillis,
+		boolean startExpirationSweeper) {
+
+		if (maximumSize <= 0) {
+			throw new IllegalArgumentException("maximumSize must be greater than zero");
+		}
+
+		if (expireAfterCreateMillis < 0L) {
+			throw new IllegalArgumentException("expireAfterCreateMillis must not be negative");
+		}
+
+		this.data = new ConcurrentHashMap<String, Node>(Math.min(maximumSize, 1024), 0.75f, READ_BUFFER_STRIPES);
+		this.evictionCount = new AtomicLong();
+		this.evictionLock = new ReentrantLock();
+		this.frequencySketch = new FrequencySketch(maximumSize);
+		this.mainProbationDeque = new AccessOrderDeque();
+		this.mainProtectedDeque = new AccessOrderDeque();
+		this.portletIndex = new BridgeRequestScopeIndex();
+		this.sessionIndex = new BridgeRequestScopeIndex();
+		this.windowDeque = new AccessOrderDeque();
+		this.readBuffers = new ReadBuffer[READ_BUFFER_STRIPES];
+
+		for (int i = 0; i < readBuffers.length; i++) {
+			readBuffers[i] = new ReadBuffer();
+		}
+
+		setMaximumSizeInternal(maximumSize);
+
+		this.expirationCount = new AtomicLong();
+		this.expireAfterCreateMillis = expireAfterCreateMillis;
+
+		if (expireAfterCreateMillis > 0L) {
+			this.timerWheel = new TimerWheel(System.currentTimeMillis());
+		}
+		else {
+			this.timerWheel = null;
+		}
+
+		if ((expireAfterCreateMillis > 0L) && startExpirationSweeper) {
+			this.expirationSweeper = new Thread(new ExpirationSweeper(this),
+					BoundedBridgeRequestScopeCache.class.getSimpleName() + "-ExpirationSweeper");
+			this.expirationSweeper.setDaemon(true);
+			this.expirationSweeper.start();
+		}
+		else {
+			this.expirationSweeper = null;
+		}
+	}
+
+	private static int ceilingPowerOfTwo(int x) {
+		return 1 << (32 - Integer.numberOfLeadingZeros(x - 1));
+	}
+
+	/**
+	 * Returns the portlet name of the specified scope id (which has the format <code>
+	 * portletName:::sessionId:::suffix</code>), or <code>null</code> if the id does not have this format. This method
+	 * is public so that implementations of {@link RemoteBridgeRequestScopeStore} can remove scopes by portlet.
+	 */
+	public static String parsePortletName(String id) {
+		return BridgeRequestScopeIndex.parsePortletName(id);
+	}
+
+	/**
+	 * Returns the session id of the specified scope id (which has the format <code>
+	 * portletName:::sessionId:::suffix</code>), or <code>null</code> if the id does not have this format. This method
+	 * is public so that implementations of {@link RemoteBridgeRequestScopeStore} can remove scopes by session.
+	 */
+	public static String parseSessionId(String id) {
+		return BridgeRequestScopeIndex.parseSessionId(id);
+	}
+
+	/**
+	 * Registers a listener that is notified after a scope has been removed from the cache.
+	 */
+	public void addRemovalListener(RemovalListener removalListener) {
+		removalListeners.add(removalListener);
+	}
+
+	@Override
+	public void clear() {
+
+		for (String key : data.keySet()) {
+			remove(key);
+		}
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return data.containsKey(key);
+	}
+
+	@Override
+	public Set<Map.Entry<String, BridgeRequestScope>> entrySet() {
+		return new EntrySet();
+	}
+
+	@Override
+	public BridgeRequestScope get(Object key) {
+
+		Node node = data.get(key);
+
+		if (node == null) {
+			return null;
+		}
+
+		if (isExpired(node, System.currentTimeMillis())) {
+			expire(node);
+
+			return null;
+		}
+
+		afterRead(node);
+
+		return node.value;
+	}
+
+	@Override
+	public BridgeRequestScope put(String key, BridgeRequestScope value) {
+
+		if ((key == null) || (value == null)) {
+			throw new NullPointerException();
+		}
+
+		Node node = new Node(key, value);
+
+		while (true) {
+
+			Node existingNode = data.putIfAbsent(key, node);
+
+			if (existingNode == null) {
+				afterWrite(node);
+
+				return null;
+			}
+
+			BridgeRequestScope oldValue = existingNode.value;
+			existingNode.value = value;
+
+			// If the existing node was evicted or removed concurrently, then the replacement would be lost along with
+			// it, so the put is retried.
+			if (data.get(key) != existingNode) {
+				continue;
+			}
+
+			if (timerWheel != null) {
+				evictionLock.lock();
+
+				try {
+
+					// The replacement scope may have been created at a different time, so reschedule its expiration
+					// as long as the node has not been removed in the meantime.
+					if (existingNode.queue != null) {
+						existingNode.expirationTime = value.getDateCreated() + expireAfterCreateMillis;
+						timerWheel.schedule(existingNode);
+					}
+				}
+				finally {
+					evictionLock.unlock();
+				}
+			}
+
+			afterRead(existingNode);
+
+			return oldValue;
+		}
+	}
+
+	@Override
+	public BridgeRequestScope remove(Object key) {
+
+		Node node = data.remove(key);
+
+		if (node == null) {
+			return null;
+		}
+
+		evictionLock.lock();
+
+		try {
+			unlink(node);
+		}
+		finally {
+			evictionLock.unlock();
+		}
+
+		onRemoval(node.key, node.value, RemovalCause.EXPLICIT);
+
+		return node.value;
+	}
+
+	@Override
+	public int removeBridgeRequestScopesByPortlet(String portletName) {
+
+		List<String> keys;
+
+		evictionLock.lock();
+
+		try {
+			keys = portletIndex.getKeys(portletName);
+		}
+		finally {
+			evictionLock.unlock();
+		}
+
+		return removeAll(keys);
+	}
+
+	@Override
+	public int removeBridgeRequestScopesBySession(String sessionId) {
+
+		List<String> keys;
+
+		evictionLock.lock();
+
+		try {
+			keys = sessionIndex.getKeys(sessionId);
+		}
+		finally {
+			evictionLock.unlock();
+		}
+
+		return removeAll(keys);
+	}
+
+	/**
+	 * Unregisters a listener that was registered with {@link #addRemovalListener(RemovalListener)}.
+	 */
+	public void removeRemovalListener(RemovalListener removalListener) {
+		removalListeners.remove(removalListener);
+	}
+
+	@Override
+	public int size() {
+		return data.size();
+	}
+
+	/**
+	 * Returns the approximate number of scopes that have been evicted because the cache exceeded its maximum size.
+	 */
+	public long getEvictionCount() {
+		return evictionCount.get();
+	}
+
+	/**
+	 * Returns the number of scopes that have been removed because their time-to-live elapsed. Together with {@link
+	 * #getEvictionCount()} this can be used in order to tune the time-to-live and maximum size.
+	 */
+	public long getExpirationCount() {
+		return expirationCount.get();
+	}
+
+	/**
+	 * Returns the number of milliseconds after {@link BridgeRequestScope#getDateCreated()} at which scopes expire, or
+	 * zero if scopes do not expire.
+	 */
+	public long getExpireAfterCreateMillis() {
+		return expireAfterCreateMillis;
+	}
+
+	/**
+	 * Returns the maximum number of {@link BridgeRequestScope} instances that the cache retains.
+	 */
+	public int getMaximumSize() {
+		return maximumSize;
+	}
+
+	/**
+	 * Sets the maximum number of {@link BridgeRequestScope} instances that the cache retains. If the new maximum is
+	 * smaller than the current size then surplus scopes are evicted immediately.
+	 *
+	 * @param  maximumSize  The maximum number of scopes to retain. Must be greater than zero.
+	 */
+	public void setMaximumSize(int maximumSize) {
+		setMaximumSize(maximumSize, false);
+	}
+
+	/**
+	 * Sets the maximum number of {@link BridgeRequestScope} instances that the cache retains. If the new maximum is
+	 * smaller than the current size then surplus scopes are evicted immediately.
+	 *
+	 * @param  maximumSize       The maximum number of scopes to retain. Must be greater than zero.
+	 * @param  evictOldestFirst  If <code>true</code>, surplus scopes are evicted in the order of {@link
+	 *                           BridgeRequestScope#getDateCreated()} (oldest first) rather than by the admission
+	 *                           policy. This is appropriate when shrinking under memory pressure, since the oldest
+	 *                           scopes are the least likely to still be awaiting a render.
+	 */
+	public void setMaximumSize(int maximumSize, boolean evictOldestFirst) {
+
+		if (maximumSize <= 0) {
+			throw new IllegalArgumentException("maximumSize must be greater than zero");
+		}
+
+		List<Node> oldestNodes = null;
+		Node[] evictedNodes;
+
+		evictionLock.lock();
+
+		try {
+			setMaximumSizeInternal(maximumSize);
+			frequencySketch.ensureCapacity(maximumSize);
+
+			if (evictOldestFirst) {
+				oldestNodes = evictOldest();
+			}
+
+			evictedNodes = evict();
+		}
+		finally {
+			evictionLock.unlock();
+		}
+
+		if (oldestNodes != null) {
+
+			for (Node oldestNode : oldestNodes) {
+				onRemoval(oldestNode.key, oldestNode.value, RemovalCause.SIZE);
+			}
+		}
+
+		notifyEvicted(evictedNodes);
+	}
+
+	/**
+	 * Stops the daemon thread that sweeps expired scopes, if any. Expired scopes continue to be hidden from {@link
+	 * #get(Object)} but are no longer removed proactively. This method should be called when the portlet application is
+	 * undeployed in order to avoid leaking the thread.
+	 */
+	public void shutdown() {
+
+		if (expirationSweeper != null) {
+			expirationSweeper.interrupt();
+		}
+	}
+
+	/**
+	 * Advances the timer wheel to the current time and removes the scopes whose time-to-live has elapsed. This method
+	 * is called periodically by the sweeper thread, but may also be called directly.
+	 */
+	public void expireScopes() {
+
+		if (timerWheel == null) {
+			return;
+		}
+
+		List<TimerWheel.Timeout> timeouts = new ArrayList<TimerWheel.Timeout>();
+		List<Node> expiredNodes = new ArrayList<Node>();
+
+		evictionLock.lock();
+
+		try {
+			timerWheel.advance(System.currentTimeMillis(), timeouts);
+
+			for (TimerWheel.Timeout timeout : timeouts) {
+				Node node = (Node) timeout;
+
+				if (data.remove(node.key, node)) {
+					unlink(node);
+					expiredNodes.add(node);
+				}
+			}
+		}
+		finally {
+			evictionLock.unlock();
+		}
+
+		for (Node expiredNode : expiredNodes) {
+			expirationCount.incrementAndGet();
+			onRemoval(expiredNode.key, expiredNode.value, RemovalCause.EXPIRED);
+		}
+	}
+
+	/**
+	 * Returns the name of the portlet that is associated with the specified scope, or <code>null</code> if it cannot be
+	 * determined. The default implementation returns the portion of {@link BridgeRequestScope#getId()} that precedes the
+	 * first {@link #ID_SEPARATOR}.
+	 */
+	protected String getPortletName(BridgeRequestScope bridgeRequestScope) {
+		return BridgeRequestScopeIndex.parsePortletName(bridgeRequestScope.getId());
+	}
+
+	/**
+	 * Returns the id of the session that is associated with the specified scope, or <code>null</code> if it cannot be
+	 * determined. The default implementation returns the portion of {@link BridgeRequestScope#getId()} between the first
+	 * and second {@link #ID_SEPARATOR}.
+	 */
+	protected String getSessionId(BridgeRequestScope bridgeRequestScope) {
+		return BridgeRequestScopeIndex.parseSessionId(bridgeRequestScope.getId());
+	}
+
+	/**
+	 * This method is called after a scope has been removed from the cache, either explicitly, by eviction, or by
+	 * expiration. The default implementation notifies the listeners that were registered with {@link
+	 * #addRemovalListener(RemovalListener)}. Subclasses may override this method in order to release resources
+	 * associated with the scope, but should call the super implementation. Implementations should be fast and must not
+	 * call back into the cache while holding locks of their own.
+	 *
+	 * @param  key                 The key of the removed scope.
+	 * @param  bridgeRequestScope  The removed scope.
+	 * @param  removalCause        The reason the scope was removed.
+	 */
+	protected void onRemoval(String key, BridgeRequestScope bridgeRequestScope, RemovalCause removalCause) {
+
+		for (RemovalListener removalListener : removalListeners) {
+			removalListener.onRemoval(key, bridgeRequestScope, removalCause);
+		}
+	}
+
+	private void afterRead(Node node) {
+
+		ReadBuffer readBuffer = readBuffers[(int) Thread.currentThread().getId() & (READ_BUFFER_STRIPES - 1)];
+
+		if (readBuffer.offer(node)) {
+			tryDrainReadBuffers();
+		}
+	}
+
+	private void afterWrite(Node node) {
+
+		Node[] evictedNodes;
+
+		evictionLock.lock();
+
+		try {
+			drainReadBuffers();
+
+			// The node may have been removed by another thread between the call to putIfAbsent and acquiring the
+			// lock, in which case it must not be linked into the policy.
+			if (data.get(node.key) != node) {
+				return;
+			}
+
+			frequencySketch.increment(node.key);
+			node.queue = windowDeque;
+			windowDeque.addLast(node);
+			node.portletName = getPortletName(node.value);
+			node.sessionId = getSessionId(node.value);
+			portletIndex.add(node.portletName, node.key);
+			sessionIndex.add(node.sessionId, node.key);
+
+			if (timerWheel != null) {
+				node.expirationTime = node.value.getDateCreated() + expireAfterCreateMillis;
+				timerWheel.schedule(node);
+			}
+
+			evictedNodes = evict();
+		}
+		finally {
+			evictionLock.unlock();
+		}
+
+		notifyEvicted(evictedNodes);
+	}
+
+	private void drainReadBuffers() {
+
+		for (ReadBuffer readBuffer : readBuffers) {
+			readBuffer.drain(this);
+		}
+	}
+
+	/**
+	 * Evicts entries until the cache is within its maximum size. Must be called while holding the eviction lock.
+	 *
+	 * @return  The nodes that were evicted, so that listeners can be notified after the lock is released.
+	 */
+	private Node[] evict() {
+
+		Node[] evictedNodes = null;
+		int evictedCount = 0;
+
+		// Move surplus entries from the window to the probation segment of the main space, where they become
+		// admission candidates.
+		Node candidate = null;
+
+		while (windowDeque.size > windowMaximum) {
+			Node node = windowDeque.pollFirst();
+			node.queue = mainProbationDeque;
+			mainProbationDeque.addLast(node);
+
+			if (candidate == null) {
+				candidate = node;
+			}
+		}
+
+		while (data.size() > maximumSize) {
+
+			// The victim is the least recently used entry of the probation segment, falling back to the protected
+			// segment and then to the window.
+			Node victim = mainProbationDeque.peekFirst();
+
+			if (victim == null) {
+				victim = mainProtectedDeque.peekFirst();
+			}
+
+			if (victim == null) {
+				victim = windowDeque.peekFirst();
+			}
+
+			if (victim == null) {
+				break;
+			}
+
+			Node evicted = victim;
+
+			// If a candidate was just admitted from the window, then it must compete with the victim. The entry that
+			// is estimated to be accessed less frequently is evicted. Ties favor the incumbent victim so that one-hit
+			// wonders cannot flush the cache.
+			if ((candidate != null) && (candidate != victim)) {
+
+				if (frequencySketch.frequency(candidate.key) <= frequencySketch.frequency(victim.key)) {
+					evicted = candidate;
+				}
+
+				candidate = (evicted == candidate) ? null : candidate;
+			}
+
+			// The mapping is removed before the node is unlinked so that a concurrent put that replaces the value of
+			// the node can detect the eviction and retry.
+			boolean removed = data.remove(evicted.key, evicted);
+			unlink(evicted);
+
+			if (removed) {
+
+				if (evictedNodes == null) {
+					evictedNodes = new Node[4];
+				}
+				else if (evictedCount == evictedNodes.length) {
+					Node[] grownNodes = new Node[evictedNodes.length * 2];
+					System.arraycopy(evictedNodes, 0, grownNodes, 0, evictedCount);
+					evictedNodes = grownNodes;
+				}
+
+				evictedNodes[evictedCount++] = evicted;
+				evictionCount.incrementAndGet();
+			}
+		}
+
+		if ((evictedNodes != null) && (evictedCount < evictedNodes.length)) {
+			evictedNodes[evictedCount] = null;
+		}
+
+		return evictedNodes;
+	}
+
+	/**
+	 * Evicts the surplus scopes in the order of {@link BridgeRequestScope#getDateCreated()}, oldest first. Must be
+	 * called while holding the eviction lock.
+	 *
+	 * @return  The nodes that were evicted, so that listeners can be notified after the lock is released.
+	 */
+	private List<Node> evictOldest() {
+
+		int surplus = data.size() - maximumSize;
+
+		if (surplus <= 0) {
+			return null;
+		}
+
+		// Since the value of a node can be replaced concurrently, the dates are captured before sorting.
+		List<DatedNode> datedNodes = new ArrayList<DatedNode>(data.size());
+
+		for (Node node : data.values()) {
+			datedNodes.add(new DatedNode(node));
+		}
+
+		Collections.sort(datedNodes);
+
+		List<Node> evictedNodes = new ArrayList<Node>(surplus);
+
+		for (int i = 0; (i < datedNodes.size()) && (evictedNodes.size() < surplus); i++) {
+			Node node = datedNodes.get(i).node;
+
+			if (data.remove(node.key, node)) {
+				unlink(node);
+				evictedNodes.add(node);
+				evictionCount.incrementAndGet();
+			}
+		}
+
+		return evictedNodes;
+	}
+
+	private void expire(Node node) {
+
+		if (data.remove(node.key, node)) {
+
+			evictionLock.lock();
+
+			try {
+				unlink(node);
+			}
+			finally {
+				evictionLock.unlock();
+			}
+
+			expirationCount.incrementAndGet();
+			onRemoval(node.key, node.value, RemovalCause.EXPIRED);
+		}
+	}
+
+	private void notifyEvicted(Node[] evictedNodes) {
+
+		if (evictedNodes != null) {
+
+			for (Node evictedNode : evictedNodes) {
+
+				if (evictedNode == null) {
+					break;
+				}
+
+				onRemoval(evictedNode.key, evictedNode.value, RemovalCause.SIZE);
+			}
+		}
+	}
+
+	/**
+	 * Applies the policy for a read of the specified node. Must be called while holding the eviction lock.
+	 */
+	private void onAccess(Node node) {
+
+		AccessOrderDeque queue = node.queue;
+
+		if (queue == null) {
+
+			// The node has already been removed.
+			return;
+		}
+
+		frequencySketch.increment(node.key);
+
+		if (queue == mainProbationDeque) {
+
+			// Promote from probation to protected, demoting the least recently used protected entries if necessary.
+			mainProbationDeque.remove(node);
+			node.queue = mainProtectedDeque;
+			mainProtectedDeque.addLast(node);
+
+			while (mainProtectedDeque.size > mainProtectedMaximum) {
+				Node demoted = mainProtectedDeque.pollFirst();
+				demoted.queue = mainProbationDeque;
+				mainProbationDeque.addLast(demoted);
+			}
+		}
+		else {
+			queue.moveToLast(node);
+		}
+	}
+
+	private void setMaximumSizeInternal(int maximumSize) {
+
+		this.maximumSize = maximumSize;
+		this.windowMaximum = Math.max(1, maximumSize / 5);
+
+		int mainMaximum = Math.max(0, maximumSize - windowMaximum);
+		this.mainProtectedMaximum = (int) (mainMaximum * 0.8d);
+	}
+
+	private void tryDrainReadBuffers() {
+
+		if (evictionLock.tryLock()) {
+
+			try {
+				drainReadBuffers();
+			}
+			finally {
+				evictionLock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Unlinks the specified node from the policy. Must be called while holding the eviction lock.
+	 */
+	private void unlink(Node node) {
+
+		AccessOrderDeque queue = node.queue;
+
+		if (queue != null) {
+			queue.remove(node);
+			node.queue = null;
+			portletIndex.remove(node.portletName, node.key);
+			sessionIndex.remove(node.sessionId, node.key);
+		}
+
+		if (timerWheel != null) {
+			timerWheel.cancel(node);
+		}
+	}
+
+	private int removeAll(List<String> keys) {
+
+		int removedCount = 0;
+
+		for (String key : keys) {
+
+			if (remove(key) != null) {
+				removedCount++;
+			}
+		}
+
+		return removedCount;
+	}
+
+	private boolean isExpired(Node node, long currentTimeMillis) {
+		return (timerWheel != null) &&
+			((currentTimeMillis - node.value.getDateCreated()) >= expireAfterCreateMillis);
+	}
+
+	/**
+	 * Intrusive doubly-linked list of nodes ordered from least recently used (first) to most recently used (last).
+	 * Instances are only accessed while holding the eviction lock.
+	 */
+	private static final class AccessOrderDeque {
+
+		// Private Data Members
+		private final Node head;
+		private int size;
+
+		AccessOrderDeque() {
+			head = new Node(null, null);
+			head.prev = head;
+			head.next = head;
+		}
+
+		void addLast(Node node) {
+			node.prev = head.prev;
+			node.next = head;
+			head.prev.next = node;
+			head.prev = node;
+			size++;
+		}
+
+		void moveToLast(Node node) {
+
+			if (head.prev != node) {
+				remove(node);
+				addLast(node);
+			}
+		}
+
+		Node peekFirst() {
+			return (head.next == head) ? null : head.next;
+		}
+
+		Node pollFirst() {
+
+			Node first = peekFirst();
+
+			if (first != null) {
+				remove(first);
+			}
+
+			return first;
+		}
+
+		void remove(Node node) {
+			node.prev.next = node.next;
+			node.next.prev = node.prev;
+			node.prev = null;
+			node.next = null;
+			size--;
+		}
+	}
+
+	private final class EntrySet extends AbstractSet<Map.Entry<String, BridgeRequestScope>> {
+
+		@Override
+		public void clear() {
+			BoundedBridgeRequestScopeCache.this.clear();
+		}
+
+		@Override
+		public Iterator<Map.Entry<String, BridgeRequestScope>> iterator() {
+			return new EntryIterator(data.values().iterator());
+		}
+
+		@Override
+		public int size() {
+			return data.size();
+		}
+	}
+
+	private final class EntryIterator implements Iterator<Map.Entry<String, BridgeRequestScope>> {
+
+		// Private Data Members
+		private Node current;
+		private final Iterator<Node> iterator;
+
+		EntryIterator(Iterator<Node> iterator) {
+			this.iterator = iterator;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return iterator.hasNext();
+		}
+
+		@Override
+		public Map.Entry<String, BridgeRequestScope> next() {
+			current = iterator.next();
+
+			return new AbstractMap.SimpleImmutableEntry<String, BridgeRequestScope>(current.key, current.value);
+		}
+
+		@Override
+		public void remove() {
+
+			if (current == null) {
+				throw new IllegalStateException();
+			}
+
+			BoundedBridgeRequestScopeCache.this.remove(current.key);
+			current = null;
+		}
+	}
+
+	private static final class DatedNode implements Comparable<DatedNode> {
+
+		// Private Data Members
+		private final long dateCreated;
+		private final Node node;
+
+		DatedNode(Node node) {
+			this.node = node;
+			this.dateCreated = node.value.getDateCreated();
+		}
+
+		@Override
+		public int compareTo(DatedNode datedNode) {
+			return (dateCreated < datedNode.dateCreated) ? -1 : ((dateCreated == datedNode.dateCreated) ? 0 : 1);
+		}
+	}
+
+	/**
+	 * Periodically advances the timer wheel. Only a weak reference to the cache is held so that a cache that was never
+	 * shut down does not leak the thread (or the classloader of the portlet application) forever.
+	 */
+	private static final class ExpirationSweeper implements Runnable {
+
+		// Private Constants
+		private static final long SWEEP_INTERVAL_MILLIS = 1000L;
+
+		// Private Data Members
+		private final WeakReference<BoundedBridgeRequestScopeCache> cacheReference;
+
+		ExpirationSweeper(BoundedBridgeRequestScopeCache cache) {
+			this.cacheReference = new WeakReference<BoundedBridgeRequestScopeCache>(cache);
+		}
+
+		@Override
+		public void run() {
+
+			while (!Thread.currentThread().isInterrupted()) {
+
+				try {
+					Thread.sleep(SWEEP_INTERVAL_MILLIS);
+				}
+				catch (InterruptedException e) {
+					break;
+				}
+
+				BoundedBridgeRequestScopeCache cache = cacheReference.get();
+
+				if (cache == null) {
+					break;
+				}
+
+				try {
+					cache.expireScopes();
+				}
+				catch (RuntimeException e) {
+
+					// Since the API can't use a logging system like SLF4J the best we can do is print to stderr.
+					e.printStackTrace();
+				}
+			}
+		}
+	}
+
+	private static final class Node extends TimerWheel.Timeout {
+
+		// Private Data Members
+		private final String key;
+		private Node next;
+		private String portletName;
+		private Node prev;
+		private AccessOrderDeque queue;
+		private String sessionId;
+		private volatile BridgeRequestScope value;
+
+		Node(String key, BridgeRequestScope value) {
+			this.key = key;
+			this.value = value;
+		}
+	}
+
+	/**
+	 * Lossy, bounded buffer of recent reads. Writers claim a slot with a CAS on the tail counter and the buffer is
+	 * drained by whichever thread holds the eviction lock. When the buffer is full, additional reads are simply
+	 * dropped, since the frequency sketch only needs a representative sample.
+	 */
+	private static final class ReadBuffer {
+
+		// Private Constants
+		private static final int SIZE = 16;
+		private static final int MASK = SIZE - 1;
+
+		// Private Data Members
+		private final AtomicLong readCounter = new AtomicLong();
+		private final AtomicReferenceArray<Node> slots = new AtomicReferenceArray<Node>(SIZE);
+		private final AtomicLong writeCounter = new AtomicLong();
+
+		/**
+		 * Records the specified node, returning <code>true</code> if the buffer is (nearly) full and ought to be
+		 * drained.
+		 */
+		boolean offer(Node node) {
+
+			long head = readCounter.get();
+			long tail = writeCounter.get();
+			long size = tail - head;
+
+			if (size >= SIZE) {
+				return true;
+			}
+
+			if (writeCounter.compareAndSet(tail, tail + 1)) {
+				slots.lazySet((int) (tail & MASK), node);
+
+				return (size + 1) >= (SIZE / 2);
+			}
+
+			return false;
+		}
+
+		void drain(BoundedBridgeRequestScopeCache cache) {
+
+			long head = readCounter.get();
+			long tail = writeCounter.get();
+
+			for (; head < tail; head++) {
+				int index = (int) (head & MASK);
+				Node node = slots.get(index);
+
+				// A writer has claimed the slot but not yet published the node.
+				if (node == null) {
+					break;
+				}
+
+				slots.lazySet(index, null);
+				cache.onAccess(node);
+			}
+
+			readCounter.lazySet(head);
+		}
+	}
+}
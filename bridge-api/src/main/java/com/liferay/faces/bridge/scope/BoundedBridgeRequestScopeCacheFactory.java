@@ -0,0 +1,143 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.scope;
+
+import javax.portlet.PortletContext;
+import javax.portlet.faces.Bridge;
+
+
+/**
+ * This class is a factory that creates one {@link BoundedBridgeRequestScopeCache} per {@link PortletContext}, sized by
+ * the {@link Bridge#MAX_MANAGED_REQUEST_SCOPES} context init-param. If the {@link #BRIDGE_REQUEST_SCOPE_TIME_TO_LIVE}
+ * context init-param is specified, then scopes also expire after the specified number of seconds. In order to select
+ * it, register this class as the {@link BridgeRequestScopeCacheFactory} in the bridge factory configuration. Since it
+ * replaces the cache provided by the wrapped factory, the wrapped factory is only retained in order to honor the
+ * chain-of-responsibility contract.
+ *
+ * @author  Neil Griffin
+ */
+public class BoundedBridgeRequestScopeCacheFactory extends BridgeRequestScopeCacheFactory {
+
+	// Public Constants
+	public static final String BRIDGE_REQUEST_SCOPE_TIME_TO_LIVE =
+		"com.liferay.faces.bridge.bridgeRequestScopeTimeToLive";
+
+	// Private Constants
+	private static final String CACHE_ATTRIBUTE_NAME = BoundedBridgeRequestScopeCacheFactory.class.getName();
+
+	// Private Data Members
+	private BridgeRequestScopeCacheFactory wrappedBridgeRequestScopeCacheFactory;
+
+	public BoundedBridgeRequestScopeCacheFactory(BridgeRequestScopeCacheFactory bridgeRequestScopeCacheFactory) {
+		this.wrappedBridgeRequestScopeCacheFactory = bridgeRequestScopeCacheFactory;
+	}
+
+	/**
+	 * Returns the value of the {@link Bridge#MAX_MANAGED_REQUEST_SCOPES} init-param of the specified {@link
+	 * PortletContext}, or {@link BoundedBridgeRequestScopeCache#DEFAULT_MAXIMUM_SIZE} if the init-param is not
+	 * specified or is not a positive integer.
+	 */
+	public static int getMaxManagedRequestScopes(PortletContext portletContext) {
+
+		int maxManagedRequestScopes = BoundedBridgeRequestScopeCache.DEFAULT_MAXIMUM_SIZE;
+		String initParameterValue = portletContext.getInitParameter(Bridge.MAX_MANAGED_REQUEST_SCOPES);
+
+		if (initParameterValue != null) {
+
+			try {
+				int value = Integer.parseInt(initParameterValue.trim());
+
+				if (value > 0) {
+					maxManagedRequestScopes = value;
+				}
+			}
+			catch (NumberFormatException e) {
+
+				// Since the API can't use a logging system like SLF4J the best we can do is print to stderr.
+				System.err.println("Invalid value=[" + initParameterValue + "] for init-param=[" +
+					Bridge.MAX_MANAGED_REQUEST_SCOPES + "]");
+			}
+		}
+
+		return maxManagedRequestScopes;
+	}
+
+	/**
+	 * Returns the value of the {@link #BRIDGE_REQUEST_SCOPE_TIME_TO_LIVE} init-param of the specified {@link
+	 * PortletContext} converted from seconds to milliseconds, or zero if the init-param is not specified or is not a
+	 * positive integer.
+	 */
+	public static long getTimeToLiveMillis(PortletContext portletContext) {
+
+		long timeToLiveMillis = 0L;
+		String initParameterValue = portletContext.getInitParameter(BRIDGE_REQUEST_SCOPE_TIME_TO_LIVE);
+
+		if (initParameterValue != null) {
+
+			try {
+				long value = Long.parseLong(initParameterValue.trim());
+
+				if (value > 0L) {
+					timeToLiveMillis = value * 1000L;
+				}
+			}
+			catch (NumberFormatException e) {
+
+				// Since the API can't use a logging system like SLF4J the best we can do is print to stderr.
+				System.err.println("Invalid value=[" + initParameterValue + "] for init-param=[" +
+					BRIDGE_REQUEST_SCOPE_TIME_TO_LIVE + "]");
+			}
+		}
+
+		return timeToLiveMillis;
+	}
+
+	@Override
+	public BridgeRequestScopeCache getBridgeRequestScopeCache(PortletContext portletContext) {
+
+		BridgeRequestScopeCache bridgeRequestScopeCache = (BridgeRequestScopeCache) portletContext.getAttribute(
+				CACHE_ATTRIBUTE_NAME);
+
+		if (bridgeRequestScopeCache == null) {
+
+			synchronized (this) {
+
+				bridgeRequestScopeCache = (BridgeRequestScopeCache) portletContext.getAttribute(CACHE_ATTRIBUTE_NAME);
+
+				if (bridgeRequestScopeCache == null) {
+					bridgeRequestScopeCache = newBridgeRequestScopeCache(portletContext);
+					portletContext.setAttribute(CACHE_ATTRIBUTE_NAME, bridgeRequestScopeCache);
+				}
+			}
+		}
+
+		return bridgeRequestScopeCache;
+	}
+
+	/**
+	 * Creates the cache for the specified {@link PortletContext}. Subclasses may override this method in order to
+	 * customize the instance that is created.
+	 */
+	protected BridgeRequestScopeCache newBridgeRequestScopeCache(PortletContext portletContext) {
+		return new BoundedBridgeRequestScopeCache(getMaxManagedRequestScopes(portletContext),
+				getTimeToLiveMillis(portletContext));
+	}
+
+	@Override
+	public BridgeRequestScopeCacheFactory getWrapped() {
+		return wrappedBridgeRequestScopeCacheFactory;
+	}
+}
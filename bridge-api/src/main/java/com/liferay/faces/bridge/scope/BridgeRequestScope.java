@@ -70,7 +70,8 @@ public interface BridgeRequestScope {
 	/**
 	 * This method restores the scoped data that was preserved by the call to {@link #saveState(FacesContext)} method as
 	 * required by section 5.1.2 of the Bridge Spec. This method is designed to be called during the EVENT_PHASE and
-	 * RENDER_PHASE of the portlet lifecycle.
+	 * RENDER_PHASE of the portlet lifecycle. During the RENDER_PHASE, implementations may use a {@link
+	 * LazyRestoreRequestScopeMap} in order to defer copying each preserved attribute until it is first read.
 	 *
 	 * @param  facesContext  The current {@link FacesContext}.
 	 */
@@ -79,7 +80,8 @@ public interface BridgeRequestScope {
 	/**
 	 * This method preserves the scoped data (as defined in Section 5.1.2 of the Bridge Spec). It should only be called
 	 * during the {@link javax.portlet.PortletRequest#ACTION_PHASE} and {@link javax.portlet.PortletRequest#EVENT_PHASE}
-	 * of the portlet lifecycle.
+	 * of the portlet lifecycle. Implementations may use a {@link RequestAttributeChangeTracker} in order to only inspect
+	 * and copy the request attributes that were added or replaced during the Faces lifecycle.
 	 *
 	 * @param  facesContext  The current {@link FacesContext}.
 	 */
@@ -0,0 +1,660 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.scope;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.portlet.PortletMode;
+import javax.portlet.faces.Bridge;
+
+
+/**
+ * <p>This class encodes a {@link BridgeRequestScopeState} into a compact binary representation and decodes it back.
+ * The encoding is designed for scopes that are carried with {@link
+ * BridgeRequestScope.Transport#PORTLET_SESSION_ATTRIBUTE} and therefore replicated along with the portlet session:</p>
+ *
+ * <ul>
+ *   <li>All integers (lengths, counts, indexes, and the creation date) are written as variable-length integers so that
+ *     small values occupy a single byte.</li>
+ *   <li>The boolean flags of the scope are bit-packed into a single byte.</li>
+ *   <li>Every distinct name (the scope id, the portlet mode, parameter names/values, and attribute names) is written
+ *     once to a string table and subsequently referenced by index.</li>
+ *   <li>Preserved attribute values of common immutable types (such as {@link String}, {@link Boolean}, {@link Integer},
+ *     and {@link Long}) are written inline. Other values must be {@link Serializable} and are written after the body
+ *     by a single {@link ObjectOutputStream}, so that the stream header and the descriptor of each class are written
+ *     once rather than once per value.</li>
+ *   <li>A preserved view state that is held in compressed form by the state (see {@link ViewStateCompressor}) is
+ *     written as is, so that it is neither decompressed by {@link #encode(BridgeRequestScopeState)} nor by {@link
+ *     #decode(byte[])}.</li>
+ * </ul>
+ *
+ * @author  Neil Griffin
+ */
+public final class BridgeRequestScopeCodec {
+
+	// Private Constants
+	private static final int FLAG_FACES_LIFECYCLE_EXECUTED = 1;
+	private static final int FLAG_NAVIGATION_OCCURRED = 1 << 1;
+	private static final int FLAG_PORTLET_MODE_CHANGED = 1 << 2;
+	private static final int FLAG_REDIRECT_OCCURRED = 1 << 3;
+	private static final int FLAG_VIEW_STATE_COMPRESSED = 1 << 5;
+	private static final int FLAG_VIEW_STATE_PRESENT = 1 << 4;
+	private static final int TAG_BOOLEAN_FALSE = 2;
+	private static final int TAG_BOOLEAN_TRUE = 1;
+	private static final int TAG_INTEGER = 4;
+	private static final int TAG_LONG = 5;
+	private static final int TAG_NULL = 0;
+	private static final int TAG_SERIALIZED = 6;
+	private static final int TAG_SHARED_SERIALIZED = 7;
+	private static final int TAG_STRING = 3;
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	private static final int MINIMUM_VERSION = 1;
+	private static final int VERSION = 3;
+	private static final Object SHARED_SERIALIZED_VALUE = new Object();
+
+	private BridgeRequestScopeCodec() {
+		throw new AssertionError();
+	}
+
+	/**
+	 * Decodes the specified bytes that were produced by {@link #encode(BridgeRequestScopeState)}.
+	 *
+	 * @throws  IOException             If the bytes are malformed or were encoded with an unsupported version.
+	 * @throws  ClassNotFoundException  If the class of a serialized attribute value cannot be found.
+	 */
+	public static BridgeRequestScopeState decode(byte[] bytes) throws IOException, ClassNotFoundException {
+		return decode(bytes, null);
+	}
+
+	/**
+	 * Decodes the specified bytes that were produced by {@link #encode(BridgeRequestScopeState)}. If the preserved view
+	 * state was encoded in compressed form, then it remains compressed, and is decompressed by the specified compressor
+	 * when {@link BridgeRequestScopeState#getPreservedViewStateParam()} is called.
+	 *
+	 * @param   bytes                The encoded state.
+	 * @param   viewStateCompressor  The compressor, or <code>null</code> in order to decompress with {@link
+	 *                               ViewStateCompressor#getInstance()}.
+	 *
+	 * @throws  IOException             If the bytes are malformed or were encoded with an unsupported version.
+	 * @throws  ClassNotFoundException  If the class of a serialized attribute value cannot be found.
+	 */
+	public static BridgeRequestScopeState decode(byte[] bytes, ViewStateCompressor viewStateCompressor)
+		throws IOException, ClassNotFoundException {
+
+		Decoder decoder = new Decoder(bytes);
+		int version = decoder.readByte();
+
+		if ((version < MINIMUM_VERSION) || (version > VERSION)) {
+			throw new StreamCorruptedException("Unsupported version=[" + version + "]");
+		}
+
+		int flags = decoder.readByte();
+		int phaseOrdinal = decoder.readVarInt();
+		Bridge.PortletPhase beganInPhase = null;
+
+		if (phaseOrdinal != 0) {
+			Bridge.PortletPhase[] portletPhases = Bridge.PortletPhase.values();
+
+			if ((phaseOrdinal < 0) || (phaseOrdinal > portletPhases.length)) {
+				throw new StreamCorruptedException("Invalid portlet phase ordinal=[" + phaseOrdinal + "]");
+			}
+
+			beganInPhase = portletPhases[phaseOrdinal - 1];
+		}
+
+		long dateCreated = decoder.readVarLong();
+		int stringTableSize = decoder.readCount(1);
+		String[] stringTable = new String[stringTableSize];
+
+		for (int i = 0; i < stringTableSize; i++) {
+			stringTable[i] = decoder.readString();
+		}
+
+		String id = decoder.readStringReference(stringTable);
+		String portletModeName = decoder.readStringReference(stringTable);
+		PortletMode portletMode = (portletModeName == null) ? null : new PortletMode(portletModeName);
+		String preservedViewStateParam = null;
+		byte[] compressedViewStateParam = null;
+
+		if ((flags & FLAG_VIEW_STATE_COMPRESSED) != 0) {
+			compressedViewStateParam = decoder.readBytes();
+		}
+		else if ((flags & FLAG_VIEW_STATE_PRESENT) != 0) {
+			preservedViewStateParam = decoder.readString();
+		}
+
+		int actionParameterCount = decoder.readCount(2);
+		Map<String, String> preservedActionParameterMap = new LinkedHashMap<String, String>(capacity(
+					actionParameterCount));
+
+		for (int i = 0; i < actionParameterCount; i++) {
+			String name = decoder.readStringReference(stringTable);
+			String value = decoder.readStringReference(stringTable);
+			preservedActionParameterMap.put(name, value);
+		}
+
+		int removedAttributeNameCount = decoder.readCount(1);
+		Set<String> removedAttributeNames = new LinkedHashSet<String>(capacity(removedAttributeNameCount));
+
+		for (int i = 0; i < removedAttributeNameCount; i++) {
+			removedAttributeNames.add(decoder.readStringReference(stringTable));
+		}
+
+		int attributeCount = decoder.readCount(2);
+		Map<String, Object> preservedAttributes = new LinkedHashMap<String, Object>(capacity(attributeCount));
+		List<String> sharedSerializedNames = null;
+
+		for (int i = 0; i < attributeCount; i++) {
+
+			String name = decoder.readStringReference(stringTable);
+			Object value = decoder.readValue();
+
+			if (value == SHARED_SERIALIZED_VALUE) {
+
+				if (sharedSerializedNames == null) {
+					sharedSerializedNames = new ArrayList<String>();
+				}
+
+				sharedSerializedNames.add(name);
+			}
+
+			preservedAttributes.put(name, value);
+		}
+
+		// Replace the placeholders of the serialized values with the values that were written after the body.
+		if (sharedSerializedNames != null) {
+
+			byte[] serializedValues = decoder.readBytes();
+			ObjectInputStream objectInputStream = new ContextClassLoaderObjectInputStream(new ByteArrayInputStream(
+						serializedValues));
+
+			try {
+
+				for (String name : sharedSerializedNames) {
+					preservedAttributes.put(name, objectInputStream.readObject());
+				}
+			}
+			finally {
+				objectInputStream.close();
+			}
+		}
+
+		if (decoder.remaining() != 0) {
+			throw new StreamCorruptedException("Unexpected trailing bytes");
+		}
+
+		return new BridgeRequestScopeState(id, dateCreated, beganInPhase, portletMode,
+				(flags & FLAG_FACES_LIFECYCLE_EXECUTED) != 0, (flags & FLAG_NAVIGATION_OCCURRED) != 0,
+				(flags & FLAG_PORTLET_MODE_CHANGED) != 0, (flags & FLAG_REDIRECT_OCCURRED) != 0,
+				preservedViewStateParam, compressedViewStateParam, preservedActionParameterMap, removedAttributeNames,
+				preservedAttributes, viewStateCompressor);
+	}
+
+	/**
+	 * Encodes the specified state.
+	 *
+	 * @throws  NotSerializableException  If a preserved attribute value is neither one of the inline types nor {@link
+	 *                                    Serializable}.
+	 */
+	public static byte[] encode(BridgeRequestScopeState state) throws IOException {
+
+		// Build the string table.
+		StringTable stringTable = new StringTable();
+		stringTable.add(state.getId());
+
+		PortletMode portletMode = state.getPortletMode();
+
+		if (portletMode != null) {
+			stringTable.add(portletMode.toString());
+		}
+
+		Map<String, String> preservedActionParameterMap = state.getPreservedActionParameterMap();
+
+		for (Map.Entry<String, String> mapEntry : preservedActionParameterMap.entrySet()) {
+			stringTable.add(mapEntry.getKey());
+			stringTable.add(mapEntry.getValue());
+		}
+
+		Set<String> removedAttributeNames = state.getRemovedAttributeNames();
+
+		for (String removedAttributeName : removedAttributeNames) {
+			stringTable.add(removedAttributeName);
+		}
+
+		Map<String, Object> preservedAttributes = state.getPreservedAttributes();
+
+		for (String attributeName : preservedAttributes.keySet()) {
+			stringTable.add(attributeName);
+		}
+
+		// Write the header.
+		byte[] compressedViewStateParam = state.getCompressedViewStateParam();
+		String preservedViewStateParam = (compressedViewStateParam == null) ? state.getPreservedViewStateParam() : null;
+		int flags = 0;
+
+		if (state.isFacesLifecycleExecuted()) {
+			flags |= FLAG_FACES_LIFECYCLE_EXECUTED;
+		}
+
+		if (state.isNavigationOccurred()) {
+			flags |= FLAG_NAVIGATION_OCCURRED;
+		}
+
+		if (state.isPortletModeChanged()) {
+			flags |= FLAG_PORTLET_MODE_CHANGED;
+		}
+
+		if (state.isRedirectOccurred()) {
+			flags |= FLAG_REDIRECT_OCCURRED;
+		}
+
+		if (compressedViewStateParam != null) {
+			flags |= FLAG_VIEW_STATE_COMPRESSED;
+		}
+		else if (preservedViewStateParam != null) {
+			flags |= FLAG_VIEW_STATE_PRESENT;
+		}
+
+		int viewStateLength = (compressedViewStateParam != null)
+			? compressedViewStateParam.length
+			: ((preservedViewStateParam == null) ? 0 : preservedViewStateParam.length());
+		Encoder encoder = new Encoder(64 + viewStateLength);
+		encoder.writeByte(VERSION);
+		encoder.writeByte(flags);
+
+		Bridge.PortletPhase beganInPhase = state.getBeganInPhase();
+		encoder.writeVarInt((beganInPhase == null) ? 0 : (beganInPhase.ordinal() + 1));
+		encoder.writeVarLong(state.getDateCreated());
+
+		// Write the string table followed by the body, which refers to strings by index.
+		List<String> strings = stringTable.getStrings();
+		encoder.writeVarInt(strings.size());
+
+		for (String string : strings) {
+			encoder.writeString(string);
+		}
+
+		encoder.writeVarInt(stringTable.reference(state.getId()));
+		encoder.writeVarInt((portletMode == null) ? 0 : stringTable.reference(portletMode.toString()));
+
+		if (compressedViewStateParam != null) {
+			encoder.writeVarInt(compressedViewStateParam.length);
+			encoder.writeBytes(compressedViewStateParam);
+		}
+		else if (preservedViewStateParam != null) {
+			encoder.writeString(preservedViewStateParam);
+		}
+
+		encoder.writeVarInt(preservedActionParameterMap.size());
+
+		for (Map.Entry<String, String> mapEntry : preservedActionParameterMap.entrySet()) {
+			encoder.writeVarInt(stringTable.reference(mapEntry.getKey()));
+			encoder.writeVarInt(stringTable.reference(mapEntry.getValue()));
+		}
+
+		encoder.writeVarInt(removedAttributeNames.size());
+
+		for (String removedAttributeName : removedAttributeNames) {
+			encoder.writeVarInt(stringTable.reference(removedAttributeName));
+		}
+
+		encoder.writeVarInt(preservedAttributes.size());
+
+		for (Map.Entry<String, Object> mapEntry : preservedAttributes.entrySet()) {
+			encoder.writeVarInt(stringTable.reference(mapEntry.getKey()));
+			encoder.writeValue(mapEntry.getKey(), mapEntry.getValue());
+		}
+
+		encoder.writeSharedSerializedValues();
+
+		return encoder.toByteArray();
+	}
+
+	private static int capacity(int size) {
+		return Math.max(4, (int) (size / 0.75f) + 1);
+	}
+
+	private static final class Decoder {
+
+		// Private Data Members
+		private final byte[] bytes;
+		private int position;
+
+		Decoder(byte[] bytes) {
+			this.bytes = bytes;
+		}
+
+		int readByte() throws IOException {
+
+			if (position >= bytes.length) {
+				throw new StreamCorruptedException("Unexpected end of data");
+			}
+
+			return bytes[position++] & 0xff;
+		}
+
+		byte[] readBytes() throws IOException {
+
+			int length = readVarInt();
+
+			if ((length < 0) || (length > remaining())) {
+				throw new StreamCorruptedException("Invalid byte array length=[" + (length & 0xffffffffL) + "]");
+			}
+
+			byte[] value = Arrays.copyOfRange(bytes, position, position + length);
+			position += length;
+
+			return value;
+		}
+
+		/**
+		 * Reads the number of elements of a table or collection, each of which occupies at least the specified number
+		 * of bytes. Since the count is checked against the number of remaining bytes, corrupt or hostile input cannot
+		 * cause an oversized allocation.
+		 */
+		int readCount(int minimumBytesPerElement) throws IOException {
+
+			int count = readVarInt();
+
+			if ((count < 0) || (count > (remaining() / minimumBytesPerElement))) {
+				throw new StreamCorruptedException("Invalid count=[" + (count & 0xffffffffL) + "]");
+			}
+
+			return count;
+		}
+
+		String readString() throws IOException {
+
+			int length = readVarInt();
+
+			if ((length < 0) || (length > remaining())) {
+				throw new StreamCorruptedException("Invalid string length=[" + (length & 0xffffffffL) + "]");
+			}
+
+			String value = new String(bytes, position, length, UTF_8);
+			position += length;
+
+			return value;
+		}
+
+		String readStringReference(String[] stringTable) throws IOException {
+
+			int reference = readVarInt();
+
+			if (reference == 0) {
+				return null;
+			}
+
+			if ((reference < 0) || (reference > stringTable.length)) {
+				throw new StreamCorruptedException("Invalid string reference=[" + reference + "]");
+			}
+
+			return stringTable[reference - 1];
+		}
+
+		Object readValue() throws IOException, ClassNotFoundException {
+
+			int tag = readByte();
+
+			switch (tag) {
+
+			case TAG_NULL: {
+				return null;
+			}
+
+			case TAG_BOOLEAN_TRUE: {
+				return Boolean.TRUE;
+			}
+
+			case TAG_BOOLEAN_FALSE: {
+				return Boolean.FALSE;
+			}
+
+			case TAG_STRING: {
+				return readString();
+			}
+
+			case TAG_INTEGER: {
+
+				int zigZag = readVarInt();
+
+				return Integer.valueOf((zigZag >>> 1) ^ -(zigZag & 1));
+			}
+
+			case TAG_LONG: {
+
+				long zigZag = readVarLong();
+
+				return Long.valueOf((zigZag >>> 1) ^ -(zigZag & 1L));
+			}
+
+			case TAG_SHARED_SERIALIZED: {
+				return SHARED_SERIALIZED_VALUE;
+			}
+
+			// Written by version 2 and earlier.
+			case TAG_SERIALIZED: {
+
+				int length = readVarInt();
+
+				if ((length < 0) || (length > remaining())) {
+					throw new StreamCorruptedException("Invalid serialized length=[" + (length & 0xffffffffL) + "]");
+				}
+
+				ObjectInputStream objectInputStream = new ContextClassLoaderObjectInputStream(new ByteArrayInputStream(
+							bytes, position, length));
+
+				try {
+					position += length;
+
+					return objectInputStream.readObject();
+				}
+				finally {
+					objectInputStream.close();
+				}
+			}
+
+			default: {
+				throw new StreamCorruptedException("Invalid value tag=[" + tag + "]");
+			}
+			}
+		}
+
+		int readVarInt() throws IOException {
+
+			long value = readVarLong();
+
+			if ((value < 0L) || (value > 0xffffffffL)) {
+				throw new StreamCorruptedException("Invalid varint");
+			}
+
+			return (int) value;
+		}
+
+		long readVarLong() throws IOException {
+
+			long value = 0L;
+
+			for (int shift = 0; shift < 64; shift += 7) {
+				int b = readByte();
+				value |= (long) (b & 0x7f) << shift;
+
+				if ((b & 0x80) == 0) {
+					return value;
+				}
+			}
+
+			throw new StreamCorruptedException("Malformed varint");
+		}
+
+		int remaining() {
+			return bytes.length - position;
+		}
+	}
+
+	private static final class Encoder {
+
+		// Private Data Members
+		private byte[] bytes;
+		private int position;
+		private ByteArrayOutputStream sharedByteArrayOutputStream;
+		private ObjectOutputStream sharedObjectOutputStream;
+
+		Encoder(int initialCapacity) {
+			this.bytes = new byte[initialCapacity];
+		}
+
+		byte[] toByteArray() {
+			return Arrays.copyOf(bytes, position);
+		}
+
+		void writeByte(int value) {
+			ensureCapacity(1);
+			bytes[position++] = (byte) value;
+		}
+
+		void writeBytes(byte[] value) {
+			ensureCapacity(value.length);
+			System.arraycopy(value, 0, bytes, position, value.length);
+			position += value.length;
+		}
+
+		void writeString(String value) {
+
+			byte[] utf8Bytes = value.getBytes(UTF_8);
+			writeVarInt(utf8Bytes.length);
+			writeBytes(utf8Bytes);
+		}
+
+		void writeValue(String name, Object value) throws IOException {
+
+			if (value == null) {
+				writeByte(TAG_NULL);
+			}
+			else if (value instanceof Boolean) {
+				writeByte(((Boolean) value) ? TAG_BOOLEAN_TRUE : TAG_BOOLEAN_FALSE);
+			}
+			else if (value instanceof String) {
+				writeByte(TAG_STRING);
+				writeString((String) value);
+			}
+			else if (value instanceof Integer) {
+
+				int intValue = (Integer) value;
+				writeByte(TAG_INTEGER);
+				writeVarInt((intValue << 1) ^ (intValue >> 31));
+			}
+			else if (value instanceof Long) {
+
+				long longValue = (Long) value;
+				writeByte(TAG_LONG);
+				writeVarLong((longValue << 1) ^ (longValue >> 63));
+			}
+			else if (value instanceof Serializable) {
+
+				if (sharedObjectOutputStream == null) {
+					sharedByteArrayOutputStream = new ByteArrayOutputStream();
+					sharedObjectOutputStream = new ObjectOutputStream(sharedByteArrayOutputStream);
+				}
+
+				sharedObjectOutputStream.writeObject(value);
+				writeByte(TAG_SHARED_SERIALIZED);
+			}
+			else {
+				throw new NotSerializableException("Unable to encode attribute name=[" + name + "] of type=[" +
+					value.getClass().getName() + "]");
+			}
+		}
+
+		/**
+		 * Writes the values that were serialized by {@link #writeValue(String, Object)}, if any.
+		 */
+		void writeSharedSerializedValues() throws IOException {
+
+			if (sharedObjectOutputStream != null) {
+
+				sharedObjectOutputStream.close();
+				writeVarInt(sharedByteArrayOutputStream.size());
+				writeBytes(sharedByteArrayOutputStream.toByteArray());
+			}
+		}
+
+		void writeVarInt(int value) {
+			writeVarLong(value & 0xffffffffL);
+		}
+
+		void writeVarLong(long value) {
+
+			ensureCapacity(10);
+
+			while ((value & ~0x7fL) != 0L) {
+				bytes[position++] = (byte) ((value & 0x7f) | 0x80);
+				value >>>= 7;
+			}
+
+			bytes[position++] = (byte) value;
+		}
+
+		private void ensureCapacity(int length) {
+
+			if ((position + length) > bytes.length) {
+				bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, position + length));
+			}
+		}
+	}
+
+	/**
+	 * Assigns a one-based index to each distinct non-null string, reserving zero for <code>null</code>.
+	 */
+	private static final class StringTable {
+
+		// Private Data Members
+		private final Map<String, Integer> indexes = new HashMap<String, Integer>();
+		private final List<String> strings = new ArrayList<String>();
+
+		void add(String string) {
+
+			if ((string != null) && !indexes.containsKey(string)) {
+				strings.add(string);
+				indexes.put(string, strings.size());
+			}
+		}
+
+		int reference(String string) {
+			return (string == null) ? 0 : indexes.get(string);
+		}
+
+		List<String> getStrings() {
+			return strings;
+		}
+	}
+}
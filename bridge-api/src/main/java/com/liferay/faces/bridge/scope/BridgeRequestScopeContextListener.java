@@ -0,0 +1,115 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.scope;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.portlet.PortletContext;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+
+
+/**
+ * This class is a {@link ServletContextListener} that releases the resources (such as threads and MBeans) that were
+ * acquired by the bridge request scope caches and factories of a web application when the web application is
+ * destroyed, so that they do not outlive a redeployment. The API does not register it automatically, so web applications
+ * that use a factory which acquires such resources (for example {@link
+ * AsynchronousSessionRemovalBridgeRequestScopeCacheFactory}, {@link AdaptiveBridgeRequestScopeCacheFactory} or {@link
+ * InstrumentedBridgeRequestScopeCacheFactory}) must register it in the <code>WEB-INF/web.xml</code> descriptor:
+ *
+ * <pre>
+ &lt;listener&gt;
+   &lt;listener-class&gt;com.liferay.faces.bridge.scope.BridgeRequestScopeContextListener&lt;/listener-class&gt;
+ &lt;/listener&gt;
+ * </pre>
+ *
+ * <p>Otherwise the resources are only released when the JVM exits.</p>
+ *
+ * @author  Neil Griffin
+ */
+public class BridgeRequestScopeContextListener implements ServletContextListener {
+
+	// Private Constants
+	private static final String RESOURCES_ATTRIBUTE_NAME = BridgeRequestScopeContextListener.class.getName();
+
+	/**
+	 * Registers the specified resource to be closed when the web application of the specified {@link PortletContext}
+	 * is destroyed. Since the attributes of a {@link PortletContext} are shared with the {@link ServletContext} of the
+	 * same web application, the resources are available to {@link #contextDestroyed(ServletContextEvent)}. Resources
+	 * are closed in the reverse order of their registration.
+	 */
+	@SuppressWarnings("unchecked")
+	public static void addResource(PortletContext portletContext, Closeable resource) {
+
+		List<Closeable> resources;
+
+		synchronized (BridgeRequestScopeContextListener.class) {
+
+			resources = (List<Closeable>) portletContext.getAttribute(RESOURCES_ATTRIBUTE_NAME);
+
+			if (resources == null) {
+				resources = new CopyOnWriteArrayList<Closeable>();
+				portletContext.setAttribute(RESOURCES_ATTRIBUTE_NAME, resources);
+			}
+		}
+
+		resources.add(resource);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public void contextDestroyed(ServletContextEvent servletContextEvent) {
+
+		ServletContext servletContext = servletContextEvent.getServletContext();
+		List<Closeable> resources;
+
+		synchronized (BridgeRequestScopeContextListener.class) {
+			resources = (List<Closeable>) servletContext.getAttribute(RESOURCES_ATTRIBUTE_NAME);
+			servletContext.removeAttribute(RESOURCES_ATTRIBUTE_NAME);
+		}
+
+		if (resources != null) {
+
+			for (int i = resources.size() - 1; i >= 0; i--) {
+
+				Closeable resource = resources.get(i);
+
+				try {
+					resource.close();
+				}
+				catch (IOException e) {
+
+					// Since the API can't use a logging system like SLF4J the best we can do is print to stderr.
+					System.err.println("Unable to release bridge request scope resource=[" + resource + "]: " + e);
+				}
+				catch (RuntimeException e) {
+
+					// Since the API can't use a logging system like SLF4J the best we can do is print to stderr.
+					System.err.println("Unable to release bridge request scope resource=[" + resource + "]: " + e);
+				}
+			}
+		}
+	}
+
+	@Override
+	public void contextInitialized(ServletContextEvent servletContextEvent) {
+		// no-op
+	}
+}
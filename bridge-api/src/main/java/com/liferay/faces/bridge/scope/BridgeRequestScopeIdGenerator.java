@@ -0,0 +1,190 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.scope;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * <p>This class generates compact, URL-safe values for the unique part of {@link BridgeRequestScope#getId()}. Since the
+ * id is carried as a render parameter when the scope uses {@link BridgeRequestScope.Transport#RENDER_PARAMETER}, it is
+ * encoded into every portlet URL, and so it should be short. Each generated value consists of a node token, a period,
+ * and a counter, both of which are encoded with the URL-safe Base64 alphabet (RFC 4648) without padding.</p>
+ *
+ * <p>The node token of the {@link #getInstance() shared instance} is derived from the time at which the class was
+ * initialized together with random bits (or from the {@link #NODE_ID} system property, if specified), so that values
+ * remain unique across restarts of the JVM and among the nodes of a cluster. The counter is not shared by means of a
+ * lock: each thread reserves a block of {@link #BLOCK_SIZE} values from a global {@link AtomicLong} and then increments
+ * a thread-local cursor, so that threads only contend once per block. As a result, values are unique but are not
+ * ordered across threads.</p>
+ *
+ * @author  Neil Griffin
+ */
+public class BridgeRequestScopeIdGenerator {
+
+	// Public Constants
+	public static final int BLOCK_SIZE = 1024;
+	public static final String NODE_ID = "com.liferay.faces.bridge.nodeId";
+
+	// Private Constants
+	private static final char[] ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_"
+		.toCharArray();
+	private static final char NODE_TOKEN_SEPARATOR = '.';
+	private static final int RANDOM_BITS = 18;
+	private static final BridgeRequestScopeIdGenerator INSTANCE = new BridgeRequestScopeIdGenerator(newNodeToken());
+
+	// Private Data Members
+	private final ThreadLocal<long[]> blocks = new ThreadLocal<long[]>();
+	private final AtomicLong nextBlock = new AtomicLong();
+	private final String prefix;
+
+	/**
+	 * Constructs a new generator.
+	 *
+	 * @param  nodeToken  The token that distinguishes the values of this generator from those of any other generator
+	 *                    (on this node or another, before or after a restart). It must consist of characters of the
+	 *                    URL-safe Base64 alphabet.
+	 */
+	public BridgeRequestScopeIdGenerator(String nodeToken) {
+
+		for (int i = 0; i < nodeToken.length(); i++) {
+
+			if (indexOf(nodeToken.charAt(i)) < 0) {
+				throw new IllegalArgumentException("Invalid character in nodeToken=[" + nodeToken + "]");
+			}
+		}
+
+		this.prefix = nodeToken + NODE_TOKEN_SEPARATOR;
+	}
+
+	/**
+	 * Appends the specified non-negative value to the specified buffer in the URL-safe Base64 alphabet, using as few
+	 * characters as possible.
+	 */
+	static void appendEncoded(StringBuilder buf, long value) {
+
+		char[] chars = new char[11];
+		int pos = chars.length;
+
+		do {
+			chars[--pos] = ALPHABET[(int) (value & 0x3F)];
+			value >>>= 6;
+		}
+		while (value != 0);
+
+		buf.append(chars, pos, chars.length - pos);
+	}
+
+	/**
+	 * Returns the shared instance, which is suitable for the scopes of all portlets on this node.
+	 */
+	public static BridgeRequestScopeIdGenerator getInstance() {
+		return INSTANCE;
+	}
+
+	private static int indexOf(char c) {
+
+		if ((c >= 'A') && (c <= 'Z')) {
+			return c - 'A';
+		}
+		else if ((c >= 'a') && (c <= 'z')) {
+			return c - 'a' + 26;
+		}
+		else if ((c >= '0') && (c <= '9')) {
+			return c - '0' + 52;
+		}
+		else if (c == '-') {
+			return 62;
+		}
+		else if (c == '_') {
+			return 63;
+		}
+
+		return -1;
+	}
+
+	private static String newNodeToken() {
+
+		StringBuilder buf = new StringBuilder();
+		String nodeId = System.getProperty(NODE_ID);
+
+		if (nodeId != null) {
+
+			for (int i = 0; i < nodeId.length(); i++) {
+				char c = nodeId.charAt(i);
+
+				if (indexOf(c) >= 0) {
+					buf.append(c);
+				}
+			}
+
+			buf.append('_');
+		}
+
+		// The start time distinguishes restarts, and the random bits distinguish nodes (or class loaders) that start
+		// within the same millisecond.
+		long randomBits = ThreadLocalRandom.current().nextInt(1 << RANDOM_BITS);
+		appendEncoded(buf, (System.currentTimeMillis() << RANDOM_BITS) | randomBits);
+
+		return buf.toString();
+	}
+
+	/**
+	 * Returns a new value that is unique for this generator. The value consists only of characters of the URL-safe
+	 * Base64 alphabet and the period character, and therefore never contains {@link
+	 * BoundedBridgeRequestScopeCache#ID_SEPARATOR}.
+	 */
+	public String nextId() {
+
+		long[] block = blocks.get();
+
+		if ((block == null) || (block[0] == block[1])) {
+
+			long start = nextBlock.getAndAdd(BLOCK_SIZE);
+
+			if (block == null) {
+				block = new long[2];
+				blocks.set(block);
+			}
+
+			block[0] = start;
+			block[1] = start + BLOCK_SIZE;
+		}
+
+		StringBuilder buf = new StringBuilder(prefix.length() + 4);
+		buf.append(prefix);
+		appendEncoded(buf, block[0]++);
+
+		return buf.toString();
+	}
+
+	/**
+	 * Returns a new id that consists of the specified prefix (such as the value passed to {@link
+	 * BridgeRequestScope#setIdPrefix(String)}, which ends with {@link BoundedBridgeRequestScopeCache#ID_SEPARATOR})
+	 * followed by the value returned by {@link #nextId()}.
+	 */
+	public String nextId(String idPrefix) {
+		return idPrefix + nextId();
+	}
+
+	/**
+	 * Returns the node token, including the trailing separator, that prefixes every value of this generator.
+	 */
+	public String getPrefix() {
+		return prefix;
+	}
+}
@@ -0,0 +1,117 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.scope;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+
+/**
+ * This class is a secondary index from an owner (such as a session id or a portlet name) to the keys of the {@link
+ * BridgeRequestScope} instances that the owner holds. Instances of this class are not thread-safe, and so callers must
+ * provide their own synchronization. The owners of a scope are parsed from its id (see {@link
+ * #parsePortletName(String)} and {@link #parseSessionId(String)}).
+ *
+ * @author  Neil Griffin
+ */
+final class BridgeRequestScopeIndex {
+
+	// Package-Private Constants
+	static final String ID_SEPARATOR = ":::";
+
+	// Private Data Members
+	private final Map<String, Set<String>> keysByOwner = new HashMap<String, Set<String>>();
+
+	/**
+	 * Returns the portlet name of the specified scope id (which has the format <code>
+	 * portletName:::sessionId:::suffix</code>), or <code>null</code> if the id does not have this format.
+	 */
+	static String parsePortletName(String id) {
+
+		if (id != null) {
+			int pos = id.indexOf(ID_SEPARATOR);
+
+			if (pos > 0) {
+				return id.substring(0, pos);
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Returns the session id of the specified scope id (which has the format <code>
+	 * portletName:::sessionId:::suffix</code>), or <code>null</code> if the id does not have this format.
+	 */
+	static String parseSessionId(String id) {
+
+		if (id != null) {
+			int pos = id.indexOf(ID_SEPARATOR);
+
+			if (pos >= 0) {
+				int beginPos = pos + ID_SEPARATOR.length();
+				int endPos = id.indexOf(ID_SEPARATOR, beginPos);
+
+				if (endPos > beginPos) {
+					return id.substring(beginPos, endPos);
+				}
+			}
+		}
+
+		return null;
+	}
+
+	void add(String owner, String key) {
+
+		if (owner != null) {
+			Set<String> keys = keysByOwner.get(owner);
+
+			if (keys == null) {
+				keys = new HashSet<String>(4);
+				keysByOwner.put(owner, keys);
+			}
+
+			keys.add(key);
+		}
+	}
+
+	List<String> getKeys(String owner) {
+
+		Set<String> keys = keysByOwner.get(owner);
+
+		if (keys == null) {
+			return Collections.emptyList();
+		}
+
+		return new ArrayList<String>(keys);
+	}
+
+	void remove(String owner, String key) {
+
+		if (owner != null) {
+			Set<String> keys = keysByOwner.get(owner);
+
+			if ((keys != null) && keys.remove(key) && keys.isEmpty()) {
+				keysByOwner.remove(owner);
+			}
+		}
+	}
+}
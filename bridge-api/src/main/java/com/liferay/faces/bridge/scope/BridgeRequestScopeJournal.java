@@ -0,0 +1,881 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.scope;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+
+/**
+ * <p>This class is a write-behind journal of {@link BridgeRequestScope} instances that is stored in memory-mapped
+ * segment files in a local directory, so that the scopes of in-flight ACTION_PHASE to RENDER_PHASE transitions survive
+ * a restart of the node. Appending to the journal only enqueues a record: a single daemon writer thread copies records
+ * into the mapped segments, so that requests never perform file I/O. If the number of puts that await the writer has
+ * reached the queue capacity, then a put is dropped (and counted) and replaced by a removal of its key, which means
+ * that the journal favors the latency of requests over the durability of scopes, but never reloads a stale state of a
+ * scope. Removals are never dropped (except after {@link #close()}) since a lost removal would resurrect the scope
+ * after a restart. They are not limited by the queue capacity, but are small and are enqueued in order with the
+ * puts.</p>
+ *
+ * <p>Each record is protected by a CRC-32 checksum, so that a record that was torn by a crash is ignored (along with
+ * every subsequent record of its segment) when the journal is reloaded. The writer compacts the journal by copying
+ * the latest record of each live scope into a new segment and deleting the old segments, either when the number of
+ * segments reaches the compaction threshold or when less than half of the journaled bytes belong to live scopes. If a
+ * crash interrupts a compaction, then the old segments are still present and the partially written segment only
+ * repeats their latest state, so no scope is lost or resurrected.</p>
+ *
+ * <p>{@link #reload(BridgeRequestScopeCache, BridgeRequestScopeMarshaller, int)} scans the segments in parallel,
+ * replays their records in order to determine the live scopes, and then unmarshals the live scopes in parallel. It
+ * must be called before {@link #start()}. Records that are appended before the journal is started (such as the
+ * removals of scopes that are evicted while reloading) wait in the queue until it is started. On platforms that do not
+ * permit deleting a file that is still mapped, the old segments are deleted when the JVM exits instead.</p>
+ *
+ * @author  Neil Griffin
+ */
+public class BridgeRequestScopeJournal {
+
+	// Public Constants
+	public static final int DEFAULT_COMPACTION_SEGMENT_COUNT = 4;
+	public static final int DEFAULT_QUEUE_CAPACITY = 4096;
+	public static final int DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+
+	// Private Constants
+	private static final long FLUSH_INTERVAL_MILLIS = 1000L;
+	private static final int RECORD_HEADER_SIZE = 8;
+	private static final byte RECORD_TYPE_CLEAR = 1;
+	private static final byte RECORD_TYPE_PUT = 2;
+	private static final byte RECORD_TYPE_REMOVE = 3;
+	private static final byte RECORD_TYPE_REMOVE_BY_PORTLET = 4;
+	private static final byte RECORD_TYPE_REMOVE_BY_SESSION = 5;
+	private static final String SEGMENT_FILE_EXTENSION = ".journal";
+	private static final String SEGMENT_FILE_PREFIX = "scopes-";
+	private static final Record STOP = new Record(RECORD_TYPE_CLEAR, null, null);
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	// Private Data Members
+	private Segment activeSegment;
+	private final AtomicLong appendCount = new AtomicLong();
+	private final AtomicLong compactionCount = new AtomicLong();
+	private volatile boolean closed;
+	private final int compactionSegmentCount;
+	private final CRC32 crc32 = new CRC32();
+	private final File directory;
+	private final AtomicLong droppedCount = new AtomicLong();
+	private long journaledBytes;
+	private final AtomicInteger liveCount = new AtomicInteger();
+	private final Map<String, Location> liveLocations = new HashMap<String, Location>();
+	private long liveBytes;
+	private final BlockingQueue<Record> queue = new LinkedBlockingQueue<Record>();
+	private final int queueCapacity;
+	private final AtomicInteger queuedPutCount = new AtomicInteger();
+	private final int segmentSize;
+	private final List<Segment> segments = new ArrayList<Segment>();
+	private Thread writer;
+
+	public BridgeRequestScopeJournal(File directory) {
+		this(directory, DEFAULT_SEGMENT_SIZE, DEFAULT_COMPACTION_SEGMENT_COUNT, DEFAULT_QUEUE_CAPACITY);
+	}
+
+	/**
+	 * Constructs a new journal. The directory is created if it does not exist.
+	 *
+	 * @param  directory               The directory that contains the segment files of this journal (and no other
+	 *                                 journal).
+	 * @param  segmentSize             The size of each segment file in bytes, which limits the size of a record.
+	 * @param  compactionSegmentCount  The number of segments at which the journal is compacted.
+	 * @param  queueCapacity           The maximum number of puts that can await the writer.
+	 */
+	public BridgeRequestScopeJournal(File directory, int segmentSize, int compactionSegmentCount, int queueCapacity) {
+
+		if (segmentSize < 4096) {
+			throw new IllegalArgumentException("segmentSize must be at least 4096");
+		}
+
+		if (compactionSegmentCount < 2) {
+			throw new IllegalArgumentException("compactionSegmentCount must be at least 2");
+		}
+
+		if (queueCapacity < 1) {
+			throw new IllegalArgumentException("queueCapacity must be at least 1");
+		}
+
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IllegalArgumentException("Unable to create directory=[" + directory + "]");
+		}
+
+		this.directory = directory;
+		this.segmentSize = segmentSize;
+		this.compactionSegmentCount = compactionSegmentCount;
+		this.queueCapacity = queueCapacity;
+	}
+
+	private static String parseSegmentId(String fileName) {
+
+		if (fileName.startsWith(SEGMENT_FILE_PREFIX) && fileName.endsWith(SEGMENT_FILE_EXTENSION)) {
+			return fileName.substring(SEGMENT_FILE_PREFIX.length(),
+					fileName.length() - SEGMENT_FILE_EXTENSION.length());
+		}
+
+		return null;
+	}
+
+	/**
+	 * Enqueues a record indicating that all scopes were removed.
+	 *
+	 * @return  <code>true</code> if the record was enqueued, or <code>false</code> if the journal was closed.
+	 */
+	public boolean appendClear() {
+		return enqueue(new Record(RECORD_TYPE_CLEAR, null, null));
+	}
+
+	/**
+	 * Enqueues a record of the specified marshalled scope.
+	 *
+	 * @return  <code>true</code> if the record was enqueued, or <code>false</code> if it was dropped (in which case a
+	 *          removal of the key was enqueued instead, unless the journal was closed).
+	 */
+	public boolean appendPut(String key, byte[] bytes) {
+		return enqueue(new Record(RECORD_TYPE_PUT, key, bytes));
+	}
+
+	/**
+	 * Enqueues a record indicating that the scope with the specified key was removed.
+	 *
+	 * @return  <code>true</code> if the record was enqueued, or <code>false</code> if the journal was closed.
+	 */
+	public boolean appendRemove(String key) {
+		return enqueue(new Record(RECORD_TYPE_REMOVE, key, null));
+	}
+
+	/**
+	 * Enqueues a record indicating that the scopes of the specified portlet were removed.
+	 *
+	 * @return  <code>true</code> if the record was enqueued, or <code>false</code> if the journal was closed.
+	 */
+	public boolean appendRemoveByPortlet(String portletName) {
+		return enqueue(new Record(RECORD_TYPE_REMOVE_BY_PORTLET, portletName, null));
+	}
+
+	/**
+	 * Enqueues a record indicating that the scopes of the specified session were removed.
+	 *
+	 * @return  <code>true</code> if the record was enqueued, or <code>false</code> if the journal was closed.
+	 */
+	public boolean appendRemoveBySession(String sessionId) {
+		return enqueue(new Record(RECORD_TYPE_REMOVE_BY_SESSION, sessionId, null));
+	}
+
+	/**
+	 * Writes the records that are still enqueued, flushes the segments to the storage device, and stops the writer
+	 * thread. Records that are appended afterwards are dropped.
+	 */
+	public void close() {
+
+		Thread writerThread;
+
+		synchronized (this) {
+			writerThread = writer;
+			closed = true;
+		}
+
+		if (writerThread != null) {
+
+			try {
+				queue.put(STOP);
+				writerThread.join();
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Reloads the scopes of the journal into the specified cache.
+	 *
+	 * @param   bridgeRequestScopeCache       The cache into which the live scopes are put (directly, rather than by
+	 *                                        means of a cache that would journal them again).
+	 * @param   bridgeRequestScopeMarshaller  The marshaller that was used to marshal the scopes.
+	 * @param   parallelism                   The number of threads that scan segments and unmarshal scopes.
+	 *
+	 * @return  The number of scopes that were reloaded.
+	 *
+	 * @throws  IOException           If a segment file cannot be read.
+	 * @throws  IllegalStateException  If the journal has already been started.
+	 */
+	public synchronized int reload(final BridgeRequestScopeCache bridgeRequestScopeCache,
+		final BridgeRequestScopeMarshaller bridgeRequestScopeMarshaller, int parallelism) throws IOException {
+
+		if ((writer != null) || !segments.isEmpty()) {
+			throw new IllegalStateException("The journal can only be reloaded once, before it is started");
+		}
+
+		for (String fileName : getSegmentFileNames()) {
+			long id = Long.parseLong(parseSegmentId(fileName), 16);
+			segments.add(new Segment(id, new File(directory, fileName), segmentSize));
+		}
+
+		ExecutorService executorService = Executors.newFixedThreadPool(Math.max(1, parallelism));
+
+		try {
+
+			// Scan the segments in parallel.
+			List<Future<List<Location>>> scans = new ArrayList<Future<List<Location>>>();
+
+			for (final Segment segment : segments) {
+				scans.add(executorService.submit(new Callable<List<Location>>() {
+
+							@Override
+							public List<Location> call() {
+								return segment.scan();
+							}
+						}));
+			}
+
+			// Replay the records in order.
+			for (int i = 0; i < scans.size(); i++) {
+
+				for (Location location : getResult(scans.get(i))) {
+					replay(location);
+				}
+			}
+
+			// Unmarshal the live scopes in parallel.
+			List<Location> liveLocationList = new ArrayList<Location>(liveLocations.values());
+			int chunkCount = Math.max(1, Math.min(parallelism, liveLocationList.size()));
+			List<Future<Integer>> unmarshals = new ArrayList<Future<Integer>>();
+
+			for (int chunk = 0; chunk < chunkCount; chunk++) {
+
+				final List<Location> chunkLocations = liveLocationList.subList((chunk * liveLocationList.size()) /
+						chunkCount, ((chunk + 1) * liveLocationList.size()) / chunkCount);
+
+				unmarshals.add(executorService.submit(new Callable<Integer>() {
+
+							@Override
+							public Integer call() {
+
+								int count = 0;
+
+								for (Location location : chunkLocations) {
+
+									try {
+										BridgeRequestScope bridgeRequestScope = bridgeRequestScopeMarshaller.unmarshal(
+												location.getPayload());
+										bridgeRequestScopeCache.put(location.key, bridgeRequestScope);
+										count++;
+									}
+									catch (Exception e) {
+
+										// Since the API can't use a logging system like SLF4J the best we can do is
+										// print to stderr.
+										System.err.println("Unable to reload bridge request scope key=[" +
+											location.key + "]: " + e);
+									}
+								}
+
+								return count;
+							}
+						}));
+			}
+
+			int reloadedCount = 0;
+
+			for (Future<Integer> unmarshal : unmarshals) {
+				reloadedCount += getResult(unmarshal);
+			}
+
+			return reloadedCount;
+		}
+		finally {
+			executorService.shutdown();
+		}
+	}
+
+	/**
+	 * Starts the writer thread. New records are appended to a new segment.
+	 *
+	 * @throws  IOException  If the new segment cannot be created.
+	 */
+	public synchronized void start() throws IOException {
+
+		if (writer != null) {
+			throw new IllegalStateException("The journal has already been started");
+		}
+
+		long nextId = 0L;
+
+		if (!segments.isEmpty()) {
+			nextId = segments.get(segments.size() - 1).id + 1L;
+		}
+		else {
+
+			// The journal was not reloaded, so the new segment must not overwrite the existing ones.
+			for (String fileName : getSegmentFileNames()) {
+				nextId = Math.max(nextId, Long.parseLong(parseSegmentId(fileName), 16) + 1L);
+			}
+		}
+
+		activeSegment = newSegment(nextId);
+		writer = new Thread(new Writer(), BridgeRequestScopeJournal.class.getSimpleName() + "-Writer");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	private void append(Record record) throws IOException {
+
+		byte[] keyBytes = (record.key == null) ? new byte[0] : record.key.getBytes(UTF_8);
+		int payloadLength = (record.payload == null) ? 0 : record.payload.length;
+		int bodyLength = 1 + 4 + keyBytes.length + payloadLength;
+		int recordLength = RECORD_HEADER_SIZE + bodyLength;
+
+		if (recordLength > (segmentSize - 4)) {
+			droppedCount.incrementAndGet();
+
+			// Since the API can't use a logging system like SLF4J the best we can do is print to stderr.
+			System.err.println("Unable to journal bridge request scope key=[" + record.key + "] since its size=[" +
+				recordLength + "] exceeds the segment size");
+
+			// The journal must not retain an earlier state of the scope.
+			append(new Record(RECORD_TYPE_REMOVE, record.key, null));
+
+			return;
+		}
+
+		ByteBuffer body = ByteBuffer.allocate(bodyLength);
+		body.put(record.type);
+		body.putInt(keyBytes.length);
+		body.put(keyBytes);
+
+		if (record.payload != null) {
+			body.put(record.payload);
+		}
+
+		crc32.reset();
+		crc32.update(body.array(), 0, bodyLength);
+
+		Location location = write(bodyLength, (int) crc32.getValue(), body.array(), record.key, record.type);
+		replay(location);
+		appendCount.incrementAndGet();
+	}
+
+	private void compact() throws IOException {
+
+		// Copy the latest record of each live scope, in the order in which they were written, into new segments.
+		List<Location> locations = new ArrayList<Location>(liveLocations.values());
+		List<Segment> oldSegments = new ArrayList<Segment>(segments);
+		Collections.sort(locations);
+
+		activeSegment.force();
+		activeSegment = newSegment(activeSegment.id + 1L);
+		liveLocations.clear();
+		liveBytes = 0L;
+		journaledBytes = 0L;
+
+		for (Location location : locations) {
+			byte[] body = location.getBody();
+			Location copy = write(body.length, location.getChecksum(), body, location.key, RECORD_TYPE_PUT);
+			replay(copy);
+		}
+
+		activeSegment.force();
+
+		for (Segment oldSegment : oldSegments) {
+			segments.remove(oldSegment);
+			oldSegment.delete();
+		}
+
+		compactionCount.incrementAndGet();
+	}
+
+	private boolean enqueue(Record record) {
+
+		if (closed) {
+			droppedCount.incrementAndGet();
+
+			return false;
+		}
+
+		if (record.type == RECORD_TYPE_PUT) {
+
+			if (queuedPutCount.incrementAndGet() > queueCapacity) {
+				queuedPutCount.decrementAndGet();
+				droppedCount.incrementAndGet();
+
+				// If the journal retained an earlier state of the scope, then the scope would be reloaded in a stale
+				// state, so the dropped put is replaced by a removal.
+				queue.add(new Record(RECORD_TYPE_REMOVE, record.key, null));
+
+				return false;
+			}
+		}
+
+		queue.add(record);
+
+		return true;
+	}
+
+	private Segment newSegment(long id) throws IOException {
+
+		Segment segment = new Segment(id, new File(directory, String.format("%s%016x%s", SEGMENT_FILE_PREFIX, id,
+						SEGMENT_FILE_EXTENSION)), segmentSize);
+		segments.add(segment);
+
+		return segment;
+	}
+
+	private void replay(Location location) {
+
+		journaledBytes += location.length;
+
+		switch (location.type) {
+
+		case RECORD_TYPE_PUT: {
+			Location previousLocation = liveLocations.put(location.key, location);
+
+			if (previousLocation != null) {
+				liveBytes -= previousLocation.length;
+			}
+
+			liveBytes += location.length;
+
+			break;
+		}
+
+		case RECORD_TYPE_REMOVE: {
+			removeLiveLocation(location.key);
+
+			break;
+		}
+
+		case RECORD_TYPE_REMOVE_BY_PORTLET: {
+
+			for (String key : new ArrayList<String>(liveLocations.keySet())) {
+
+				if (location.key.equals(BridgeRequestScopeIndex.parsePortletName(key))) {
+					removeLiveLocation(key);
+				}
+			}
+
+			break;
+		}
+
+		case RECORD_TYPE_REMOVE_BY_SESSION: {
+
+			for (String key : new ArrayList<String>(liveLocations.keySet())) {
+
+				if (location.key.equals(BridgeRequestScopeIndex.parseSessionId(key))) {
+					removeLiveLocation(key);
+				}
+			}
+
+			break;
+		}
+
+		default: {
+			liveLocations.clear();
+			liveBytes = 0L;
+
+			break;
+		}
+		}
+
+		liveCount.set(liveLocations.size());
+	}
+
+	private void removeLiveLocation(String key) {
+
+		Location location = liveLocations.remove(key);
+
+		if (location != null) {
+			liveBytes -= location.length;
+		}
+	}
+
+	private Location write(int bodyLength, int checksum, byte[] body, String key, byte type) throws IOException {
+
+		int recordLength = RECORD_HEADER_SIZE + bodyLength;
+
+		if (!activeSegment.hasRemaining(recordLength)) {
+			activeSegment.force();
+			activeSegment = newSegment(activeSegment.id + 1L);
+		}
+
+		return activeSegment.write(bodyLength, checksum, body, key, type);
+	}
+
+	private boolean isCompactionNeeded() {
+
+		// A compaction that would not reclaim any bytes is pointless, even if the threshold has been reached.
+		return (segments.size() > 1) &&
+			(((liveBytes * 2L) < journaledBytes) ||
+				((segments.size() >= compactionSegmentCount) && (liveBytes < journaledBytes)));
+	}
+
+	/**
+	 * Returns the number of records that were written by the writer thread.
+	 */
+	public long getAppendCount() {
+		return appendCount.get();
+	}
+
+	/**
+	 * Returns the number of times that the journal was compacted.
+	 */
+	public long getCompactionCount() {
+		return compactionCount.get();
+	}
+
+	public File getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * Returns the number of records that were dropped because the queue capacity for puts was reached, the journal was
+	 * closed, or the record was larger than a segment.
+	 */
+	public long getDroppedCount() {
+		return droppedCount.get();
+	}
+
+	/**
+	 * Returns the number of scopes whose latest record is a put, as of the most recent record that was written.
+	 */
+	public int getLiveCount() {
+		return liveCount.get();
+	}
+
+	/**
+	 * Returns the number of records that are awaiting the writer thread.
+	 */
+	public int getQueueSize() {
+		return queue.size();
+	}
+
+	private String[] getSegmentFileNames() throws IOException {
+
+		File[] files = directory.listFiles();
+
+		if (files == null) {
+			throw new IOException("Unable to list directory=[" + directory + "]");
+		}
+
+		List<String> fileNames = new ArrayList<String>();
+
+		for (File file : files) {
+
+			if (parseSegmentId(file.getName()) != null) {
+				fileNames.add(file.getName());
+			}
+		}
+
+		// Segment ids are fixed-width hexadecimal numbers, so the natural order of the file names is the order in
+		// which the segments were written.
+		String[] sortedFileNames = fileNames.toArray(new String[fileNames.size()]);
+		Arrays.sort(sortedFileNames);
+
+		return sortedFileNames;
+	}
+
+	private <T> T getResult(Future<T> future) throws IOException {
+
+		try {
+			return future.get();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		}
+		catch (ExecutionException e) {
+			throw new IOException(e.getCause());
+		}
+	}
+
+	/**
+	 * The position and type of a record in a segment.
+	 */
+	private static final class Location implements Comparable<Location> {
+
+		// Private Data Members
+		private final String key;
+		private final int length;
+		private final int offset;
+		private final Segment segment;
+		private final byte type;
+
+		Location(Segment segment, int offset, int length, byte type, String key) {
+			this.segment = segment;
+			this.offset = offset;
+			this.length = length;
+			this.type = type;
+			this.key = key;
+		}
+
+		@Override
+		public int compareTo(Location location) {
+
+			if (segment.id != location.segment.id) {
+				return (segment.id < location.segment.id) ? -1 : 1;
+			}
+
+			return (offset < location.offset) ? -1 : ((offset == location.offset) ? 0 : 1);
+		}
+
+		byte[] getBody() {
+
+			byte[] body = new byte[length - RECORD_HEADER_SIZE];
+			ByteBuffer buffer = segment.buffer.duplicate();
+			buffer.position(offset + RECORD_HEADER_SIZE);
+			buffer.get(body);
+
+			return body;
+		}
+
+		int getChecksum() {
+			return segment.buffer.getInt(offset + 4);
+		}
+
+		byte[] getPayload() {
+
+			int keyLength = segment.buffer.getInt(offset + RECORD_HEADER_SIZE + 1);
+			int payloadOffset = offset + RECORD_HEADER_SIZE + 1 + 4 + keyLength;
+			byte[] payload = new byte[(offset + length) - payloadOffset];
+			ByteBuffer buffer = segment.buffer.duplicate();
+			buffer.position(payloadOffset);
+			buffer.get(payload);
+
+			return payload;
+		}
+	}
+
+	private static final class Record {
+
+		// Private Data Members
+		private final String key;
+		private final byte[] payload;
+		private final byte type;
+
+		Record(byte type, String key, byte[] payload) {
+			this.type = type;
+			this.key = key;
+			this.payload = payload;
+		}
+	}
+
+	/**
+	 * A memory-mapped segment file. Each record consists of the length of its body, the CRC-32 checksum of its body,
+	 * and the body, which consists of the record type, the length of the key, the UTF-8 encoded key, and the payload.
+	 * A length of zero marks the end of the records, since the unwritten part of a mapped file is filled with zeros.
+	 */
+	private static final class Segment {
+
+		// Private Data Members
+		private final MappedByteBuffer buffer;
+		private final File file;
+		private final long id;
+		private int position;
+
+		Segment(long id, File file, int segmentSize) throws IOException {
+
+			this.id = id;
+			this.file = file;
+
+			RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+
+			try {
+				FileChannel fileChannel = randomAccessFile.getChannel();
+				long size = Math.max(segmentSize, fileChannel.size());
+
+				// The mapping remains valid after the channel is closed.
+				this.buffer = fileChannel.map(FileChannel.MapMode.READ_WRITE, 0L, size);
+			}
+			finally {
+				randomAccessFile.close();
+			}
+		}
+
+		void delete() {
+
+			if (!file.delete()) {
+				file.deleteOnExit();
+			}
+		}
+
+		void force() {
+			buffer.force();
+		}
+
+		boolean hasRemaining(int recordLength) {
+
+			// Four bytes are reserved for the zero length that marks the end of the records.
+			return (position + recordLength) <= (buffer.capacity() - 4);
+		}
+
+		List<Location> scan() {
+
+			List<Location> locations = new ArrayList<Location>();
+			ByteBuffer readBuffer = buffer.duplicate();
+			CRC32 checksum = new CRC32();
+			int offset = 0;
+
+			while ((offset + RECORD_HEADER_SIZE) <= readBuffer.capacity()) {
+
+				int bodyLength = readBuffer.getInt(offset);
+
+				if ((bodyLength < 5) || ((offset + RECORD_HEADER_SIZE + bodyLength) > readBuffer.capacity())) {
+					break;
+				}
+
+				byte[] body = new byte[bodyLength];
+				readBuffer.position(offset + RECORD_HEADER_SIZE);
+				readBuffer.get(body);
+				checksum.reset();
+				checksum.update(body, 0, bodyLength);
+
+				if ((int) checksum.getValue() != readBuffer.getInt(offset + 4)) {
+
+					// Since the API can't use a logging system like SLF4J the best we can do is print to stderr.
+					System.err.println("Ignoring torn record at offset=[" + offset + "] of journal segment=[" + file +
+						"]");
+
+					break;
+				}
+
+				int keyLength = ByteBuffer.wrap(body, 1, 4).getInt();
+				String key = (keyLength == 0) ? null : new String(body, 5, keyLength, UTF_8);
+				locations.add(new Location(this, offset, RECORD_HEADER_SIZE + bodyLength, body[0], key));
+				offset += RECORD_HEADER_SIZE + bodyLength;
+			}
+
+			position = offset;
+
+			return locations;
+		}
+
+		Location write(int bodyLength, int checksum, byte[] body, String key, byte type) {
+
+			int offset = position;
+
+			// The length is written last so that a reader never observes a length whose body is incomplete.
+			buffer.putInt(offset + 4, checksum);
+
+			ByteBuffer writeBuffer = buffer.duplicate();
+			writeBuffer.position(offset + RECORD_HEADER_SIZE);
+			writeBuffer.put(body, 0, bodyLength);
+			buffer.putInt(offset, bodyLength);
+			position = offset + RECORD_HEADER_SIZE + bodyLength;
+
+			return new Location(this, offset, RECORD_HEADER_SIZE + bodyLength, type, key);
+		}
+	}
+
+	/**
+	 * Drains the queue into the active segment, flushes the active segment periodically, and compacts the journal
+	 * when necessary.
+	 */
+	private final class Writer implements Runnable {
+
+		@Override
+		public void run() {
+
+			long lastFlushMillis = System.currentTimeMillis();
+			boolean dirty = false;
+			List<Record> batch = new ArrayList<Record>();
+
+			while (true) {
+
+				try {
+					Record record = queue.poll(FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+					batch.clear();
+
+					if (record != null) {
+						batch.add(record);
+						queue.drainTo(batch);
+					}
+
+					boolean stop = false;
+
+					for (Record batchRecord : batch) {
+
+						if (batchRecord == STOP) {
+							stop = true;
+						}
+						else {
+
+							if (batchRecord.type == RECORD_TYPE_PUT) {
+								queuedPutCount.decrementAndGet();
+							}
+
+							append(batchRecord);
+							dirty = true;
+						}
+					}
+
+					if (isCompactionNeeded()) {
+						compact();
+					}
+
+					long currentTimeMillis = System.currentTimeMillis();
+
+					if (stop || (dirty && ((currentTimeMillis - lastFlushMillis) >= FLUSH_INTERVAL_MILLIS))) {
+						activeSegment.force();
+						lastFlushMillis = currentTimeMillis;
+						dirty = false;
+					}
+
+					if (stop) {
+						break;
+					}
+				}
+				catch (InterruptedException e) {
+					break;
+				}
+				catch (IOException e) {
+
+					// Since the API can't use a logging system like SLF4J the best we can do is print to stderr.
+					System.err.println("Unable to write to bridge request scope journal=[" + directory + "]: " + e);
+				}
+				catch (RuntimeException e) {
+
+					// Since the API can't use a logging system like SLF4J the best we can do is print to stderr.
+					e.printStackTrace();
+				}
+			}
+		}
+	}
+}
@@ -30,7 +30,9 @@ public interface BridgeRequestScopeManager {
 
 	/**
 	 * Removes all {@link BridgeRequestScope} instances that are associated with the specified {@link FacesContext}.
-	 * This should be called if the portlet container unloads an portlet individually.
+	 * This should be called if the portlet container unloads an portlet individually. If the cache is an
+	 * {@link IndexedBridgeRequestScopeCache}, then implementations should delegate to {@link
+	 * IndexedBridgeRequestScopeCache#removeBridgeRequestScopesByPortlet(String)} rather than iterating the cache.
 	 *
 	 * @param  portletConfig  The current {@link PortletConfig}.
 	 */
@@ -39,7 +41,9 @@ public interface BridgeRequestScopeManager {
 	/**
 	 * Removes all of the {@link BridgeRequestScope} instances from the underlying cache that are associated with the
 	 * specified {@link HttpSession}. This method is meant to be called from a {@link HttpSessionListener} when a
-	 * session is invalidated or expires.
+	 * session is invalidated or expires. If the cache is an {@link
+	 * IndexedBridgeRequestScopeCache}, then implementations should delegate to {@link
+	 * IndexedBridgeRequestScopeCache#removeBridgeRequestScopesBySession(String)} rather than iterating the cache.
 	 *
 	 * @param  httpSession  The current {@link HttpSession}.
 	 */
@@ -0,0 +1,44 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.scope;
+
+import java.io.IOException;
+
+
+/**
+ * This interface defines a contract for converting a {@link BridgeRequestScope} to and from bytes, so that it can be
+ * stored in a {@link RemoteBridgeRequestScopeStore}. The default implementation is {@link
+ * SerializingBridgeRequestScopeMarshaller}.
+ *
+ * @author  Neil Griffin
+ */
+public interface BridgeRequestScopeMarshaller {
+
+	/**
+	 * Converts the specified scope to bytes.
+	 *
+	 * @throws  IOException  If the scope (or one of its preserved attributes) cannot be converted.
+	 */
+	public byte[] marshal(BridgeRequestScope bridgeRequestScope) throws IOException;
+
+	/**
+	 * Converts the specified bytes (that were produced by {@link #marshal(BridgeRequestScope)}) back to a scope.
+	 *
+	 * @throws  IOException             If the bytes are malformed.
+	 * @throws  ClassNotFoundException  If the class of the scope or of one of its attributes cannot be found.
+	 */
+	public BridgeRequestScope unmarshal(byte[] bytes) throws IOException, ClassNotFoundException;
+}
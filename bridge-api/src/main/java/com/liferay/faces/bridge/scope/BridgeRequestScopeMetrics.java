@@ -0,0 +1,150 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.scope;
+
+/**
+ * <p>This interface defines a service provider contract for receiving measurements from the bridge request scope
+ * subsystem, as recorded by {@link InstrumentedBridgeRequestScopeCache}, {@link InstrumentedBridgeRequestScopeManager}
+ * and {@link InstrumentedBridgeRequestScope}. The measurements are always recorded by {@link
+ * StripedBridgeRequestScopeMetrics} (which backs the JMX MBean). Additional implementations (for example, adapters to a
+ * metrics library) can be registered as services in a <code>
+ * META-INF/services/com.liferay.faces.bridge.scope.BridgeRequestScopeMetrics</code> file of the web application, and
+ * must provide a public no-arg constructor.</p>
+ *
+ * <p>Implementations are called on the request processing path by many threads concurrently, and so they must be
+ * thread-safe and should avoid contended locks or shared mutable counters.</p>
+ *
+ * @author  Neil Griffin
+ */
+public interface BridgeRequestScopeMetrics {
+
+	/**
+	 * Determines whether or not the size in bytes of the scope that is about to be saved should be measured. Since
+	 * measuring the size requires encoding the scope with {@link BridgeRequestScopeCodec}, implementations should only
+	 * return <code>true</code> for a small sample of calls.
+	 */
+	public boolean isScopeSizeSampled();
+
+	/**
+	 * Records that a call to {@link BridgeRequestScopeCache#get(Object)} found a scope.
+	 */
+	public void recordCacheHit();
+
+	/**
+	 * Records that a call to {@link BridgeRequestScopeCache#get(Object)} did not find a scope.
+	 */
+	public void recordCacheMiss();
+
+	/**
+	 * Records that a scope was put into the {@link BridgeRequestScopeCache}.
+	 */
+	public void recordCachePut();
+
+	/**
+	 * Records that a scope was removed from a {@link BoundedBridgeRequestScopeCache}.
+	 *
+	 * @param  removalCause  The reason that the scope was removed.
+	 */
+	public void recordRemoval(BoundedBridgeRequestScopeCache.RemovalCause removalCause);
+
+	/**
+	 * Records a call to {@link BridgeRequestScope#restoreState(javax.faces.context.FacesContext)}.
+	 *
+	 * @param  nanos  The elapsed time of the call in nanoseconds.
+	 */
+	public void recordRestoreState(long nanos);
+
+	/**
+	 * Records a call to {@link BridgeRequestScope#saveState(javax.faces.context.FacesContext)}.
+	 *
+	 * @param  attributeCount  The number of request attributes preserved by the scope, or <code>-1</code> if unknown.
+	 * @param  byteCount       The encoded size of the scope in bytes, or <code>-1</code> if the size was not sampled.
+	 * @param  nanos           The elapsed time of the call in nanoseconds.
+	 */
+	public void recordSaveState(int attributeCount, long byteCount, long nanos);
+
+	/**
+	 * Records a call to {@link BridgeRequestScopeManager#removeBridgeRequestScopesByPortlet(
+	 * javax.portlet.PortletConfig)}.
+	 *
+	 * @param  nanos  The elapsed time of the call in nanoseconds.
+	 */
+	public void recordPortletRemoval(long nanos);
+
+	/**
+	 * Records that the scopes of a portlet were removed from the {@link BridgeRequestScopeCache}.
+	 *
+	 * @param  scopeCount  The number of scopes that were removed.
+	 */
+	public void recordScopesRemovedByPortlet(int scopeCount);
+
+	/**
+	 * Records that the scopes of a session were removed from the {@link BridgeRequestScopeCache}.
+	 *
+	 * @param  scopeCount  The number of scopes that the session held.
+	 */
+	public void recordScopesRemovedBySession(int scopeCount);
+
+	/**
+	 * Records that a session exceeded its memory budget, causing its oldest scopes to be evicted by {@link
+	 * SessionBudgetBridgeRequestScopeCache}.
+	 *
+	 * @param  scopeCount  The number of scopes that were evicted.
+	 * @param  byteCount   The estimated size in bytes of the scopes that were evicted.
+	 */
+	public void recordSessionBudgetExceeded(int scopeCount, long byteCount);
+
+	/**
+	 * Records a call to {@link BridgeRequestScopeManager#removeBridgeRequestScopesBySession(
+	 * javax.servlet.http.HttpSession)}.
+	 *
+	 * @param  nanos  The elapsed time of the call in nanoseconds.
+	 */
+	public void recordSessionRemoval(long nanos);
+
+	/**
+	 * Records that the queue of {@link AsynchronousSessionRemovalBridgeRequestScopeCache} was full, causing the scopes
+	 * of a session to be removed synchronously.
+	 */
+	public void recordSessionRemovalBackpressure();
+
+	/**
+	 * Records that {@link AsynchronousSessionRemovalBridgeRequestScopeCache} removed the scopes of a batch of sessions.
+	 *
+	 * @param  sessionCount  The number of sessions in the batch.
+	 * @param  scopeCount    The number of scopes that were removed.
+	 * @param  nanos         The elapsed time of the batch in nanoseconds.
+	 */
+	public void recordSessionRemovalBatch(int sessionCount, int scopeCount, long nanos);
+
+	/**
+	 * Records that {@link ViewStateCompressor} attempted to compress a preserved view state.
+	 *
+	 * @param  byteCount            The size in bytes of the view state.
+	 * @param  compressedByteCount  The size in bytes of the compressed view state, which is equal to the size of the
+	 *                              view state if it did not become smaller.
+	 * @param  nanos                The elapsed time of the compression in nanoseconds.
+	 */
+	public void recordViewStateCompressed(int byteCount, int compressedByteCount, long nanos);
+
+	/**
+	 * Records that {@link ViewStateCompressor} decompressed a preserved view state.
+	 *
+	 * @param  byteCount  The size in bytes of the decompressed view state.
+	 * @param  nanos      The elapsed time of the decompression in nanoseconds.
+	 */
+	public void recordViewStateDecompressed(int byteCount, long nanos);
+}
@@ -0,0 +1,248 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.scope;
+
+import java.io.Closeable;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import javax.portlet.PortletContext;
+import javax.servlet.ServletContext;
+
+import com.liferay.faces.bridge.context.url.CachingBridgeURIFactory;
+
+
+/**
+ * This class provides access to the {@link BridgeRequestScopeMetrics} of a web application, which are stored as an
+ * application-scoped attribute so that the instrumented cache, manager and scopes all record to the same instance.
+ *
+ * @author  Neil Griffin
+ */
+public final class BridgeRequestScopeMetricsRegistry {
+
+	// Public Constants
+	public static final String JMX_DOMAIN = "com.liferay.faces.bridge";
+
+	// Private Constants
+	private static final String CACHING_BRIDGE_URI_FACTORY_ATTRIBUTE_NAME = CachingBridgeURIFactory.class.getName();
+	private static final String METRICS_ATTRIBUTE_NAME = BridgeRequestScopeMetrics.class.getName();
+	private static final String STRIPED_METRICS_ATTRIBUTE_NAME = StripedBridgeRequestScopeMetrics.class.getName();
+
+	private BridgeRequestScopeMetricsRegistry() {
+		throw new AssertionError();
+	}
+
+	/**
+	 * Returns the metrics of the web application of the specified {@link PortletContext}, creating them if necessary.
+	 * The metrics are comprised of a {@link StripedBridgeRequestScopeMetrics} and any implementations of {@link
+	 * BridgeRequestScopeMetrics} that are registered as services.
+	 */
+	public static BridgeRequestScopeMetrics getBridgeRequestScopeMetrics(PortletContext portletContext) {
+
+		BridgeRequestScopeMetrics bridgeRequestScopeMetrics = (BridgeRequestScopeMetrics) portletContext.getAttribute(
+				METRICS_ATTRIBUTE_NAME);
+
+		if (bridgeRequestScopeMetrics == null) {
+
+			synchronized (BridgeRequestScopeMetricsRegistry.class) {
+
+				bridgeRequestScopeMetrics = (BridgeRequestScopeMetrics) portletContext.getAttribute(
+						METRICS_ATTRIBUTE_NAME);
+
+				if (bridgeRequestScopeMetrics == null) {
+
+					StripedBridgeRequestScopeMetrics stripedBridgeRequestScopeMetrics =
+						new StripedBridgeRequestScopeMetrics();
+					List<BridgeRequestScopeMetrics> metricsList = new ArrayList<BridgeRequestScopeMetrics>();
+					metricsList.add(stripedBridgeRequestScopeMetrics);
+					metricsList.addAll(loadServices());
+
+					if (metricsList.size() == 1) {
+						bridgeRequestScopeMetrics = stripedBridgeRequestScopeMetrics;
+					}
+					else {
+						bridgeRequestScopeMetrics = new CompositeBridgeRequestScopeMetrics(metricsList);
+					}
+
+					portletContext.setAttribute(STRIPED_METRICS_ATTRIBUTE_NAME, stripedBridgeRequestScopeMetrics);
+					portletContext.setAttribute(METRICS_ATTRIBUTE_NAME, bridgeRequestScopeMetrics);
+				}
+			}
+		}
+
+		return bridgeRequestScopeMetrics;
+	}
+
+	/**
+	 * Returns the metrics of the web application of the specified {@link ServletContext}, or <code>null</code> if they
+	 * have not yet been created by {@link #getBridgeRequestScopeMetrics(PortletContext)}. Since the attributes of a
+	 * {@link PortletContext} are shared with the {@link ServletContext} of the same web application, this method can be
+	 * called from a {@link javax.servlet.http.HttpSessionListener}.
+	 */
+	public static BridgeRequestScopeMetrics getBridgeRequestScopeMetrics(ServletContext servletContext) {
+		return (BridgeRequestScopeMetrics) servletContext.getAttribute(METRICS_ATTRIBUTE_NAME);
+	}
+
+	/**
+	 * Returns the {@link CachingBridgeURIFactory} that was registered for the web application of the specified {@link
+	 * PortletContext} by {@link #registerBridgeURIFactory(PortletContext, CachingBridgeURIFactory)}, or <code>
+	 * null</code> if there is none.
+	 */
+	public static CachingBridgeURIFactory getCachingBridgeURIFactory(PortletContext portletContext) {
+		return (CachingBridgeURIFactory) portletContext.getAttribute(CACHING_BRIDGE_URI_FACTORY_ATTRIBUTE_NAME);
+	}
+
+	/**
+	 * Returns the name of the MBean that exposes the statistics of the web application of the specified {@link
+	 * PortletContext}.
+	 */
+	public static ObjectName getObjectName(PortletContext portletContext) throws JMException {
+
+		String portletContextName = portletContext.getPortletContextName();
+
+		if (portletContextName == null) {
+			portletContextName = "default";
+		}
+
+		return new ObjectName(JMX_DOMAIN + ":type=BridgeRequestScopeStatistics,name=" +
+				ObjectName.quote(portletContextName));
+	}
+
+	private static List<BridgeRequestScopeMetrics> loadServices() {
+
+		List<BridgeRequestScopeMetrics> services = new ArrayList<BridgeRequestScopeMetrics>();
+		Iterator<BridgeRequestScopeMetrics> iterator = ServiceLoader.load(BridgeRequestScopeMetrics.class)
+			.iterator();
+
+		while (true) {
+
+			try {
+
+				if (!iterator.hasNext()) {
+					break;
+				}
+
+				services.add(iterator.next());
+			}
+			catch (ServiceConfigurationError e) {
+
+				// Since the API can't use a logging system like SLF4J the best we can do is print to stderr.
+				System.err.println("Unable to load " + BridgeRequestScopeMetrics.class.getName() + " service: " +
+					e.getMessage());
+			}
+		}
+
+		return services;
+	}
+
+	/**
+	 * Registers the {@link CachingBridgeURIFactory} of the web application of the specified {@link PortletContext} so
+	 * that its hit and miss counts are exposed by the {@link BridgeRequestScopeStatistics} MBean. The bridge
+	 * implementation calls this method after it wraps its {@link com.liferay.faces.bridge.context.url.BridgeURIFactory}
+	 * with the caching one.
+	 */
+	public static void registerBridgeURIFactory(PortletContext portletContext,
+		CachingBridgeURIFactory cachingBridgeURIFactory) {
+		portletContext.setAttribute(CACHING_BRIDGE_URI_FACTORY_ATTRIBUTE_NAME, cachingBridgeURIFactory);
+	}
+
+	/**
+	 * Registers a {@link BridgeRequestScopeStatistics} MBean for the specified cache with the platform MBean server,
+	 * replacing an MBean that was registered by a previous deployment of the same web application. The MBean is
+	 * unregistered by {@link BridgeRequestScopeContextListener} when the web application is destroyed, since it
+	 * otherwise holds the cache (and the classloader of the web application) in memory.
+	 */
+	public static void registerMBean(PortletContext portletContext, BridgeRequestScopeCache bridgeRequestScopeCache) {
+
+		getBridgeRequestScopeMetrics(portletContext);
+
+		StripedBridgeRequestScopeMetrics stripedBridgeRequestScopeMetrics = (StripedBridgeRequestScopeMetrics)
+			portletContext.getAttribute(STRIPED_METRICS_ATTRIBUTE_NAME);
+		BridgeRequestScopeStatistics bridgeRequestScopeStatistics = new BridgeRequestScopeStatistics(
+				portletContext, bridgeRequestScopeCache, stripedBridgeRequestScopeMetrics);
+
+		try {
+			ObjectName objectName = getObjectName(portletContext);
+			MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+
+			synchronized (BridgeRequestScopeMetricsRegistry.class) {
+
+				if (mBeanServer.isRegistered(objectName)) {
+					mBeanServer.unregisterMBean(objectName);
+				}
+
+				mBeanServer.registerMBean(new StandardMBean(bridgeRequestScopeStatistics,
+						BridgeRequestScopeStatisticsMBean.class), objectName);
+			}
+
+			BridgeRequestScopeContextListener.addResource(portletContext, new MBeanRegistration(objectName));
+		}
+		catch (JMException e) {
+
+			// Since the API can't use a logging system like SLF4J the best we can do is print to stderr.
+			System.err.println("Unable to register MBean for BridgeRequestScopeCache: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Unregisters the MBean of a web application when the web application is destroyed.
+	 *
+	 * @author  Neil Griffin
+	 */
+	private static final class MBeanRegistration implements Closeable {
+
+		// Private Data Members
+		private final ObjectName objectName;
+
+		MBeanRegistration(ObjectName objectName) {
+			this.objectName = objectName;
+		}
+
+		@Override
+		public void close() {
+
+			MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+
+			try {
+
+				synchronized (BridgeRequestScopeMetricsRegistry.class) {
+
+					if (mBeanServer.isRegistered(objectName)) {
+						mBeanServer.unregisterMBean(objectName);
+					}
+				}
+			}
+			catch (JMException e) {
+
+				// Since the API can't use a logging system like SLF4J the best we can do is print to stderr.
+				System.err.println("Unable to unregister MBean=[" + objectName + "]: " + e.getMessage());
+			}
+		}
+
+		@Override
+		public String toString() {
+			return objectName.toString();
+		}
+	}
+}
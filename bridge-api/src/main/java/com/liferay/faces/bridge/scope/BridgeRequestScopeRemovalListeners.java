@@ -0,0 +1,58 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.scope;
+
+/**
+ * This class registers {@link BoundedBridgeRequestScopeCache.RemovalListener} instances with the cache that ultimately
+ * stores the scopes, which is found by unwrapping any {@link BridgeRequestScopeCacheWrapper} decorators.
+ *
+ * @author  Neil Griffin
+ */
+final class BridgeRequestScopeRemovalListeners {
+
+	private BridgeRequestScopeRemovalListeners() {
+		throw new AssertionError();
+	}
+
+	/**
+	 * Registers the specified listener with the cache that is wrapped by the specified cache, provided that it is a
+	 * {@link BoundedBridgeRequestScopeCache} or a {@link PortletShardedBridgeRequestScopeCache}.
+	 *
+	 * @return  <code>true</code> if the listener was registered, otherwise <code>false</code>.
+	 */
+	static boolean addRemovalListener(BridgeRequestScopeCache bridgeRequestScopeCache,
+		BoundedBridgeRequestScopeCache.RemovalListener removalListener) {
+
+		BridgeRequestScopeCache cache = bridgeRequestScopeCache;
+
+		while (cache instanceof BridgeRequestScopeCacheWrapper) {
+			cache = ((BridgeRequestScopeCacheWrapper) cache).getWrapped();
+		}
+
+		if (cache instanceof BoundedBridgeRequestScopeCache) {
+			((BoundedBridgeRequestScopeCache) cache).addRemovalListener(removalListener);
+
+			return true;
+		}
+		else if (cache instanceof PortletShardedBridgeRequestScopeCache) {
+			((PortletShardedBridgeRequestScopeCache) cache).addRemovalListener(removalListener);
+
+			return true;
+		}
+
+		return false;
+	}
+}
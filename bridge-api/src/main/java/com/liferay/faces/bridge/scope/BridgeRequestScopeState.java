@@ -0,0 +1,312 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.scope;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import javax.portlet.PortletMode;
+import javax.portlet.faces.Bridge;
+
+import com.liferay.faces.bridge.context.BridgeContext;
+
+
+/**
+ * This class is an immutable snapshot of the state of a {@link BridgeRequestScope}. It is intended to be stored as a
+ * portlet session attribute when the scope is carried with {@link
+ * BridgeRequestScope.Transport#PORTLET_SESSION_ATTRIBUTE} so that session replication uses the compact encoding of
+ * {@link BridgeRequestScopeCodec} rather than default Java serialization of the scope and its collections. If the state
+ * is constructed with a {@link ViewStateCompressor}, then a long preserved view state is held (and encoded) in
+ * compressed form. It is decompressed when {@link #getPreservedViewStateParam()} is first called during a request, and
+ * the decompressed value is retained as an attribute of the current {@link BridgeContext} (if any) for the rest of the
+ * request, so that the state itself only ever holds the compressed form.
+ *
+ * @author  Neil Griffin
+ */
+public class BridgeRequestScopeState implements Externalizable {
+
+	// serialVersionUID
+	private static final long serialVersionUID = 3516438520946187294L;
+
+	// Private Constants
+	private static final String DECOMPRESSED_VIEW_STATE_ATTRIBUTE_NAME_PREFIX = BridgeRequestScopeState.class.getName() +
+		".decompressedViewState.";
+
+	// Private Data Members
+	private Bridge.PortletPhase beganInPhase;
+	private long dateCreated;
+	private byte[] compressedViewStateParam;
+	private boolean facesLifecycleExecuted;
+	private String id;
+	private boolean navigationOccurred;
+	private PortletMode portletMode;
+	private boolean portletModeChanged;
+	private Map<String, String> preservedActionParameterMap;
+	private Map<String, Object> preservedAttributes;
+	private String preservedViewStateParam;
+	private boolean redirectOccurred;
+	private Set<String> removedAttributeNames;
+	private transient ViewStateCompressor viewStateCompressor;
+
+	/**
+	 * Constructs an empty instance. This constructor is required by {@link Externalizable} and should not be called
+	 * directly.
+	 */
+	public BridgeRequestScopeState() {
+		this.preservedActionParameterMap = Collections.emptyMap();
+		this.preservedAttributes = Collections.emptyMap();
+		this.removedAttributeNames = Collections.emptySet();
+	}
+
+	/**
+	 * Constructs a snapshot of the specified scope.
+	 *
+	 * @param  bridgeRequestScope   The scope.
+	 * @param  preservedAttributes  The request attributes that were preserved by the scope, or <code>null</code> if
+	 *                              there are none.
+	 */
+	public BridgeRequestScopeState(BridgeRequestScope bridgeRequestScope, Map<String, Object> preservedAttributes) {
+		this(bridgeRequestScope, preservedAttributes, null);
+	}
+
+	/**
+	 * Constructs a snapshot of the specified scope whose preserved view state is compressed by the specified
+	 * compressor if it is long enough.
+	 *
+	 * @param  bridgeRequestScope   The scope.
+	 * @param  preservedAttributes  The request attributes that were preserved by the scope, or <code>null</code> if
+	 *                              there are none.
+	 * @param  viewStateCompressor  The compressor, or <code>null</code> if the view state is not compressed.
+	 */
+	public BridgeRequestScopeState(BridgeRequestScope bridgeRequestScope, Map<String, Object> preservedAttributes,
+		ViewStateCompressor viewStateCompressor) {
+		this(bridgeRequestScope.getId(), bridgeRequestScope.getDateCreated(), bridgeRequestScope.getBeganInPhase(),
+			bridgeRequestScope.getPortletMode(), bridgeRequestScope.isFacesLifecycleExecuted(),
+			bridgeRequestScope.isNavigationOccurred(), bridgeRequestScope.isPortletModeChanged(),
+			bridgeRequestScope.isRedirectOccurred(), bridgeRequestScope.getPreservedViewStateParam(), null,
+			bridgeRequestScope.getPreservedActionParameterMap(), bridgeRequestScope.getRemovedAttributeNames(),
+			preservedAttributes, viewStateCompressor);
+	}
+
+	BridgeRequestScopeState(String id, long dateCreated, Bridge.PortletPhase beganInPhase, PortletMode portletMode,
+		boolean facesLifecycleExecuted, boolean navigationOccurred, boolean portletModeChanged,
+		boolean redirectOccurred, String preservedViewStateParam, byte[] compressedViewStateParam,
+		Map<String, String> preservedActionParameterMap, Set<String> removedAttributeNames,
+		Map<String, Object> preservedAttributes, ViewStateCompressor viewStateCompressor) {
+
+		this.id = id;
+		this.dateCreated = dateCreated;
+		this.beganInPhase = beganInPhase;
+		this.portletMode = portletMode;
+		this.facesLifecycleExecuted = facesLifecycleExecuted;
+		this.navigationOccurred = navigationOccurred;
+		this.portletModeChanged = portletModeChanged;
+		this.redirectOccurred = redirectOccurred;
+		this.viewStateCompressor = viewStateCompressor;
+
+		if ((compressedViewStateParam == null) && (viewStateCompressor != null)) {
+			compressedViewStateParam = viewStateCompressor.compress(preservedViewStateParam);
+		}
+
+		if (compressedViewStateParam == null) {
+			this.preservedViewStateParam = preservedViewStateParam;
+		}
+		else {
+			this.compressedViewStateParam = compressedViewStateParam;
+		}
+
+		this.preservedActionParameterMap = unmodifiableCopy(preservedActionParameterMap);
+		this.removedAttributeNames = unmodifiableCopy(removedAttributeNames);
+		this.preservedAttributes = unmodifiableCopy(preservedAttributes);
+	}
+
+	private static <V> Map<String, V> unmodifiableCopy(Map<String, V> map) {
+
+		if ((map == null) || map.isEmpty()) {
+			return Collections.emptyMap();
+		}
+
+		return Collections.unmodifiableMap(new LinkedHashMap<String, V>(map));
+	}
+
+	private static Set<String> unmodifiableCopy(Set<String> set) {
+
+		if ((set == null) || set.isEmpty()) {
+			return Collections.emptySet();
+		}
+
+		return Collections.unmodifiableSet(new LinkedHashSet<String>(set));
+	}
+
+	@Override
+	public void readExternal(ObjectInput objectInput) throws IOException, ClassNotFoundException {
+
+		byte[] bytes = new byte[objectInput.readInt()];
+		objectInput.readFully(bytes);
+
+		BridgeRequestScopeState state = BridgeRequestScopeCodec.decode(bytes);
+		this.id = state.id;
+		this.dateCreated = state.dateCreated;
+		this.beganInPhase = state.beganInPhase;
+		this.portletMode = state.portletMode;
+		this.facesLifecycleExecuted = state.facesLifecycleExecuted;
+		this.navigationOccurred = state.navigationOccurred;
+		this.portletModeChanged = state.portletModeChanged;
+		this.redirectOccurred = state.redirectOccurred;
+		this.preservedViewStateParam = state.preservedViewStateParam;
+		this.compressedViewStateParam = state.compressedViewStateParam;
+		this.preservedActionParameterMap = state.preservedActionParameterMap;
+		this.removedAttributeNames = state.removedAttributeNames;
+		this.preservedAttributes = state.preservedAttributes;
+	}
+
+	@Override
+	public void writeExternal(ObjectOutput objectOutput) throws IOException {
+
+		byte[] bytes = BridgeRequestScopeCodec.encode(this);
+		objectOutput.writeInt(bytes.length);
+		objectOutput.write(bytes);
+	}
+
+	public Bridge.PortletPhase getBeganInPhase() {
+		return beganInPhase;
+	}
+
+	byte[] getCompressedViewStateParam() {
+		return compressedViewStateParam;
+	}
+
+	public long getDateCreated() {
+		return dateCreated;
+	}
+
+	public boolean isFacesLifecycleExecuted() {
+		return facesLifecycleExecuted;
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public boolean isNavigationOccurred() {
+		return navigationOccurred;
+	}
+
+	public PortletMode getPortletMode() {
+		return portletMode;
+	}
+
+	public boolean isPortletModeChanged() {
+		return portletModeChanged;
+	}
+
+	public Map<String, String> getPreservedActionParameterMap() {
+		return preservedActionParameterMap;
+	}
+
+	public Map<String, Object> getPreservedAttributes() {
+		return preservedAttributes;
+	}
+
+	/**
+	 * Returns the preserved view state, decompressing it if it has not already been decompressed during the current
+	 * request.
+	 *
+	 * @throws  IllegalStateException  If the compressed view state is malformed.
+	 */
+	public String getPreservedViewStateParam() {
+
+		if (compressedViewStateParam == null) {
+			return preservedViewStateParam;
+		}
+
+		BridgeContext bridgeContext = BridgeContext.getCurrentInstance();
+		Map<String, Object> attributes = null;
+		String attributeName = DECOMPRESSED_VIEW_STATE_ATTRIBUTE_NAME_PREFIX + id;
+
+		if (bridgeContext != null) {
+
+			attributes = bridgeContext.getAttributes();
+
+			DecompressedViewState decompressedViewState = (DecompressedViewState) attributes.get(attributeName);
+
+			// The attribute may have been set by a different state with the same id, such as a reloaded copy.
+			if ((decompressedViewState != null) &&
+					(decompressedViewState.compressedViewStateParam == compressedViewStateParam)) {
+				return decompressedViewState.viewStateParam;
+			}
+		}
+
+		ViewStateCompressor viewStateCompressor = this.viewStateCompressor;
+
+		if (viewStateCompressor == null) {
+			viewStateCompressor = ViewStateCompressor.getInstance();
+		}
+
+		String viewStateParam;
+
+		try {
+			viewStateParam = viewStateCompressor.decompress(compressedViewStateParam);
+		}
+		catch (IOException e) {
+			throw new IllegalStateException("Unable to decompress the preserved view state of scope id=[" + id + "]",
+				e);
+		}
+
+		if (attributes != null) {
+			attributes.put(attributeName, new DecompressedViewState(compressedViewStateParam, viewStateParam));
+		}
+
+		return viewStateParam;
+	}
+
+	public boolean isRedirectOccurred() {
+		return redirectOccurred;
+	}
+
+	public Set<String> getRemovedAttributeNames() {
+		return removedAttributeNames;
+	}
+
+	/**
+	 * Determines whether or not the preserved view state is held in compressed form.
+	 */
+	public boolean isViewStateCompressed() {
+		return compressedViewStateParam != null;
+	}
+
+	/**
+	 * A decompressed view state, together with the compressed bytes that it was decompressed from.
+	 */
+	private static final class DecompressedViewState {
+
+		// Private Data Members
+		private final byte[] compressedViewStateParam;
+		private final String viewStateParam;
+
+		DecompressedViewState(byte[] compressedViewStateParam, String viewStateParam) {
+			this.compressedViewStateParam = compressedViewStateParam;
+			this.viewStateParam = viewStateParam;
+		}
+	}
+}
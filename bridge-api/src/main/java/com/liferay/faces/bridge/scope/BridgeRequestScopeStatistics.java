@@ -0,0 +1,308 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.scope;
+
+import javax.portlet.PortletContext;
+
+import com.liferay.faces.bridge.context.url.CachingBridgeURIFactory;
+
+
+/**
+ * This class exposes the measurements of a {@link StripedBridgeRequestScopeMetrics} and the size of the {@link
+ * BridgeRequestScopeCache} that they pertain to as a JMX MBean. Instances are registered by {@link
+ * BridgeRequestScopeMetricsRegistry#registerMBean(javax.portlet.PortletContext, BridgeRequestScopeCache)}.
+ *
+ * @author  Neil Griffin
+ */
+public class BridgeRequestScopeStatistics implements BridgeRequestScopeStatisticsMBean {
+
+	// Private Constants
+	private static final double NANOS_PER_MICRO = 1000.0;
+
+	// Private Data Members
+	private final BridgeRequestScopeCache bridgeRequestScopeCache;
+	private final PortletContext portletContext;
+	private final StripedBridgeRequestScopeMetrics stripedBridgeRequestScopeMetrics;
+
+	public BridgeRequestScopeStatistics(BridgeRequestScopeCache bridgeRequestScopeCache,
+		StripedBridgeRequestScopeMetrics stripedBridgeRequestScopeMetrics) {
+		this(null, bridgeRequestScopeCache, stripedBridgeRequestScopeMetrics);
+	}
+
+	/**
+	 * Creates statistics that also report the URI cache measurements of the {@link CachingBridgeURIFactory} that is
+	 * registered for the specified {@link PortletContext}, if any.
+	 */
+	public BridgeRequestScopeStatistics(PortletContext portletContext, BridgeRequestScopeCache bridgeRequestScopeCache,
+		StripedBridgeRequestScopeMetrics stripedBridgeRequestScopeMetrics) {
+
+		this.portletContext = portletContext;
+		this.bridgeRequestScopeCache = bridgeRequestScopeCache;
+		this.stripedBridgeRequestScopeMetrics = stripedBridgeRequestScopeMetrics;
+	}
+
+	private static double average(long total, long count) {
+
+		if (count == 0L) {
+			return 0.0;
+		}
+
+		return (double) total / count;
+	}
+
+	@Override
+	public void reset() {
+		stripedBridgeRequestScopeMetrics.reset();
+	}
+
+	@Override
+	public double getAverageAttributesPerScope() {
+		return average(stripedBridgeRequestScopeMetrics.getAttributeCount(),
+				stripedBridgeRequestScopeMetrics.getAttributeScopeCount());
+	}
+
+	@Override
+	public double getAverageBytesPerScope() {
+		return average(stripedBridgeRequestScopeMetrics.getSampledByteCount(),
+				stripedBridgeRequestScopeMetrics.getSampledScopeCount());
+	}
+
+	@Override
+	public double getAverageRestoreStateMicros() {
+		return average(stripedBridgeRequestScopeMetrics.getRestoreStateNanos(),
+				stripedBridgeRequestScopeMetrics.getRestoreStateCount()) / NANOS_PER_MICRO;
+	}
+
+	@Override
+	public double getAverageSaveStateMicros() {
+		return average(stripedBridgeRequestScopeMetrics.getSaveStateNanos(),
+				stripedBridgeRequestScopeMetrics.getSaveStateCount()) / NANOS_PER_MICRO;
+	}
+
+	@Override
+	public double getAverageScopesPerSession() {
+		return average(stripedBridgeRequestScopeMetrics.getSessionScopeCount(),
+				stripedBridgeRequestScopeMetrics.getSessionCount());
+	}
+
+	@Override
+	public double getAverageSessionRemovalBatchSize() {
+		return average(stripedBridgeRequestScopeMetrics.getSessionRemovalBatchSessionCount(),
+				stripedBridgeRequestScopeMetrics.getSessionRemovalBatchCount());
+	}
+
+	@Override
+	public double getAverageViewStateCompressionMicros() {
+		return average(stripedBridgeRequestScopeMetrics.getViewStateCompressionNanos(),
+				stripedBridgeRequestScopeMetrics.getViewStateCompressionCount()) / NANOS_PER_MICRO;
+	}
+
+	@Override
+	public double getAverageViewStateDecompressionMicros() {
+		return average(stripedBridgeRequestScopeMetrics.getViewStateDecompressionNanos(),
+				stripedBridgeRequestScopeMetrics.getViewStateDecompressionCount()) / NANOS_PER_MICRO;
+	}
+
+	@Override
+	public long getCacheHitCount() {
+		return stripedBridgeRequestScopeMetrics.getCacheHitCount();
+	}
+
+	@Override
+	public double getCacheHitRatio() {
+
+		long hitCount = stripedBridgeRequestScopeMetrics.getCacheHitCount();
+		long lookupCount = hitCount + stripedBridgeRequestScopeMetrics.getCacheMissCount();
+
+		if (lookupCount == 0L) {
+			return Double.NaN;
+		}
+
+		return (double) hitCount / lookupCount;
+	}
+
+	@Override
+	public long getCacheMissCount() {
+		return stripedBridgeRequestScopeMetrics.getCacheMissCount();
+	}
+
+	@Override
+	public long getCachePutCount() {
+		return stripedBridgeRequestScopeMetrics.getCachePutCount();
+	}
+
+	@Override
+	public int getCacheSize() {
+		return bridgeRequestScopeCache.size();
+	}
+
+	@Override
+	public long getEvictionCount() {
+		return stripedBridgeRequestScopeMetrics.getEvictionCount();
+	}
+
+	@Override
+	public long getExpirationCount() {
+		return stripedBridgeRequestScopeMetrics.getExpirationCount();
+	}
+
+	@Override
+	public int getMaximumCacheSize() {
+
+		BridgeRequestScopeCache cache = bridgeRequestScopeCache;
+
+		while (cache instanceof BridgeRequestScopeCacheWrapper) {
+			cache = ((BridgeRequestScopeCacheWrapper) cache).getWrapped();
+		}
+
+		if (cache instanceof BoundedBridgeRequestScopeCache) {
+			return ((BoundedBridgeRequestScopeCache) cache).getMaximumSize();
+		}
+		else if (cache instanceof PortletShardedBridgeRequestScopeCache) {
+			return ((PortletShardedBridgeRequestScopeCache) cache).getMaximumSize();
+		}
+
+		return -1;
+	}
+
+	@Override
+	public long getRestoreStateCount() {
+		return stripedBridgeRequestScopeMetrics.getRestoreStateCount();
+	}
+
+	@Override
+	public long getSaveStateCount() {
+		return stripedBridgeRequestScopeMetrics.getSaveStateCount();
+	}
+
+	@Override
+	public long getSessionBudgetEvictionCount() {
+		return stripedBridgeRequestScopeMetrics.getSessionBudgetEvictedScopeCount();
+	}
+
+	@Override
+	public long getSessionBudgetExceededCount() {
+		return stripedBridgeRequestScopeMetrics.getSessionBudgetExceededCount();
+	}
+
+	@Override
+	public long getSessionCount() {
+		return stripedBridgeRequestScopeMetrics.getSessionCount();
+	}
+
+	@Override
+	public long getSessionRemovalBackpressureCount() {
+		return stripedBridgeRequestScopeMetrics.getSessionRemovalBackpressureCount();
+	}
+
+	@Override
+	public int getSessionRemovalQueueDepth() {
+
+		BridgeRequestScopeCache cache = bridgeRequestScopeCache;
+
+		while (cache instanceof BridgeRequestScopeCacheWrapper) {
+
+			if (cache instanceof AsynchronousSessionRemovalBridgeRequestScopeCache) {
+				return ((AsynchronousSessionRemovalBridgeRequestScopeCache) cache).getQueueDepth();
+			}
+
+			cache = ((BridgeRequestScopeCacheWrapper) cache).getWrapped();
+		}
+
+		return -1;
+	}
+
+	@Override
+	public long getURICacheHitCount() {
+
+		CachingBridgeURIFactory cachingBridgeURIFactory = getCachingBridgeURIFactory();
+
+		if (cachingBridgeURIFactory == null) {
+			return -1L;
+		}
+
+		return cachingBridgeURIFactory.getHitCount();
+	}
+
+	@Override
+	public double getURICacheHitRatio() {
+
+		CachingBridgeURIFactory cachingBridgeURIFactory = getCachingBridgeURIFactory();
+
+		if (cachingBridgeURIFactory == null) {
+			return Double.NaN;
+		}
+
+		long hitCount = cachingBridgeURIFactory.getHitCount();
+		long lookupCount = hitCount + cachingBridgeURIFactory.getMissCount();
+
+		if (lookupCount == 0L) {
+			return Double.NaN;
+		}
+
+		return (double) hitCount / lookupCount;
+	}
+
+	@Override
+	public long getURICacheMissCount() {
+
+		CachingBridgeURIFactory cachingBridgeURIFactory = getCachingBridgeURIFactory();
+
+		if (cachingBridgeURIFactory == null) {
+			return -1L;
+		}
+
+		return cachingBridgeURIFactory.getMissCount();
+	}
+
+	@Override
+	public int getURICacheSize() {
+
+		CachingBridgeURIFactory cachingBridgeURIFactory = getCachingBridgeURIFactory();
+
+		if (cachingBridgeURIFactory == null) {
+			return -1;
+		}
+
+		return cachingBridgeURIFactory.getSize();
+	}
+
+	@Override
+	public long getViewStateCompressionCount() {
+		return stripedBridgeRequestScopeMetrics.getViewStateCompressionCount();
+	}
+
+	@Override
+	public double getViewStateCompressionRatio() {
+
+		long byteCount = stripedBridgeRequestScopeMetrics.getViewStateByteCount();
+
+		if (byteCount == 0L) {
+			return Double.NaN;
+		}
+
+		return (double) stripedBridgeRequestScopeMetrics.getViewStateCompressedByteCount() / byteCount;
+	}
+
+	private CachingBridgeURIFactory getCachingBridgeURIFactory() {
+
+		if (portletContext == null) {
+			return null;
+		}
+
+		return BridgeRequestScopeMetricsRegistry.getCachingBridgeURIFactory(portletContext);
+	}
+}
@@ -0,0 +1,154 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.scope;
+
+/**
+ * This interface defines the management interface of the {@link BridgeRequestScopeStatistics} MBean.
+ *
+ * @author  Neil Griffin
+ */
+public interface BridgeRequestScopeStatisticsMBean {
+
+	/**
+	 * Resets all of the measurements to zero.
+	 */
+	public void reset();
+
+	/**
+	 * Returns the average number of request attributes preserved by a scope.
+	 */
+	public double getAverageAttributesPerScope();
+
+	/**
+	 * Returns the average encoded size of a scope in bytes, based on a sample of the saved scopes.
+	 */
+	public double getAverageBytesPerScope();
+
+	/**
+	 * Returns the average time in microseconds that it takes to restore a scope.
+	 */
+	public double getAverageRestoreStateMicros();
+
+	/**
+	 * Returns the average time in microseconds that it takes to save a scope.
+	 */
+	public double getAverageSaveStateMicros();
+
+	/**
+	 * Returns the average number of scopes that were held by a session when the session was invalidated or expired.
+	 */
+	public double getAverageScopesPerSession();
+
+	/**
+	 * Returns the average number of sessions whose scopes were removed in one batch by the background thread.
+	 */
+	public double getAverageSessionRemovalBatchSize();
+
+	/**
+	 * Returns the average time in microseconds that it takes to compress a preserved view state.
+	 */
+	public double getAverageViewStateCompressionMicros();
+
+	/**
+	 * Returns the average time in microseconds that it takes to decompress a preserved view state.
+	 */
+	public double getAverageViewStateDecompressionMicros();
+
+	public long getCacheHitCount();
+
+	/**
+	 * Returns the ratio of cache hits to cache lookups, or <code>NaN</code> if there were no lookups.
+	 */
+	public double getCacheHitRatio();
+
+	public long getCacheMissCount();
+
+	public long getCachePutCount();
+
+	public int getCacheSize();
+
+	public long getEvictionCount();
+
+	public long getExpirationCount();
+
+	/**
+	 * Returns the maximum size of the cache, or <code>-1</code> if the cache is not bounded.
+	 */
+	public int getMaximumCacheSize();
+
+	public long getRestoreStateCount();
+
+	public long getSaveStateCount();
+
+	/**
+	 * Returns the number of scopes that were evicted because a session exceeded its memory budget.
+	 */
+	public long getSessionBudgetEvictionCount();
+
+	/**
+	 * Returns the number of times that a session exceeded its memory budget.
+	 */
+	public long getSessionBudgetExceededCount();
+
+	public long getSessionCount();
+
+	/**
+	 * Returns the number of times that the scopes of a session were removed synchronously because the session removal
+	 * queue was full.
+	 */
+	public long getSessionRemovalBackpressureCount();
+
+	/**
+	 * Returns the number of sessions that are waiting for their scopes to be removed by the background thread, or
+	 * <code>-1</code> if scopes are removed synchronously.
+	 */
+	public int getSessionRemovalQueueDepth();
+
+	/**
+	 * Returns the number of parsed URIs that were found in the {@link
+	 * com.liferay.faces.bridge.context.url.CachingBridgeURIFactory}, or <code>-1</code> if none has been registered.
+	 */
+	public long getURICacheHitCount();
+
+	/**
+	 * Returns the ratio of URI cache hits to URI cache lookups, or <code>NaN</code> if there were no lookups or no
+	 * {@link com.liferay.faces.bridge.context.url.CachingBridgeURIFactory} has been registered.
+	 */
+	public double getURICacheHitRatio();
+
+	/**
+	 * Returns the number of URIs that had to be parsed because they were not found in the {@link
+	 * com.liferay.faces.bridge.context.url.CachingBridgeURIFactory}, or <code>-1</code> if none has been registered.
+	 */
+	public long getURICacheMissCount();
+
+	/**
+	 * Returns the number of parsed URIs that are cached, or <code>-1</code> if no {@link
+	 * com.liferay.faces.bridge.context.url.CachingBridgeURIFactory} has been registered.
+	 */
+	public int getURICacheSize();
+
+	/**
+	 * Returns the number of preserved view states that were long enough to be compressed.
+	 */
+	public long getViewStateCompressionCount();
+
+	/**
+	 * Returns the ratio of the compressed size to the original size of the preserved view states that were long enough
+	 * to be compressed, or <code>NaN</code> if there were none.
+	 */
+	public double getViewStateCompressionRatio();
+}
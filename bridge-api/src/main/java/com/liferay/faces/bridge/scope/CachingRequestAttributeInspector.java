@@ -0,0 +1,144 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.scope;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * <p>This class is a {@link RequestAttributeInspector} decorator that memoizes the verdicts of {@link
+ * #isExcludedByType(String, Object)} and {@link #isExcludedByAnnotation(String, Object)} per {@link Class} of the
+ * attribute value. The first time a value of a given class is inspected, the wrapped inspector is consulted and its
+ * verdict is remembered; subsequent values of the same class are answered without reflection. The name-based checks
+ * ({@link #containsExcludedNamespace(String)}, {@link #isExcludedByConfig(String, Object)}, and {@link
+ * #isExcludedByPreExisting(String, Object)}) are always delegated.</p>
+ *
+ * <p>Verdicts are stored in a {@link VerdictCache}, which is backed by a {@link ClassValue} so that it does not prevent
+ * the classes (or their classloaders) from being garbage collected when a portlet application is redeployed. Since
+ * inspectors are typically created per request, a {@link VerdictCache} can be shared by the instances that wrap
+ * equivalent inspectors, as {@link CachingRequestAttributeInspectorFactory} does per portlet and per class of the
+ * wrapped inspector. Verdicts are never shared between unrelated inspectors. Caching is only valid if the type and
+ * annotation verdicts of the wrapped inspector depend on the class of the value alone (and not on the name of the
+ * attribute), as is the case for the exclusions described in Section 5.1.2 of the Bridge Specification and for {@link
+ * javax.portlet.faces.annotation.ExcludeFromManagedRequestScope} (which is {@link java.lang.annotation.Inherited}).
+ * </p>
+ *
+ * @author  Neil Griffin
+ */
+public class CachingRequestAttributeInspector extends RequestAttributeInspectorWrapper {
+
+	// Private Constants
+	private static final int ANNOTATION_COMPUTED = 1;
+	private static final int ANNOTATION_EXCLUDED = 1 << 1;
+	private static final int TYPE_COMPUTED = 1 << 2;
+	private static final int TYPE_EXCLUDED = 1 << 3;
+
+	// Private Data Members
+	private final VerdictCache verdictCache;
+	private RequestAttributeInspector wrappedRequestAttributeInspector;
+
+	/**
+	 * Constructs an instance whose verdicts are only remembered by the instance itself.
+	 */
+	public CachingRequestAttributeInspector(RequestAttributeInspector requestAttributeInspector) {
+		this(requestAttributeInspector, new VerdictCache());
+	}
+
+	/**
+	 * Constructs an instance that remembers its verdicts in the specified cache, which must only be shared by
+	 * instances that wrap inspectors whose verdicts are the same for the same class.
+	 */
+	public CachingRequestAttributeInspector(RequestAttributeInspector requestAttributeInspector,
+		VerdictCache verdictCache) {
+		this.wrappedRequestAttributeInspector = requestAttributeInspector;
+		this.verdictCache = verdictCache;
+	}
+
+	private static void setVerdict(AtomicInteger verdicts, int computedBit, int excludedBit, boolean excluded) {
+
+		int bits = computedBit | (excluded ? excludedBit : 0);
+		int current;
+
+		do {
+			current = verdicts.get();
+		}
+		while (!verdicts.compareAndSet(current, current | bits));
+	}
+
+	@Override
+	public boolean isExcludedByAnnotation(String name, Object value) {
+
+		if (value == null) {
+			return getWrapped().isExcludedByAnnotation(name, value);
+		}
+
+		AtomicInteger verdicts = verdictCache.verdicts.get(value.getClass());
+		int bits = verdicts.get();
+
+		if ((bits & ANNOTATION_COMPUTED) != 0) {
+			return (bits & ANNOTATION_EXCLUDED) != 0;
+		}
+
+		boolean excludedByAnnotation = getWrapped().isExcludedByAnnotation(name, value);
+		setVerdict(verdicts, ANNOTATION_COMPUTED, ANNOTATION_EXCLUDED, excludedByAnnotation);
+
+		return excludedByAnnotation;
+	}
+
+	@Override
+	public boolean isExcludedByType(String name, Object value) {
+
+		if (value == null) {
+			return getWrapped().isExcludedByType(name, value);
+		}
+
+		AtomicInteger verdicts = verdictCache.verdicts.get(value.getClass());
+		int bits = verdicts.get();
+
+		if ((bits & TYPE_COMPUTED) != 0) {
+			return (bits & TYPE_EXCLUDED) != 0;
+		}
+
+		boolean excludedByType = getWrapped().isExcludedByType(name, value);
+		setVerdict(verdicts, TYPE_COMPUTED, TYPE_EXCLUDED, excludedByType);
+
+		return excludedByType;
+	}
+
+	@Override
+	public RequestAttributeInspector getWrapped() {
+		return wrappedRequestAttributeInspector;
+	}
+
+	/**
+	 * The memoized verdicts of a family of equivalent inspectors, keyed by the class of the attribute value.
+	 */
+	public static final class VerdictCache {
+
+		// Private Data Members
+
+		// Note that the memoized value is an AtomicInteger bit-field (loaded by the bootstrap classloader) rather than
+		// a class of this API, since a value that is attached to a JDK class such as String would otherwise prevent
+		// the classloader of the portlet application from being garbage collected after a redeploy.
+		private final ClassValue<AtomicInteger> verdicts = new ClassValue<AtomicInteger>() {
+
+				@Override
+				protected AtomicInteger computeValue(Class<?> type) {
+					return new AtomicInteger();
+				}
+			};
+	}
+}
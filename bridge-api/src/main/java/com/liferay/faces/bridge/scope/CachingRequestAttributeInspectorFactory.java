@@ -0,0 +1,75 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.scope;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.portlet.PortletConfig;
+import javax.portlet.PortletRequest;
+
+import com.liferay.faces.bridge.config.BridgeConfig;
+
+
+/**
+ * This class is a factory that decorates the {@link RequestAttributeInspector} created by the wrapped factory with a
+ * {@link CachingRequestAttributeInspector}. The verdicts are shared by the inspectors of the same portlet whose wrapped
+ * inspectors are of the same class, so that the verdicts of a custom inspector are never applied to the attributes of
+ * another portlet or of another inspector. In order to select it, register this class as the {@link
+ * RequestAttributeInspectorFactory} in the bridge factory configuration.
+ *
+ * @author  Neil Griffin
+ */
+public class CachingRequestAttributeInspectorFactory extends RequestAttributeInspectorFactory {
+
+	// Private Data Members
+	private final ConcurrentMap<String, CachingRequestAttributeInspector.VerdictCache> verdictCaches =
+		new ConcurrentHashMap<String, CachingRequestAttributeInspector.VerdictCache>();
+	private RequestAttributeInspectorFactory wrappedRequestAttributeInspectorFactory;
+
+	public CachingRequestAttributeInspectorFactory(RequestAttributeInspectorFactory requestAttributeInspectorFactory) {
+		this.wrappedRequestAttributeInspectorFactory = requestAttributeInspectorFactory;
+	}
+
+	@Override
+	public RequestAttributeInspector getRequestAttributeInspector(PortletRequest portletRequest,
+		PortletConfig portletConfig, BridgeConfig bridgeConfig) {
+
+		RequestAttributeInspector requestAttributeInspector = getWrapped().getRequestAttributeInspector(portletRequest,
+				portletConfig, bridgeConfig);
+
+		String key = portletConfig.getPortletName() + "\n" + requestAttributeInspector.getClass().getName();
+		CachingRequestAttributeInspector.VerdictCache verdictCache = verdictCaches.get(key);
+
+		if (verdictCache == null) {
+			verdictCache = new CachingRequestAttributeInspector.VerdictCache();
+
+			CachingRequestAttributeInspector.VerdictCache existingVerdictCache = verdictCaches.putIfAbsent(key,
+					verdictCache);
+
+			if (existingVerdictCache != null) {
+				verdictCache = existingVerdictCache;
+			}
+		}
+
+		return new CachingRequestAttributeInspector(requestAttributeInspector, verdictCache);
+	}
+
+	@Override
+	public RequestAttributeInspectorFactory getWrapped() {
+		return wrappedRequestAttributeInspectorFactory;
+	}
+}
@@ -0,0 +1,320 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.scope;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+
+/**
+ * <p>This class is a {@link BridgeRequestScopeCache} that shares scopes among the nodes of a cluster by means of a
+ * {@link RemoteBridgeRequestScopeStore}, so that the RENDER_PHASE can find the scope that was saved by the
+ * ACTION_PHASE on another node when the load balancer is not configured for sticky sessions. The wrapped cache serves
+ * as a near-cache: scopes are always read from it first, and a scope that is fetched from the remote store is added to
+ * it.</p>
+ *
+ * <p>Writes (puts and removals) are applied to the near-cache and then replicated to the remote store without waiting
+ * for the result. Since {@link #put(String, BridgeRequestScope)} replicates the state of the scope at the time of the
+ * call, implementations should put the scope (again) after {@link BridgeRequestScope#saveState(
+ * javax.faces.context.FacesContext)}. Reads that miss the near-cache wait for the remote store for at most the
+ * configured timeout, after which the scope is considered missing. When another node puts or removes a scope, the
+ * invalidation that it broadcasts removes the stale copy from the near-cache. Methods such as {@link #size()} and
+ * {@link #entrySet()} only reflect the near-cache.</p>
+ *
+ * @author  Neil Griffin
+ */
+public class ClusteredBridgeRequestScopeCache extends IndexedBridgeRequestScopeCacheWrapper
+	implements RemoteBridgeRequestScopeStore.InvalidationListener {
+
+	// Public Constants
+	public static final long DEFAULT_REMOTE_TIMEOUT_MILLIS = 250L;
+
+	// Private Constants
+	private static final int INVALIDATION_STRIPE_COUNT = 64;
+
+	// Private Data Members
+	private final BridgeRequestScopeMarshaller bridgeRequestScopeMarshaller;
+	private final AtomicLong invalidationCount = new AtomicLong();
+	private final AtomicLongArray invalidationGenerations = new AtomicLongArray(INVALIDATION_STRIPE_COUNT);
+	private final AtomicLong nearHitCount = new AtomicLong();
+	private final AtomicLong remoteFailureCount = new AtomicLong();
+	private final AtomicLong remoteHitCount = new AtomicLong();
+	private final AtomicLong remoteMissCount = new AtomicLong();
+	private final RemoteBridgeRequestScopeStore remoteBridgeRequestScopeStore;
+	private final long remoteTimeoutMillis;
+	private final IndexedBridgeRequestScopeCache wrappedBridgeRequestScopeCache;
+
+	public ClusteredBridgeRequestScopeCache(IndexedBridgeRequestScopeCache bridgeRequestScopeCache,
+		RemoteBridgeRequestScopeStore remoteBridgeRequestScopeStore) {
+		this(bridgeRequestScopeCache, remoteBridgeRequestScopeStore, new SerializingBridgeRequestScopeMarshaller(),
+			DEFAULT_REMOTE_TIMEOUT_MILLIS);
+	}
+
+	/**
+	 * Constructs a new cache and registers it as an invalidation listener of the specified remote store.
+	 *
+	 * @param  bridgeRequestScopeCache        The near-cache.
+	 * @param  remoteBridgeRequestScopeStore  The view of the remote store for this node.
+	 * @param  bridgeRequestScopeMarshaller   The marshaller that converts scopes to and from bytes.
+	 * @param  remoteTimeoutMillis            The maximum time to wait for the remote store when reading.
+	 */
+	public ClusteredBridgeRequestScopeCache(IndexedBridgeRequestScopeCache bridgeRequestScopeCache,
+		RemoteBridgeRequestScopeStore remoteBridgeRequestScopeStore,
+		BridgeRequestScopeMarshaller bridgeRequestScopeMarshaller, long remoteTimeoutMillis) {
+
+		this.wrappedBridgeRequestScopeCache = bridgeRequestScopeCache;
+		this.remoteBridgeRequestScopeStore = remoteBridgeRequestScopeStore;
+		this.bridgeRequestScopeMarshaller = bridgeRequestScopeMarshaller;
+		this.remoteTimeoutMillis = remoteTimeoutMillis;
+		remoteBridgeRequestScopeStore.addInvalidationListener(this);
+	}
+
+	/**
+	 * Unregisters this cache as an invalidation listener of the remote store. The remote store itself is not closed,
+	 * since it may be shared.
+	 */
+	public void close() {
+		remoteBridgeRequestScopeStore.removeInvalidationListener(this);
+	}
+
+	@Override
+	public BridgeRequestScope get(Object key) {
+
+		BridgeRequestScope bridgeRequestScope = getWrapped().get(key);
+
+		if (bridgeRequestScope != null) {
+			nearHitCount.incrementAndGet();
+
+			return bridgeRequestScope;
+		}
+
+		if (!(key instanceof String)) {
+			return null;
+		}
+
+		String id = (String) key;
+
+		// If an invalidation of the same key arrives while the scope is being fetched, then the fetched bytes may be
+		// stale and must not be added to the near-cache (where they would otherwise remain until evicted). Since the
+		// generations are tracked per stripe of keys, an invalidation of an unrelated key only prevents near-caching if
+		// the keys share a stripe.
+		int invalidationStripe = getInvalidationStripe(id);
+		long invalidationGeneration = invalidationGenerations.get(invalidationStripe);
+		Future<byte[]> future = remoteBridgeRequestScopeStore.get(id);
+
+		if (!awaitCompletion(future, "get", id)) {
+			return null;
+		}
+
+		byte[] bytes = getCompleted(future);
+
+		if (bytes == null) {
+			remoteMissCount.incrementAndGet();
+
+			return null;
+		}
+
+		try {
+			bridgeRequestScope = bridgeRequestScopeMarshaller.unmarshal(bytes);
+		}
+		catch (IOException e) {
+			remoteFailureCount.incrementAndGet();
+			logFailure("unmarshal", id, e);
+
+			return null;
+		}
+		catch (ClassNotFoundException e) {
+			remoteFailureCount.incrementAndGet();
+			logFailure("unmarshal", id, e);
+
+			return null;
+		}
+
+		remoteHitCount.incrementAndGet();
+
+		if (invalidationGenerations.get(invalidationStripe) == invalidationGeneration) {
+			getWrapped().put(id, bridgeRequestScope);
+
+			// An invalidation that arrived after the check removed the key before the put, so undo the put.
+			if ((invalidationGenerations.get(invalidationStripe) != invalidationGeneration) &&
+					(getWrapped().get(id) == bridgeRequestScope)) {
+				getWrapped().remove(id);
+			}
+		}
+
+		return bridgeRequestScope;
+	}
+
+	@Override
+	public void invalidated(String key) {
+		invalidationGenerations.incrementAndGet(getInvalidationStripe(key));
+		invalidationCount.incrementAndGet();
+		getWrapped().remove(key);
+	}
+
+	@Override
+	public BridgeRequestScope put(String key, BridgeRequestScope value) {
+
+		BridgeRequestScope oldValue = getWrapped().put(key, value);
+
+		try {
+			remoteBridgeRequestScopeStore.put(key, bridgeRequestScopeMarshaller.marshal(value));
+		}
+		catch (IOException e) {
+
+			// The scope remains available on this node, which is the behavior of a non-clustered cache.
+			remoteFailureCount.incrementAndGet();
+			logFailure("marshal", key, e);
+		}
+
+		return oldValue;
+	}
+
+	@Override
+	public BridgeRequestScope remove(Object key) {
+
+		BridgeRequestScope oldValue = getWrapped().remove(key);
+
+		if (key instanceof String) {
+			remoteBridgeRequestScopeStore.remove((String) key);
+		}
+
+		return oldValue;
+	}
+
+	@Override
+	public int removeBridgeRequestScopesByPortlet(String portletName) {
+
+		int nearCount = super.removeBridgeRequestScopesByPortlet(portletName);
+		Integer remoteCount = await(remoteBridgeRequestScopeStore.removeByPortlet(portletName), "removeByPortlet",
+				portletName);
+
+		return (remoteCount == null) ? nearCount : Math.max(nearCount, remoteCount);
+	}
+
+	@Override
+	public int removeBridgeRequestScopesBySession(String sessionId) {
+
+		int nearCount = super.removeBridgeRequestScopesBySession(sessionId);
+		Integer remoteCount = await(remoteBridgeRequestScopeStore.removeBySession(sessionId), "removeBySession",
+				sessionId);
+
+		return (remoteCount == null) ? nearCount : Math.max(nearCount, remoteCount);
+	}
+
+	private <T> T await(Future<T> future, String operation, String key) {
+
+		if (awaitCompletion(future, operation, key)) {
+			return getCompleted(future);
+		}
+
+		return null;
+	}
+
+	private boolean awaitCompletion(Future<?> future, String operation, String key) {
+
+		try {
+			future.get(remoteTimeoutMillis, TimeUnit.MILLISECONDS);
+
+			return true;
+		}
+		catch (TimeoutException e) {
+			future.cancel(false);
+			remoteFailureCount.incrementAndGet();
+			logFailure(operation, key, e);
+		}
+		catch (ExecutionException e) {
+			remoteFailureCount.incrementAndGet();
+			logFailure(operation, key, e.getCause());
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		return false;
+	}
+
+	private <T> T getCompleted(Future<T> future) {
+
+		try {
+			return future.get();
+		}
+		catch (Exception e) {
+
+			// The future has already completed successfully, so this cannot happen.
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private int getInvalidationStripe(String key) {
+
+		int hashCode = key.hashCode();
+
+		return (hashCode ^ (hashCode >>> 16)) & (INVALIDATION_STRIPE_COUNT - 1);
+	}
+
+	private void logFailure(String operation, String key, Throwable throwable) {
+
+		// Since the API can't use a logging system like SLF4J the best we can do is print to stderr.
+		System.err.println("Unable to " + operation + " bridge request scope key=[" + key + "] with " +
+			remoteBridgeRequestScopeStore.getClass().getName() + ": " + throwable);
+	}
+
+	/**
+	 * Returns the number of times that a scope was put or removed by another node.
+	 */
+	public long getInvalidationCount() {
+		return invalidationCount.get();
+	}
+
+	/**
+	 * Returns the number of reads that were served by the near-cache.
+	 */
+	public long getNearHitCount() {
+		return nearHitCount.get();
+	}
+
+	/**
+	 * Returns the number of remote operations that failed or timed out, and of scopes that could not be marshalled.
+	 */
+	public long getRemoteFailureCount() {
+		return remoteFailureCount.get();
+	}
+
+	/**
+	 * Returns the number of reads that missed the near-cache but were served by the remote store.
+	 */
+	public long getRemoteHitCount() {
+		return remoteHitCount.get();
+	}
+
+	/**
+	 * Returns the number of reads that missed both the near-cache and the remote store.
+	 */
+	public long getRemoteMissCount() {
+		return remoteMissCount.get();
+	}
+
+	@Override
+	public IndexedBridgeRequestScopeCache getWrapped() {
+		return wrappedBridgeRequestScopeCache;
+	}
+}
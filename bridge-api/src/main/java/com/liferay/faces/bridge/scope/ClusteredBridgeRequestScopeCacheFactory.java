@@ -0,0 +1,160 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.scope;
+
+import java.util.Iterator;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+import javax.portlet.PortletContext;
+
+
+/**
+ * This class is a factory that decorates the {@link BridgeRequestScopeCache} created by the wrapped factory (which
+ * serves as the near-cache) with a {@link ClusteredBridgeRequestScopeCache}, provided that an implementation of {@link
+ * RemoteBridgeRequestScopeStore} is registered as a service. Otherwise the cache of the wrapped factory is returned as
+ * is. The time to wait for the remote store can be specified (in milliseconds) with the {@link
+ * #REMOTE_BRIDGE_REQUEST_SCOPE_STORE_TIMEOUT} context init-param. In order to select it, register this class as the
+ * {@link BridgeRequestScopeCacheFactory} in the bridge factory configuration.
+ *
+ * @author  Neil Griffin
+ */
+public class ClusteredBridgeRequestScopeCacheFactory extends BridgeRequestScopeCacheFactory {
+
+	// Public Constants
+	public static final String REMOTE_BRIDGE_REQUEST_SCOPE_STORE_TIMEOUT =
+		"com.liferay.faces.bridge.remoteBridgeRequestScopeStoreTimeout";
+
+	// Private Constants
+	private static final String CACHE_ATTRIBUTE_NAME = ClusteredBridgeRequestScopeCacheFactory.class.getName();
+
+	// Private Data Members
+	private BridgeRequestScopeCacheFactory wrappedBridgeRequestScopeCacheFactory;
+
+	public ClusteredBridgeRequestScopeCacheFactory(BridgeRequestScopeCacheFactory bridgeRequestScopeCacheFactory) {
+		this.wrappedBridgeRequestScopeCacheFactory = bridgeRequestScopeCacheFactory;
+	}
+
+	/**
+	 * Returns the value of the {@link #REMOTE_BRIDGE_REQUEST_SCOPE_STORE_TIMEOUT} init-param of the specified {@link
+	 * PortletContext}, or {@link ClusteredBridgeRequestScopeCache#DEFAULT_REMOTE_TIMEOUT_MILLIS} if the init-param is
+	 * not specified or is not a positive integer.
+	 */
+	public static long getRemoteTimeoutMillis(PortletContext portletContext) {
+
+		long remoteTimeoutMillis = ClusteredBridgeRequestScopeCache.DEFAULT_REMOTE_TIMEOUT_MILLIS;
+		String initParameterValue = portletContext.getInitParameter(REMOTE_BRIDGE_REQUEST_SCOPE_STORE_TIMEOUT);
+
+		if (initParameterValue != null) {
+
+			try {
+				long value = Long.parseLong(initParameterValue.trim());
+
+				if (value > 0L) {
+					remoteTimeoutMillis = value;
+				}
+			}
+			catch (NumberFormatException e) {
+
+				// Since the API can't use a logging system like SLF4J the best we can do is print to stderr.
+				System.err.println("Invalid value=[" + initParameterValue + "] for init-param=[" +
+					REMOTE_BRIDGE_REQUEST_SCOPE_STORE_TIMEOUT + "]");
+			}
+		}
+
+		return remoteTimeoutMillis;
+	}
+
+	@Override
+	public BridgeRequestScopeCache getBridgeRequestScopeCache(PortletContext portletContext) {
+
+		BridgeRequestScopeCache bridgeRequestScopeCache = (BridgeRequestScopeCache) portletContext.getAttribute(
+				CACHE_ATTRIBUTE_NAME);
+
+		if (bridgeRequestScopeCache == null) {
+
+			synchronized (this) {
+
+				bridgeRequestScopeCache = (BridgeRequestScopeCache) portletContext.getAttribute(CACHE_ATTRIBUTE_NAME);
+
+				if (bridgeRequestScopeCache == null) {
+					bridgeRequestScopeCache = newBridgeRequestScopeCache(portletContext);
+					portletContext.setAttribute(CACHE_ATTRIBUTE_NAME, bridgeRequestScopeCache);
+				}
+			}
+		}
+
+		return bridgeRequestScopeCache;
+	}
+
+	/**
+	 * Creates the marshaller that converts scopes to and from bytes. Subclasses may override this method in order to
+	 * provide a more compact encoding than Java serialization.
+	 */
+	protected BridgeRequestScopeMarshaller newBridgeRequestScopeMarshaller(PortletContext portletContext) {
+		return new SerializingBridgeRequestScopeMarshaller();
+	}
+
+	/**
+	 * Creates the cache for the specified {@link PortletContext}.
+	 */
+	protected BridgeRequestScopeCache newBridgeRequestScopeCache(PortletContext portletContext) {
+
+		BridgeRequestScopeCache nearCache = getWrapped().getBridgeRequestScopeCache(portletContext);
+		RemoteBridgeRequestScopeStore remoteBridgeRequestScopeStore = newRemoteBridgeRequestScopeStore(portletContext);
+
+		if (remoteBridgeRequestScopeStore == null) {
+			return nearCache;
+		}
+
+		IndexedBridgeRequestScopeCache indexedNearCache =
+			IndexedBridgeRequestScopeCacheWrapper.toIndexedBridgeRequestScopeCache(nearCache,
+				ClusteredBridgeRequestScopeCache.class);
+
+		return new ClusteredBridgeRequestScopeCache(indexedNearCache, remoteBridgeRequestScopeStore,
+				newBridgeRequestScopeMarshaller(portletContext), getRemoteTimeoutMillis(portletContext));
+	}
+
+	/**
+	 * Creates the remote store for this node, or returns <code>null</code> if there is none. The default implementation
+	 * returns the first implementation of {@link RemoteBridgeRequestScopeStore} that is registered as a service.
+	 */
+	protected RemoteBridgeRequestScopeStore newRemoteBridgeRequestScopeStore(PortletContext portletContext) {
+
+		Iterator<RemoteBridgeRequestScopeStore> iterator = ServiceLoader.load(RemoteBridgeRequestScopeStore.class)
+			.iterator();
+
+		try {
+
+			if (iterator.hasNext()) {
+				return iterator.next();
+			}
+		}
+		catch (ServiceConfigurationError e) {
+
+			// Since the API can't use a logging system like SLF4J the best we can do is print to stderr.
+			System.err.println("Unable to load " + RemoteBridgeRequestScopeStore.class.getName() + " service: " +
+				e.getMessage());
+		}
+
+		return null;
+	}
+
+	@Override
+	public BridgeRequestScopeCacheFactory getWrapped() {
+		return wrappedBridgeRequestScopeCacheFactory;
+	}
+}
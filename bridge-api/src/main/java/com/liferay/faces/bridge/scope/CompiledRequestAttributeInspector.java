@@ -0,0 +1,64 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.scope;
+
+/**
+ * This class is a {@link RequestAttributeInspector} decorator that answers {@link #containsExcludedNamespace(String)}
+ * and {@link #isExcludedByConfig(String, Object)} with a {@link RequestAttributeNameTrie} that is compiled once (per
+ * portlet) rather than by scanning the list of excluded namespaces and attributes for every request attribute. The
+ * remaining methods are delegated to the wrapped inspector.
+ *
+ * @author  Neil Griffin
+ */
+public class CompiledRequestAttributeInspector extends RequestAttributeInspectorWrapper {
+
+	// Private Data Members
+	private RequestAttributeNameTrie excludedAttributes;
+	private RequestAttributeNameTrie excludedNamespaces;
+	private RequestAttributeInspector wrappedRequestAttributeInspector;
+
+	/**
+	 * Constructs a new decorator.
+	 *
+	 * @param  requestAttributeInspector  The wrapped inspector.
+	 * @param  excludedNamespaces         The compiled namespaces that are excluded by Section 5.1.2 of the Bridge
+	 *                                    Specification.
+	 * @param  excludedAttributes         The compiled attribute names (and namespace wildcards) that are excluded by
+	 *                                    configuration.
+	 */
+	public CompiledRequestAttributeInspector(RequestAttributeInspector requestAttributeInspector,
+		RequestAttributeNameTrie excludedNamespaces, RequestAttributeNameTrie excludedAttributes) {
+
+		this.wrappedRequestAttributeInspector = requestAttributeInspector;
+		this.excludedNamespaces = excludedNamespaces;
+		this.excludedAttributes = excludedAttributes;
+	}
+
+	@Override
+	public boolean containsExcludedNamespace(String name) {
+		return excludedNamespaces.matches(name);
+	}
+
+	@Override
+	public boolean isExcludedByConfig(String name, Object value) {
+		return excludedAttributes.matches(name);
+	}
+
+	@Override
+	public RequestAttributeInspector getWrapped() {
+		return wrappedRequestAttributeInspector;
+	}
+}
@@ -0,0 +1,120 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.scope;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.portlet.PortletConfig;
+import javax.portlet.PortletContext;
+import javax.portlet.PortletRequest;
+import javax.portlet.faces.Bridge;
+
+import com.liferay.faces.bridge.config.BridgeConfig;
+
+
+/**
+ * This class is a factory that decorates the {@link RequestAttributeInspector} created by the wrapped factory with a
+ * {@link CompiledRequestAttributeInspector}. The excluded attributes of a portlet are the union of {@link
+ * BridgeConfig#getExcludedRequestAttributes()} and the <code>javax.portlet.faces.excludedRequestAttributes</code>
+ * init-param (saved by {@link javax.portlet.faces.GenericFacesPortlet} as a portlet context attribute), and are
+ * compiled the first time an inspector is requested for the portlet. In order to select it, register this class as the
+ * {@link RequestAttributeInspectorFactory} in the bridge factory configuration.
+ *
+ * @author  Neil Griffin
+ */
+public class CompiledRequestAttributeInspectorFactory extends RequestAttributeInspectorFactory {
+
+	/**
+	 * The namespaces whose attributes are excluded from the bridge request scope by Section 5.1.2 of the Bridge
+	 * Specification.
+	 */
+	public static final List<String> EXCLUDED_NAMESPACES = Collections.unmodifiableList(Arrays.asList(
+				"javax.faces.*", "javax.portlet.*", "javax.portlet.faces.*", "javax.servlet.*",
+				"javax.servlet.include.*"));
+
+	// Private Constants
+	private static final RequestAttributeNameTrie EXCLUDED_NAMESPACE_TRIE = RequestAttributeNameTrie.compile(
+			EXCLUDED_NAMESPACES);
+
+	// Private Data Members
+	private final ConcurrentMap<String, RequestAttributeNameTrie> excludedAttributeTries =
+		new ConcurrentHashMap<String, RequestAttributeNameTrie>();
+	private RequestAttributeInspectorFactory wrappedRequestAttributeInspectorFactory;
+
+	public CompiledRequestAttributeInspectorFactory(RequestAttributeInspectorFactory requestAttributeInspectorFactory) {
+		this.wrappedRequestAttributeInspectorFactory = requestAttributeInspectorFactory;
+	}
+
+	@Override
+	public RequestAttributeInspector getRequestAttributeInspector(PortletRequest portletRequest,
+		PortletConfig portletConfig, BridgeConfig bridgeConfig) {
+
+		RequestAttributeInspector requestAttributeInspector = getWrapped().getRequestAttributeInspector(portletRequest,
+				portletConfig, bridgeConfig);
+
+		String portletName = portletConfig.getPortletName();
+		RequestAttributeNameTrie excludedAttributeTrie = excludedAttributeTries.get(portletName);
+
+		if (excludedAttributeTrie == null) {
+
+			// Compiling is idempotent, so a race between two requests for the same portlet is harmless.
+			excludedAttributeTrie = compileExcludedAttributes(portletConfig, bridgeConfig);
+			excludedAttributeTries.putIfAbsent(portletName, excludedAttributeTrie);
+		}
+
+		return new CompiledRequestAttributeInspector(requestAttributeInspector, EXCLUDED_NAMESPACE_TRIE,
+				excludedAttributeTrie);
+	}
+
+	protected RequestAttributeNameTrie compileExcludedAttributes(PortletConfig portletConfig,
+		BridgeConfig bridgeConfig) {
+
+		List<String> excludedAttributes = new ArrayList<String>();
+		Set<String> configuredAttributes = bridgeConfig.getExcludedRequestAttributes();
+
+		if (configuredAttributes != null) {
+			excludedAttributes.addAll(configuredAttributes);
+		}
+
+		PortletContext portletContext = portletConfig.getPortletContext();
+		String attributeName = Bridge.BRIDGE_PACKAGE_PREFIX + portletConfig.getPortletName() + "." +
+			Bridge.EXCLUDED_REQUEST_ATTRIBUTES;
+		Object portletAttributes = portletContext.getAttribute(attributeName);
+
+		if (portletAttributes instanceof List) {
+
+			for (Object portletAttribute : (List<?>) portletAttributes) {
+
+				if (portletAttribute != null) {
+					excludedAttributes.add(portletAttribute.toString());
+				}
+			}
+		}
+
+		return RequestAttributeNameTrie.compile(excludedAttributes);
+	}
+
+	@Override
+	public RequestAttributeInspectorFactory getWrapped() {
+		return wrappedRequestAttributeInspectorFactory;
+	}
+}
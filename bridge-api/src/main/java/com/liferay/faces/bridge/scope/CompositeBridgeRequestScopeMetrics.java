@@ -0,0 +1,169 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.scope;
+
+import java.util.List;
+
+
+/**
+ * This class forwards each measurement to a list of {@link BridgeRequestScopeMetrics}, so that the default {@link
+ * StripedBridgeRequestScopeMetrics} can be combined with implementations that are registered as services.
+ *
+ * @author  Neil Griffin
+ */
+final class CompositeBridgeRequestScopeMetrics implements BridgeRequestScopeMetrics {
+
+	// Private Data Members
+	private final BridgeRequestScopeMetrics[] bridgeRequestScopeMetrics;
+
+	CompositeBridgeRequestScopeMetrics(List<BridgeRequestScopeMetrics> bridgeRequestScopeMetrics) {
+		this.bridgeRequestScopeMetrics = bridgeRequestScopeMetrics.toArray(
+				new BridgeRequestScopeMetrics[bridgeRequestScopeMetrics.size()]);
+	}
+
+	@Override
+	public void recordCacheHit() {
+
+		for (BridgeRequestScopeMetrics metrics : bridgeRequestScopeMetrics) {
+			metrics.recordCacheHit();
+		}
+	}
+
+	@Override
+	public void recordCacheMiss() {
+
+		for (BridgeRequestScopeMetrics metrics : bridgeRequestScopeMetrics) {
+			metrics.recordCacheMiss();
+		}
+	}
+
+	@Override
+	public void recordCachePut() {
+
+		for (BridgeRequestScopeMetrics metrics : bridgeRequestScopeMetrics) {
+			metrics.recordCachePut();
+		}
+	}
+
+	@Override
+	public void recordPortletRemoval(long nanos) {
+
+		for (BridgeRequestScopeMetrics metrics : bridgeRequestScopeMetrics) {
+			metrics.recordPortletRemoval(nanos);
+		}
+	}
+
+	@Override
+	public void recordRemoval(BoundedBridgeRequestScopeCache.RemovalCause removalCause) {
+
+		for (BridgeRequestScopeMetrics metrics : bridgeRequestScopeMetrics) {
+			metrics.recordRemoval(removalCause);
+		}
+	}
+
+	@Override
+	public void recordRestoreState(long nanos) {
+
+		for (BridgeRequestScopeMetrics metrics : bridgeRequestScopeMetrics) {
+			metrics.recordRestoreState(nanos);
+		}
+	}
+
+	@Override
+	public void recordSaveState(int attributeCount, long byteCount, long nanos) {
+
+		for (BridgeRequestScopeMetrics metrics : bridgeRequestScopeMetrics) {
+			metrics.recordSaveState(attributeCount, byteCount, nanos);
+		}
+	}
+
+	@Override
+	public void recordScopesRemovedByPortlet(int scopeCount) {
+
+		for (BridgeRequestScopeMetrics metrics : bridgeRequestScopeMetrics) {
+			metrics.recordScopesRemovedByPortlet(scopeCount);
+		}
+	}
+
+	@Override
+	public void recordScopesRemovedBySession(int scopeCount) {
+
+		for (BridgeRequestScopeMetrics metrics : bridgeRequestScopeMetrics) {
+			metrics.recordScopesRemovedBySession(scopeCount);
+		}
+	}
+
+	@Override
+	public void recordSessionBudgetExceeded(int scopeCount, long byteCount) {
+
+		for (BridgeRequestScopeMetrics metrics : bridgeRequestScopeMetrics) {
+			metrics.recordSessionBudgetExceeded(scopeCount, byteCount);
+		}
+	}
+
+	@Override
+	public void recordSessionRemoval(long nanos) {
+
+		for (BridgeRequestScopeMetrics metrics : bridgeRequestScopeMetrics) {
+			metrics.recordSessionRemoval(nanos);
+		}
+	}
+
+	@Override
+	public void recordSessionRemovalBackpressure() {
+
+		for (BridgeRequestScopeMetrics metrics : bridgeRequestScopeMetrics) {
+			metrics.recordSessionRemovalBackpressure();
+		}
+	}
+
+	@Override
+	public void recordSessionRemovalBatch(int sessionCount, int scopeCount, long nanos) {
+
+		for (BridgeRequestScopeMetrics metrics : bridgeRequestScopeMetrics) {
+			metrics.recordSessionRemovalBatch(sessionCount, scopeCount, nanos);
+		}
+	}
+
+	@Override
+	public void recordViewStateCompressed(int byteCount, int compressedByteCount, long nanos) {
+
+		for (BridgeRequestScopeMetrics metrics : bridgeRequestScopeMetrics) {
+			metrics.recordViewStateCompressed(byteCount, compressedByteCount, nanos);
+		}
+	}
+
+	@Override
+	public void recordViewStateDecompressed(int byteCount, long nanos) {
+
+		for (BridgeRequestScopeMetrics metrics : bridgeRequestScopeMetrics) {
+			metrics.recordViewStateDecompressed(byteCount, nanos);
+		}
+	}
+
+	@Override
+	public boolean isScopeSizeSampled() {
+
+		for (BridgeRequestScopeMetrics metrics : bridgeRequestScopeMetrics) {
+
+			if (metrics.isScopeSizeSampled()) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+}
@@ -0,0 +1,54 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.scope;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+
+
+/**
+ * This class is an {@link ObjectInputStream} that resolves classes with the thread context classloader, so that the
+ * classes of the portlet application can be deserialized by the classes of the API, which may have been loaded by a
+ * parent classloader.
+ *
+ * @author  Neil Griffin
+ */
+final class ContextClassLoaderObjectInputStream extends ObjectInputStream {
+
+	ContextClassLoaderObjectInputStream(InputStream inputStream) throws IOException {
+		super(inputStream);
+	}
+
+	@Override
+	protected Class<?> resolveClass(ObjectStreamClass objectStreamClass) throws IOException, ClassNotFoundException {
+
+		ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+
+		if (classLoader != null) {
+
+			try {
+				return Class.forName(objectStreamClass.getName(), false, classLoader);
+			}
+			catch (ClassNotFoundException e) {
+				// Fall back to the default resolution below.
+			}
+		}
+
+		return super.resolveClass(objectStreamClass);
+	}
+}
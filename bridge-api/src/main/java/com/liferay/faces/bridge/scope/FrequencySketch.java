@@ -0,0 +1,140 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.scope;
+
+/**
+ * This class is a probabilistic count-min sketch that estimates the popularity of a key within a time window. Each
+ * counter is 4 bits wide (a maximum of 15) and sixteen counters are packed into each <code>long</code>. In order to
+ * keep the history fresh, all counters are halved ("aged") once the number of increments reaches ten times the
+ * maximum size of the cache. Instances of this class are not thread-safe, and so callers must provide their own
+ * synchronization.
+ *
+ * @author  Neil Griffin
+ */
+final class FrequencySketch {
+
+	// Private Constants
+	private static final long ONE_MASK = 0x1111111111111111L;
+	private static final long RESET_MASK = 0x7777777777777777L;
+	private static final long[] SEED = new long[] {
+			0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+		};
+
+	// Private Data Members
+	private int sampleSize;
+	private int size;
+	private long[] table;
+	private int tableMask;
+
+	FrequencySketch(int maximumSize) {
+		ensureCapacity(maximumSize);
+	}
+
+	void ensureCapacity(int maximumSize) {
+
+		int maximum = Math.max(1, Math.min(maximumSize, 1 << 30));
+
+		if ((table == null) || (table.length < maximum)) {
+			table = new long[ceilingPowerOfTwo(maximum)];
+			tableMask = table.length - 1;
+			sampleSize = (maximum > (Integer.MAX_VALUE / 10)) ? Integer.MAX_VALUE : (10 * maximum);
+			size = 0;
+		}
+	}
+
+	/**
+	 * Returns the estimated number of occurrences of the specified key, up to a maximum of 15.
+	 */
+	int frequency(Object key) {
+
+		int hash = spread(key.hashCode());
+		int start = (hash & 3) << 2;
+		int frequency = Integer.MAX_VALUE;
+
+		for (int i = 0; i < 4; i++) {
+			int index = indexOf(hash, i);
+			int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+			frequency = Math.min(frequency, count);
+		}
+
+		return frequency;
+	}
+
+	/**
+	 * Increments the popularity of the specified key if it does not exceed the maximum of 15. When the number of
+	 * increments reaches the sample size, all counters are aged.
+	 */
+	void increment(Object key) {
+
+		int hash = spread(key.hashCode());
+		int start = (hash & 3) << 2;
+		boolean added = false;
+
+		for (int i = 0; i < 4; i++) {
+			added |= incrementAt(indexOf(hash, i), start + i);
+		}
+
+		if (added && (++size == sampleSize)) {
+			reset();
+		}
+	}
+
+	private static int ceilingPowerOfTwo(int x) {
+		return 1 << (32 - Integer.numberOfLeadingZeros(x - 1));
+	}
+
+	private static int spread(int x) {
+
+		x = ((x >>> 16) ^ x) * 0x45d9f3b;
+		x = ((x >>> 16) ^ x) * 0x45d9f3b;
+
+		return (x >>> 16) ^ x;
+	}
+
+	private boolean incrementAt(int i, int j) {
+
+		int offset = j << 2;
+		long mask = (0xfL << offset);
+
+		if ((table[i] & mask) != mask) {
+			table[i] += (1L << offset);
+
+			return true;
+		}
+
+		return false;
+	}
+
+	private int indexOf(int item, int i) {
+
+		long hash = (item + SEED[i]) * SEED[i];
+		hash += (hash >>> 32);
+
+		return ((int) hash) & tableMask;
+	}
+
+	private void reset() {
+
+		int count = 0;
+
+		for (int i = 0; i < table.length; i++) {
+			count += Long.bitCount(table[i] & ONE_MASK);
+			table[i] = (table[i] >>> 1) & RESET_MASK;
+		}
+
+		size = (size - (count >>> 2)) >>> 1;
+	}
+}
@@ -0,0 +1,49 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.scope;
+
+/**
+ * This interface is an optional extension of {@link BridgeRequestScopeCache} for caches that maintain secondary indexes
+ * by portlet name and by session id, so that the scopes held by a single owner can be removed without iterating the
+ * entire cache. Implementations of {@link BridgeRequestScopeManager} should check whether the cache is an instance of
+ * this interface and otherwise fall back to iterating the cache.
+ *
+ * @author  Neil Griffin
+ */
+public interface IndexedBridgeRequestScopeCache extends BridgeRequestScopeCache {
+
+	/**
+	 * Removes all of the {@link BridgeRequestScope} instances that are associated with the specified portlet name.
+	 * Implementations are encouraged to maintain an index so that the cost of this method is proportional to the number
+	 * of scopes associated with the portlet rather than to the size of the cache.
+	 *
+	 * @param   portletName  The name of the portlet, as returned by {@link javax.portlet.PortletConfig#getPortletName()}.
+	 *
+	 * @return  The number of scopes that were removed.
+	 */
+	int removeBridgeRequestScopesByPortlet(String portletName);
+
+	/**
+	 * Removes all of the {@link BridgeRequestScope} instances that are associated with the specified session id.
+	 * Implementations are encouraged to maintain an index so that the cost of this method is proportional to the number
+	 * of scopes associated with the session rather than to the size of the cache.
+	 *
+	 * @param   sessionId  The id of the session, as returned by {@link javax.servlet.http.HttpSession#getId()}.
+	 *
+	 * @return  The number of scopes that were removed.
+	 */
+	int removeBridgeRequestScopesBySession(String sessionId);
+}
@@ -0,0 +1,60 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.scope;
+
+/**
+ * This class is a wrapper for an {@link IndexedBridgeRequestScopeCache}. The indexed removal methods are delegated to
+ * the wrapped cache, so a cache that wraps an unindexed {@link BridgeRequestScopeCache} should extend {@link
+ * BridgeRequestScopeCacheWrapper} instead.
+ *
+ * @author  Neil Griffin
+ */
+public abstract class IndexedBridgeRequestScopeCacheWrapper extends BridgeRequestScopeCacheWrapper
+	implements IndexedBridgeRequestScopeCache {
+
+	/**
+	 * Returns the specified cache as an {@link IndexedBridgeRequestScopeCache}.
+	 *
+	 * @throws  IllegalStateException  If the specified cache is not an instance of {@link
+	 *                                 IndexedBridgeRequestScopeCache}, which means that the factory that created it is
+	 *                                 not configured to wrap a factory of indexed caches such as {@link
+	 *                                 BoundedBridgeRequestScopeCacheFactory}.
+	 */
+	static IndexedBridgeRequestScopeCache toIndexedBridgeRequestScopeCache(
+		BridgeRequestScopeCache bridgeRequestScopeCache, Class<?> wrapperClass) {
+
+		if (bridgeRequestScopeCache instanceof IndexedBridgeRequestScopeCache) {
+			return (IndexedBridgeRequestScopeCache) bridgeRequestScopeCache;
+		}
+
+		throw new IllegalStateException(wrapperClass.getName() + " requires an " +
+			IndexedBridgeRequestScopeCache.class.getName() + " but the wrapped factory created an instance of " +
+			((bridgeRequestScopeCache == null) ? null : bridgeRequestScopeCache.getClass().getName()) +
+			". Configure " + BoundedBridgeRequestScopeCacheFactory.class.getName() + " (or one of its subclasses)" +
+			" as the wrapped factory.");
+	}
+
+	public int removeBridgeRequestScopesByPortlet(String portletName) {
+		return getWrapped().removeBridgeRequestScopesByPortlet(portletName);
+	}
+
+	public int removeBridgeRequestScopesBySession(String sessionId) {
+		return getWrapped().removeBridgeRequestScopesBySession(sessionId);
+	}
+
+	@Override
+	public abstract IndexedBridgeRequestScopeCache getWrapped();
+}
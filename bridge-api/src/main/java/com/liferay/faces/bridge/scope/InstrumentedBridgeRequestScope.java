@@ -0,0 +1,107 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.scope;
+
+import java.io.IOException;
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.util.Map;
+
+import javax.faces.context.FacesContext;
+
+
+/**
+ * This class is a {@link BridgeRequestScope} decorator that records the elapsed time of {@link
+ * #saveState(FacesContext)} and {@link #restoreState(FacesContext)} to a {@link BridgeRequestScopeMetrics}. If the
+ * wrapped scope is a {@link Map} of its preserved attributes (as is customary for implementations), then the number of
+ * preserved attributes is recorded as well, and the encoded size of the scope is measured for a sample of the calls to
+ * {@link #saveState(FacesContext)}.
+ *
+ * <p>This class is {@link Serializable} so that instrumented scopes can be replicated with the portlet session and
+ * marshalled by caches, but it is replaced by the wrapped scope when it is serialized. A deserialized scope is
+ * therefore no longer instrumented, and the wrapped scope must itself be {@link Serializable}.</p>
+ *
+ * @author  Neil Griffin
+ */
+public class InstrumentedBridgeRequestScope extends BridgeRequestScopeWrapper implements Serializable {
+
+	// serialVersionUID
+	private static final long serialVersionUID = 3614372940558110628L;
+
+	// Private Data Members
+	private transient BridgeRequestScopeMetrics bridgeRequestScopeMetrics;
+	private transient BridgeRequestScope wrappedBridgeRequestScope;
+
+	public InstrumentedBridgeRequestScope(BridgeRequestScope bridgeRequestScope,
+		BridgeRequestScopeMetrics bridgeRequestScopeMetrics) {
+
+		this.wrappedBridgeRequestScope = bridgeRequestScope;
+		this.bridgeRequestScopeMetrics = bridgeRequestScopeMetrics;
+	}
+
+	@Override
+	public void restoreState(FacesContext facesContext) {
+
+		long startTime = System.nanoTime();
+		getWrapped().restoreState(facesContext);
+		bridgeRequestScopeMetrics.recordRestoreState(System.nanoTime() - startTime);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public void saveState(FacesContext facesContext) {
+
+		long startTime = System.nanoTime();
+		BridgeRequestScope bridgeRequestScope = getWrapped();
+		bridgeRequestScope.saveState(facesContext);
+
+		long elapsedNanos = System.nanoTime() - startTime;
+		int attributeCount = -1;
+		long byteCount = -1L;
+
+		if (bridgeRequestScope instanceof Map) {
+
+			Map<String, Object> preservedAttributes = (Map<String, Object>) bridgeRequestScope;
+			attributeCount = preservedAttributes.size();
+
+			// The time that it takes to measure the size is deliberately excluded from the elapsed time.
+			if (bridgeRequestScopeMetrics.isScopeSizeSampled()) {
+
+				try {
+					byteCount = BridgeRequestScopeCodec.encode(new BridgeRequestScopeState(bridgeRequestScope,
+								preservedAttributes)).length;
+				}
+				catch (IOException e) {
+					// The scope contains an attribute that is not serializable, so its size is unknown.
+				}
+			}
+		}
+
+		bridgeRequestScopeMetrics.recordSaveState(attributeCount, byteCount, elapsedNanos);
+	}
+
+	@Override
+	public BridgeRequestScope getWrapped() {
+		return wrappedBridgeRequestScope;
+	}
+
+	/**
+	 * Replaces this instance with the wrapped scope in the serialized form.
+	 */
+	protected Object writeReplace() throws ObjectStreamException {
+		return wrappedBridgeRequestScope;
+	}
+}
@@ -0,0 +1,82 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.scope;
+
+/**
+ * This class is a {@link BridgeRequestScopeCache} decorator that records cache hits, misses, puts and the number of
+ * scopes removed per portlet and per session to a {@link BridgeRequestScopeMetrics}.
+ *
+ * @author  Neil Griffin
+ */
+public class InstrumentedBridgeRequestScopeCache extends IndexedBridgeRequestScopeCacheWrapper {
+
+	// Private Data Members
+	private BridgeRequestScopeMetrics bridgeRequestScopeMetrics;
+	private IndexedBridgeRequestScopeCache wrappedBridgeRequestScopeCache;
+
+	public InstrumentedBridgeRequestScopeCache(IndexedBridgeRequestScopeCache bridgeRequestScopeCache,
+		BridgeRequestScopeMetrics bridgeRequestScopeMetrics) {
+
+		this.wrappedBridgeRequestScopeCache = bridgeRequestScopeCache;
+		this.bridgeRequestScopeMetrics = bridgeRequestScopeMetrics;
+	}
+
+	@Override
+	public BridgeRequestScope get(Object key) {
+
+		BridgeRequestScope bridgeRequestScope = getWrapped().get(key);
+
+		if (bridgeRequestScope == null) {
+			bridgeRequestScopeMetrics.recordCacheMiss();
+		}
+		else {
+			bridgeRequestScopeMetrics.recordCacheHit();
+		}
+
+		return bridgeRequestScope;
+	}
+
+	@Override
+	public BridgeRequestScope put(String key, BridgeRequestScope value) {
+
+		bridgeRequestScopeMetrics.recordCachePut();
+
+		return getWrapped().put(key, value);
+	}
+
+	@Override
+	public int removeBridgeRequestScopesByPortlet(String portletName) {
+
+		int scopeCount = super.removeBridgeRequestScopesByPortlet(portletName);
+		bridgeRequestScopeMetrics.recordScopesRemovedByPortlet(scopeCount);
+
+		return scopeCount;
+	}
+
+	@Override
+	public int removeBridgeRequestScopesBySession(String sessionId) {
+
+		int scopeCount = super.removeBridgeRequestScopesBySession(sessionId);
+		bridgeRequestScopeMetrics.recordScopesRemovedBySession(scopeCount);
+
+		return scopeCount;
+	}
+
+	@Override
+	public IndexedBridgeRequestScopeCache getWrapped() {
+		return wrappedBridgeRequestScopeCache;
+	}
+}
@@ -0,0 +1,58 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.scope;
+
+import javax.portlet.PortletContext;
+
+
+/**
+ * This class is a factory that creates one {@link BoundedBridgeRequestScopeCache} per {@link PortletContext} (see
+ * {@link BoundedBridgeRequestScopeCacheFactory}) that records removals to the {@link BridgeRequestScopeMetrics} of the
+ * web application, decorates it with an {@link InstrumentedBridgeRequestScopeCache}, and registers a {@link
+ * BridgeRequestScopeStatistics} MBean for it. In order to select it, register this class as the {@link
+ * BridgeRequestScopeCacheFactory} in the bridge factory configuration.
+ *
+ * @author  Neil Griffin
+ */
+public class InstrumentedBridgeRequestScopeCacheFactory extends BoundedBridgeRequestScopeCacheFactory {
+
+	public InstrumentedBridgeRequestScopeCacheFactory(BridgeRequestScopeCacheFactory bridgeRequestScopeCacheFactory) {
+		super(bridgeRequestScopeCacheFactory);
+	}
+
+	@Override
+	protected BridgeRequestScopeCache newBridgeRequestScopeCache(PortletContext portletContext) {
+
+		final BridgeRequestScopeMetrics bridgeRequestScopeMetrics =
+			BridgeRequestScopeMetricsRegistry.getBridgeRequestScopeMetrics(portletContext);
+		BoundedBridgeRequestScopeCache boundedBridgeRequestScopeCache = new BoundedBridgeRequestScopeCache(
+				getMaxManagedRequestScopes(portletContext), getTimeToLiveMillis(portletContext));
+		boundedBridgeRequestScopeCache.addRemovalListener(new BoundedBridgeRequestScopeCache.RemovalListener() {
+
+				@Override
+				public void onRemoval(String key, BridgeRequestScope bridgeRequestScope,
+					BoundedBridgeRequestScopeCache.RemovalCause removalCause) {
+					bridgeRequestScopeMetrics.recordRemoval(removalCause);
+				}
+			});
+
+		BridgeRequestScopeCache bridgeRequestScopeCache = new InstrumentedBridgeRequestScopeCache(
+				boundedBridgeRequestScopeCache, bridgeRequestScopeMetrics);
+		BridgeRequestScopeMetricsRegistry.registerMBean(portletContext, bridgeRequestScopeCache);
+
+		return bridgeRequestScopeCache;
+	}
+}
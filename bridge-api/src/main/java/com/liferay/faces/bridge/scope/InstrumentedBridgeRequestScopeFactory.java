@@ -0,0 +1,57 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.scope;
+
+import javax.portlet.PortletConfig;
+import javax.portlet.PortletRequest;
+
+import com.liferay.faces.bridge.config.BridgeConfig;
+
+
+/**
+ * This class is a factory that decorates the {@link BridgeRequestScope} created by the wrapped factory with an {@link
+ * InstrumentedBridgeRequestScope} that records to the {@link BridgeRequestScopeMetrics} of the web application. In
+ * order to select it, register this class as the {@link BridgeRequestScopeFactory} in the bridge factory
+ * configuration.
+ *
+ * @author  Neil Griffin
+ */
+public class InstrumentedBridgeRequestScopeFactory extends BridgeRequestScopeFactory {
+
+	// Private Data Members
+	private BridgeRequestScopeFactory wrappedBridgeRequestScopeFactory;
+
+	public InstrumentedBridgeRequestScopeFactory(BridgeRequestScopeFactory bridgeRequestScopeFactory) {
+		this.wrappedBridgeRequestScopeFactory = bridgeRequestScopeFactory;
+	}
+
+	@Override
+	public BridgeRequestScope getBridgeRequestScope(PortletRequest portletRequest, PortletConfig portletConfig,
+		BridgeConfig bridgeConfig) {
+
+		BridgeRequestScope bridgeRequestScope = getWrapped().getBridgeRequestScope(portletRequest, portletConfig,
+				bridgeConfig);
+		BridgeRequestScopeMetrics bridgeRequestScopeMetrics =
+			BridgeRequestScopeMetricsRegistry.getBridgeRequestScopeMetrics(portletConfig.getPortletContext());
+
+		return new InstrumentedBridgeRequestScope(bridgeRequestScope, bridgeRequestScopeMetrics);
+	}
+
+	@Override
+	public BridgeRequestScopeFactory getWrapped() {
+		return wrappedBridgeRequestScopeFactory;
+	}
+}
@@ -0,0 +1,67 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.scope;
+
+import javax.portlet.PortletConfig;
+import javax.servlet.http.HttpSession;
+
+
+/**
+ * This class is a {@link BridgeRequestScopeManager} decorator that records the elapsed time of removing the scopes of a
+ * portlet or of a session to the {@link BridgeRequestScopeMetrics} of the web application. Nothing is recorded for a
+ * session if the metrics have not yet been created by a portlet request.
+ *
+ * @author  Neil Griffin
+ */
+public class InstrumentedBridgeRequestScopeManager extends BridgeRequestScopeManagerWrapper {
+
+	// Private Data Members
+	private BridgeRequestScopeManager wrappedBridgeRequestScopeManager;
+
+	public InstrumentedBridgeRequestScopeManager(BridgeRequestScopeManager bridgeRequestScopeManager) {
+		this.wrappedBridgeRequestScopeManager = bridgeRequestScopeManager;
+	}
+
+	@Override
+	public void removeBridgeRequestScopesByPortlet(PortletConfig portletConfig) {
+
+		long startTime = System.nanoTime();
+		getWrapped().removeBridgeRequestScopesByPortlet(portletConfig);
+
+		BridgeRequestScopeMetrics bridgeRequestScopeMetrics =
+			BridgeRequestScopeMetricsRegistry.getBridgeRequestScopeMetrics(portletConfig.getPortletContext());
+		bridgeRequestScopeMetrics.recordPortletRemoval(System.nanoTime() - startTime);
+	}
+
+	@Override
+	public void removeBridgeRequestScopesBySession(HttpSession httpSession) {
+
+		long startTime = System.nanoTime();
+		getWrapped().removeBridgeRequestScopesBySession(httpSession);
+
+		BridgeRequestScopeMetrics bridgeRequestScopeMetrics =
+			BridgeRequestScopeMetricsRegistry.getBridgeRequestScopeMetrics(httpSession.getServletContext());
+
+		if (bridgeRequestScopeMetrics != null) {
+			bridgeRequestScopeMetrics.recordSessionRemoval(System.nanoTime() - startTime);
+		}
+	}
+
+	@Override
+	public BridgeRequestScopeManager getWrapped() {
+		return wrappedBridgeRequestScopeManager;
+	}
+}
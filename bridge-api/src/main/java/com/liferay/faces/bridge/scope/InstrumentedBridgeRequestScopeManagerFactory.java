@@ -0,0 +1,60 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.scope;
+
+/**
+ * This class is a factory that decorates the {@link BridgeRequestScopeManager} created by the wrapped factory with an
+ * {@link InstrumentedBridgeRequestScopeManager}. In order to select it, register this class as the {@link
+ * BridgeRequestScopeManagerFactory} in the bridge factory configuration.
+ *
+ * @author  Neil Griffin
+ */
+public class InstrumentedBridgeRequestScopeManagerFactory extends BridgeRequestScopeManagerFactory {
+
+	// Private Data Members
+	private volatile InstrumentedBridgeRequestScopeManager instrumentedBridgeRequestScopeManager;
+	private BridgeRequestScopeManagerFactory wrappedBridgeRequestScopeManagerFactory;
+
+	public InstrumentedBridgeRequestScopeManagerFactory(
+		BridgeRequestScopeManagerFactory bridgeRequestScopeManagerFactory) {
+		this.wrappedBridgeRequestScopeManagerFactory = bridgeRequestScopeManagerFactory;
+	}
+
+	@Override
+	public BridgeRequestScopeManager getBridgeRequestScopeManager() {
+
+		BridgeRequestScopeManager bridgeRequestScopeManager = getWrapped().getBridgeRequestScopeManager();
+
+		// Since it is customary for the wrapped factory to return a singleton, the decorator is only recreated if the
+		// wrapped factory returns a different instance.
+		InstrumentedBridgeRequestScopeManager instrumentedBridgeRequestScopeManager =
+			this.instrumentedBridgeRequestScopeManager;
+
+		if ((instrumentedBridgeRequestScopeManager == null) ||
+				(instrumentedBridgeRequestScopeManager.getWrapped() != bridgeRequestScopeManager)) {
+
+			instrumentedBridgeRequestScopeManager = new InstrumentedBridgeRequestScopeManager(bridgeRequestScopeManager);
+			this.instrumentedBridgeRequestScopeManager = instrumentedBridgeRequestScopeManager;
+		}
+
+		return instrumentedBridgeRequestScopeManager;
+	}
+
+	@Override
+	public BridgeRequestScopeManagerFactory getWrapped() {
+		return wrappedBridgeRequestScopeManagerFactory;
+	}
+}
@@ -0,0 +1,133 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.scope;
+
+import java.io.IOException;
+
+
+/**
+ * This class is a {@link BridgeRequestScopeCache} that records every put and removal of the wrapped cache in a {@link
+ * BridgeRequestScopeJournal}, so that the scopes can be reloaded after a restart. Since {@link #put(String,
+ * BridgeRequestScope)} journals the state of the scope at the time of the call, implementations should put the scope
+ * (again) after {@link BridgeRequestScope#saveState(javax.faces.context.FacesContext)}. The journal is written by a
+ * background thread, but the scope is marshalled on the calling thread, since the scope (and its preserved attributes)
+ * may be modified by the next request as soon as the put returns, and a marshaller cannot take a consistent snapshot
+ * of an arbitrary scope on another thread. A compact marshaller (see {@link
+ * JournalingBridgeRequestScopeCacheFactory#newBridgeRequestScopeMarshaller(javax.portlet.PortletContext)}) reduces
+ * this cost. If the wrapped cache is (or wraps) a {@link BoundedBridgeRequestScopeCache} or a {@link
+ * PortletShardedBridgeRequestScopeCache}, then scopes that are evicted or expired are journaled as removed as well.
+ * Since removals by portlet and by session are replayed by parsing the keys of the journaled scopes, the keys are
+ * expected to be the values of {@link BridgeRequestScope#getId()}, as they are in the bridge.
+ *
+ * @author  Neil Griffin
+ */
+public class JournalingBridgeRequestScopeCache extends IndexedBridgeRequestScopeCacheWrapper
+	implements BoundedBridgeRequestScopeCache.RemovalListener {
+
+	// Private Data Members
+	private final BridgeRequestScopeJournal bridgeRequestScopeJournal;
+	private final BridgeRequestScopeMarshaller bridgeRequestScopeMarshaller;
+	private final IndexedBridgeRequestScopeCache wrappedBridgeRequestScopeCache;
+
+	public JournalingBridgeRequestScopeCache(IndexedBridgeRequestScopeCache bridgeRequestScopeCache,
+		BridgeRequestScopeJournal bridgeRequestScopeJournal, BridgeRequestScopeMarshaller bridgeRequestScopeMarshaller) {
+
+		this.wrappedBridgeRequestScopeCache = bridgeRequestScopeCache;
+		this.bridgeRequestScopeJournal = bridgeRequestScopeJournal;
+		this.bridgeRequestScopeMarshaller = bridgeRequestScopeMarshaller;
+
+		BridgeRequestScopeRemovalListeners.addRemovalListener(bridgeRequestScopeCache, this);
+	}
+
+	@Override
+	public void clear() {
+		super.clear();
+		bridgeRequestScopeJournal.appendClear();
+	}
+
+	/**
+	 * Journals the removal of a scope that was evicted or expired by the wrapped cache. Explicit removals are journaled
+	 * by {@link #remove(Object)}.
+	 */
+	@Override
+	public void onRemoval(String key, BridgeRequestScope bridgeRequestScope,
+		BoundedBridgeRequestScopeCache.RemovalCause removalCause) {
+
+		if (removalCause != BoundedBridgeRequestScopeCache.RemovalCause.EXPLICIT) {
+			bridgeRequestScopeJournal.appendRemove(key);
+		}
+	}
+
+	@Override
+	public BridgeRequestScope put(String key, BridgeRequestScope value) {
+
+		BridgeRequestScope oldValue = super.put(key, value);
+
+		try {
+			bridgeRequestScopeJournal.appendPut(key, bridgeRequestScopeMarshaller.marshal(value));
+		}
+		catch (IOException e) {
+
+			// The scope remains available until the node is restarted, which is the behavior of a cache without a
+			// journal.
+			bridgeRequestScopeJournal.appendRemove(key);
+
+			// Since the API can't use a logging system like SLF4J the best we can do is print to stderr.
+			System.err.println("Unable to journal bridge request scope key=[" + key + "]: " + e);
+		}
+
+		return oldValue;
+	}
+
+	@Override
+	public BridgeRequestScope remove(Object key) {
+
+		BridgeRequestScope oldValue = super.remove(key);
+
+		if (key instanceof String) {
+			bridgeRequestScopeJournal.appendRemove((String) key);
+		}
+
+		return oldValue;
+	}
+
+	@Override
+	public int removeBridgeRequestScopesByPortlet(String portletName) {
+
+		int count = super.removeBridgeRequestScopesByPortlet(portletName);
+		bridgeRequestScopeJournal.appendRemoveByPortlet(portletName);
+
+		return count;
+	}
+
+	@Override
+	public int removeBridgeRequestScopesBySession(String sessionId) {
+
+		int count = super.removeBridgeRequestScopesBySession(sessionId);
+		bridgeRequestScopeJournal.appendRemoveBySession(sessionId);
+
+		return count;
+	}
+
+	public BridgeRequestScopeJournal getBridgeRequestScopeJournal() {
+		return bridgeRequestScopeJournal;
+	}
+
+	@Override
+	public IndexedBridgeRequestScopeCache getWrapped() {
+		return wrappedBridgeRequestScopeCache;
+	}
+}
@@ -0,0 +1,163 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.scope;
+
+import java.io.File;
+import java.io.IOException;
+
+import javax.portlet.PortletContext;
+
+
+/**
+ * This class is a factory that decorates the {@link BridgeRequestScopeCache} created by the wrapped factory with a
+ * {@link JournalingBridgeRequestScopeCache}, provided that the {@link #BRIDGE_REQUEST_SCOPE_JOURNAL_DIRECTORY} context
+ * init-param specifies a directory. Otherwise the cache of the wrapped factory is returned as is. The journal of each
+ * portlet application is kept in a subdirectory named after the {@link PortletContext#getPortletContextName()}, and is
+ * reloaded (in parallel) into the wrapped cache before the cache is returned for the first time. In order to select
+ * it, register this class as the {@link BridgeRequestScopeCacheFactory} in the bridge factory configuration.
+ *
+ * @author  Neil Griffin
+ */
+public class JournalingBridgeRequestScopeCacheFactory extends BridgeRequestScopeCacheFactory {
+
+	// Public Constants
+	public static final String BRIDGE_REQUEST_SCOPE_JOURNAL_DIRECTORY =
+		"com.liferay.faces.bridge.bridgeRequestScopeJournalDirectory";
+
+	// Private Constants
+	private static final String CACHE_ATTRIBUTE_NAME = JournalingBridgeRequestScopeCacheFactory.class.getName();
+
+	// Private Data Members
+	private BridgeRequestScopeCacheFactory wrappedBridgeRequestScopeCacheFactory;
+
+	public JournalingBridgeRequestScopeCacheFactory(BridgeRequestScopeCacheFactory bridgeRequestScopeCacheFactory) {
+		this.wrappedBridgeRequestScopeCacheFactory = bridgeRequestScopeCacheFactory;
+	}
+
+	/**
+	 * Returns the journal directory of the specified {@link PortletContext}, or <code>null</code> if the {@link
+	 * #BRIDGE_REQUEST_SCOPE_JOURNAL_DIRECTORY} init-param is not specified.
+	 */
+	public static File getJournalDirectory(PortletContext portletContext) {
+
+		String initParameterValue = portletContext.getInitParameter(BRIDGE_REQUEST_SCOPE_JOURNAL_DIRECTORY);
+
+		if ((initParameterValue == null) || (initParameterValue.trim().length() == 0)) {
+			return null;
+		}
+
+		String portletContextName = portletContext.getPortletContextName();
+
+		if (portletContextName == null) {
+			portletContextName = "default";
+		}
+
+		return new File(initParameterValue.trim(), portletContextName.replaceAll("[^A-Za-z0-9._-]", "_"));
+	}
+
+	@Override
+	public BridgeRequestScopeCache getBridgeRequestScopeCache(PortletContext portletContext) {
+
+		BridgeRequestScopeCache bridgeRequestScopeCache = (BridgeRequestScopeCache) portletContext.getAttribute(
+				CACHE_ATTRIBUTE_NAME);
+
+		if (bridgeRequestScopeCache == null) {
+
+			synchronized (this) {
+
+				bridgeRequestScopeCache = (BridgeRequestScopeCache) portletContext.getAttribute(CACHE_ATTRIBUTE_NAME);
+
+				if (bridgeRequestScopeCache == null) {
+					bridgeRequestScopeCache = newBridgeRequestScopeCache(portletContext);
+					portletContext.setAttribute(CACHE_ATTRIBUTE_NAME, bridgeRequestScopeCache);
+				}
+			}
+		}
+
+		return bridgeRequestScopeCache;
+	}
+
+	/**
+	 * Creates the marshaller that converts scopes to and from bytes. Subclasses may override this method in order to
+	 * provide a more compact encoding than Java serialization.
+	 */
+	protected BridgeRequestScopeMarshaller newBridgeRequestScopeMarshaller(PortletContext portletContext) {
+		return new SerializingBridgeRequestScopeMarshaller();
+	}
+
+	/**
+	 * Creates the cache for the specified {@link PortletContext}, reloading the journal into the wrapped cache.
+	 */
+	protected BridgeRequestScopeCache newBridgeRequestScopeCache(PortletContext portletContext) {
+
+		BridgeRequestScopeCache wrappedBridgeRequestScopeCache = getWrapped().getBridgeRequestScopeCache(
+				portletContext);
+		File journalDirectory = getJournalDirectory(portletContext);
+
+		if (journalDirectory == null) {
+			return wrappedBridgeRequestScopeCache;
+		}
+
+		IndexedBridgeRequestScopeCache indexedBridgeRequestScopeCache =
+			IndexedBridgeRequestScopeCacheWrapper.toIndexedBridgeRequestScopeCache(wrappedBridgeRequestScopeCache,
+				JournalingBridgeRequestScopeCache.class);
+		BridgeRequestScopeMarshaller bridgeRequestScopeMarshaller = newBridgeRequestScopeMarshaller(portletContext);
+		BridgeRequestScopeJournal bridgeRequestScopeJournal = null;
+
+		try {
+			bridgeRequestScopeJournal = new BridgeRequestScopeJournal(journalDirectory);
+
+			// The journaling cache is created first so that scopes that are evicted while reloading are journaled as
+			// removed.
+			BridgeRequestScopeCache bridgeRequestScopeCache = new JournalingBridgeRequestScopeCache(
+					indexedBridgeRequestScopeCache, bridgeRequestScopeJournal, bridgeRequestScopeMarshaller);
+			int reloadedCount = bridgeRequestScopeJournal.reload(wrappedBridgeRequestScopeCache,
+					bridgeRequestScopeMarshaller, Runtime.getRuntime().availableProcessors());
+			bridgeRequestScopeJournal.start();
+
+			// Since the API can't use a logging system like SLF4J the best we can do is print to stderr.
+			System.err.println("Reloaded [" + reloadedCount + "] bridge request scopes from journal=[" +
+				journalDirectory + "]");
+
+			return bridgeRequestScopeCache;
+		}
+		catch (IOException e) {
+
+			// Since the API can't use a logging system like SLF4J the best we can do is print to stderr.
+			System.err.println("Unable to open bridge request scope journal=[" + journalDirectory + "]: " + e);
+
+			// Closing the journal causes the removals that are reported by the wrapped cache to be dropped.
+			if (bridgeRequestScopeJournal != null) {
+				bridgeRequestScopeJournal.close();
+			}
+
+			return wrappedBridgeRequestScopeCache;
+		}
+		catch (IllegalArgumentException e) {
+
+			// Since the API can't use a logging system like SLF4J the best we can do is print to stderr.
+			System.err.println("Unable to open bridge request scope journal=[" + journalDirectory + "]: " +
+				e.getMessage());
+
+			return wrappedBridgeRequestScopeCache;
+		}
+	}
+
+	@Override
+	public BridgeRequestScopeCacheFactory getWrapped() {
+		return wrappedBridgeRequestScopeCacheFactory;
+	}
+}
@@ -0,0 +1,172 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.scope;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+
+/**
+ * <p>This class supports a lazy implementation of {@link BridgeRequestScope#restoreState(
+ * javax.faces.context.FacesContext)} for the RENDER_PHASE. Rather than eagerly pushing every preserved attribute into
+ * the request, the scope can overlay its preserved attributes on top of the request-scope map returned by {@link
+ * com.liferay.faces.bridge.context.ContextMapFactory#getRequestScopeMap(
+ * com.liferay.faces.bridge.context.BridgeContext)}. A preserved attribute is materialized (copied into the underlying
+ * request-scope map) the first time it is read with {@link #get(Object)}, so that the cost of restoring is proportional
+ * to the number of attributes that the view actually touches.</p>
+ *
+ * <p>Attributes that are put into or removed from this map are written through to the underlying request-scope map,
+ * and a preserved attribute that has been replaced or removed is never resurrected. Iterating the map materializes all
+ * remaining preserved attributes, since callers that iterate are likely to read every value anyway.</p>
+ *
+ * <p>Since code that calls {@link javax.portlet.PortletRequest#getAttribute(String)} directly bypasses this map,
+ * {@link #materializeAll()} must be called before dispatching to a resource that is not aware of the overlay (such as
+ * a JSP). An instance of this class is meant to be used by a single request (thread) and is not thread-safe.</p>
+ *
+ * @author  Neil Griffin
+ */
+public class LazyRestoreRequestScopeMap extends AbstractMap<String, Object> {
+
+	// Private Data Members
+	private int materializedCount;
+	private final Map<String, Object> pendingAttributes;
+	private final Map<String, Object> requestScopeMap;
+
+	/**
+	 * Constructs a new overlay.
+	 *
+	 * @param  requestScopeMap      The underlying request-scope map.
+	 * @param  preservedAttributes  The attributes that were preserved by {@link
+	 *                              BridgeRequestScope#saveState(javax.faces.context.FacesContext)}. The map is copied,
+	 *                              so subsequent changes to it are not reflected by the overlay.
+	 */
+	public LazyRestoreRequestScopeMap(Map<String, Object> requestScopeMap, Map<String, Object> preservedAttributes) {
+		this.requestScopeMap = requestScopeMap;
+		this.pendingAttributes = new HashMap<String, Object>(preservedAttributes);
+	}
+
+	@Override
+	public void clear() {
+		pendingAttributes.clear();
+		requestScopeMap.clear();
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return pendingAttributes.containsKey(key) || requestScopeMap.containsKey(key);
+	}
+
+	@Override
+	public Set<Map.Entry<String, Object>> entrySet() {
+		return new EntrySet();
+	}
+
+	@Override
+	public Object get(Object key) {
+
+		if (!pendingAttributes.isEmpty() && pendingAttributes.containsKey(key)) {
+			materialize((String) key);
+		}
+
+		return requestScopeMap.get(key);
+	}
+
+	/**
+	 * Copies all of the preserved attributes that have not yet been read into the underlying request-scope map.
+	 */
+	public void materializeAll() {
+
+		if (!pendingAttributes.isEmpty()) {
+			List<String> names = new ArrayList<String>(pendingAttributes.keySet());
+
+			for (String name : names) {
+				materialize(name);
+			}
+		}
+	}
+
+	@Override
+	public Object put(String key, Object value) {
+
+		Object pendingValue = pendingAttributes.remove(key);
+		Object oldValue = requestScopeMap.put(key, value);
+
+		return (oldValue == null) ? pendingValue : oldValue;
+	}
+
+	@Override
+	public Object remove(Object key) {
+
+		Object pendingValue = pendingAttributes.remove(key);
+		Object oldValue = requestScopeMap.remove(key);
+
+		return (oldValue == null) ? pendingValue : oldValue;
+	}
+
+	@Override
+	public int size() {
+		materializeAll();
+
+		return requestScopeMap.size();
+	}
+
+	/**
+	 * Returns the number of preserved attributes that have been copied into the underlying request-scope map.
+	 */
+	public int getMaterializedCount() {
+		return materializedCount;
+	}
+
+	/**
+	 * Returns the number of preserved attributes that have not (yet) been copied into the underlying request-scope map.
+	 */
+	public int getPendingCount() {
+		return pendingAttributes.size();
+	}
+
+	private void materialize(String name) {
+
+		Object value = pendingAttributes.remove(name);
+
+		// An attribute with the same name that was set on the request by other means takes precedence, just as it would
+		// have been overwritten by an eager restore followed by the same call to setAttribute.
+		if (!requestScopeMap.containsKey(name)) {
+			requestScopeMap.put(name, value);
+			materializedCount++;
+		}
+	}
+
+	private final class EntrySet extends AbstractSet<Map.Entry<String, Object>> {
+
+		@Override
+		public Iterator<Map.Entry<String, Object>> iterator() {
+			materializeAll();
+
+			return requestScopeMap.entrySet().iterator();
+		}
+
+		@Override
+		public int size() {
+			return LazyRestoreRequestScopeMap.this.size();
+		}
+	}
+}
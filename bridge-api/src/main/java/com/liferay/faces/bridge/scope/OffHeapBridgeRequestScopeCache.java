@@ -0,0 +1,91 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.scope;
+
+
+/**
+ * This class is a {@link BridgeRequestScopeCache} that frees the off-heap state of each scope that it removes from the
+ * wrapped cache, including scopes that are removed by {@link #removeBridgeRequestScopesByPortlet(String)} and {@link
+ * #removeBridgeRequestScopesBySession(String)}. If the wrapped cache is (or wraps) a {@link
+ * BoundedBridgeRequestScopeCache} or a {@link PortletShardedBridgeRequestScopeCache}, then the store is also registered
+ * as a {@link BoundedBridgeRequestScopeCache.RemovalListener} so that the state of scopes that are evicted or expired
+ * is freed as well.
+ *
+ * @author  Neil Griffin
+ */
+public class OffHeapBridgeRequestScopeCache extends IndexedBridgeRequestScopeCacheWrapper {
+
+	// Private Data Members
+	private final OffHeapBridgeRequestScopeStore offHeapBridgeRequestScopeStore;
+	private final IndexedBridgeRequestScopeCache wrappedBridgeRequestScopeCache;
+
+	public OffHeapBridgeRequestScopeCache(IndexedBridgeRequestScopeCache bridgeRequestScopeCache,
+		OffHeapBridgeRequestScopeStore offHeapBridgeRequestScopeStore) {
+
+		this.wrappedBridgeRequestScopeCache = bridgeRequestScopeCache;
+		this.offHeapBridgeRequestScopeStore = offHeapBridgeRequestScopeStore;
+
+		BridgeRequestScopeRemovalListeners.addRemovalListener(bridgeRequestScopeCache, offHeapBridgeRequestScopeStore);
+	}
+
+	@Override
+	public void clear() {
+		super.clear();
+
+		for (String id : offHeapBridgeRequestScopeStore.getIds()) {
+			offHeapBridgeRequestScopeStore.free(id);
+		}
+	}
+
+	@Override
+	public BridgeRequestScope remove(Object key) {
+
+		BridgeRequestScope bridgeRequestScope = super.remove(key);
+
+		if (key instanceof String) {
+			offHeapBridgeRequestScopeStore.free((String) key);
+		}
+
+		return bridgeRequestScope;
+	}
+
+	@Override
+	public int removeBridgeRequestScopesByPortlet(String portletName) {
+
+		int count = super.removeBridgeRequestScopesByPortlet(portletName);
+		offHeapBridgeRequestScopeStore.freeByPortlet(portletName);
+
+		return count;
+	}
+
+	@Override
+	public int removeBridgeRequestScopesBySession(String sessionId) {
+
+		int count = super.removeBridgeRequestScopesBySession(sessionId);
+		offHeapBridgeRequestScopeStore.freeBySession(sessionId);
+
+		return count;
+	}
+
+	public OffHeapBridgeRequestScopeStore getOffHeapBridgeRequestScopeStore() {
+		return offHeapBridgeRequestScopeStore;
+	}
+
+	@Override
+	public IndexedBridgeRequestScopeCache getWrapped() {
+		return wrappedBridgeRequestScopeCache;
+	}
+}
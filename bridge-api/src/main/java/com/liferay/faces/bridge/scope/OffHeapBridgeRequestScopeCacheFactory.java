@@ -0,0 +1,123 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.scope;
+
+import javax.portlet.PortletContext;
+
+
+/**
+ * This class is a factory that decorates the {@link BridgeRequestScopeCache} created by the wrapped factory with an
+ * {@link OffHeapBridgeRequestScopeCache}, and makes the associated {@link OffHeapBridgeRequestScopeStore} available to
+ * implementations of {@link BridgeRequestScope} by means of {@link
+ * #getOffHeapBridgeRequestScopeStore(PortletContext)}. The maximum number of off-heap bytes can be specified with the
+ * {@link #OFF_HEAP_BRIDGE_REQUEST_SCOPE_STORE_MAX_BYTES} context init-param. Preserved view states are compressed by
+ * the {@link ViewStateCompressor} of the web application. In order to select it, register this class as the {@link
+ * BridgeRequestScopeCacheFactory} in the bridge factory configuration.
+ *
+ * @author  Neil Griffin
+ */
+public class OffHeapBridgeRequestScopeCacheFactory extends BridgeRequestScopeCacheFactory {
+
+	// Public Constants
+	public static final long DEFAULT_MAX_BYTES = 64L * 1024L * 1024L;
+	public static final String OFF_HEAP_BRIDGE_REQUEST_SCOPE_STORE_MAX_BYTES =
+		"com.liferay.faces.bridge.offHeapBridgeRequestScopeStoreMaxBytes";
+
+	// Private Constants
+	private static final String CACHE_ATTRIBUTE_NAME = OffHeapBridgeRequestScopeCacheFactory.class.getName();
+	private static final String STORE_ATTRIBUTE_NAME = OffHeapBridgeRequestScopeStore.class.getName();
+
+	// Private Data Members
+	private BridgeRequestScopeCacheFactory wrappedBridgeRequestScopeCacheFactory;
+
+	public OffHeapBridgeRequestScopeCacheFactory(BridgeRequestScopeCacheFactory bridgeRequestScopeCacheFactory) {
+		this.wrappedBridgeRequestScopeCacheFactory = bridgeRequestScopeCacheFactory;
+	}
+
+	/**
+	 * Returns the value of the {@link #OFF_HEAP_BRIDGE_REQUEST_SCOPE_STORE_MAX_BYTES} init-param of the specified {@link
+	 * PortletContext}, or {@link #DEFAULT_MAX_BYTES} if the init-param is not specified or is less than {@link
+	 * OffHeapBridgeRequestScopeStore#SLAB_SIZE}.
+	 */
+	public static long getMaxBytes(PortletContext portletContext) {
+
+		long maxBytes = DEFAULT_MAX_BYTES;
+		String initParameterValue = portletContext.getInitParameter(OFF_HEAP_BRIDGE_REQUEST_SCOPE_STORE_MAX_BYTES);
+
+		if (initParameterValue != null) {
+
+			try {
+				long value = Long.parseLong(initParameterValue.trim());
+
+				if (value >= OffHeapBridgeRequestScopeStore.SLAB_SIZE) {
+					maxBytes = value;
+				}
+			}
+			catch (NumberFormatException e) {
+
+				// Since the API can't use a logging system like SLF4J the best we can do is print to stderr.
+				System.err.println("Invalid value=[" + initParameterValue + "] for init-param=[" +
+					OFF_HEAP_BRIDGE_REQUEST_SCOPE_STORE_MAX_BYTES + "]");
+			}
+		}
+
+		return maxBytes;
+	}
+
+	/**
+	 * Returns the off-heap store of the specified {@link PortletContext}, or <code>null</code> if this factory has not
+	 * created a cache for it.
+	 */
+	public static OffHeapBridgeRequestScopeStore getOffHeapBridgeRequestScopeStore(PortletContext portletContext) {
+		return (OffHeapBridgeRequestScopeStore) portletContext.getAttribute(STORE_ATTRIBUTE_NAME);
+	}
+
+	@Override
+	public BridgeRequestScopeCache getBridgeRequestScopeCache(PortletContext portletContext) {
+
+		BridgeRequestScopeCache bridgeRequestScopeCache = (BridgeRequestScopeCache) portletContext.getAttribute(
+				CACHE_ATTRIBUTE_NAME);
+
+		if (bridgeRequestScopeCache == null) {
+
+			synchronized (this) {
+
+				bridgeRequestScopeCache = (BridgeRequestScopeCache) portletContext.getAttribute(CACHE_ATTRIBUTE_NAME);
+
+				if (bridgeRequestScopeCache == null) {
+
+					IndexedBridgeRequestScopeCache indexedBridgeRequestScopeCache =
+						IndexedBridgeRequestScopeCacheWrapper.toIndexedBridgeRequestScopeCache(
+							getWrapped().getBridgeRequestScopeCache(portletContext),
+							OffHeapBridgeRequestScopeCache.class);
+					OffHeapBridgeRequestScopeStore offHeapBridgeRequestScopeStore = new OffHeapBridgeRequestScopeStore(
+							getMaxBytes(portletContext), ViewStateCompressor.getViewStateCompressor(portletContext));
+					portletContext.setAttribute(STORE_ATTRIBUTE_NAME, offHeapBridgeRequestScopeStore);
+					bridgeRequestScopeCache = new OffHeapBridgeRequestScopeCache(indexedBridgeRequestScopeCache,
+							offHeapBridgeRequestScopeStore);
+					portletContext.setAttribute(CACHE_ATTRIBUTE_NAME, bridgeRequestScopeCache);
+				}
+			}
+		}
+
+		return bridgeRequestScopeCache;
+	}
+
+	@Override
+	public BridgeRequestScopeCacheFactory getWrapped() {
+		return wrappedBridgeRequestScopeCacheFactory;
+	}
+}
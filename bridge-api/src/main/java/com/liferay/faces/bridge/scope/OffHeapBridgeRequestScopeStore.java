@@ -0,0 +1,594 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.scope;
+
+import java.io.IOException;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * <p>This class stores the preserved state of {@link BridgeRequestScope} instances (encoded by {@link
+ * BridgeRequestScopeCodec}, and therefore including the preserved attributes and {@link
+ * BridgeRequestScope#getPreservedViewStateParam()}) outside of the Java heap, keyed by {@link
+ * BridgeRequestScope#getId()}, so that a large number of long-lived scopes does not inflate the old generation. A scope
+ * implementation can call {@link #put(BridgeRequestScope, Map)} at the end of {@link BridgeRequestScope#saveState(
+ * javax.faces.context.FacesContext)} and discard its preserved attributes, retaining only its id (a small handle),
+ * and then call {@link #get(String)} in {@link BridgeRequestScope#restoreState(javax.faces.context.FacesContext)}.</p>
+ *
+ * <p>Memory is allocated from direct {@link ByteBuffer} slabs of {@link #SLAB_SIZE} bytes. Each slab in use is assigned
+ * to one power-of-two size class and divided into chunks of that size, and chunks are recycled by {@link
+ * #free(String)}, which must be called when a scope is removed, evicted or expired (see {@link
+ * OffHeapBridgeRequestScopeCache}). When all of the chunks of a slab have been freed, the slab is returned to a pool of
+ * free slabs from which any size class can take it, so that memory is not stranded in a size class after the size of
+ * the stored states changes. State that is larger than a slab is stored in a dedicated direct buffer that is reclaimed
+ * by the garbage collector after it has been freed. Slabs are retained for reuse and are not returned to the operating
+ * system. If the store is constructed with a {@link ViewStateCompressor}, then a long preserved view state is stored in
+ * compressed form.</p>
+ *
+ * <p>In order to detect leaks, each stored state is weakly associated with the scope instance that was passed to
+ * {@link #put(BridgeRequestScope, Map)}. If that scope is garbage collected before the state is freed, then the leak is
+ * reported (to stderr), counted by {@link #getLeakCount()}, and the memory is reclaimed. Leaks are detected on each
+ * call to {@link #put(BridgeRequestScope, Map)} and on each call to {@link #detectLeaks()}. This class is
+ * thread-safe.</p>
+ *
+ * @author  Neil Griffin
+ */
+public class OffHeapBridgeRequestScopeStore implements BoundedBridgeRequestScopeCache.RemovalListener {
+
+	// Public Constants
+	public static final int SLAB_SIZE = 1 << 20;
+
+	// Private Constants
+	private static final int MINIMUM_CHUNK_SHIFT = 6;
+	private static final int SIZE_CLASS_COUNT = Integer.numberOfTrailingZeros(SLAB_SIZE) - MINIMUM_CHUNK_SHIFT + 1;
+
+	// Private Data Members
+	private final ConcurrentMap<String, Allocation> allocations = new ConcurrentHashMap<String, Allocation>();
+	private final AtomicLong allocatedBytes = new AtomicLong();
+	private final List<Slab> freeSlabs = new ArrayList<Slab>();
+	private final Object indexLock = new Object();
+	private final AtomicLong leakCount = new AtomicLong();
+	private final ReferenceQueue<BridgeRequestScope> leakQueue = new ReferenceQueue<BridgeRequestScope>();
+	private final long maximumBytes;
+	private final Slab[] partialSlabs = new Slab[SIZE_CLASS_COUNT];
+	private final BridgeRequestScopeIndex portletIndex = new BridgeRequestScopeIndex();
+	private long reservedBytes;
+	private final BridgeRequestScopeIndex sessionIndex = new BridgeRequestScopeIndex();
+	private final ViewStateCompressor viewStateCompressor;
+
+	/**
+	 * Constructs a new store.
+	 *
+	 * @param  maximumBytes  The maximum number of off-heap bytes that the store may reserve for slabs and large states.
+	 */
+	public OffHeapBridgeRequestScopeStore(long maximumBytes) {
+		this(maximumBytes, null);
+	}
+
+	/**
+	 * Constructs a new store that compresses long preserved view states.
+	 *
+	 * @param  maximumBytes         The maximum number of off-heap bytes that the store may reserve for slabs and large
+	 *                              states.
+	 * @param  viewStateCompressor  The compressor, or <code>null</code> if view states are not compressed.
+	 */
+	public OffHeapBridgeRequestScopeStore(long maximumBytes, ViewStateCompressor viewStateCompressor) {
+
+		if (maximumBytes < SLAB_SIZE) {
+			throw new IllegalArgumentException("maximumBytes must be at least " + SLAB_SIZE);
+		}
+
+		this.maximumBytes = maximumBytes;
+		this.viewStateCompressor = viewStateCompressor;
+	}
+
+	private static int getSizeClass(int length) {
+
+		int chunkSize = Math.max(length, 1 << MINIMUM_CHUNK_SHIFT);
+		int shift = 32 - Integer.numberOfLeadingZeros(chunkSize - 1);
+
+		return shift - MINIMUM_CHUNK_SHIFT;
+	}
+
+	/**
+	 * Reclaims the memory of the states whose scopes were garbage collected without having been freed.
+	 *
+	 * @return  The number of leaks that were detected.
+	 */
+	public int detectLeaks() {
+
+		int leaks = 0;
+		Allocation allocation;
+
+		while ((allocation = (Allocation) leakQueue.poll()) != null) {
+
+			if (remove(allocation) && release(allocation)) {
+				leaks++;
+				leakCount.incrementAndGet();
+
+				// Since the API can't use a logging system like SLF4J the best we can do is print to stderr.
+				System.err.println("Off-heap state of bridge request scope id=[" + allocation.id +
+					"] was not freed before the scope was garbage collected");
+			}
+		}
+
+		return leaks;
+	}
+
+	/**
+	 * Frees the state of the scope with the specified id.
+	 *
+	 * @return  <code>true</code> if the store contained the state, otherwise <code>false</code>.
+	 */
+	public boolean free(String id) {
+
+		Allocation allocation;
+
+		synchronized (indexLock) {
+
+			allocation = allocations.remove(id);
+
+			if (allocation != null) {
+				unindex(id);
+			}
+		}
+
+		return (allocation != null) && release(allocation);
+	}
+
+	/**
+	 * Frees the states of all of the scopes of the specified portlet.
+	 *
+	 * @return  The number of states that were freed.
+	 */
+	public int freeByPortlet(String portletName) {
+
+		List<String> ids;
+
+		synchronized (indexLock) {
+			ids = portletIndex.getKeys(portletName);
+		}
+
+		return freeAll(ids);
+	}
+
+	/**
+	 * Frees the states of all of the scopes of the specified session.
+	 *
+	 * @return  The number of states that were freed.
+	 */
+	public int freeBySession(String sessionId) {
+
+		List<String> ids;
+
+		synchronized (indexLock) {
+			ids = sessionIndex.getKeys(sessionId);
+		}
+
+		return freeAll(ids);
+	}
+
+	/**
+	 * Returns the state of the scope with the specified id, or <code>null</code> if the store does not contain it.
+	 *
+	 * @throws  IOException             If the state cannot be decoded.
+	 * @throws  ClassNotFoundException  If the class of a preserved attribute cannot be found.
+	 */
+	public BridgeRequestScopeState get(String id) throws IOException, ClassNotFoundException {
+
+		Allocation allocation = allocations.get(id);
+
+		if (allocation == null) {
+			return null;
+		}
+
+		byte[] bytes;
+
+		synchronized (allocation) {
+
+			// The allocation may have been freed (and its chunk reused) after it was looked up.
+			if (allocation.freed) {
+				return null;
+			}
+
+			bytes = new byte[allocation.length];
+
+			ByteBuffer buffer = allocation.buffer.duplicate();
+			buffer.position(allocation.offset);
+			buffer.get(bytes);
+		}
+
+		return BridgeRequestScopeCodec.decode(bytes, viewStateCompressor);
+	}
+
+	/**
+	 * Frees the state of the removed scope.
+	 */
+	@Override
+	public void onRemoval(String key, BridgeRequestScope bridgeRequestScope,
+		BoundedBridgeRequestScopeCache.RemovalCause removalCause) {
+		free(key);
+	}
+
+	/**
+	 * Stores the state of the specified scope, replacing the state that was previously stored with the same id.
+	 *
+	 * @param   bridgeRequestScope   The scope, which becomes the owner of the state for the purpose of leak detection.
+	 * @param   preservedAttributes  The request attributes that are preserved by the scope.
+	 *
+	 * @return  <code>true</code> if the state was stored, or <code>false</code> if the store does not have enough free
+	 *          memory, in which case the caller should retain the state on the heap.
+	 *
+	 * @throws  IOException  If a preserved attribute is neither one of the inline types of {@link
+	 *                       BridgeRequestScopeCodec} nor {@link java.io.Serializable}.
+	 */
+	public boolean put(BridgeRequestScope bridgeRequestScope, Map<String, Object> preservedAttributes)
+		throws IOException {
+
+		detectLeaks();
+
+		String id = bridgeRequestScope.getId();
+		byte[] bytes = BridgeRequestScopeCodec.encode(new BridgeRequestScopeState(bridgeRequestScope,
+					preservedAttributes, viewStateCompressor));
+		Allocation allocation = allocate(id, bridgeRequestScope, bytes.length);
+
+		if (allocation == null) {
+			return false;
+		}
+
+		ByteBuffer buffer = allocation.buffer.duplicate();
+		buffer.position(allocation.offset);
+		buffer.put(bytes);
+
+		Allocation previousAllocation;
+
+		synchronized (indexLock) {
+
+			previousAllocation = allocations.put(id, allocation);
+
+			if (previousAllocation == null) {
+				portletIndex.add(BridgeRequestScopeIndex.parsePortletName(id), id);
+				sessionIndex.add(BridgeRequestScopeIndex.parseSessionId(id), id);
+			}
+		}
+
+		if (previousAllocation != null) {
+			release(previousAllocation);
+		}
+
+		return true;
+	}
+
+	/**
+	 * Returns the number of states in the store.
+	 */
+	public int size() {
+		return allocations.size();
+	}
+
+	private Slab acquireSlab(int sizeClass) {
+
+		Slab slab;
+		int freeSlabCount = freeSlabs.size();
+
+		if (freeSlabCount > 0) {
+			slab = freeSlabs.remove(freeSlabCount - 1);
+		}
+		else {
+
+			if ((reservedBytes + SLAB_SIZE) > maximumBytes) {
+				return null;
+			}
+
+			slab = new Slab(ByteBuffer.allocateDirect(SLAB_SIZE));
+			reservedBytes += SLAB_SIZE;
+		}
+
+		slab.assign(sizeClass);
+		linkPartialSlab(slab);
+
+		return slab;
+	}
+
+	private Allocation allocate(String id, BridgeRequestScope owner, int length) {
+
+		if (length > SLAB_SIZE) {
+
+			synchronized (this) {
+
+				if ((reservedBytes + length) > maximumBytes) {
+					return null;
+				}
+
+				reservedBytes += length;
+			}
+
+			allocatedBytes.addAndGet(length);
+
+			return new Allocation(id, owner, leakQueue, ByteBuffer.allocateDirect(length), null, 0, length);
+		}
+
+		int sizeClass = getSizeClass(length);
+		Slab slab;
+		int offset;
+
+		synchronized (this) {
+
+			slab = partialSlabs[sizeClass];
+
+			if (slab == null) {
+				slab = acquireSlab(sizeClass);
+
+				if (slab == null) {
+					return null;
+				}
+			}
+
+			offset = slab.allocateChunk();
+
+			if (slab.isFull()) {
+				unlinkPartialSlab(slab);
+			}
+		}
+
+		allocatedBytes.addAndGet(slab.chunkSize);
+
+		return new Allocation(id, owner, leakQueue, slab.buffer, slab, offset, length);
+	}
+
+	private int freeAll(List<String> ids) {
+
+		int count = 0;
+
+		for (String id : ids) {
+
+			if (free(id)) {
+				count++;
+			}
+		}
+
+		return count;
+	}
+
+	private void linkPartialSlab(Slab slab) {
+
+		Slab head = partialSlabs[slab.sizeClass];
+		slab.previous = null;
+		slab.next = head;
+
+		if (head != null) {
+			head.previous = slab;
+		}
+
+		partialSlabs[slab.sizeClass] = slab;
+	}
+
+	private boolean release(Allocation allocation) {
+
+		synchronized (allocation) {
+
+			if (allocation.freed) {
+				return false;
+			}
+
+			allocation.freed = true;
+		}
+
+		// Prevent a freed allocation from being reported as a leak.
+		allocation.clear();
+
+		Slab slab = allocation.slab;
+
+		if (slab == null) {
+			allocatedBytes.addAndGet(-allocation.length);
+
+			synchronized (this) {
+				reservedBytes -= allocation.length;
+			}
+		}
+		else {
+			allocatedBytes.addAndGet(-slab.chunkSize);
+
+			synchronized (this) {
+
+				boolean full = slab.isFull();
+				slab.freeChunk(allocation.offset);
+
+				if (slab.liveCount == 0) {
+
+					// Return the empty slab to the pool so that it can be assigned to any size class.
+					if (!full) {
+						unlinkPartialSlab(slab);
+					}
+
+					slab.sizeClass = -1;
+					freeSlabs.add(slab);
+				}
+				else if (full) {
+					linkPartialSlab(slab);
+				}
+			}
+		}
+
+		return true;
+	}
+
+	private boolean remove(Allocation allocation) {
+
+		synchronized (indexLock) {
+
+			if (allocations.remove(allocation.id, allocation)) {
+				unindex(allocation.id);
+
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	private void unindex(String id) {
+		portletIndex.remove(BridgeRequestScopeIndex.parsePortletName(id), id);
+		sessionIndex.remove(BridgeRequestScopeIndex.parseSessionId(id), id);
+	}
+
+	private void unlinkPartialSlab(Slab slab) {
+
+		if (slab.previous == null) {
+			partialSlabs[slab.sizeClass] = slab.next;
+		}
+		else {
+			slab.previous.next = slab.next;
+		}
+
+		if (slab.next != null) {
+			slab.next.previous = slab.previous;
+		}
+
+		slab.previous = null;
+		slab.next = null;
+	}
+
+	/**
+	 * Returns the number of off-heap bytes that are occupied by stored states (rounded up to the chunk size).
+	 */
+	public long getAllocatedBytes() {
+		return allocatedBytes.get();
+	}
+
+	/**
+	 * Returns a snapshot of the ids of the scopes whose states are in the store.
+	 */
+	public List<String> getIds() {
+		return new ArrayList<String>(allocations.keySet());
+	}
+
+	/**
+	 * Returns the number of leaks that have been detected.
+	 */
+	public long getLeakCount() {
+		return leakCount.get();
+	}
+
+	public long getMaximumBytes() {
+		return maximumBytes;
+	}
+
+	/**
+	 * Returns the number of slabs that are in the pool of free slabs, and are therefore not assigned to a size class.
+	 */
+	public synchronized int getFreeSlabCount() {
+		return freeSlabs.size();
+	}
+
+	/**
+	 * Returns the number of off-heap bytes that are reserved by slabs and large states.
+	 */
+	public synchronized long getReservedBytes() {
+		return reservedBytes;
+	}
+
+	private static final class Allocation extends WeakReference<BridgeRequestScope> {
+
+		// Private Data Members
+		private final ByteBuffer buffer;
+		private boolean freed;
+		private final String id;
+		private final int length;
+		private final int offset;
+		private final Slab slab;
+
+		Allocation(String id, BridgeRequestScope owner, ReferenceQueue<BridgeRequestScope> leakQueue, ByteBuffer buffer,
+			Slab slab, int offset, int length) {
+
+			super(owner, leakQueue);
+			this.id = id;
+			this.buffer = buffer;
+			this.slab = slab;
+			this.offset = offset;
+			this.length = length;
+		}
+	}
+
+	/**
+	 * A slab that is divided into chunks of the size class that it is assigned to. Chunks are carved lazily (so that
+	 * assigning a slab to a size class is cheap) and freed chunks are kept in a stack of offsets. Slabs that are
+	 * assigned to a size class and have a free chunk are kept in a doubly-linked list per size class. Instances of this
+	 * class are guarded by the lock of the store.
+	 */
+	private static final class Slab {
+
+		// Private Data Members
+		private final ByteBuffer buffer;
+		private int carvedCount;
+		private int chunkCount;
+		private int chunkSize;
+		private int freeOffsetCount;
+		private int[] freeOffsets = new int[16];
+		private int liveCount;
+		private Slab next;
+		private Slab previous;
+		private int sizeClass = -1;
+
+		Slab(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		int allocateChunk() {
+
+			liveCount++;
+
+			if (freeOffsetCount > 0) {
+				return freeOffsets[--freeOffsetCount];
+			}
+
+			return chunkSize * carvedCount++;
+		}
+
+		void assign(int sizeClass) {
+			this.sizeClass = sizeClass;
+			this.chunkSize = 1 << (sizeClass + MINIMUM_CHUNK_SHIFT);
+			this.chunkCount = SLAB_SIZE / chunkSize;
+			this.carvedCount = 0;
+			this.freeOffsetCount = 0;
+			this.liveCount = 0;
+		}
+
+		void freeChunk(int offset) {
+
+			liveCount--;
+
+			if (freeOffsetCount == freeOffsets.length) {
+				freeOffsets = Arrays.copyOf(freeOffsets, freeOffsetCount * 2);
+			}
+
+			freeOffsets[freeOffsetCount++] = offset;
+		}
+
+		boolean isFull() {
+			return liveCount == chunkCount;
+		}
+	}
+}
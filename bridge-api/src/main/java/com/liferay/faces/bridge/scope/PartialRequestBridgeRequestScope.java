@@ -0,0 +1,154 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.scope;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import javax.faces.context.FacesContext;
+import javax.portlet.PortletMode;
+import javax.portlet.RenderRequest;
+import javax.portlet.faces.Bridge;
+
+
+/**
+ * This class is an immutable {@link BridgeRequestScope} for partial requests served in the RESOURCE_PHASE, which have
+ * no ACTION_PHASE to RENDER_PHASE hop to bridge. It preserves and restores nothing (and therefore never consults a
+ * {@link RequestAttributeInspector}), ignores every setter, and is shared by all of the partial requests of a portlet,
+ * so that the fast path allocates nothing. Its id is prefixed with the portlet name and an empty session id, and so it
+ * is removed along with the other scopes of the portlet but is not associated with any session. Since its date created
+ * is zero, a {@link BoundedBridgeRequestScopeCache} with a time-to-live never returns it.
+ *
+ * @author  Neil Griffin
+ */
+final class PartialRequestBridgeRequestScope implements BridgeRequestScope {
+
+	// Private Constants
+	private static final String ID_SUFFIX = "partialRequest";
+
+	// Private Data Members
+	private final String id;
+
+	PartialRequestBridgeRequestScope(String portletName) {
+		this.id = portletName + BoundedBridgeRequestScopeCache.ID_SEPARATOR +
+			BoundedBridgeRequestScopeCache.ID_SEPARATOR + ID_SUFFIX;
+	}
+
+	@Override
+	public void removeExcludedAttributes(RenderRequest renderRequest) {
+		// Partial requests have no attributes carried over from a previous request.
+	}
+
+	@Override
+	public void restoreState(FacesContext facesContext) {
+		// There is no preserved state to restore.
+	}
+
+	@Override
+	public void saveState(FacesContext facesContext) {
+		// Partial requests render within the same request, so there is no state to preserve.
+	}
+
+	@Override
+	public Bridge.PortletPhase getBeganInPhase() {
+		return Bridge.PortletPhase.RESOURCE_PHASE;
+	}
+
+	@Override
+	public long getDateCreated() {
+		return 0L;
+	}
+
+	@Override
+	public boolean isFacesLifecycleExecuted() {
+		return false;
+	}
+
+	@Override
+	public void setFacesLifecycleExecuted(boolean facesLifecycleExecuted) {
+		// Ignored, since the scope is shared.
+	}
+
+	@Override
+	public String getId() {
+		return id;
+	}
+
+	@Override
+	public void setIdPrefix(String idPrefix) {
+		// Ignored, since the scope is shared.
+	}
+
+	@Override
+	public boolean isNavigationOccurred() {
+		return false;
+	}
+
+	@Override
+	public void setNavigationOccurred(boolean navigationOccurred) {
+		// Ignored, since the scope is shared.
+	}
+
+	@Override
+	public PortletMode getPortletMode() {
+		return null;
+	}
+
+	@Override
+	public void setPortletMode(PortletMode portletMode) {
+		// Ignored, since the scope is shared.
+	}
+
+	@Override
+	public boolean isPortletModeChanged() {
+		return false;
+	}
+
+	@Override
+	public void setPortletModeChanged(boolean portletModeChanged) {
+		// Ignored, since the scope is shared.
+	}
+
+	@Override
+	public Map<String, String> getPreservedActionParameterMap() {
+		return Collections.emptyMap();
+	}
+
+	@Override
+	public String getPreservedViewStateParam() {
+		return null;
+	}
+
+	@Override
+	public boolean isRedirectOccurred() {
+		return false;
+	}
+
+	@Override
+	public void setRedirectOccurred(boolean redirectOccurred) {
+		// Ignored, since the scope is shared.
+	}
+
+	/**
+	 * Returns a new, empty set, since the contract requires the set to be mutable but the scope is shared.
+	 */
+	@Override
+	public Set<String> getRemovedAttributeNames() {
+		return new HashSet<String>();
+	}
+}
@@ -0,0 +1,80 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.scope;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.portlet.PortletConfig;
+import javax.portlet.PortletRequest;
+
+import com.liferay.faces.bridge.PartialRequestBridgePhaseFactory;
+import com.liferay.faces.bridge.config.BridgeConfig;
+
+
+/**
+ * This class is a factory that returns the shared, immutable {@link PartialRequestBridgeRequestScope} of the portlet
+ * for the requests that were marked as partial requests by {@link PartialRequestBridgePhaseFactory}, so that no scope
+ * is created and no request attribute is inspected for them. Other requests are delegated to the wrapped factory.
+ * Since the shared scope is returned as is, this class should be registered after (that is, it should wrap) the other
+ * {@link BridgeRequestScopeFactory} decorators, such as {@link InstrumentedBridgeRequestScopeFactory}.
+ *
+ * @author  Neil Griffin
+ */
+public class PartialRequestBridgeRequestScopeFactory extends BridgeRequestScopeFactory {
+
+	// Private Data Members
+	private final ConcurrentMap<String, PartialRequestBridgeRequestScope> partialRequestBridgeRequestScopes =
+		new ConcurrentHashMap<String, PartialRequestBridgeRequestScope>();
+	private BridgeRequestScopeFactory wrappedBridgeRequestScopeFactory;
+
+	public PartialRequestBridgeRequestScopeFactory(BridgeRequestScopeFactory bridgeRequestScopeFactory) {
+		this.wrappedBridgeRequestScopeFactory = bridgeRequestScopeFactory;
+	}
+
+	@Override
+	public BridgeRequestScope getBridgeRequestScope(PortletRequest portletRequest, PortletConfig portletConfig,
+		BridgeConfig bridgeConfig) {
+
+		if (PartialRequestBridgePhaseFactory.isFastPath(portletRequest)) {
+
+			String portletName = portletConfig.getPortletName();
+			PartialRequestBridgeRequestScope partialRequestBridgeRequestScope = partialRequestBridgeRequestScopes.get(
+					portletName);
+
+			if (partialRequestBridgeRequestScope == null) {
+
+				partialRequestBridgeRequestScope = new PartialRequestBridgeRequestScope(portletName);
+
+				PartialRequestBridgeRequestScope existingPartialRequestBridgeRequestScope =
+					partialRequestBridgeRequestScopes.putIfAbsent(portletName, partialRequestBridgeRequestScope);
+
+				if (existingPartialRequestBridgeRequestScope != null) {
+					partialRequestBridgeRequestScope = existingPartialRequestBridgeRequestScope;
+				}
+			}
+
+			return partialRequestBridgeRequestScope;
+		}
+
+		return getWrapped().getBridgeRequestScope(portletRequest, portletConfig, bridgeConfig);
+	}
+
+	@Override
+	public BridgeRequestScopeFactory getWrapped() {
+		return wrappedBridgeRequestScopeFactory;
+	}
+}
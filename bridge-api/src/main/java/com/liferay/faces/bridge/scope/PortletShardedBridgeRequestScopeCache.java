@@ -0,0 +1,476 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.scope;
+
+import java.lang.ref.WeakReference;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+
+/**
+ * <p>This class is a {@link BridgeRequestScopeCache} that consists of one {@link BoundedBridgeRequestScopeCache} (a
+ * shard) per portlet, so that the scopes of a busy portlet cannot evict the scopes of a quiet portlet of the same
+ * portlet application, and so that portlets do not contend on the same eviction lock. Each shard has its own maximum
+ * size and its own statistics (see {@link #getShard(String)}). Shards are created when the first scope of a portlet is
+ * put, and {@link #removeBridgeRequestScopesByPortlet(String)} drops the shard of the portlet as a whole. A put that
+ * races with the removal of its shard is regarded as having happened before the removal, and so the scope is removed
+ * from the dropped shard (and the removal listeners are notified once) rather than left in a shard that is no longer
+ * reachable.</p>
+ *
+ * <p>The portlet of a scope is parsed from its key, which is expected to be the value of {@link
+ * BridgeRequestScope#getId()} (as it is in the bridge), so that lookups can be routed to a shard without a secondary
+ * index. Keys that do not contain a portlet name are stored in a shard whose name is the empty string. Methods that
+ * span all of the shards, such as {@link #size()} and {@link #entrySet()}, are weakly consistent. If scopes expire,
+ * then a single daemon thread sweeps the expired scopes of all of the shards (each shard keeps its own {@link
+ * TimerWheel} under its own lock), and so {@link #shutdown()} should be called when the portlet application is
+ * undeployed.</p>
+ *
+ * @author  Neil Griffin
+ */
+public class PortletShardedBridgeRequestScopeCache extends AbstractMap<String, BridgeRequestScope>
+	implements IndexedBridgeRequestScopeCache {
+
+	// Private Constants
+	private static final String UNKNOWN_PORTLET_NAME = "";
+
+	// Private Data Members
+	private final int defaultMaximumSize;
+	private final Thread expirationSweeper;
+	private final long expireAfterCreateMillis;
+	private final Map<String, Integer> maximumSizes;
+	private final List<BoundedBridgeRequestScopeCache.RemovalListener> removalListeners =
+		new CopyOnWriteArrayList<BoundedBridgeRequestScopeCache.RemovalListener>();
+	private final ConcurrentMap<String, BoundedBridgeRequestScopeCache> shards =
+		new ConcurrentHashMap<String, BoundedBridgeRequestScopeCache>();
+
+	/**
+	 * Constructs a new cache.
+	 *
+	 * @param  defaultMaximumSize       The maximum size of the shard of a portlet that is not present in the specified
+	 *                                  map.
+	 * @param  maximumSizes             The maximum size of the shard of each portlet, keyed by portlet name.
+	 * @param  expireAfterCreateMillis  The time-to-live of each scope in milliseconds, or zero if scopes never expire.
+	 */
+	public PortletShardedBridgeRequestScopeCache(int defaultMaximumSize, Map<String, Integer> maximumSizes,
+		long expireAfterCreateMillis) {
+
+		if (defaultMaximumSize <= 0) {
+			throw new IllegalArgumentException("defaultMaximumSize must be greater than zero");
+		}
+
+		this.defaultMaximumSize = defaultMaximumSize;
+		this.maximumSizes = (maximumSizes == null) ? Collections.<String, Integer>emptyMap()
+												   : new ConcurrentHashMap<String, Integer>(maximumSizes);
+		this.expireAfterCreateMillis = expireAfterCreateMillis;
+
+		if (expireAfterCreateMillis > 0L) {
+			this.expirationSweeper = new Thread(new ExpirationSweeper(this),
+					PortletShardedBridgeRequestScopeCache.class.getSimpleName() + "-ExpirationSweeper");
+			this.expirationSweeper.setDaemon(true);
+			this.expirationSweeper.start();
+		}
+		else {
+			this.expirationSweeper = null;
+		}
+	}
+
+	private static String getPortletName(Object key) {
+
+		String portletName = null;
+
+		if (key instanceof String) {
+			portletName = BridgeRequestScopeIndex.parsePortletName((String) key);
+		}
+
+		return (portletName == null) ? UNKNOWN_PORTLET_NAME : portletName;
+	}
+
+	/**
+	 * Registers a listener that is notified after a scope has been removed from any shard, including shards that are
+	 * created afterwards.
+	 */
+	public void addRemovalListener(BoundedBridgeRequestScopeCache.RemovalListener removalListener) {
+
+		synchronized (shards) {
+			removalListeners.add(removalListener);
+
+			for (BoundedBridgeRequestScopeCache shard : shards.values()) {
+				shard.addRemovalListener(removalListener);
+			}
+		}
+	}
+
+	@Override
+	public void clear() {
+
+		for (BoundedBridgeRequestScopeCache shard : shards.values()) {
+			shard.clear();
+		}
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+
+		BoundedBridgeRequestScopeCache shard = shards.get(getPortletName(key));
+
+		return (shard != null) && shard.containsKey(key);
+	}
+
+	@Override
+	public Set<Map.Entry<String, BridgeRequestScope>> entrySet() {
+		return new EntrySet();
+	}
+
+	@Override
+	public BridgeRequestScope get(Object key) {
+
+		BoundedBridgeRequestScopeCache shard = shards.get(getPortletName(key));
+
+		return (shard == null) ? null : shard.get(key);
+	}
+
+	/**
+	 * Advances the timer wheel of each shard to the current time and removes the scopes whose time-to-live has elapsed
+	 * (see {@link BoundedBridgeRequestScopeCache#expireScopes()}). This method is called periodically by the sweeper
+	 * thread, but may also be called directly.
+	 */
+	public void expireScopes() {
+
+		for (BoundedBridgeRequestScopeCache shard : shards.values()) {
+			shard.expireScopes();
+		}
+	}
+
+	@Override
+	public BridgeRequestScope put(String key, BridgeRequestScope value) {
+
+		String portletName = getPortletName(key);
+		BoundedBridgeRequestScopeCache shard = getOrCreateShard(portletName);
+		BridgeRequestScope oldValue = shard.put(key, value);
+
+		// If the shard was dropped by removeBridgeRequestScopesByPortlet(String) during the put, then the scope may
+		// have been put into the shard after it was cleared. Since the put is regarded as having happened before the
+		// removal, the scope is removed from the dropped shard, which notifies the removal listeners unless the removal
+		// already did so. Putting the scope into a new shard instead would leave it in the cache after the listeners
+		// were told that it was removed.
+		if (shards.get(portletName) != shard) {
+			shard.remove(key);
+		}
+
+		return oldValue;
+	}
+
+	@Override
+	public BridgeRequestScope remove(Object key) {
+
+		BoundedBridgeRequestScopeCache shard = shards.get(getPortletName(key));
+
+		return (shard == null) ? null : shard.remove(key);
+	}
+
+	/**
+	 * Removes the shard of the specified portlet, after notifying the removal listeners of each of its scopes.
+	 */
+	@Override
+	public int removeBridgeRequestScopesByPortlet(String portletName) {
+
+		BoundedBridgeRequestScopeCache shard;
+
+		synchronized (shards) {
+			shard = shards.remove(portletName);
+		}
+
+		if (shard == null) {
+			return 0;
+		}
+
+		int count = shard.size();
+		shard.clear();
+
+		return count;
+	}
+
+	@Override
+	public int removeBridgeRequestScopesBySession(String sessionId) {
+
+		int count = 0;
+
+		for (BoundedBridgeRequestScopeCache shard : shards.values()) {
+			count += shard.removeBridgeRequestScopesBySession(sessionId);
+		}
+
+		return count;
+	}
+
+	/**
+	 * Removes a listener that was registered with {@link #addRemovalListener(
+	 * BoundedBridgeRequestScopeCache.RemovalListener)}.
+	 */
+	public void removeRemovalListener(BoundedBridgeRequestScopeCache.RemovalListener removalListener) {
+
+		synchronized (shards) {
+			removalListeners.remove(removalListener);
+
+			for (BoundedBridgeRequestScopeCache shard : shards.values()) {
+				shard.removeRemovalListener(removalListener);
+			}
+		}
+	}
+
+	/**
+	 * Stops the daemon thread that sweeps the expired scopes of the shards, if any. Expired scopes continue to be
+	 * hidden from {@link #get(Object)} but are no longer removed proactively.
+	 */
+	public void shutdown() {
+
+		if (expirationSweeper != null) {
+			expirationSweeper.interrupt();
+		}
+	}
+
+	@Override
+	public int size() {
+
+		int size = 0;
+
+		for (BoundedBridgeRequestScopeCache shard : shards.values()) {
+			size += shard.size();
+		}
+
+		return size;
+	}
+
+	/**
+	 * Creates the shard of the specified portlet. Subclasses may override this method in order to customize the
+	 * instance that is created, which should not start its own sweeper thread (see {@link
+	 * BoundedBridgeRequestScopeCache#BoundedBridgeRequestScopeCache(int, long, boolean)}) since the expired scopes of
+	 * every shard are swept by the thread of this cache.
+	 */
+	protected BoundedBridgeRequestScopeCache newShard(String portletName) {
+		return new BoundedBridgeRequestScopeCache(getMaximumSize(portletName), expireAfterCreateMillis, false);
+	}
+
+	public int getDefaultMaximumSize() {
+		return defaultMaximumSize;
+	}
+
+	@Override
+	public boolean isEmpty() {
+
+		for (BoundedBridgeRequestScopeCache shard : shards.values()) {
+
+			if (!shard.isEmpty()) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	public long getExpireAfterCreateMillis() {
+		return expireAfterCreateMillis;
+	}
+
+	/**
+	 * Returns the sum of the maximum sizes of the shards that currently exist.
+	 */
+	public int getMaximumSize() {
+
+		int maximumSize = 0;
+
+		for (BoundedBridgeRequestScopeCache shard : shards.values()) {
+			maximumSize += shard.getMaximumSize();
+		}
+
+		return maximumSize;
+	}
+
+	/**
+	 * Returns the maximum size of the shard of the specified portlet.
+	 */
+	public int getMaximumSize(String portletName) {
+
+		Integer maximumSize = maximumSizes.get(portletName);
+
+		return (maximumSize == null) ? defaultMaximumSize : maximumSize;
+	}
+
+	private BoundedBridgeRequestScopeCache getOrCreateShard(String portletName) {
+
+		BoundedBridgeRequestScopeCache shard = shards.get(portletName);
+
+		if (shard == null) {
+
+			// Shards are created while holding a lock (rather than with putIfAbsent) so that no removal listener is
+			// missed.
+			synchronized (shards) {
+
+				shard = shards.get(portletName);
+
+				if (shard == null) {
+					shard = newShard(portletName);
+
+					for (BoundedBridgeRequestScopeCache.RemovalListener removalListener : removalListeners) {
+						shard.addRemovalListener(removalListener);
+					}
+
+					shards.put(portletName, shard);
+				}
+			}
+		}
+
+		return shard;
+	}
+
+	/**
+	 * Returns the names of the portlets that currently have a shard.
+	 */
+	public Set<String> getPortletNames() {
+		return Collections.unmodifiableSet(shards.keySet());
+	}
+
+	/**
+	 * Returns the shard of the specified portlet, or <code>null</code> if the portlet has no shard. The shard provides
+	 * the statistics of the portlet, such as {@link BoundedBridgeRequestScopeCache#getEvictionCount()}.
+	 */
+	public BoundedBridgeRequestScopeCache getShard(String portletName) {
+		return shards.get(portletName);
+	}
+
+	private final class EntryIterator implements Iterator<Map.Entry<String, BridgeRequestScope>> {
+
+		// Private Data Members
+		private Iterator<Map.Entry<String, BridgeRequestScope>> entryIterator;
+		private Map.Entry<String, BridgeRequestScope> lastEntry;
+		private final Iterator<BoundedBridgeRequestScopeCache> shardIterator;
+
+		EntryIterator() {
+			this.shardIterator = new ArrayList<BoundedBridgeRequestScopeCache>(shards.values()).iterator();
+		}
+
+		@Override
+		public boolean hasNext() {
+
+			while ((entryIterator == null) || !entryIterator.hasNext()) {
+
+				if (!shardIterator.hasNext()) {
+					return false;
+				}
+
+				entryIterator = shardIterator.next().entrySet().iterator();
+			}
+
+			return true;
+		}
+
+		@Override
+		public Map.Entry<String, BridgeRequestScope> next() {
+
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+
+			lastEntry = entryIterator.next();
+
+			return lastEntry;
+		}
+
+		@Override
+		public void remove() {
+
+			if (lastEntry == null) {
+				throw new IllegalStateException();
+			}
+
+			PortletShardedBridgeRequestScopeCache.this.remove(lastEntry.getKey());
+			lastEntry = null;
+		}
+	}
+
+	private final class EntrySet extends AbstractSet<Map.Entry<String, BridgeRequestScope>> {
+
+		@Override
+		public void clear() {
+			PortletShardedBridgeRequestScopeCache.this.clear();
+		}
+
+		@Override
+		public Iterator<Map.Entry<String, BridgeRequestScope>> iterator() {
+			return new EntryIterator();
+		}
+
+		@Override
+		public int size() {
+			return PortletShardedBridgeRequestScopeCache.this.size();
+		}
+	}
+
+	/**
+	 * Periodically expires the scopes of all of the shards. Only a weak reference to the cache is held so that a cache
+	 * that was never shut down does not leak the thread (or the classloader of the portlet application) forever.
+	 */
+	private static final class ExpirationSweeper implements Runnable {
+
+		// Private Constants
+		private static final long SWEEP_INTERVAL_MILLIS = 1000L;
+
+		// Private Data Members
+		private final WeakReference<PortletShardedBridgeRequestScopeCache> cacheReference;
+
+		ExpirationSweeper(PortletShardedBridgeRequestScopeCache cache) {
+			this.cacheReference = new WeakReference<PortletShardedBridgeRequestScopeCache>(cache);
+		}
+
+		@Override
+		public void run() {
+
+			while (!Thread.currentThread().isInterrupted()) {
+
+				try {
+					Thread.sleep(SWEEP_INTERVAL_MILLIS);
+				}
+				catch (InterruptedException e) {
+					break;
+				}
+
+				PortletShardedBridgeRequestScopeCache cache = cacheReference.get();
+
+				if (cache == null) {
+					break;
+				}
+
+				try {
+					cache.expireScopes();
+				}
+				catch (RuntimeException e) {
+
+					// Since the API can't use a logging system like SLF4J the best we can do is print to stderr.
+					e.printStackTrace();
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,111 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.scope;
+
+import java.io.Closeable;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.portlet.PortletContext;
+import javax.portlet.faces.Bridge;
+
+
+/**
+ * This class is a factory that creates one {@link PortletShardedBridgeRequestScopeCache} per {@link PortletContext}.
+ * The shard of each portlet is sized by the {@link Bridge#MAX_MANAGED_REQUEST_SCOPES} context init-param, unless a
+ * context init-param named {@link #MAX_MANAGED_REQUEST_SCOPES_PREFIX} followed by the portlet name is specified, in
+ * which case it takes precedence for that portlet. The {@link #BRIDGE_REQUEST_SCOPE_TIME_TO_LIVE} context init-param
+ * applies to every shard. The sweeper thread of the cache is stopped by {@link BridgeRequestScopeContextListener} when
+ * the web application is destroyed. In order to select it, register this class as the {@link
+ * BridgeRequestScopeCacheFactory} in the bridge factory configuration.
+ *
+ * @author  Neil Griffin
+ */
+public class PortletShardedBridgeRequestScopeCacheFactory extends BoundedBridgeRequestScopeCacheFactory {
+
+	// Public Constants
+	public static final String MAX_MANAGED_REQUEST_SCOPES_PREFIX = Bridge.MAX_MANAGED_REQUEST_SCOPES + ".";
+
+	public PortletShardedBridgeRequestScopeCacheFactory(BridgeRequestScopeCacheFactory bridgeRequestScopeCacheFactory) {
+		super(bridgeRequestScopeCacheFactory);
+	}
+
+	/**
+	 * Returns the maximum number of scopes of each portlet that has a {@link #MAX_MANAGED_REQUEST_SCOPES_PREFIX}
+	 * init-param in the specified {@link PortletContext}, keyed by portlet name. Init-params whose value is not a
+	 * positive integer are ignored.
+	 */
+	public static Map<String, Integer> getPortletMaxManagedRequestScopes(PortletContext portletContext) {
+
+		Map<String, Integer> portletMaxManagedRequestScopes = new HashMap<String, Integer>();
+		Enumeration<String> initParameterNames = portletContext.getInitParameterNames();
+
+		while ((initParameterNames != null) && initParameterNames.hasMoreElements()) {
+
+			String initParameterName = initParameterNames.nextElement();
+
+			if (initParameterName.startsWith(MAX_MANAGED_REQUEST_SCOPES_PREFIX) &&
+					(initParameterName.length() > MAX_MANAGED_REQUEST_SCOPES_PREFIX.length())) {
+
+				String portletName = initParameterName.substring(MAX_MANAGED_REQUEST_SCOPES_PREFIX.length());
+				String initParameterValue = portletContext.getInitParameter(initParameterName);
+				boolean valid = false;
+
+				if (initParameterValue != null) {
+
+					try {
+						int value = Integer.parseInt(initParameterValue.trim());
+
+						if (value > 0) {
+							portletMaxManagedRequestScopes.put(portletName, value);
+							valid = true;
+						}
+					}
+					catch (NumberFormatException e) {
+						// Reported below.
+					}
+				}
+
+				if (!valid) {
+
+					// Since the API can't use a logging system like SLF4J the best we can do is print to stderr.
+					System.err.println("Invalid value=[" + initParameterValue + "] for init-param=[" +
+						initParameterName + "]");
+				}
+			}
+		}
+
+		return portletMaxManagedRequestScopes;
+	}
+
+	@Override
+	protected BridgeRequestScopeCache newBridgeRequestScopeCache(PortletContext portletContext) {
+
+		final PortletShardedBridgeRequestScopeCache bridgeRequestScopeCache = new PortletShardedBridgeRequestScopeCache(
+				getMaxManagedRequestScopes(portletContext), getPortletMaxManagedRequestScopes(portletContext),
+				getTimeToLiveMillis(portletContext));
+		BridgeRequestScopeContextListener.addResource(portletContext, new Closeable() {
+
+				@Override
+				public void close() {
+					bridgeRequestScopeCache.shutdown();
+				}
+			});
+
+		return bridgeRequestScopeCache;
+	}
+}
@@ -0,0 +1,101 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.scope;
+
+import java.util.concurrent.Future;
+
+
+/**
+ * <p>This interface defines a service provider contract for a remote store (such as a data grid) that shares the
+ * {@link BridgeRequestScope} instances of a {@link ClusteredBridgeRequestScopeCache} among the nodes of a cluster, so
+ * that the RENDER_PHASE can be executed by a different node than the one that executed the ACTION_PHASE. Scopes are
+ * stored as bytes produced by a {@link BridgeRequestScopeMarshaller}, and keys follow the convention of {@link
+ * BridgeRequestScope#getId()} (the portlet name and session id separated by {@link
+ * BoundedBridgeRequestScopeCache#ID_SEPARATOR}).</p>
+ *
+ * <p>An instance represents the view of a single node. All operations are asynchronous and must not block the calling
+ * thread. Whenever a key is put or removed by a node, the store must broadcast an invalidation of the key to the {@link
+ * InvalidationListener}s of all other nodes, so that they can drop the copy in their near-cache. Implementations can be
+ * registered as a service in a <code>META-INF/services/com.liferay.faces.bridge.scope.RemoteBridgeRequestScopeStore
+ * </code> file of the web application, and must provide a public no-arg constructor.</p>
+ *
+ * @author  Neil Griffin
+ */
+public interface RemoteBridgeRequestScopeStore {
+
+	/**
+	 * Registers a listener that is notified of invalidations that are broadcast by other nodes.
+	 */
+	public void addInvalidationListener(InvalidationListener invalidationListener);
+
+	/**
+	 * Releases the resources of this node, such as connections to the store. Subsequent operations are undefined.
+	 */
+	public void close();
+
+	/**
+	 * Asynchronously retrieves the bytes of the scope with the specified key.
+	 *
+	 * @return  A future whose value is the bytes, or <code>null</code> if the store does not contain the key.
+	 */
+	public Future<byte[]> get(String key);
+
+	/**
+	 * Asynchronously stores the bytes of the scope with the specified key, replacing any previous bytes, and broadcasts
+	 * an invalidation of the key.
+	 */
+	public Future<Void> put(String key, byte[] bytes);
+
+	/**
+	 * Asynchronously removes the scope with the specified key and broadcasts an invalidation of the key.
+	 */
+	public Future<Void> remove(String key);
+
+	/**
+	 * Asynchronously removes all of the scopes of the specified portlet (on all nodes) and broadcasts an invalidation
+	 * of each removed key.
+	 *
+	 * @return  A future whose value is the number of scopes that were removed.
+	 */
+	public Future<Integer> removeByPortlet(String portletName);
+
+	/**
+	 * Asynchronously removes all of the scopes of the specified session (on all nodes) and broadcasts an invalidation
+	 * of each removed key.
+	 *
+	 * @return  A future whose value is the number of scopes that were removed.
+	 */
+	public Future<Integer> removeBySession(String sessionId);
+
+	/**
+	 * Unregisters a listener that was registered by {@link #addInvalidationListener(InvalidationListener)}.
+	 */
+	public void removeInvalidationListener(InvalidationListener invalidationListener);
+
+	/**
+	 * This interface defines a contract for receiving invalidations that are broadcast by other nodes. Listeners are
+	 * notified by a thread of the store, and so they must be thread-safe and must not block.
+	 *
+	 * @author  Neil Griffin
+	 */
+	public interface InvalidationListener {
+
+		/**
+		 * Called when the scope with the specified key was put or removed by another node.
+		 */
+		public void invalidated(String key);
+	}
+}
@@ -0,0 +1,140 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.scope;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * <p>This class supports a delta-based implementation of {@link BridgeRequestScope#saveState(
+ * javax.faces.context.FacesContext)}. It records a baseline of request attribute values (by identity) and is then able
+ * to determine which attributes were added or replaced since the baseline was taken. Attributes that are unchanged can
+ * be skipped without consulting the {@link RequestAttributeInspector} and without being copied into the scope, since
+ * they were either present before the bridge acquired the {@link javax.faces.context.FacesContext} (and are therefore
+ * excluded from the scope) or were already preserved by the scope and restored into the request.</p>
+ *
+ * <p>The baseline is initially comprised of the attributes named by {@link
+ * com.liferay.faces.bridge.context.BridgeContext#getPreFacesRequestAttrNames()}. During the EVENT_PHASE, {@link
+ * #addToBaseline(Map)} should be called after {@link BridgeRequestScope#restoreState(
+ * javax.faces.context.FacesContext)} so that restored attributes are not copied again unless they are replaced. An
+ * instance of this class is meant to be used by a single request (thread) and is not thread-safe.</p>
+ *
+ * @author  Neil Griffin
+ */
+public class RequestAttributeChangeTracker {
+
+	// Private Data Members
+	private final Map<String, Object> baseline;
+	private long copiedCount;
+	private long skippedCount;
+
+	/**
+	 * Constructs a new tracker whose baseline is the current value of each of the specified pre-existing request
+	 * attributes.
+	 *
+	 * @param  requestAttributeMap       The current request attributes, such as those returned by {@link
+	 *                                   com.liferay.faces.bridge.context.ContextMapFactory#getRequestScopeMap(
+	 *                                   com.liferay.faces.bridge.context.BridgeContext)}.
+	 * @param  preFacesRequestAttrNames  The names of the attributes that existed before the bridge acquired the {@link
+	 *                                   javax.faces.context.FacesContext}.
+	 */
+	public RequestAttributeChangeTracker(Map<String, Object> requestAttributeMap,
+		List<String> preFacesRequestAttrNames) {
+
+		this.baseline = new HashMap<String, Object>();
+
+		if (preFacesRequestAttrNames != null) {
+
+			for (String name : preFacesRequestAttrNames) {
+				baseline.put(name, requestAttributeMap.get(name));
+			}
+		}
+	}
+
+	/**
+	 * Adds all of the specified attributes to the baseline, replacing any previously recorded values.
+	 */
+	public void addToBaseline(Map<String, Object> requestAttributeMap) {
+		baseline.putAll(requestAttributeMap);
+	}
+
+	/**
+	 * Returns the names of the attributes in the baseline that are no longer present in the specified request
+	 * attributes. An implementation of {@link BridgeRequestScope#saveState(javax.faces.context.FacesContext)} can use
+	 * this in order to drop previously preserved attributes that were removed during the Faces lifecycle.
+	 */
+	public List<String> getRemovedAttributeNames(Map<String, Object> requestAttributeMap) {
+
+		List<String> removedAttributeNames = new ArrayList<String>();
+
+		for (String name : baseline.keySet()) {
+
+			if (!requestAttributeMap.containsKey(name)) {
+				removedAttributeNames.add(name);
+			}
+		}
+
+		return removedAttributeNames;
+	}
+
+	/**
+	 * Determines whether or not the specified attribute was added or replaced since the baseline was taken, and
+	 * increments the copied or skipped counter accordingly. Replacement is determined by identity rather than by {@link
+	 * Object#equals(Object)} so that mutable beans that are re-set with the same instance are not considered changed.
+	 *
+	 * @param   name   The request attribute name.
+	 * @param   value  The current request attribute value.
+	 *
+	 * @return  <code>true</code> if the attribute needs to be inspected and copied, otherwise <code>false</code>.
+	 */
+	public boolean isChanged(String name, Object value) {
+
+		boolean changed;
+
+		if (baseline.containsKey(name)) {
+			changed = (baseline.get(name) != value);
+		}
+		else {
+			changed = true;
+		}
+
+		if (changed) {
+			copiedCount++;
+		}
+		else {
+			skippedCount++;
+		}
+
+		return changed;
+	}
+
+	/**
+	 * Returns the number of calls to {@link #isChanged(String, Object)} that returned <code>true</code>.
+	 */
+	public long getCopiedCount() {
+		return copiedCount;
+	}
+
+	/**
+	 * Returns the number of calls to {@link #isChanged(String, Object)} that returned <code>false</code>.
+	 */
+	public long getSkippedCount() {
+		return skippedCount;
+	}
+}
@@ -0,0 +1,191 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.scope;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+
+/**
+ * <p>This class is an immutable prefix trie that is compiled from a collection of request attribute names, such as
+ * those returned by {@link com.liferay.faces.bridge.config.BridgeConfig#getExcludedRequestAttributes()}. An entry that
+ * ends with <code>.*</code> is a wildcard that matches every attribute name directly within the namespace that precedes
+ * it, in accordance with Section 5.1.2 of the Bridge Specification. For example, <code>com.foo.*</code> matches <code>
+ * com.foo.bar</code> but not <code>com.foo.bar.baz</code> (which is in the nested <code>com.foo.bar</code> namespace).
+ * All other entries are matched exactly.</p>
+ *
+ * <p>Since {@link #matches(String)} visits each character of the specified name at most once, the cost of matching is
+ * proportional to the length of the name rather than to the number of compiled entries. Instances of this class are
+ * thread-safe.</p>
+ *
+ * @author  Neil Griffin
+ */
+public final class RequestAttributeNameTrie {
+
+	// Private Constants
+	private static final char[] EMPTY_LABELS = new char[0];
+	private static final Node[] EMPTY_NODES = new Node[0];
+	private static final String WILDCARD_SUFFIX = ".*";
+
+	// Private Data Members
+	private final int entryCount;
+	private final Node root;
+
+	private RequestAttributeNameTrie(Node root, int entryCount) {
+		this.root = root;
+		this.entryCount = entryCount;
+	}
+
+	/**
+	 * Compiles the specified attribute names (and namespace wildcards) into a trie.
+	 *
+	 * @param  entries  The attribute names, or <code>null</code> for a trie that matches nothing.
+	 */
+	public static RequestAttributeNameTrie compile(Collection<String> entries) {
+
+		Node root = new Node();
+		int entryCount = 0;
+
+		if (entries != null) {
+
+			for (String entry : entries) {
+
+				if (entry == null) {
+					continue;
+				}
+
+				entry = entry.trim();
+
+				if (entry.length() == 0) {
+					continue;
+				}
+
+				boolean wildcard = entry.endsWith(WILDCARD_SUFFIX);
+
+				if (wildcard) {
+					entry = entry.substring(0, entry.length() - WILDCARD_SUFFIX.length());
+				}
+
+				Node node = root;
+
+				for (int i = 0; i < entry.length(); i++) {
+					node = node.addChild(entry.charAt(i));
+				}
+
+				if (wildcard) {
+					node.namespace = true;
+				}
+				else {
+					node.exact = true;
+				}
+
+				entryCount++;
+			}
+		}
+
+		return new RequestAttributeNameTrie(root, entryCount);
+	}
+
+	/**
+	 * Determines whether or not the specified attribute name is equal to one of the compiled entries, or is directly
+	 * within one of the compiled wildcard namespaces.
+	 *
+	 * @param   name  The request attribute name.
+	 *
+	 * @return  <code>true</code> if the name matches, otherwise <code>false</code>.
+	 */
+	public boolean matches(String name) {
+
+		if ((name == null) || (entryCount == 0)) {
+			return false;
+		}
+
+		int namespaceLength = name.lastIndexOf('.');
+		int length = name.length();
+		Node node = root;
+
+		for (int i = 0; i < length; i++) {
+
+			if ((i == namespaceLength) && node.namespace) {
+				return true;
+			}
+
+			node = node.getChild(name.charAt(i));
+
+			if (node == null) {
+				return false;
+			}
+		}
+
+		return node.exact;
+	}
+
+	/**
+	 * Returns the number of entries that were compiled into the trie.
+	 */
+	public int getEntryCount() {
+		return entryCount;
+	}
+
+	private static final class Node {
+
+		// Private Data Members
+		private Node[] children = EMPTY_NODES;
+		private boolean exact;
+		private char[] labels = EMPTY_LABELS;
+		private boolean namespace;
+
+		Node addChild(char label) {
+
+			int index = Arrays.binarySearch(labels, label);
+
+			if (index >= 0) {
+				return children[index];
+			}
+
+			int insertionPoint = -(index + 1);
+			int length = labels.length;
+			char[] newLabels = new char[length + 1];
+			Node[] newChildren = new Node[length + 1];
+			System.arraycopy(labels, 0, newLabels, 0, insertionPoint);
+			System.arraycopy(children, 0, newChildren, 0, insertionPoint);
+			System.arraycopy(labels, insertionPoint, newLabels, insertionPoint + 1, length - insertionPoint);
+			System.arraycopy(children, insertionPoint, newChildren, insertionPoint + 1, length - insertionPoint);
+
+			Node child = new Node();
+			newLabels[insertionPoint] = label;
+			newChildren[insertionPoint] = child;
+			labels = newLabels;
+			children = newChildren;
+
+			return child;
+		}
+
+		Node getChild(char label) {
+
+			char[] labels = this.labels;
+
+			// Most nodes of a trie compiled from dotted names have a single child, so avoid the binary search for them.
+			if (labels.length == 1) {
+				return (labels[0] == label) ? children[0] : null;
+			}
+
+			int index = Arrays.binarySearch(labels, label);
+
+			return (index >= 0) ? children[index] : null;
+		}
+	}
+}
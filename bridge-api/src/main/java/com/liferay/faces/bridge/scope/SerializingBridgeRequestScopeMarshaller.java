@@ -0,0 +1,68 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.scope;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+
+
+/**
+ * This class is a {@link BridgeRequestScopeMarshaller} that uses Java serialization, which is also what the servlet
+ * container uses for a scope that is stored as a session attribute. Classes are resolved with the thread context
+ * classloader.
+ *
+ * @author  Neil Griffin
+ */
+public class SerializingBridgeRequestScopeMarshaller implements BridgeRequestScopeMarshaller {
+
+	@Override
+	public byte[] marshal(BridgeRequestScope bridgeRequestScope) throws IOException {
+
+		if (!(bridgeRequestScope instanceof Serializable)) {
+			throw new NotSerializableException(bridgeRequestScope.getClass().getName());
+		}
+
+		ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream(512);
+		ObjectOutputStream objectOutputStream = new ObjectOutputStream(byteArrayOutputStream);
+
+		try {
+			objectOutputStream.writeObject(bridgeRequestScope);
+		}
+		finally {
+			objectOutputStream.close();
+		}
+
+		return byteArrayOutputStream.toByteArray();
+	}
+
+	@Override
+	public BridgeRequestScope unmarshal(byte[] bytes) throws IOException, ClassNotFoundException {
+
+		ObjectInputStream objectInputStream = new ContextClassLoaderObjectInputStream(new ByteArrayInputStream(bytes));
+
+		try {
+			return (BridgeRequestScope) objectInputStream.readObject();
+		}
+		finally {
+			objectInputStream.close();
+		}
+	}
+}
@@ -0,0 +1,460 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.scope;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * <p>This class is a {@link BridgeRequestScopeCache} that limits the estimated number of bytes that the scopes of a
+ * single session may occupy, so that a user who triggers many ACTION_PHASE requests without the corresponding
+ * RENDER_PHASE requests cannot pin an unbounded number of scopes full of request attributes. The size of a scope is
+ * estimated by {@link #estimateByteCount(BridgeRequestScope)} each time that it is put into the cache, which is why
+ * implementations should put the scope (again) after {@link BridgeRequestScope#saveState(
+ * javax.faces.context.FacesContext)}. Since the estimate is computed on the request thread, it is derived from the
+ * lengths of strings and arrays rather than from an encoding of the scope.</p>
+ *
+ * <p>If a put causes the scopes of the session to exceed the budget, then the oldest scopes of the session (by {@link
+ * BridgeRequestScope#getDateCreated()}) are removed from the wrapped cache until the session is within its budget
+ * again, and the eviction is recorded with {@link BridgeRequestScopeMetrics#recordSessionBudgetExceeded(int, long)}.
+ * The scope that was put is never evicted by its own put, even if it exceeds the budget by itself. The accounting of a
+ * session is discarded by {@link #removeBridgeRequestScopesBySession(String)}. If the wrapped cache is (or wraps) a
+ * {@link BoundedBridgeRequestScopeCache} or a {@link PortletShardedBridgeRequestScopeCache}, then the accounting of
+ * scopes that are evicted or expired by the wrapped cache is released as well.</p>
+ *
+ * @author  Neil Griffin
+ */
+public class SessionBudgetBridgeRequestScopeCache extends IndexedBridgeRequestScopeCacheWrapper
+	implements BoundedBridgeRequestScopeCache.RemovalListener {
+
+	// Public Constants
+	public static final long ESTIMATED_ATTRIBUTE_BYTES = 1024L;
+	public static final long ESTIMATED_SCOPE_BYTES = 256L;
+
+	// Private Constants
+	private static final long ESTIMATED_OBJECT_BYTES = 16L;
+
+	// Private Data Members
+	private final BridgeRequestScopeMetrics bridgeRequestScopeMetrics;
+	private final AtomicLong budgetEvictionCount = new AtomicLong();
+	private final AtomicLong budgetExceededCount = new AtomicLong();
+	private final long sessionBudgetBytes;
+	private final ConcurrentMap<String, SessionUsage> sessionUsages = new ConcurrentHashMap<String, SessionUsage>();
+	private final IndexedBridgeRequestScopeCache wrappedBridgeRequestScopeCache;
+
+	/**
+	 * Constructs a new cache.
+	 *
+	 * @param  bridgeRequestScopeCache    The wrapped cache.
+	 * @param  sessionBudgetBytes         The maximum estimated number of bytes of the scopes of a session.
+	 * @param  bridgeRequestScopeMetrics  The metrics to which evictions are recorded, or <code>null</code>.
+	 */
+	public SessionBudgetBridgeRequestScopeCache(IndexedBridgeRequestScopeCache bridgeRequestScopeCache,
+		long sessionBudgetBytes, BridgeRequestScopeMetrics bridgeRequestScopeMetrics) {
+
+		if (sessionBudgetBytes <= 0L) {
+			throw new IllegalArgumentException("sessionBudgetBytes must be greater than zero");
+		}
+
+		this.wrappedBridgeRequestScopeCache = bridgeRequestScopeCache;
+		this.sessionBudgetBytes = sessionBudgetBytes;
+		this.bridgeRequestScopeMetrics = bridgeRequestScopeMetrics;
+
+		BridgeRequestScopeRemovalListeners.addRemovalListener(bridgeRequestScopeCache, this);
+	}
+
+	@Override
+	public void clear() {
+		super.clear();
+		sessionUsages.clear();
+	}
+
+	/**
+	 * Releases the accounting of a scope that was removed from the wrapped cache.
+	 */
+	@Override
+	public void onRemoval(String key, BridgeRequestScope bridgeRequestScope,
+		BoundedBridgeRequestScopeCache.RemovalCause removalCause) {
+		release(key, bridgeRequestScope);
+	}
+
+	@Override
+	public BridgeRequestScope put(String key, BridgeRequestScope value) {
+
+		BridgeRequestScope oldValue = super.put(key, value);
+		String sessionId = getSessionId(value);
+
+		if (sessionId == null) {
+			return oldValue;
+		}
+
+		ScopeUsage scopeUsage = new ScopeUsage(key, BridgeRequestScopeIndex.parsePortletName(value.getId()),
+				value.getDateCreated(), estimateByteCount(value));
+		List<ScopeUsage> evictedScopeUsages;
+
+		while (true) {
+
+			SessionUsage sessionUsage = sessionUsages.get(sessionId);
+
+			if (sessionUsage == null) {
+				sessionUsage = new SessionUsage();
+
+				SessionUsage existingSessionUsage = sessionUsages.putIfAbsent(sessionId, sessionUsage);
+
+				if (existingSessionUsage != null) {
+					sessionUsage = existingSessionUsage;
+				}
+			}
+
+			synchronized (sessionUsage) {
+
+				// The accounting of the session may have been discarded after it was looked up.
+				if (sessionUsage.discarded) {
+					continue;
+				}
+
+				sessionUsage.add(scopeUsage);
+				evictedScopeUsages = sessionUsage.evictOldest(sessionBudgetBytes, key);
+			}
+
+			break;
+		}
+
+		if (evictedScopeUsages != null) {
+
+			long evictedByteCount = 0L;
+
+			for (ScopeUsage evictedScopeUsage : evictedScopeUsages) {
+				getWrapped().remove(evictedScopeUsage.key);
+				evictedByteCount += evictedScopeUsage.byteCount;
+			}
+
+			budgetExceededCount.incrementAndGet();
+			budgetEvictionCount.addAndGet(evictedScopeUsages.size());
+
+			if (bridgeRequestScopeMetrics != null) {
+				bridgeRequestScopeMetrics.recordSessionBudgetExceeded(evictedScopeUsages.size(), evictedByteCount);
+			}
+		}
+
+		return oldValue;
+	}
+
+	@Override
+	public BridgeRequestScope remove(Object key) {
+
+		BridgeRequestScope oldValue = super.remove(key);
+
+		if ((oldValue != null) && (key instanceof String)) {
+			release((String) key, oldValue);
+		}
+
+		return oldValue;
+	}
+
+	@Override
+	public int removeBridgeRequestScopesByPortlet(String portletName) {
+
+		int count = super.removeBridgeRequestScopesByPortlet(portletName);
+
+		for (Map.Entry<String, SessionUsage> entry : sessionUsages.entrySet()) {
+
+			SessionUsage sessionUsage = entry.getValue();
+
+			synchronized (sessionUsage) {
+				sessionUsage.removeByPortlet(portletName);
+				discardIfEmpty(entry.getKey(), sessionUsage);
+			}
+		}
+
+		return count;
+	}
+
+	@Override
+	public int removeBridgeRequestScopesBySession(String sessionId) {
+
+		int count = super.removeBridgeRequestScopesBySession(sessionId);
+		SessionUsage sessionUsage = sessionUsages.remove(sessionId);
+
+		if (sessionUsage != null) {
+
+			synchronized (sessionUsage) {
+				sessionUsage.discarded = true;
+			}
+		}
+
+		return count;
+	}
+
+	/**
+	 * Returns the estimated size in bytes of the specified scope. If the scope is a {@link Map} of its preserved
+	 * attributes (as is customary for implementations), then the size is estimated from the lengths of the names and
+	 * values of the attributes, without encoding them: strings and arrays are estimated from their lengths, the
+	 * elements of collections, maps and arrays of objects are estimated in the same way (but only one level deep), and
+	 * other values count as {@link #ESTIMATED_ATTRIBUTE_BYTES}. Subclasses may override this method in order to
+	 * provide an exact size, for example the length of the encoding by {@link BridgeRequestScopeCodec}.
+	 */
+	protected long estimateByteCount(BridgeRequestScope bridgeRequestScope) {
+
+		long byteCount = ESTIMATED_SCOPE_BYTES;
+
+		if (bridgeRequestScope instanceof Map) {
+
+			for (Map.Entry<?, ?> entry : ((Map<?, ?>) bridgeRequestScope).entrySet()) {
+				byteCount += estimateValueByteCount(entry.getKey(), true);
+				byteCount += estimateValueByteCount(entry.getValue(), true);
+			}
+		}
+
+		return byteCount;
+	}
+
+	/**
+	 * Returns the id of the session that is associated with the specified scope, or <code>null</code> if it cannot be
+	 * determined. The default implementation parses {@link BridgeRequestScope#getId()} in the same way as {@link
+	 * BoundedBridgeRequestScopeCache#getSessionId(BridgeRequestScope)}.
+	 */
+	protected String getSessionId(BridgeRequestScope bridgeRequestScope) {
+		return BridgeRequestScopeIndex.parseSessionId(bridgeRequestScope.getId());
+	}
+
+	private void discardIfEmpty(String sessionId, SessionUsage sessionUsage) {
+
+		if (sessionUsage.scopeUsages.isEmpty() && sessionUsages.remove(sessionId, sessionUsage)) {
+			sessionUsage.discarded = true;
+		}
+	}
+
+	private long estimateValueByteCount(Object value, boolean estimateElements) {
+
+		if (value == null) {
+			return 0L;
+		}
+		else if (value instanceof CharSequence) {
+			return ESTIMATED_OBJECT_BYTES + (2L * ((CharSequence) value).length());
+		}
+		else if ((value instanceof Number) || (value instanceof Boolean) || (value instanceof Character) ||
+				(value instanceof Enum)) {
+			return ESTIMATED_OBJECT_BYTES;
+		}
+		else if (value instanceof byte[]) {
+			return ESTIMATED_OBJECT_BYTES + ((byte[]) value).length;
+		}
+		else if (value instanceof char[]) {
+			return ESTIMATED_OBJECT_BYTES + (2L * ((char[]) value).length);
+		}
+		else if (value.getClass().isArray() && value.getClass().getComponentType().isPrimitive()) {
+			return ESTIMATED_OBJECT_BYTES + (8L * Array.getLength(value));
+		}
+		else if (!estimateElements) {
+			return ESTIMATED_ATTRIBUTE_BYTES;
+		}
+		else if (value instanceof Object[]) {
+
+			long byteCount = ESTIMATED_OBJECT_BYTES;
+
+			for (Object element : (Object[]) value) {
+				byteCount += estimateValueByteCount(element, false);
+			}
+
+			return byteCount;
+		}
+		else if (value instanceof Collection) {
+
+			long byteCount = ESTIMATED_OBJECT_BYTES;
+
+			for (Object element : (Collection<?>) value) {
+				byteCount += estimateValueByteCount(element, false);
+			}
+
+			return byteCount;
+		}
+		else if (value instanceof Map) {
+
+			long byteCount = ESTIMATED_OBJECT_BYTES;
+
+			for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+				byteCount += estimateValueByteCount(entry.getKey(), false);
+				byteCount += estimateValueByteCount(entry.getValue(), false);
+			}
+
+			return byteCount;
+		}
+
+		return ESTIMATED_ATTRIBUTE_BYTES;
+	}
+
+	private void release(String key, BridgeRequestScope bridgeRequestScope) {
+
+		String sessionId = getSessionId(bridgeRequestScope);
+
+		if (sessionId != null) {
+
+			SessionUsage sessionUsage = sessionUsages.get(sessionId);
+
+			if (sessionUsage != null) {
+
+				synchronized (sessionUsage) {
+					sessionUsage.remove(key);
+					discardIfEmpty(sessionId, sessionUsage);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of scopes that were evicted because a session exceeded its budget.
+	 */
+	public long getBudgetEvictionCount() {
+		return budgetEvictionCount.get();
+	}
+
+	/**
+	 * Returns the number of times that a session exceeded its budget.
+	 */
+	public long getBudgetExceededCount() {
+		return budgetExceededCount.get();
+	}
+
+	public long getSessionBudgetBytes() {
+		return sessionBudgetBytes;
+	}
+
+	/**
+	 * Returns the estimated number of bytes of the scopes of the specified session.
+	 */
+	public long getSessionByteCount(String sessionId) {
+
+		SessionUsage sessionUsage = sessionUsages.get(sessionId);
+
+		if (sessionUsage == null) {
+			return 0L;
+		}
+
+		synchronized (sessionUsage) {
+			return sessionUsage.byteCount;
+		}
+	}
+
+	/**
+	 * Returns the number of sessions that hold at least one scope.
+	 */
+	public int getSessionCount() {
+		return sessionUsages.size();
+	}
+
+	@Override
+	public IndexedBridgeRequestScopeCache getWrapped() {
+		return wrappedBridgeRequestScopeCache;
+	}
+
+	private static final class ScopeUsage {
+
+		// Private Data Members
+		private final long byteCount;
+		private final long dateCreated;
+		private final String key;
+		private final String portletName;
+
+		ScopeUsage(String key, String portletName, long dateCreated, long byteCount) {
+			this.key = key;
+			this.portletName = portletName;
+			this.dateCreated = dateCreated;
+			this.byteCount = byteCount;
+		}
+	}
+
+	/**
+	 * The accounting of the scopes of a session. Instances must be accessed while synchronized on the instance.
+	 */
+	private static final class SessionUsage {
+
+		// Private Data Members
+		private long byteCount;
+		private boolean discarded;
+		private final Map<String, ScopeUsage> scopeUsages = new LinkedHashMap<String, ScopeUsage>();
+
+		void add(ScopeUsage scopeUsage) {
+			remove(scopeUsage.key);
+			scopeUsages.put(scopeUsage.key, scopeUsage);
+			byteCount += scopeUsage.byteCount;
+		}
+
+		/**
+		 * Removes the oldest scopes, other than the scope with the specified key, until the byte count is within the
+		 * specified budget.
+		 *
+		 * @return  The scopes that were removed, or <code>null</code> if the byte count is already within the budget.
+		 */
+		List<ScopeUsage> evictOldest(long budgetBytes, String retainedKey) {
+
+			List<ScopeUsage> evictedScopeUsages = null;
+
+			while ((byteCount > budgetBytes) && (scopeUsages.size() > 1)) {
+
+				ScopeUsage oldestScopeUsage = null;
+
+				for (ScopeUsage scopeUsage : scopeUsages.values()) {
+
+					if (!scopeUsage.key.equals(retainedKey) &&
+							((oldestScopeUsage == null) || (scopeUsage.dateCreated < oldestScopeUsage.dateCreated))) {
+						oldestScopeUsage = scopeUsage;
+					}
+				}
+
+				remove(oldestScopeUsage.key);
+
+				if (evictedScopeUsages == null) {
+					evictedScopeUsages = new ArrayList<ScopeUsage>();
+				}
+
+				evictedScopeUsages.add(oldestScopeUsage);
+			}
+
+			return evictedScopeUsages;
+		}
+
+		void remove(String key) {
+
+			ScopeUsage scopeUsage = scopeUsages.remove(key);
+
+			if (scopeUsage != null) {
+				byteCount -= scopeUsage.byteCount;
+			}
+		}
+
+		void removeByPortlet(String portletName) {
+
+			for (Iterator<ScopeUsage> iterator = scopeUsages.values().iterator(); iterator.hasNext();) {
+				ScopeUsage scopeUsage = iterator.next();
+
+				if (portletName.equals(scopeUsage.portletName)) {
+					iterator.remove();
+					byteCount -= scopeUsage.byteCount;
+				}
+			}
+		}
+	}
+}
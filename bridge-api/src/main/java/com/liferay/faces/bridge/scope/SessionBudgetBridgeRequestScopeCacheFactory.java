@@ -0,0 +1,122 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.scope;
+
+import javax.portlet.PortletContext;
+
+
+/**
+ * This class is a factory that decorates the {@link BridgeRequestScopeCache} created by the wrapped factory with a
+ * {@link SessionBudgetBridgeRequestScopeCache}, provided that the {@link #BRIDGE_REQUEST_SCOPE_SESSION_BUDGET} context
+ * init-param specifies the budget of each session in bytes. Otherwise the cache of the wrapped factory is returned as
+ * is. Evictions are recorded to the {@link BridgeRequestScopeMetrics} of the portlet application. In order to select
+ * it, register this class as the {@link BridgeRequestScopeCacheFactory} in the bridge factory configuration.
+ *
+ * @author  Neil Griffin
+ */
+public class SessionBudgetBridgeRequestScopeCacheFactory extends BridgeRequestScopeCacheFactory {
+
+	// Public Constants
+	public static final String BRIDGE_REQUEST_SCOPE_SESSION_BUDGET =
+		"com.liferay.faces.bridge.bridgeRequestScopeSessionBudget";
+
+	// Private Constants
+	private static final String CACHE_ATTRIBUTE_NAME = SessionBudgetBridgeRequestScopeCacheFactory.class.getName();
+
+	// Private Data Members
+	private BridgeRequestScopeCacheFactory wrappedBridgeRequestScopeCacheFactory;
+
+	public SessionBudgetBridgeRequestScopeCacheFactory(BridgeRequestScopeCacheFactory bridgeRequestScopeCacheFactory) {
+		this.wrappedBridgeRequestScopeCacheFactory = bridgeRequestScopeCacheFactory;
+	}
+
+	/**
+	 * Returns the value of the {@link #BRIDGE_REQUEST_SCOPE_SESSION_BUDGET} init-param of the specified {@link
+	 * PortletContext}, or zero if the init-param is not specified or is not a positive integer.
+	 */
+	public static long getSessionBudgetBytes(PortletContext portletContext) {
+
+		long sessionBudgetBytes = 0L;
+		String initParameterValue = portletContext.getInitParameter(BRIDGE_REQUEST_SCOPE_SESSION_BUDGET);
+
+		if (initParameterValue != null) {
+
+			try {
+				long value = Long.parseLong(initParameterValue.trim());
+
+				if (value > 0L) {
+					sessionBudgetBytes = value;
+				}
+			}
+			catch (NumberFormatException e) {
+
+				// Since the API can't use a logging system like SLF4J the best we can do is print to stderr.
+				System.err.println("Invalid value=[" + initParameterValue + "] for init-param=[" +
+					BRIDGE_REQUEST_SCOPE_SESSION_BUDGET + "]");
+			}
+		}
+
+		return sessionBudgetBytes;
+	}
+
+	@Override
+	public BridgeRequestScopeCache getBridgeRequestScopeCache(PortletContext portletContext) {
+
+		BridgeRequestScopeCache bridgeRequestScopeCache = (BridgeRequestScopeCache) portletContext.getAttribute(
+				CACHE_ATTRIBUTE_NAME);
+
+		if (bridgeRequestScopeCache == null) {
+
+			synchronized (this) {
+
+				bridgeRequestScopeCache = (BridgeRequestScopeCache) portletContext.getAttribute(CACHE_ATTRIBUTE_NAME);
+
+				if (bridgeRequestScopeCache == null) {
+					bridgeRequestScopeCache = newBridgeRequestScopeCache(portletContext);
+					portletContext.setAttribute(CACHE_ATTRIBUTE_NAME, bridgeRequestScopeCache);
+				}
+			}
+		}
+
+		return bridgeRequestScopeCache;
+	}
+
+	/**
+	 * Creates the cache for the specified {@link PortletContext}.
+	 */
+	protected BridgeRequestScopeCache newBridgeRequestScopeCache(PortletContext portletContext) {
+
+		BridgeRequestScopeCache wrappedBridgeRequestScopeCache = getWrapped().getBridgeRequestScopeCache(
+				portletContext);
+		long sessionBudgetBytes = getSessionBudgetBytes(portletContext);
+
+		if (sessionBudgetBytes == 0L) {
+			return wrappedBridgeRequestScopeCache;
+		}
+
+		IndexedBridgeRequestScopeCache indexedBridgeRequestScopeCache =
+			IndexedBridgeRequestScopeCacheWrapper.toIndexedBridgeRequestScopeCache(wrappedBridgeRequestScopeCache,
+				SessionBudgetBridgeRequestScopeCache.class);
+
+		return new SessionBudgetBridgeRequestScopeCache(indexedBridgeRequestScopeCache, sessionBudgetBytes,
+				BridgeRequestScopeMetricsRegistry.getBridgeRequestScopeMetrics(portletContext));
+	}
+
+	@Override
+	public BridgeRequestScopeCacheFactory getWrapped() {
+		return wrappedBridgeRequestScopeCacheFactory;
+	}
+}
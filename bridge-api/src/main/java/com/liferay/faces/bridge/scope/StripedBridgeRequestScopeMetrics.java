@@ -0,0 +1,384 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.scope;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+
+/**
+ * This class is the default implementation of {@link BridgeRequestScopeMetrics}. Each measurement is accumulated in a
+ * {@link StripedCounter} so that recording adds no contention to the request processing path. The size in bytes of a
+ * scope is sampled once every {@link #SCOPE_SIZE_SAMPLING_INTERVAL} calls to {@link
+ * BridgeRequestScope#saveState(javax.faces.context.FacesContext)} on average.
+ *
+ * @author  Neil Griffin
+ */
+public class StripedBridgeRequestScopeMetrics implements BridgeRequestScopeMetrics {
+
+	// Public Constants
+	public static final int SCOPE_SIZE_SAMPLING_INTERVAL = 64;
+
+	// Private Data Members
+	private final StripedCounter attributeCount = new StripedCounter();
+	private final StripedCounter attributeScopeCount = new StripedCounter();
+	private final StripedCounter cacheHitCount = new StripedCounter();
+	private final StripedCounter cacheMissCount = new StripedCounter();
+	private final StripedCounter cachePutCount = new StripedCounter();
+	private final StripedCounter evictionCount = new StripedCounter();
+	private final StripedCounter expirationCount = new StripedCounter();
+	private final StripedCounter explicitRemovalCount = new StripedCounter();
+	private final StripedCounter portletRemovalCount = new StripedCounter();
+	private final StripedCounter portletRemovalNanos = new StripedCounter();
+	private final StripedCounter portletScopeCount = new StripedCounter();
+	private final StripedCounter restoreStateCount = new StripedCounter();
+	private final StripedCounter restoreStateNanos = new StripedCounter();
+	private final StripedCounter sampledByteCount = new StripedCounter();
+	private final StripedCounter sampledScopeCount = new StripedCounter();
+	private final StripedCounter saveStateCount = new StripedCounter();
+	private final StripedCounter saveStateNanos = new StripedCounter();
+	private final StripedCounter sessionBudgetEvictedByteCount = new StripedCounter();
+	private final StripedCounter sessionBudgetEvictedScopeCount = new StripedCounter();
+	private final StripedCounter sessionBudgetExceededCount = new StripedCounter();
+	private final StripedCounter sessionCount = new StripedCounter();
+	private final StripedCounter sessionRemovalBackpressureCount = new StripedCounter();
+	private final StripedCounter sessionRemovalBatchCount = new StripedCounter();
+	private final StripedCounter sessionRemovalBatchNanos = new StripedCounter();
+	private final StripedCounter sessionRemovalBatchSessionCount = new StripedCounter();
+	private final StripedCounter sessionRemovalCount = new StripedCounter();
+	private final StripedCounter sessionRemovalNanos = new StripedCounter();
+	private final StripedCounter sessionScopeCount = new StripedCounter();
+	private final StripedCounter viewStateByteCount = new StripedCounter();
+	private final StripedCounter viewStateCompressedByteCount = new StripedCounter();
+	private final StripedCounter viewStateCompressionCount = new StripedCounter();
+	private final StripedCounter viewStateCompressionNanos = new StripedCounter();
+	private final StripedCounter viewStateDecompressionCount = new StripedCounter();
+	private final StripedCounter viewStateDecompressionNanos = new StripedCounter();
+
+	@Override
+	public void recordCacheHit() {
+		cacheHitCount.increment();
+	}
+
+	@Override
+	public void recordCacheMiss() {
+		cacheMissCount.increment();
+	}
+
+	@Override
+	public void recordCachePut() {
+		cachePutCount.increment();
+	}
+
+	@Override
+	public void recordPortletRemoval(long nanos) {
+		portletRemovalCount.increment();
+		portletRemovalNanos.add(nanos);
+	}
+
+	@Override
+	public void recordRemoval(BoundedBridgeRequestScopeCache.RemovalCause removalCause) {
+
+		if (removalCause == BoundedBridgeRequestScopeCache.RemovalCause.SIZE) {
+			evictionCount.increment();
+		}
+		else if (removalCause == BoundedBridgeRequestScopeCache.RemovalCause.EXPIRED) {
+			expirationCount.increment();
+		}
+		else {
+			explicitRemovalCount.increment();
+		}
+	}
+
+	@Override
+	public void recordRestoreState(long nanos) {
+		restoreStateCount.increment();
+		restoreStateNanos.add(nanos);
+	}
+
+	@Override
+	public void recordSaveState(int attributeCount, long byteCount, long nanos) {
+
+		saveStateCount.increment();
+		saveStateNanos.add(nanos);
+
+		if (attributeCount >= 0) {
+			this.attributeCount.add(attributeCount);
+			attributeScopeCount.increment();
+		}
+
+		if (byteCount >= 0L) {
+			sampledScopeCount.increment();
+			sampledByteCount.add(byteCount);
+		}
+	}
+
+	@Override
+	public void recordScopesRemovedByPortlet(int scopeCount) {
+		portletScopeCount.add(scopeCount);
+	}
+
+	@Override
+	public void recordScopesRemovedBySession(int scopeCount) {
+		sessionCount.increment();
+		sessionScopeCount.add(scopeCount);
+	}
+
+	@Override
+	public void recordSessionBudgetExceeded(int scopeCount, long byteCount) {
+		sessionBudgetExceededCount.increment();
+		sessionBudgetEvictedScopeCount.add(scopeCount);
+		sessionBudgetEvictedByteCount.add(byteCount);
+	}
+
+	@Override
+	public void recordSessionRemoval(long nanos) {
+		sessionRemovalCount.increment();
+		sessionRemovalNanos.add(nanos);
+	}
+
+	@Override
+	public void recordSessionRemovalBackpressure() {
+		sessionRemovalBackpressureCount.increment();
+	}
+
+	@Override
+	public void recordSessionRemovalBatch(int sessionCount, int scopeCount, long nanos) {
+		sessionRemovalBatchCount.increment();
+		sessionRemovalBatchSessionCount.add(sessionCount);
+		sessionRemovalBatchNanos.add(nanos);
+	}
+
+	@Override
+	public void recordViewStateCompressed(int byteCount, int compressedByteCount, long nanos) {
+		viewStateCompressionCount.increment();
+		viewStateByteCount.add(byteCount);
+		viewStateCompressedByteCount.add(compressedByteCount);
+		viewStateCompressionNanos.add(nanos);
+	}
+
+	@Override
+	public void recordViewStateDecompressed(int byteCount, long nanos) {
+		viewStateDecompressionCount.increment();
+		viewStateDecompressionNanos.add(nanos);
+	}
+
+	/**
+	 * Resets all of the measurements to zero.
+	 */
+	public void reset() {
+
+		StripedCounter[] counters = new StripedCounter[] {
+				attributeCount, attributeScopeCount, cacheHitCount, cacheMissCount, cachePutCount, evictionCount,
+				expirationCount, explicitRemovalCount, portletRemovalCount, portletRemovalNanos, portletScopeCount,
+				restoreStateCount, restoreStateNanos, sampledByteCount, sampledScopeCount, saveStateCount, saveStateNanos,
+				sessionBudgetEvictedByteCount, sessionBudgetEvictedScopeCount, sessionBudgetExceededCount, sessionCount,
+				sessionRemovalBackpressureCount, sessionRemovalBatchCount, sessionRemovalBatchNanos,
+				sessionRemovalBatchSessionCount, sessionRemovalCount, sessionRemovalNanos, sessionScopeCount,
+				viewStateByteCount, viewStateCompressedByteCount, viewStateCompressionCount, viewStateCompressionNanos,
+				viewStateDecompressionCount, viewStateDecompressionNanos
+			};
+
+		for (StripedCounter counter : counters) {
+			counter.reset();
+		}
+	}
+
+	/**
+	 * Returns the total number of request attributes preserved by the scopes counted by {@link
+	 * #getAttributeScopeCount()}.
+	 */
+	public long getAttributeCount() {
+		return attributeCount.sum();
+	}
+
+	/**
+	 * Returns the number of saved scopes whose number of preserved request attributes was known.
+	 */
+	public long getAttributeScopeCount() {
+		return attributeScopeCount.sum();
+	}
+
+	public long getCacheHitCount() {
+		return cacheHitCount.sum();
+	}
+
+	public long getCacheMissCount() {
+		return cacheMissCount.sum();
+	}
+
+	public long getCachePutCount() {
+		return cachePutCount.sum();
+	}
+
+	public long getEvictionCount() {
+		return evictionCount.sum();
+	}
+
+	public long getExpirationCount() {
+		return expirationCount.sum();
+	}
+
+	public long getExplicitRemovalCount() {
+		return explicitRemovalCount.sum();
+	}
+
+	public long getPortletRemovalCount() {
+		return portletRemovalCount.sum();
+	}
+
+	public long getPortletRemovalNanos() {
+		return portletRemovalNanos.sum();
+	}
+
+	public long getPortletScopeCount() {
+		return portletScopeCount.sum();
+	}
+
+	public long getRestoreStateCount() {
+		return restoreStateCount.sum();
+	}
+
+	public long getRestoreStateNanos() {
+		return restoreStateNanos.sum();
+	}
+
+	/**
+	 * Returns the total number of bytes of the scopes whose size was sampled.
+	 */
+	public long getSampledByteCount() {
+		return sampledByteCount.sum();
+	}
+
+	/**
+	 * Returns the number of scopes whose size was sampled.
+	 */
+	public long getSampledScopeCount() {
+		return sampledScopeCount.sum();
+	}
+
+	public long getSaveStateCount() {
+		return saveStateCount.sum();
+	}
+
+	public long getSaveStateNanos() {
+		return saveStateNanos.sum();
+	}
+
+	@Override
+	public boolean isScopeSizeSampled() {
+		return ThreadLocalRandom.current().nextInt(SCOPE_SIZE_SAMPLING_INTERVAL) == 0;
+	}
+
+	/**
+	 * Returns the estimated size in bytes of the scopes that were evicted because a session exceeded its budget.
+	 */
+	public long getSessionBudgetEvictedByteCount() {
+		return sessionBudgetEvictedByteCount.sum();
+	}
+
+	/**
+	 * Returns the number of scopes that were evicted because a session exceeded its budget.
+	 */
+	public long getSessionBudgetEvictedScopeCount() {
+		return sessionBudgetEvictedScopeCount.sum();
+	}
+
+	/**
+	 * Returns the number of times that a session exceeded its budget.
+	 */
+	public long getSessionBudgetExceededCount() {
+		return sessionBudgetExceededCount.sum();
+	}
+
+	/**
+	 * Returns the number of sessions whose scopes were removed from the cache.
+	 */
+	public long getSessionCount() {
+		return sessionCount.sum();
+	}
+
+	/**
+	 * Returns the number of times that the scopes of a session were removed synchronously because the queue of {@link
+	 * AsynchronousSessionRemovalBridgeRequestScopeCache} was full.
+	 */
+	public long getSessionRemovalBackpressureCount() {
+		return sessionRemovalBackpressureCount.sum();
+	}
+
+	public long getSessionRemovalBatchCount() {
+		return sessionRemovalBatchCount.sum();
+	}
+
+	public long getSessionRemovalBatchNanos() {
+		return sessionRemovalBatchNanos.sum();
+	}
+
+	/**
+	 * Returns the total number of sessions in the batches counted by {@link #getSessionRemovalBatchCount()}.
+	 */
+	public long getSessionRemovalBatchSessionCount() {
+		return sessionRemovalBatchSessionCount.sum();
+	}
+
+	public long getSessionRemovalCount() {
+		return sessionRemovalCount.sum();
+	}
+
+	public long getSessionRemovalNanos() {
+		return sessionRemovalNanos.sum();
+	}
+
+	/**
+	 * Returns the total number of scopes that were held by the sessions counted by {@link #getSessionCount()}.
+	 */
+	public long getSessionScopeCount() {
+		return sessionScopeCount.sum();
+	}
+
+	/**
+	 * Returns the total number of bytes of the view states counted by {@link #getViewStateCompressionCount()}.
+	 */
+	public long getViewStateByteCount() {
+		return viewStateByteCount.sum();
+	}
+
+	/**
+	 * Returns the total number of bytes of the view states counted by {@link #getViewStateCompressionCount()} after
+	 * compression, counting a view state that did not become smaller at its original size.
+	 */
+	public long getViewStateCompressedByteCount() {
+		return viewStateCompressedByteCount.sum();
+	}
+
+	/**
+	 * Returns the number of view states that were long enough to be compressed.
+	 */
+	public long getViewStateCompressionCount() {
+		return viewStateCompressionCount.sum();
+	}
+
+	public long getViewStateCompressionNanos() {
+		return viewStateCompressionNanos.sum();
+	}
+
+	public long getViewStateDecompressionCount() {
+		return viewStateDecompressionCount.sum();
+	}
+
+	public long getViewStateDecompressionNanos() {
+		return viewStateDecompressionNanos.sum();
+	}
+}
@@ -0,0 +1,81 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.scope;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+
+/**
+ * This class is a counter that spreads updates across a number of cells in order to avoid contention between threads
+ * that increment it concurrently. Each thread is assigned a cell according to its id, and the cells are padded so that
+ * each one occupies its own cache line. Reading the value with {@link #sum()} is comparatively expensive and is not an
+ * atomic snapshot, which is acceptable for statistics.
+ *
+ * @author  Neil Griffin
+ */
+final class StripedCounter {
+
+	// Private Constants
+	private static final int CELL_PADDING = 8;
+	private static final int STRIPES = ceilingPowerOfTwo(Math.max(2, Runtime.getRuntime().availableProcessors()));
+
+	// Private Data Members
+	private final AtomicLongArray cells = new AtomicLongArray((STRIPES + 1) * CELL_PADDING);
+
+	private static int ceilingPowerOfTwo(int value) {
+		return 1 << (32 - Integer.numberOfLeadingZeros(value - 1));
+	}
+
+	private static int getCellIndex() {
+
+		long threadId = Thread.currentThread().getId();
+
+		// Spread consecutive thread ids across the cells.
+		int hash = (int) (threadId ^ (threadId >>> 32));
+		hash ^= hash >>> 16;
+		hash *= 0x85ebca6b;
+		hash ^= hash >>> 13;
+
+		// The first cell line is skipped so that cells are not adjacent to the header of the array.
+		return ((hash & (STRIPES - 1)) + 1) * CELL_PADDING;
+	}
+
+	void add(long value) {
+		cells.getAndAdd(getCellIndex(), value);
+	}
+
+	void increment() {
+		cells.getAndIncrement(getCellIndex());
+	}
+
+	void reset() {
+
+		for (int i = CELL_PADDING; i < cells.length(); i += CELL_PADDING) {
+			cells.set(i, 0L);
+		}
+	}
+
+	long sum() {
+
+		long sum = 0L;
+
+		for (int i = CELL_PADDING; i < cells.length(); i += CELL_PADDING) {
+			sum += cells.get(i);
+		}
+
+		return sum;
+	}
+}
@@ -0,0 +1,178 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.scope;
+
+import java.util.List;
+
+
+/**
+ * This class is a hierarchical timer wheel that schedules {@link Timeout} instances in O(1) time. Each level of the
+ * wheel is an array of buckets, where each bucket spans a power-of-two number of milliseconds. Timeouts that are far in
+ * the future are placed in the coarse levels and cascade down into the finer levels as time advances, which means that
+ * advancing the wheel only visits the buckets whose time has come rather than every scheduled timeout. Instances of
+ * this class are not thread-safe, and so callers must provide their own synchronization.
+ *
+ * @author  Neil Griffin
+ */
+final class TimerWheel {
+
+	// Private Constants
+	private static final int[] BUCKETS = new int[] { 64, 64, 32, 4, 1 };
+
+	// Spans of approximately 1 second, 1 minute, 1 hour, 1.5 days, 6 days, and 6 days (overflow) in milliseconds.
+	private static final long[] SPANS = new long[] {
+			1L << 10, 1L << 16, 1L << 22, 1L << 27, 1L << 29, 1L << 29
+		};
+	private static final long[] SHIFT = new long[] {
+			Long.numberOfTrailingZeros(SPANS[0]), Long.numberOfTrailingZeros(SPANS[1]),
+			Long.numberOfTrailingZeros(SPANS[2]), Long.numberOfTrailingZeros(SPANS[3]),
+			Long.numberOfTrailingZeros(SPANS[4])
+		};
+
+	// Private Data Members
+	private long time;
+	private final Timeout[][] wheel;
+
+	TimerWheel(long currentTimeMillis) {
+
+		this.time = currentTimeMillis;
+		this.wheel = new Timeout[BUCKETS.length][];
+
+		for (int i = 0; i < wheel.length; i++) {
+			wheel[i] = new Timeout[BUCKETS[i]];
+
+			for (int j = 0; j < wheel[i].length; j++) {
+				Timeout sentinel = new Timeout();
+				sentinel.prevTimeout = sentinel;
+				sentinel.nextTimeout = sentinel;
+				wheel[i][j] = sentinel;
+			}
+		}
+	}
+
+	/**
+	 * Advances the wheel to the specified time and appends the timeouts that have expired to the specified list. Expired
+	 * timeouts are no longer scheduled.
+	 */
+	void advance(long currentTimeMillis, List<Timeout> expired) {
+
+		long previousTime = time;
+		time = currentTimeMillis;
+
+		for (int i = 0; i < SHIFT.length; i++) {
+			long previousTicks = previousTime >>> SHIFT[i];
+			long currentTicks = currentTimeMillis >>> SHIFT[i];
+
+			if ((currentTicks - previousTicks) <= 0L) {
+				break;
+			}
+
+			expire(i, previousTicks, currentTicks - previousTicks, expired);
+		}
+	}
+
+	/**
+	 * Removes the specified timeout from the wheel if it is scheduled.
+	 */
+	void cancel(Timeout timeout) {
+
+		if (timeout.nextTimeout != null) {
+			timeout.prevTimeout.nextTimeout = timeout.nextTimeout;
+			timeout.nextTimeout.prevTimeout = timeout.prevTimeout;
+			timeout.nextTimeout = null;
+			timeout.prevTimeout = null;
+		}
+	}
+
+	/**
+	 * Schedules the specified timeout according to its expiration time, rescheduling it if it was already scheduled.
+	 */
+	void schedule(Timeout timeout) {
+
+		cancel(timeout);
+
+		Timeout sentinel = findBucket(timeout.expirationTime);
+		timeout.prevTimeout = sentinel.prevTimeout;
+		timeout.nextTimeout = sentinel;
+		sentinel.prevTimeout.nextTimeout = timeout;
+		sentinel.prevTimeout = timeout;
+	}
+
+	private void expire(int level, long previousTicks, long delta, List<Timeout> expired) {
+
+		Timeout[] timerWheel = wheel[level];
+		int mask = timerWheel.length - 1;
+		int steps = (int) Math.min(1L + delta, timerWheel.length);
+		int start = (int) (previousTicks & mask);
+		int end = start + steps;
+
+		for (int i = start; i < end; i++) {
+			Timeout sentinel = timerWheel[i & mask];
+			Timeout timeout = sentinel.nextTimeout;
+			sentinel.prevTimeout = sentinel;
+			sentinel.nextTimeout = sentinel;
+
+			while (timeout != sentinel) {
+				Timeout next = timeout.nextTimeout;
+				timeout.prevTimeout = null;
+				timeout.nextTimeout = null;
+
+				if ((timeout.expirationTime - time) > 0L) {
+
+					// Not yet expired, so cascade into a finer level of the wheel.
+					schedule(timeout);
+				}
+				else {
+					expired.add(timeout);
+				}
+
+				timeout = next;
+			}
+		}
+	}
+
+	private Timeout findBucket(long expirationTime) {
+
+		long duration = expirationTime - time;
+		int length = wheel.length - 1;
+
+		for (int i = 0; i < length; i++) {
+
+			if (duration < SPANS[i + 1]) {
+
+				// Timeouts that are already due are placed in the current bucket so that the next advance expires them.
+				long ticks = Math.max(expirationTime, time) >>> SHIFT[i];
+				int index = (int) (ticks & (wheel[i].length - 1));
+
+				return wheel[i][index];
+			}
+		}
+
+		return wheel[length][0];
+	}
+
+	/**
+	 * An entry that can be scheduled in a {@link TimerWheel}. Unscheduled instances have <code>null</code> links. The
+	 * sentinel of each bucket is a self-linked instance that is created by the wheel itself.
+	 */
+	static class Timeout {
+
+		// Package-Private Data Members
+		long expirationTime;
+		Timeout nextTimeout;
+		Timeout prevTimeout;
+	}
+}
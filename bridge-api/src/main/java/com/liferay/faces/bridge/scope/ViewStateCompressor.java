@@ -0,0 +1,406 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.scope;
+
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import javax.portlet.PortletContext;
+
+
+/**
+ * <p>This class compresses the value of {@link BridgeRequestScope#getPreservedViewStateParam()}, which can amount to
+ * hundreds of kilobytes when client-side state saving is used, so that each preserved copy of the view state occupies
+ * a fraction of its original size. Values that are shorter than the threshold (in characters) are not compressed, since
+ * the CPU cost would outweigh the savings, and neither are values that do not become smaller. Values are compressed
+ * with the raw DEFLATE format at {@link Deflater#BEST_SPEED}, which is a member of the LZ77 family and favors speed
+ * over ratio. Values that are longer than {@link #MAXIMUM_LENGTH} (in bytes) are not compressed either, so that {@link
+ * #decompress(byte[])} can reject a length that exceeds it (or the maximum ratio of DEFLATE) before allocating a
+ * buffer.</p>
+ *
+ * <p>Since a {@link Deflater} and an {@link Inflater} each allocate native memory, the codecs and the byte arrays that
+ * they work on are pooled and reused rather than allocated per call. The compression ratio and the time spent
+ * compressing and decompressing are recorded with {@link BridgeRequestScopeMetrics#recordViewStateCompressed(int, int,
+ * long)} and {@link BridgeRequestScopeMetrics#recordViewStateDecompressed(int, long)} so that the threshold can be
+ * tuned. Instances of this class are thread-safe.</p>
+ *
+ * @author  Neil Griffin
+ */
+public class ViewStateCompressor {
+
+	// Public Constants
+	public static final int DEFAULT_THRESHOLD = 8192;
+	public static final int MAXIMUM_LENGTH = 64 * 1024 * 1024;
+	public static final String PRESERVED_VIEW_STATE_COMPRESSION_THRESHOLD =
+		"com.liferay.faces.bridge.preservedViewStateCompressionThreshold";
+
+	// Private Constants
+	private static final String COMPRESSOR_ATTRIBUTE_NAME = ViewStateCompressor.class.getName();
+	private static final int HEADER_LENGTH = 4;
+
+	// DEFLATE cannot compress by a ratio higher than 1032:1.
+	private static final int MAXIMUM_COMPRESSION_RATIO = 1032;
+	private static final ViewStateCompressor INSTANCE = new ViewStateCompressor(DEFAULT_THRESHOLD, null);
+	private static final int MAXIMUM_POOLED_BUFFER_LENGTH = 1 << 20;
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	// Private Data Members
+	private final BridgeRequestScopeMetrics bridgeRequestScopeMetrics;
+	private final BlockingQueue<Codec> codecs;
+	private final int threshold;
+
+	/**
+	 * Constructs a new compressor.
+	 *
+	 * @param  threshold                  The minimum length (in characters) of a view state that is compressed.
+	 * @param  bridgeRequestScopeMetrics  The metrics to record to, or <code>null</code> if nothing is recorded.
+	 */
+	public ViewStateCompressor(int threshold, BridgeRequestScopeMetrics bridgeRequestScopeMetrics) {
+
+		if (threshold <= 0) {
+			throw new IllegalArgumentException("threshold must be greater than zero");
+		}
+
+		this.threshold = threshold;
+		this.bridgeRequestScopeMetrics = bridgeRequestScopeMetrics;
+		this.codecs = new ArrayBlockingQueue<Codec>(Runtime.getRuntime().availableProcessors() * 2);
+	}
+
+	/**
+	 * Returns a shared compressor with the {@link #DEFAULT_THRESHOLD} that does not record any metrics. It is used in
+	 * order to decompress view state that was decoded without a compressor.
+	 */
+	public static ViewStateCompressor getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Returns the value of the {@link #PRESERVED_VIEW_STATE_COMPRESSION_THRESHOLD} init-param of the specified {@link
+	 * PortletContext}, or {@link #DEFAULT_THRESHOLD} if the init-param is not specified or is not a positive integer.
+	 */
+	public static int getThreshold(PortletContext portletContext) {
+
+		int threshold = DEFAULT_THRESHOLD;
+		String initParameterValue = portletContext.getInitParameter(PRESERVED_VIEW_STATE_COMPRESSION_THRESHOLD);
+
+		if (initParameterValue != null) {
+
+			try {
+				int value = Integer.parseInt(initParameterValue.trim());
+
+				if (value > 0) {
+					threshold = value;
+				}
+			}
+			catch (NumberFormatException e) {
+
+				// Since the API can't use a logging system like SLF4J the best we can do is print to stderr.
+				System.err.println("Invalid value=[" + initParameterValue + "] for init-param=[" +
+					PRESERVED_VIEW_STATE_COMPRESSION_THRESHOLD + "]");
+			}
+		}
+
+		return threshold;
+	}
+
+	/**
+	 * Returns the compressor of the web application of the specified {@link PortletContext}, creating it if necessary.
+	 * The compressor records to the metrics returned by {@link
+	 * BridgeRequestScopeMetricsRegistry#getBridgeRequestScopeMetrics(PortletContext)}.
+	 */
+	public static ViewStateCompressor getViewStateCompressor(PortletContext portletContext) {
+
+		ViewStateCompressor viewStateCompressor = (ViewStateCompressor) portletContext.getAttribute(
+				COMPRESSOR_ATTRIBUTE_NAME);
+
+		if (viewStateCompressor == null) {
+
+			synchronized (ViewStateCompressor.class) {
+
+				viewStateCompressor = (ViewStateCompressor) portletContext.getAttribute(COMPRESSOR_ATTRIBUTE_NAME);
+
+				if (viewStateCompressor == null) {
+					viewStateCompressor = new ViewStateCompressor(getThreshold(portletContext),
+							BridgeRequestScopeMetricsRegistry.getBridgeRequestScopeMetrics(portletContext));
+					portletContext.setAttribute(COMPRESSOR_ATTRIBUTE_NAME, viewStateCompressor);
+				}
+			}
+		}
+
+		return viewStateCompressor;
+	}
+
+	/**
+	 * Compresses the specified view state.
+	 *
+	 * @return  The compressed view state, or <code>null</code> if the view state is shorter than the threshold, longer
+	 *          than {@link #MAXIMUM_LENGTH}, or does not become smaller when compressed.
+	 */
+	public byte[] compress(String viewState) {
+
+		if ((viewState == null) || (viewState.length() < threshold) || (viewState.length() > MAXIMUM_LENGTH)) {
+			return null;
+		}
+
+		long startNanos = System.nanoTime();
+		Codec codec = acquire();
+
+		try {
+			int length = codec.encode(viewState);
+
+			if (length > MAXIMUM_LENGTH) {
+				return null;
+			}
+
+			Deflater deflater = codec.deflater;
+			deflater.setInput(codec.input, 0, length);
+			deflater.finish();
+
+			// The output is truncated at the length of the input, since a larger result would be discarded anyway.
+			byte[] output = codec.ensureOutputCapacity(HEADER_LENGTH + length);
+			int compressedLength = HEADER_LENGTH;
+
+			while (!deflater.finished() && (compressedLength < output.length)) {
+				compressedLength += deflater.deflate(output, compressedLength, output.length - compressedLength);
+			}
+
+			byte[] compressed = null;
+
+			if (deflater.finished() && (compressedLength < length)) {
+				output[0] = (byte) (length >>> 24);
+				output[1] = (byte) (length >>> 16);
+				output[2] = (byte) (length >>> 8);
+				output[3] = (byte) length;
+				compressed = Arrays.copyOf(output, compressedLength);
+			}
+
+			if (bridgeRequestScopeMetrics != null) {
+				bridgeRequestScopeMetrics.recordViewStateCompressed(length,
+					(compressed == null) ? length : compressed.length, System.nanoTime() - startNanos);
+			}
+
+			return compressed;
+		}
+		catch (CharacterCodingException e) {
+
+			// A view state that contains an unpaired surrogate is simply preserved as is.
+			return null;
+		}
+		finally {
+			release(codec);
+		}
+	}
+
+	/**
+	 * Decompresses the specified bytes that were produced by {@link #compress(String)}.
+	 *
+	 * @throws  IOException  If the bytes are malformed, or if the length of the view state exceeds {@link
+	 *                       #MAXIMUM_LENGTH} or the length that the compressed bytes can inflate to.
+	 */
+	public String decompress(byte[] compressed) throws IOException {
+
+		if (compressed.length < HEADER_LENGTH) {
+			throw new StreamCorruptedException("Invalid compressed view state length=[" + compressed.length + "]");
+		}
+
+		long startNanos = System.nanoTime();
+		int length = ((compressed[0] & 0xff) << 24) | ((compressed[1] & 0xff) << 16) | ((compressed[2] & 0xff) << 8) |
+			(compressed[3] & 0xff);
+
+		long maximumLength = Math.min(MAXIMUM_LENGTH,
+				(long) (compressed.length - HEADER_LENGTH) * MAXIMUM_COMPRESSION_RATIO);
+
+		if ((length < 0) || (length > maximumLength)) {
+			throw new StreamCorruptedException("Invalid view state length=[" + length + "]");
+		}
+
+		Codec codec = acquire();
+
+		try {
+			Inflater inflater = codec.inflater;
+			inflater.setInput(compressed, HEADER_LENGTH, compressed.length - HEADER_LENGTH);
+
+			byte[] input = codec.ensureInputCapacity(length);
+			int inflatedLength = 0;
+
+			while (inflatedLength < length) {
+
+				int count = inflater.inflate(input, inflatedLength, length - inflatedLength);
+
+				if (count == 0) {
+					break;
+				}
+
+				inflatedLength += count;
+			}
+
+			if (inflatedLength != length) {
+				throw new StreamCorruptedException("Invalid compressed view state");
+			}
+
+			String viewState = new String(input, 0, length, UTF_8);
+
+			if (bridgeRequestScopeMetrics != null) {
+				bridgeRequestScopeMetrics.recordViewStateDecompressed(length, System.nanoTime() - startNanos);
+			}
+
+			return viewState;
+		}
+		catch (DataFormatException e) {
+			throw new StreamCorruptedException("Invalid compressed view state: " + e.getMessage());
+		}
+		finally {
+			release(codec);
+		}
+	}
+
+	/**
+	 * Releases the native memory of the pooled codecs. Codecs that are in use are released when they are returned.
+	 */
+	public void shutdown() {
+
+		Codec codec;
+
+		while ((codec = codecs.poll()) != null) {
+			codec.end();
+		}
+	}
+
+	private Codec acquire() {
+
+		Codec codec = codecs.poll();
+
+		if (codec == null) {
+			codec = new Codec();
+		}
+
+		return codec;
+	}
+
+	private void release(Codec codec) {
+
+		codec.reset();
+
+		if (!codecs.offer(codec)) {
+			codec.end();
+		}
+	}
+
+	/**
+	 * Returns the minimum length (in characters) of a view state that is compressed.
+	 */
+	public int getThreshold() {
+		return threshold;
+	}
+
+	/**
+	 * A {@link Deflater}, an {@link Inflater}, and the reusable buffers that they work on. An instance is used by one
+	 * thread at a time.
+	 */
+	private static final class Codec {
+
+		// Private Data Members
+		private final Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+		private final CharsetEncoder encoder = UTF_8.newEncoder();
+		private final Inflater inflater = new Inflater(true);
+		private byte[] input = new byte[DEFAULT_THRESHOLD * 2];
+		private byte[] output = new byte[DEFAULT_THRESHOLD * 2];
+
+		int encode(String viewState) throws CharacterCodingException {
+
+			// Since view state is usually Base64 encoded, the length in bytes is usually equal to the length in
+			// characters, and the buffer only needs to grow for non-ASCII characters.
+			int maximumLength = (int) Math.min(Integer.MAX_VALUE - 8,
+					(long) viewState.length() * (long) encoder.maxBytesPerChar());
+			ensureInputCapacity(viewState.length());
+
+			CharBuffer charBuffer = CharBuffer.wrap(viewState);
+
+			while (true) {
+
+				ByteBuffer byteBuffer = ByteBuffer.wrap(input);
+				encoder.reset();
+
+				CoderResult coderResult = encoder.encode(charBuffer, byteBuffer, true);
+
+				if (coderResult.isUnderflow()) {
+					coderResult = encoder.flush(byteBuffer);
+				}
+
+				if (coderResult.isUnderflow()) {
+					return byteBuffer.position();
+				}
+				else if (coderResult.isOverflow() && (input.length < maximumLength)) {
+					input = new byte[Math.min(maximumLength, input.length * 2)];
+					charBuffer.rewind();
+				}
+				else {
+					coderResult.throwException();
+				}
+			}
+		}
+
+		void end() {
+			deflater.end();
+			inflater.end();
+		}
+
+		byte[] ensureInputCapacity(int length) {
+
+			if (input.length < length) {
+				input = new byte[length];
+			}
+
+			return input;
+		}
+
+		byte[] ensureOutputCapacity(int length) {
+
+			if (output.length < length) {
+				output = new byte[length];
+			}
+
+			return output;
+		}
+
+		void reset() {
+
+			deflater.reset();
+			inflater.reset();
+
+			// Buffers that grew for an exceptionally large view state are not retained by the pool.
+			if (input.length > MAXIMUM_POOLED_BUFFER_LENGTH) {
+				input = new byte[DEFAULT_THRESHOLD * 2];
+			}
+
+			if (output.length > MAXIMUM_POOLED_BUFFER_LENGTH) {
+				output = new byte[DEFAULT_THRESHOLD * 2];
+			}
+		}
+	}
+}
@@ -0,0 +1,439 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.context.url;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URLEncoder;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+
+import javax.portlet.BaseURL;
+import javax.portlet.MimeResponse;
+import javax.portlet.PortletRequest;
+import javax.portlet.PortletResponse;
+import javax.portlet.PortletURL;
+import javax.portlet.faces.Bridge;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.liferay.faces.bridge.config.BridgeConfig;
+import com.liferay.faces.bridge.context.BridgeContext;
+import com.liferay.faces.bridge.context.BridgeContextWrapper;
+
+
+/**
+ * @author  Neil Griffin
+ */
+public class BridgeURLBaseTest {
+
+	// Private Constants
+	private static final String ESCAPED_URL = "http://localhost/web/guest/orders?p_p_id=orders&amp;p_p_lifecycle=1" +
+		"&amp;_orders_name=%22a%26b%22&amp;_orders_note=%3Cx%3E";
+	private static final String VIEW_ID = "/views/orders.xhtml";
+	private static final String URL = "http://localhost/web/guest/orders?p_p_id=orders&p_p_lifecycle=1" +
+		"&_orders_name=%22a%26b%22&_orders_note=%3Cx%3E";
+
+	private static void assertWriteToMatchesToString(BridgeURLBase bridgeURLBase) throws IOException {
+
+		StringBuilder buf = new StringBuilder();
+		bridgeURLBase.writeTo(buf, false);
+		Assert.assertEquals(bridgeURLBase.toString(), buf.toString());
+
+		StringWriter stringWriter = new StringWriter();
+		bridgeURLBase.writeTo(stringWriter, false);
+		Assert.assertEquals(bridgeURLBase.toString(), stringWriter.toString());
+	}
+
+	private static Object newProxy(Class<?> type, String methodName, Object returnValue) {
+		return Proxy.newProxyInstance(BridgeURLBaseTest.class.getClassLoader(), new Class<?>[] { type },
+				new ReturnValueInvocationHandler(methodName, returnValue));
+	}
+
+	@Test
+	public void testActionURLTemplate() throws IOException {
+
+		TemplateBridgeContext templateBridgeContext = new TemplateBridgeContext();
+		String[] rowKeys = new String[] { "1", "2", "10" };
+
+		for (String rowKey : rowKeys) {
+
+			String expected = "http://localhost/web/guest/orders?p_p_id=orders&p_p_lifecycle=1&_orders_rowKey=" +
+				URLEncoder.encode(rowKey, "UTF-8");
+			ActionBridgeURL actionBridgeURL = new ActionBridgeURL(templateBridgeContext, rowKey);
+			Assert.assertEquals(expected, actionBridgeURL.toString());
+
+			StringBuilder buf = new StringBuilder();
+			actionBridgeURL.writeTo(buf, true);
+			Assert.assertEquals(expected.replace("&", "&amp;"), buf.toString());
+		}
+
+		// The portlet container is only asked for the URLs that compile the unescaped and the escaped template.
+		Assert.assertEquals(6, templateBridgeContext.actionURLCount);
+	}
+
+	@Test
+	public void testWriteToEscapedURI() throws IOException {
+
+		TestBridgeURL testBridgeURL = new TestBridgeURL(true);
+		Assert.assertEquals(ESCAPED_URL, testBridgeURL.toString());
+		assertWriteToMatchesToString(testBridgeURL);
+
+		// Since the URI is already escaped, the ampersands must not be escaped again.
+		StringBuilder buf = new StringBuilder();
+		testBridgeURL.writeTo(buf, true);
+		Assert.assertEquals(ESCAPED_URL, buf.toString());
+	}
+
+	@Test
+	public void testWriteToOverriddenToString() throws IOException {
+
+		TestBridgeURL testBridgeURL = new TestBridgeURL(false) {
+
+				@Override
+				public String toString() {
+					return super.toString() + "#top";
+				}
+			};
+
+		Assert.assertEquals(URL + "#top", testBridgeURL.toString());
+		assertWriteToMatchesToString(testBridgeURL);
+
+		StringBuilder buf = new StringBuilder();
+		testBridgeURL.writeTo(buf, true);
+		Assert.assertEquals(ESCAPED_URL + "#top", buf.toString());
+	}
+
+	@Test
+	public void testWriteToUnescapedURI() throws IOException {
+
+		TestBridgeURL testBridgeURL = new TestBridgeURL(false);
+		Assert.assertEquals(URL, testBridgeURL.toString());
+		assertWriteToMatchesToString(testBridgeURL);
+
+		StringBuilder buf = new StringBuilder();
+		testBridgeURL.writeTo(buf, true);
+		Assert.assertEquals(ESCAPED_URL, buf.toString());
+	}
+
+	@Test
+	public void testWrapperWriteTo() throws IOException {
+
+		// A wrapper that does not override toString() streams the wrapped URL.
+		TestBridgeURLWrapper testBridgeURLWrapper = new TestBridgeURLWrapper(new TestBridgeURL(true));
+		StringBuilder buf = new StringBuilder();
+		testBridgeURLWrapper.writeTo(buf, false);
+		Assert.assertEquals(ESCAPED_URL, testBridgeURLWrapper.toString());
+		Assert.assertEquals(testBridgeURLWrapper.toString(), buf.toString());
+
+		// A wrapper that overrides toString() writes its value.
+		testBridgeURLWrapper = new TestBridgeURLWrapper(new TestBridgeURL(false)) {
+
+				@Override
+				public String toString() {
+					return super.toString() + "#top";
+				}
+			};
+		buf = new StringBuilder();
+		testBridgeURLWrapper.writeTo(buf, false);
+		Assert.assertEquals(URL + "#top", buf.toString());
+
+		// The value of a wrapped URL that is not a BridgeURLBase is escaped, but not escaped again if it is already
+		// escaped.
+		testBridgeURLWrapper = new TestBridgeURLWrapper((BridgeURL) newProxy(BridgeURL.class, "toString", URL));
+		buf = new StringBuilder();
+		testBridgeURLWrapper.writeTo(buf, true);
+		Assert.assertEquals(ESCAPED_URL, buf.toString());
+
+		testBridgeURLWrapper = new TestBridgeURLWrapper((BridgeURL) newProxy(BridgeURL.class, "toString",
+					ESCAPED_URL));
+		buf = new StringBuilder();
+		testBridgeURLWrapper.writeTo(buf, true);
+		Assert.assertEquals(ESCAPED_URL, buf.toString());
+	}
+
+	/**
+	 * A <code>portlet:action</code> URL that has a row-key parameter and must be formatted by a {@link
+	 * PortletURLTemplate} rather than asking for a {@link BaseURL}.
+	 */
+	private static final class ActionBridgeURL extends BridgeURLBase {
+
+		ActionBridgeURL(BridgeContext bridgeContext, final String rowKey) {
+
+			super(bridgeContext, (BridgeURI) Proxy.newProxyInstance(BridgeURLBaseTest.class.getClassLoader(),
+					new Class<?>[] { BridgeURI.class }, new InvocationHandler() {
+
+						@Override
+						public Object invoke(Object proxy, Method method, Object[] args) {
+
+							String methodName = method.getName();
+
+							if ("getContextRelativePath".equals(methodName)) {
+								return VIEW_ID;
+							}
+							else if ("getParameterMap".equals(methodName)) {
+								return Collections.singletonMap("rowKey", new String[] { rowKey });
+							}
+							else if ("getPortletPhase".equals(methodName)) {
+								return Bridge.PortletPhase.ACTION_PHASE;
+							}
+							else if ("isPortletScheme".equals(methodName)) {
+								return Boolean.TRUE;
+							}
+							else if ("toString".equals(methodName)) {
+								return "portlet:action";
+							}
+							else if (method.getReturnType() == boolean.class) {
+								return Boolean.FALSE;
+							}
+
+							throw new UnsupportedOperationException(methodName);
+						}
+					}), VIEW_ID);
+		}
+
+		@Override
+		public BaseURL toBaseURL() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		protected void log(Level level, String message, Object... arguments) {
+			// Not needed by the tests.
+		}
+
+		@Override
+		protected void logError(Throwable t) {
+			Assert.fail(t.toString());
+		}
+	}
+
+	private static final class ReturnValueInvocationHandler implements InvocationHandler {
+
+		// Private Data Members
+		private final String methodName;
+		private final Object returnValue;
+
+		ReturnValueInvocationHandler(String methodName, Object returnValue) {
+			this.methodName = methodName;
+			this.returnValue = returnValue;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws IOException {
+
+			if (methodName.equals(method.getName())) {
+				return returnValue;
+			}
+
+			if (method.getReturnType() == boolean.class) {
+				return Boolean.FALSE;
+			}
+
+			// Like a portlet container, BaseURL.write(Writer, boolean) escapes the ampersands of the URL if requested.
+			if ("write".equals(method.getName())) {
+
+				String value = (String) returnValue;
+
+				if (Boolean.TRUE.equals(args[1])) {
+					value = value.replace("&", "&amp;");
+				}
+
+				((Writer) args[0]).write(value);
+
+				return null;
+			}
+
+			return null;
+		}
+	}
+
+	private static class TestBridgeURL extends BridgeURLBase {
+
+		TestBridgeURL(boolean escaped) {
+			super(new TestBridgeContext(), (BridgeURI) newProxy(BridgeURI.class, "isEscaped", escaped), null);
+		}
+
+		@Override
+		public BaseURL toBaseURL() {
+			return (BaseURL) newProxy(BaseURL.class, "toString", URL);
+		}
+
+		@Override
+		protected void log(Level level, String message, Object... arguments) {
+			// Not needed by the tests.
+		}
+
+		@Override
+		protected void logError(Throwable t) {
+			Assert.fail(t.toString());
+		}
+	}
+
+	private static final class TestBridgeContext extends BridgeContextWrapper {
+
+		// Private Data Members
+		private final BridgeConfig bridgeConfig = (BridgeConfig) newProxy(BridgeConfig.class, "getAttributes", null);
+
+		@Override
+		public BridgeConfig getBridgeConfig() {
+			return bridgeConfig;
+		}
+
+		@Override
+		public BridgeContext getWrapped() {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	/**
+	 * A bridge context that enables action URL templates and whose portlet response creates action URLs that
+	 * namespace and form-encode their parameters.
+	 */
+	private static final class TemplateBridgeContext extends BridgeContextWrapper {
+
+		// Private Data Members
+		private int actionURLCount;
+		private final Map<String, Object> attributes = new HashMap<String, Object>();
+		private final BridgeConfig bridgeConfig = (BridgeConfig) newProxy(BridgeConfig.class, "getAttributes", null);
+
+		@Override
+		public Map<String, Object> getAttributes() {
+			return attributes;
+		}
+
+		@Override
+		public BridgeConfig getBridgeConfig() {
+			return bridgeConfig;
+		}
+
+		@Override
+		public String getInitParameter(String name) {
+			return PortletURLTemplate.ACTION_URL_TEMPLATES.equals(name) ? "true" : null;
+		}
+
+		@Override
+		public PortletRequest getPortletRequest() {
+			return (PortletRequest) newProxy(PortletRequest.class, "getContextPath", "/orders");
+		}
+
+		@Override
+		public PortletResponse getPortletResponse() {
+
+			InvocationHandler invocationHandler = new InvocationHandler() {
+
+				@Override
+				public Object invoke(Object proxy, Method method, Object[] args) {
+
+					if ("createActionURL".equals(method.getName())) {
+						actionURLCount++;
+
+						return newPortletURL();
+					}
+
+					throw new UnsupportedOperationException(method.getName());
+				}
+			};
+
+			return (PortletResponse) Proxy.newProxyInstance(BridgeURLBaseTest.class.getClassLoader(),
+					new Class<?>[] { MimeResponse.class }, invocationHandler);
+		}
+
+		@Override
+		public BridgeContext getWrapped() {
+			throw new UnsupportedOperationException();
+		}
+
+		private PortletURL newPortletURL() {
+
+			final Map<String, String> parameters = new LinkedHashMap<String, String>();
+
+			InvocationHandler invocationHandler = new InvocationHandler() {
+
+				@Override
+				public Object invoke(Object proxy, Method method, Object[] args) throws IOException {
+
+					String methodName = method.getName();
+
+					if ("setParameter".equals(methodName) && (args[1] instanceof String)) {
+						parameters.put((String) args[0], (String) args[1]);
+
+						return null;
+					}
+
+					StringBuilder buf = new StringBuilder(
+							"http://localhost/web/guest/orders?p_p_id=orders&p_p_lifecycle=1");
+
+					for (Map.Entry<String, String> entry : parameters.entrySet()) {
+						buf.append("&_orders_");
+						buf.append(entry.getKey());
+						buf.append('=');
+						buf.append(URLEncoder.encode(entry.getValue(), "UTF-8"));
+					}
+
+					if ("toString".equals(methodName)) {
+						return buf.toString();
+					}
+					else if ("write".equals(methodName) && (args.length == 2)) {
+
+						String urlString = buf.toString();
+						((Writer) args[0]).write(((Boolean) args[1]) ? urlString.replace("&", "&amp;") : urlString);
+
+						return null;
+					}
+
+					throw new UnsupportedOperationException(methodName);
+				}
+			};
+
+			return (PortletURL) Proxy.newProxyInstance(BridgeURLBaseTest.class.getClassLoader(),
+					new Class<?>[] { PortletURL.class }, invocationHandler);
+		}
+	}
+
+	private static class TestBridgeURLWrapper extends BridgeURLWrapper {
+
+		// Private Data Members
+		private final BridgeURL wrappedBridgeURL;
+
+		TestBridgeURLWrapper(BridgeURL bridgeURL) {
+			this.wrappedBridgeURL = bridgeURL;
+		}
+
+		@Override
+		public BaseURL toBaseURL() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public Map<String, String[]> getParameterMap() {
+			return getWrapped().getParameterMap();
+		}
+
+		@Override
+		public BridgeURL getWrapped() {
+			return wrappedBridgeURL;
+		}
+	}
+}
@@ -0,0 +1,188 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.context.url;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URISyntaxException;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.portlet.PortletContext;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.liferay.faces.bridge.scope.BridgeRequestScopeMetricsRegistry;
+import com.liferay.faces.bridge.scope.BridgeRequestScopeStatistics;
+import com.liferay.faces.bridge.scope.StripedBridgeRequestScopeMetrics;
+
+
+/**
+ * @author  Neil Griffin
+ */
+public class CachingBridgeURIFactoryTest {
+
+	@Test
+	public void testHitAndMissCounts() throws URISyntaxException {
+
+		CountingBridgeURIFactory countingBridgeURIFactory = new CountingBridgeURIFactory();
+		CachingBridgeURIFactory cachingBridgeURIFactory = new CachingBridgeURIFactory(countingBridgeURIFactory);
+		BridgeURI bridgeURI = cachingBridgeURIFactory.getBridgeURI("/a");
+
+		Assert.assertEquals("/a", bridgeURI.toString());
+		Assert.assertSame(bridgeURI, cachingBridgeURIFactory.getBridgeURI("/a"));
+		Assert.assertSame(bridgeURI, cachingBridgeURIFactory.getBridgeURI("/a"));
+		cachingBridgeURIFactory.getBridgeURI("/b");
+		Assert.assertEquals(2, countingBridgeURIFactory.count);
+		Assert.assertEquals(2L, cachingBridgeURIFactory.getHitCount());
+		Assert.assertEquals(2L, cachingBridgeURIFactory.getMissCount());
+		Assert.assertEquals(0.5, cachingBridgeURIFactory.getHitRate(), 0.0);
+		Assert.assertEquals(2, cachingBridgeURIFactory.getSize());
+
+		cachingBridgeURIFactory.clear();
+		Assert.assertEquals(0L, cachingBridgeURIFactory.getHitCount());
+		Assert.assertEquals(0L, cachingBridgeURIFactory.getMissCount());
+		Assert.assertEquals(0, cachingBridgeURIFactory.getSize());
+	}
+
+	@Test
+	public void testLeastRecentlyUsedEviction() throws URISyntaxException {
+
+		CountingBridgeURIFactory countingBridgeURIFactory = new CountingBridgeURIFactory();
+		CachingBridgeURIFactory cachingBridgeURIFactory = new CachingBridgeURIFactory(countingBridgeURIFactory, 2);
+
+		cachingBridgeURIFactory.getBridgeURI("/a");
+		cachingBridgeURIFactory.getBridgeURI("/b");
+
+		// Using "/a" again makes "/b" the least recently used URI, and so it is evicted in order to make room for "/c".
+		cachingBridgeURIFactory.getBridgeURI("/a");
+		cachingBridgeURIFactory.getBridgeURI("/c");
+		Assert.assertEquals(2, cachingBridgeURIFactory.getSize());
+		Assert.assertEquals(3, countingBridgeURIFactory.count);
+
+		cachingBridgeURIFactory.getBridgeURI("/a");
+		Assert.assertEquals(3, countingBridgeURIFactory.count);
+
+		cachingBridgeURIFactory.getBridgeURI("/b");
+		Assert.assertEquals(4, countingBridgeURIFactory.count);
+		Assert.assertEquals(2, cachingBridgeURIFactory.getSize());
+	}
+
+	@Test
+	public void testStatistics() throws URISyntaxException {
+
+		PortletContext portletContext = newPortletContext();
+		BridgeRequestScopeStatistics bridgeRequestScopeStatistics = new BridgeRequestScopeStatistics(portletContext,
+				null, new StripedBridgeRequestScopeMetrics());
+
+		Assert.assertEquals(-1L, bridgeRequestScopeStatistics.getURICacheHitCount());
+		Assert.assertTrue(Double.isNaN(bridgeRequestScopeStatistics.getURICacheHitRatio()));
+
+		CachingBridgeURIFactory cachingBridgeURIFactory = new CachingBridgeURIFactory(new CountingBridgeURIFactory());
+		BridgeRequestScopeMetricsRegistry.registerBridgeURIFactory(portletContext, cachingBridgeURIFactory);
+		cachingBridgeURIFactory.getBridgeURI("/a");
+		cachingBridgeURIFactory.getBridgeURI("/a");
+		cachingBridgeURIFactory.getBridgeURI("/a");
+		cachingBridgeURIFactory.getBridgeURI("/a");
+		Assert.assertEquals(3L, bridgeRequestScopeStatistics.getURICacheHitCount());
+		Assert.assertEquals(1L, bridgeRequestScopeStatistics.getURICacheMissCount());
+		Assert.assertEquals(0.75, bridgeRequestScopeStatistics.getURICacheHitRatio(), 0.0);
+		Assert.assertEquals(1, bridgeRequestScopeStatistics.getURICacheSize());
+	}
+
+	@Test
+	public void testUnparseableURIsAreNotCached() {
+
+		CountingBridgeURIFactory countingBridgeURIFactory = new CountingBridgeURIFactory();
+		CachingBridgeURIFactory cachingBridgeURIFactory = new CachingBridgeURIFactory(countingBridgeURIFactory);
+
+		for (int i = 0; i < 2; i++) {
+
+			try {
+				cachingBridgeURIFactory.getBridgeURI("bad uri");
+				Assert.fail();
+			}
+			catch (URISyntaxException e) {
+				// expected
+			}
+		}
+
+		Assert.assertEquals(2, countingBridgeURIFactory.count);
+		Assert.assertEquals(0, cachingBridgeURIFactory.getSize());
+	}
+
+	private static PortletContext newPortletContext() {
+
+		final Map<String, Object> attributes = new HashMap<String, Object>();
+
+		return (PortletContext) Proxy.newProxyInstance(CachingBridgeURIFactoryTest.class.getClassLoader(),
+				new Class<?>[] { PortletContext.class }, new InvocationHandler() {
+
+					@Override
+					public Object invoke(Object proxy, Method method, Object[] args) {
+
+						if ("getAttribute".equals(method.getName())) {
+							return attributes.get((String) args[0]);
+						}
+						else if ("setAttribute".equals(method.getName())) {
+							attributes.put((String) args[0], args[1]);
+						}
+
+						return null;
+					}
+				});
+	}
+
+	private static final class CountingBridgeURIFactory extends BridgeURIFactory {
+
+		// Private Data Members
+		private int count;
+
+		@Override
+		public BridgeURI getBridgeURI(final String uri) throws URISyntaxException {
+
+			count++;
+
+			if (uri.indexOf(' ') >= 0) {
+				throw new URISyntaxException(uri, "Illegal character");
+			}
+
+			return (BridgeURI) Proxy.newProxyInstance(CachingBridgeURIFactoryTest.class.getClassLoader(),
+					new Class<?>[] { BridgeURI.class }, new InvocationHandler() {
+
+						@Override
+						public Object invoke(Object proxy, Method method, Object[] args) {
+
+							if ("toString".equals(method.getName())) {
+								return uri;
+							}
+							else if (method.getReturnType() == boolean.class) {
+								return Boolean.FALSE;
+							}
+
+							return null;
+						}
+					});
+		}
+
+		@Override
+		public BridgeURIFactory getWrapped() {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,336 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.context.url;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.portlet.MimeResponse;
+import javax.portlet.PortletURL;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+
+/**
+ * @author  Neil Griffin
+ */
+public class PortletURLTemplateTest {
+
+	// Private Constants
+	private static final String[] RESERVED_VALUES = new String[] {
+			" ", "&", "=", "a+b", "100%", "/path?query#fragment", "*~-._", "\"<>'", "\u00e9", "\u20ac", "\u65e5\u672c",
+			"\ud83d\ude00", "tab\t", "line\nbreak", "%20", "&amp;"
+		};
+
+	private static void assertMatchesContainer(FakeContainer fakeContainer, List<String> parameterNames,
+		boolean escapeXml, String[] values) throws IOException {
+
+		PortletURLTemplate portletURLTemplate = PortletURLTemplate.compile(fakeContainer.newMimeResponse(),
+				parameterNames, escapeXml);
+		Assert.assertNotNull(portletURLTemplate);
+
+		PortletURL portletURL = fakeContainer.newMimeResponse().createActionURL();
+
+		for (int i = 0; i < values.length; i++) {
+			portletURL.setParameter(parameterNames.get(i), values[i]);
+		}
+
+		String expected;
+
+		if (escapeXml) {
+
+			StringWriter stringWriter = new StringWriter();
+			portletURL.write(stringWriter, true);
+			expected = stringWriter.toString();
+		}
+		else {
+			expected = portletURL.toString();
+		}
+
+		Assert.assertEquals(expected, portletURLTemplate.format(values));
+	}
+
+	private static void assertReservedValues(FakeContainer fakeContainer, boolean escapeXml) throws IOException {
+
+		List<String> parameterNames = Arrays.asList("rowKey", "column");
+
+		for (String reservedValue : RESERVED_VALUES) {
+			assertMatchesContainer(fakeContainer, parameterNames, escapeXml,
+				new String[] { reservedValue, "x" + reservedValue + "y" });
+		}
+	}
+
+	@Test
+	public void testDuplicateParameterNames() {
+
+		// The second value replaces the first, so the marker of the first parameter is missing from the URL.
+		Assert.assertNull(PortletURLTemplate.compile(new FakeContainer(FakeContainer.ENCODING_FORM, false)
+				.newMimeResponse(), Arrays.asList("rowKey", "rowKey"), false));
+	}
+
+	@Test
+	public void testEmptyValues() throws IOException {
+
+		List<String> parameterNames = Arrays.asList("rowKey", "column", "sort");
+
+		for (int encoding = FakeContainer.ENCODING_FORM; encoding <= FakeContainer.ENCODING_PERCENT; encoding++) {
+			FakeContainer fakeContainer = new FakeContainer(encoding, false);
+			assertMatchesContainer(fakeContainer, parameterNames, false, new String[] { "", "", "" });
+			assertMatchesContainer(fakeContainer, parameterNames, true, new String[] { "", "&", "" });
+		}
+	}
+
+	@Test
+	public void testEscapedFormEncoding() throws IOException {
+		assertReservedValues(new FakeContainer(FakeContainer.ENCODING_FORM, false), true);
+	}
+
+	@Test
+	public void testEscapedPercentEncoding() throws IOException {
+		assertReservedValues(new FakeContainer(FakeContainer.ENCODING_PERCENT, false), true);
+	}
+
+	@Test
+	public void testNumericValuesEncodedDifferently() {
+
+		// A single non-numeric probe value would be reproduced by form encoding, which would yield a template that
+		// formats row indexes differently than the portlet container.
+		FakeContainer fakeContainer = new FakeContainer(FakeContainer.ENCODING_NUMERIC_TAGGED, false);
+
+		Assert.assertNull(PortletURLTemplate.compile(fakeContainer.newMimeResponse(), Arrays.asList("rowKey"),
+				false));
+		Assert.assertNull(PortletURLTemplate.compile(fakeContainer.newMimeResponse(), Arrays.asList("rowKey"), true));
+	}
+
+	@Test
+	public void testNoParameters() throws IOException {
+		assertMatchesContainer(new FakeContainer(FakeContainer.ENCODING_FORM, false),
+			Collections.<String>emptyList(), true, new String[0]);
+	}
+
+	@Test
+	public void testParameterOrder() throws IOException {
+
+		// The container writes the parameters sorted by name rather than in the order in which they were set.
+		FakeContainer fakeContainer = new FakeContainer(FakeContainer.ENCODING_FORM, true);
+		List<String> parameterNames = Arrays.asList("zeta", "alpha", "mu");
+		assertMatchesContainer(fakeContainer, parameterNames, false, new String[] { "1 &", "2\u00e9", "3" });
+		assertMatchesContainer(fakeContainer, parameterNames, true, new String[] { "1 &", "2\u00e9", "3" });
+	}
+
+	@Test
+	public void testUnescapedFormEncoding() throws IOException {
+		assertReservedValues(new FakeContainer(FakeContainer.ENCODING_FORM, false), false);
+	}
+
+	@Test
+	public void testUnescapedPercentEncoding() throws IOException {
+		assertReservedValues(new FakeContainer(FakeContainer.ENCODING_PERCENT, false), false);
+	}
+
+	@Test
+	public void testUnsupportedEncoding() {
+
+		FakeContainer fakeContainer = new FakeContainer(FakeContainer.ENCODING_UNSUPPORTED, false);
+
+		Assert.assertNull(PortletURLTemplate.compile(fakeContainer.newMimeResponse(), Arrays.asList("rowKey"),
+				false));
+		Assert.assertNull(PortletURLTemplate.compile(fakeContainer.newMimeResponse(), Arrays.asList("rowKey"), true));
+	}
+
+	@Test
+	public void testWrongValueCount() {
+
+		PortletURLTemplate portletURLTemplate = PortletURLTemplate.compile(new FakeContainer(
+					FakeContainer.ENCODING_FORM, false).newMimeResponse(), Arrays.asList("rowKey"), false);
+
+		try {
+			portletURLTemplate.format(new String[] { "1", "2" });
+			Assert.fail("Expected IllegalArgumentException");
+		}
+		catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	/**
+	 * A minimal portlet container whose action URLs namespace their parameters and encode the values in one of
+	 * several ways.
+	 */
+	private static final class FakeContainer {
+
+		// Private Constants
+		private static final int ENCODING_FORM = 0;
+		private static final int ENCODING_PERCENT = 1;
+		private static final int ENCODING_UNSUPPORTED = 2;
+		private static final int ENCODING_NUMERIC_TAGGED = 3;
+		private static final String NAMESPACE = "_orders_WAR_ordersportlet_";
+
+		// Private Data Members
+		private final int encoding;
+		private final boolean sortParameters;
+
+		FakeContainer(int encoding, boolean sortParameters) {
+			this.encoding = encoding;
+			this.sortParameters = sortParameters;
+		}
+
+		private static String escapeXml(String value) {
+
+			StringBuilder buf = new StringBuilder();
+
+			for (int i = 0; i < value.length(); i++) {
+
+				char c = value.charAt(i);
+
+				if (c == '&') {
+					buf.append("&amp;");
+				}
+				else if (c == '<') {
+					buf.append("&lt;");
+				}
+				else if (c == '>') {
+					buf.append("&gt;");
+				}
+				else if (c == '"') {
+					buf.append("&#034;");
+				}
+				else if (c == '\'') {
+					buf.append("&#039;");
+				}
+				else {
+					buf.append(c);
+				}
+			}
+
+			return buf.toString();
+		}
+
+		MimeResponse newMimeResponse() {
+
+			InvocationHandler invocationHandler = new InvocationHandler() {
+
+				@Override
+				public Object invoke(Object proxy, Method method, Object[] args) {
+
+					if ("createActionURL".equals(method.getName())) {
+						return newPortletURL();
+					}
+
+					throw new UnsupportedOperationException(method.getName());
+				}
+			};
+
+			return (MimeResponse) Proxy.newProxyInstance(PortletURLTemplateTest.class.getClassLoader(),
+					new Class<?>[] { MimeResponse.class }, invocationHandler);
+		}
+
+		private String encode(String value) throws UnsupportedEncodingException {
+
+			String encodedValue = URLEncoder.encode(value, "UTF-8");
+
+			if (encoding == ENCODING_PERCENT) {
+				encodedValue = encodedValue.replace("+", "%20").replace("*", "%2A").replace("%7E", "~");
+			}
+			else if (encoding == ENCODING_UNSUPPORTED) {
+
+				// Like encodeURIComponent in JavaScript, which leaves the asterisk and the apostrophe unencoded.
+				encodedValue = encodedValue.replace("+", "%20").replace("%27", "'").replace("%7E", "~");
+			}
+			else if ((encoding == ENCODING_NUMERIC_TAGGED) && value.matches("[0-9]+")) {
+
+				// Form encoding, except that numeric values are tagged with their type.
+				encodedValue = "n%3A" + encodedValue;
+			}
+
+			return encodedValue;
+		}
+
+		private PortletURL newPortletURL() {
+
+			final Map<String, String> parameters = sortParameters ? new TreeMap<String, String>()
+																  : new LinkedHashMap<String, String>();
+
+			InvocationHandler invocationHandler = new InvocationHandler() {
+
+				@Override
+				public Object invoke(Object proxy, Method method, Object[] args) throws IOException {
+
+					String methodName = method.getName();
+
+					if ("setParameter".equals(methodName) && (args[1] instanceof String)) {
+						parameters.put((String) args[0], (String) args[1]);
+
+						return null;
+					}
+					else if ("toString".equals(methodName)) {
+						return toURLString(parameters);
+					}
+					else if ("write".equals(methodName) && (args.length == 2)) {
+
+						String urlString = toURLString(parameters);
+						((Writer) args[0]).write(((Boolean) args[1]) ? escapeXml(urlString) : urlString);
+
+						return null;
+					}
+
+					throw new UnsupportedOperationException(methodName);
+				}
+			};
+
+			return (PortletURL) Proxy.newProxyInstance(PortletURLTemplateTest.class.getClassLoader(),
+					new Class<?>[] { PortletURL.class }, invocationHandler);
+		}
+
+		private String toURLString(Map<String, String> parameters) throws UnsupportedEncodingException {
+
+			List<String> pairs = new ArrayList<String>();
+			pairs.add("p_p_id=orders_WAR_ordersportlet");
+			pairs.add("p_p_lifecycle=1");
+
+			for (Map.Entry<String, String> entry : parameters.entrySet()) {
+				pairs.add(NAMESPACE + entry.getKey() + "=" + encode(entry.getValue()));
+			}
+
+			StringBuilder buf = new StringBuilder("http://localhost:8080/web/guest/orders?");
+
+			for (int i = 0; i < pairs.size(); i++) {
+
+				if (i > 0) {
+					buf.append('&');
+				}
+
+				buf.append(pairs.get(i));
+			}
+
+			return buf.toString();
+		}
+	}
+}
@@ -0,0 +1,124 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.scope;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.portlet.PortletContext;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+
+/**
+ * @author  Neil Griffin
+ */
+public class AdaptiveBridgeRequestScopeCacheFactoryTest {
+
+	@Test
+	public void testBoundedCache() {
+
+		PortletContext portletContext = newPortletContext();
+		BoundedBridgeRequestScopeCache cache = new BoundedBridgeRequestScopeCache(100);
+		AdaptiveBridgeRequestScopeCacheFactory adaptiveBridgeRequestScopeCacheFactory =
+			new AdaptiveBridgeRequestScopeCacheFactory(new TestBridgeRequestScopeCacheFactory(cache));
+
+		Assert.assertSame(cache, adaptiveBridgeRequestScopeCacheFactory.getBridgeRequestScopeCache(portletContext));
+
+		AdaptiveBridgeRequestScopeCapacity capacity =
+			AdaptiveBridgeRequestScopeCacheFactory.getAdaptiveBridgeRequestScopeCapacity(portletContext);
+
+		try {
+			Assert.assertNotNull(capacity);
+			Assert.assertEquals(10, capacity.getMinimumSize());
+			Assert.assertEquals(400, capacity.getMaximumCeiling());
+		}
+		finally {
+			capacity.shutdown();
+		}
+	}
+
+	@Test
+	public void testShardedCache() {
+
+		PortletContext portletContext = newPortletContext();
+		PortletShardedBridgeRequestScopeCache cache = new PortletShardedBridgeRequestScopeCache(100, null, 0L);
+		AdaptiveBridgeRequestScopeCacheFactory adaptiveBridgeRequestScopeCacheFactory =
+			new AdaptiveBridgeRequestScopeCacheFactory(new TestBridgeRequestScopeCacheFactory(cache));
+
+		// The configuration error is reported on every call rather than only once.
+		for (int i = 0; i < 2; i++) {
+
+			try {
+				adaptiveBridgeRequestScopeCacheFactory.getBridgeRequestScopeCache(portletContext);
+				Assert.fail();
+			}
+			catch (IllegalStateException e) {
+				Assert.assertTrue(e.getMessage(),
+					e.getMessage().contains(PortletShardedBridgeRequestScopeCacheFactory.class.getName()));
+			}
+		}
+
+		Assert.assertNull(AdaptiveBridgeRequestScopeCacheFactory.getAdaptiveBridgeRequestScopeCapacity(
+				portletContext));
+	}
+
+	private static PortletContext newPortletContext() {
+
+		final Map<String, Object> attributes = new ConcurrentHashMap<String, Object>();
+
+		return (PortletContext) Proxy.newProxyInstance(AdaptiveBridgeRequestScopeCacheFactoryTest.class
+				.getClassLoader(), new Class<?>[] { PortletContext.class }, new InvocationHandler() {
+
+					@Override
+					public Object invoke(Object proxy, Method method, Object[] args) {
+
+						if ("getAttribute".equals(method.getName())) {
+							return attributes.get((String) args[0]);
+						}
+						else if ("setAttribute".equals(method.getName())) {
+							attributes.put((String) args[0], args[1]);
+						}
+
+						return null;
+					}
+				});
+	}
+
+	private static final class TestBridgeRequestScopeCacheFactory extends BridgeRequestScopeCacheFactory {
+
+		// Private Data Members
+		private final BridgeRequestScopeCache bridgeRequestScopeCache;
+
+		TestBridgeRequestScopeCacheFactory(BridgeRequestScopeCache bridgeRequestScopeCache) {
+			this.bridgeRequestScopeCache = bridgeRequestScopeCache;
+		}
+
+		@Override
+		public BridgeRequestScopeCache getBridgeRequestScopeCache(PortletContext portletContext) {
+			return bridgeRequestScopeCache;
+		}
+
+		@Override
+		public BridgeRequestScopeCacheFactory getWrapped() {
+			return null;
+		}
+	}
+}
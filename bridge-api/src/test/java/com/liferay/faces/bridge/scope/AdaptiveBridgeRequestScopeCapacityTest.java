@@ -0,0 +1,158 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.scope;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+
+/**
+ * @author  Neil Griffin
+ */
+public class AdaptiveBridgeRequestScopeCapacityTest {
+
+	@Test
+	public void testGrow() {
+
+		BoundedBridgeRequestScopeCache cache = new BoundedBridgeRequestScopeCache(100);
+		TestAdaptiveBridgeRequestScopeCapacity capacity = new TestAdaptiveBridgeRequestScopeCapacity(cache);
+
+		try {
+			capacity.pressure = 0.5d;
+			Assert.assertEquals(125, capacity.adjust());
+			Assert.assertEquals(125, cache.getMaximumSize());
+			Assert.assertEquals(156, capacity.adjust());
+
+			for (int i = 0; i < 10; i++) {
+				capacity.adjust();
+			}
+
+			// The cache is never grown beyond the ceiling.
+			Assert.assertEquals(400, cache.getMaximumSize());
+			Assert.assertEquals(7L, capacity.getGrowCount());
+			Assert.assertEquals(0L, capacity.getShrinkCount());
+		}
+		finally {
+			capacity.shutdown();
+		}
+	}
+
+	@Test
+	public void testHold() {
+
+		BoundedBridgeRequestScopeCache cache = new BoundedBridgeRequestScopeCache(100);
+		TestAdaptiveBridgeRequestScopeCapacity capacity = new TestAdaptiveBridgeRequestScopeCapacity(cache);
+
+		try {
+
+			// The cache is neither shrunk nor grown while the pressure is between the watermarks.
+			capacity.pressure = 0.7d;
+			Assert.assertEquals(100, capacity.adjust());
+			Assert.assertTrue(capacity.resizes.isEmpty());
+			Assert.assertEquals(0L, capacity.getGrowCount());
+			Assert.assertEquals(0L, capacity.getShrinkCount());
+		}
+		finally {
+			capacity.shutdown();
+		}
+	}
+
+	@Test
+	public void testShrink() {
+
+		BoundedBridgeRequestScopeCache cache = new BoundedBridgeRequestScopeCache(100);
+		List<TestBridgeRequestScope> bridgeRequestScopes = new ArrayList<TestBridgeRequestScope>();
+
+		for (int i = 0; i < 100; i++) {
+			TestBridgeRequestScope bridgeRequestScope = new TestBridgeRequestScope("portlet", "session");
+			bridgeRequestScope.setDateCreated(i + 1);
+			cache.put(bridgeRequestScope.getId(), bridgeRequestScope);
+			bridgeRequestScopes.add(bridgeRequestScope);
+		}
+
+		TestAdaptiveBridgeRequestScopeCapacity capacity = new TestAdaptiveBridgeRequestScopeCapacity(cache);
+
+		try {
+			capacity.pressure = 0.9d;
+			capacity.collectionUsed = 1L;
+			Assert.assertEquals(50, capacity.adjust());
+			Assert.assertEquals(50, cache.size());
+
+			// The oldest scopes are evicted.
+			for (int i = 0; i < 100; i++) {
+				Assert.assertEquals(i >= 50, cache.containsKey(bridgeRequestScopes.get(i).getId()));
+			}
+
+			Assert.assertEquals(1, capacity.resizes.size());
+			Assert.assertArrayEquals(new int[] { 100, 50, 50 }, capacity.resizes.get(0));
+
+			// The cache is shrunk at most once per collection.
+			Assert.assertEquals(50, capacity.adjust());
+			capacity.collectionUsed = 2L;
+			Assert.assertEquals(25, capacity.adjust());
+
+			// The cache is never shrunk below the minimum size.
+			for (long collectionUsed = 3L; collectionUsed < 10L; collectionUsed++) {
+				capacity.collectionUsed = collectionUsed;
+				capacity.adjust();
+			}
+
+			Assert.assertEquals(10, cache.getMaximumSize());
+			Assert.assertEquals(10, cache.size());
+			Assert.assertEquals(4L, capacity.getShrinkCount());
+		}
+		finally {
+			capacity.shutdown();
+		}
+	}
+
+	/**
+	 * A capacity whose pressure and collection usage are set by the test rather than measured, and which does not poll.
+	 */
+	private static final class TestAdaptiveBridgeRequestScopeCapacity extends AdaptiveBridgeRequestScopeCapacity
+		implements AdaptiveBridgeRequestScopeCapacity.ResizeListener {
+
+		// Private Data Members
+		private volatile long collectionUsed;
+		private volatile double pressure;
+		private final List<int[]> resizes = new ArrayList<int[]>();
+
+		TestAdaptiveBridgeRequestScopeCapacity(BoundedBridgeRequestScopeCache boundedBridgeRequestScopeCache) {
+
+			super(boundedBridgeRequestScopeCache, 10, 400, DEFAULT_LOW_WATERMARK, DEFAULT_HIGH_WATERMARK,
+				DEFAULT_SHRINK_FACTOR, DEFAULT_GROW_FACTOR, 0L);
+			addResizeListener(this);
+		}
+
+		@Override
+		public void onResize(int oldMaximumSize, int newMaximumSize, double pressure, int evictedCount) {
+			resizes.add(new int[] { oldMaximumSize, newMaximumSize, evictedCount });
+		}
+
+		@Override
+		public double getPressure() {
+			return pressure;
+		}
+
+		@Override
+		protected long getCollectionUsed() {
+			return collectionUsed;
+		}
+	}
+}
@@ -0,0 +1,114 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.scope;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+
+/**
+ * @author  Neil Griffin
+ */
+public class AsynchronousSessionRemovalBridgeRequestScopeCacheTest {
+
+	@Test
+	public void testConcurrentPutAndRemoval() throws Exception {
+
+		for (int round = 0; round < 100; round++) {
+
+			BoundedBridgeRequestScopeCache wrappedCache = new BoundedBridgeRequestScopeCache(100000);
+			final AsynchronousSessionRemovalBridgeRequestScopeCache cache =
+				new AsynchronousSessionRemovalBridgeRequestScopeCache(wrappedCache, 16, 4, null);
+			final String sessionId = "session" + round;
+			final AtomicBoolean stop = new AtomicBoolean();
+			final CountDownLatch started = new CountDownLatch(1);
+			Thread putter = new Thread() {
+
+				@Override
+				public void run() {
+
+					while (!stop.get()) {
+						TestBridgeRequestScope bridgeRequestScope = new TestBridgeRequestScope("portlet", sessionId);
+						cache.put(bridgeRequestScope.getId(), bridgeRequestScope);
+						started.countDown();
+					}
+				}
+			};
+
+			putter.start();
+			started.await();
+			cache.removeBridgeRequestScopesBySession(sessionId);
+
+			// Shutting down waits for the background thread and removes the sessions that are still queued.
+			cache.shutdown();
+			Thread.sleep(1);
+			stop.set(true);
+			putter.join();
+
+			Assert.assertEquals("Scopes of the removed session were stored in round " + round, 0, wrappedCache.size());
+		}
+	}
+
+	@Test
+	public void testLatePutIsDiscarded() throws Exception {
+
+		BoundedBridgeRequestScopeCache wrappedCache = new BoundedBridgeRequestScopeCache(100);
+		AsynchronousSessionRemovalBridgeRequestScopeCache cache = new AsynchronousSessionRemovalBridgeRequestScopeCache(
+				wrappedCache, 16, 4, null);
+		TestBridgeRequestScope survivor = new TestBridgeRequestScope("portlet", "live");
+		cache.put(survivor.getId(), survivor);
+		cache.removeBridgeRequestScopesBySession("dead");
+		cache.shutdown();
+
+		TestBridgeRequestScope late = new TestBridgeRequestScope("portlet", "dead");
+		Assert.assertNull(cache.put(late.getId(), late));
+		Assert.assertNull(cache.get(late.getId()));
+		Assert.assertFalse(wrappedCache.containsKey(late.getId()));
+		Assert.assertSame(survivor, cache.get(survivor.getId()));
+		Assert.assertEquals(1, cache.getTombstoneCount());
+	}
+
+	@Test
+	public void testTombstoneExpiry() throws Exception {
+
+		BoundedBridgeRequestScopeCache wrappedCache = new BoundedBridgeRequestScopeCache(100);
+		AsynchronousSessionRemovalBridgeRequestScopeCache cache = new AsynchronousSessionRemovalBridgeRequestScopeCache(
+				wrappedCache, 16, 4, null, 1L);
+		cache.removeBridgeRequestScopesBySession("dead");
+
+		// Wait for the background thread to remove the session, and then to purge its expired tombstone, which it does
+		// at least once per poll interval.
+		long deadline = System.currentTimeMillis() + 10000L;
+
+		while ((cache.getTombstoneCount() == 0) && (System.currentTimeMillis() < deadline)) {
+			Thread.sleep(10);
+		}
+
+		while ((cache.getTombstoneCount() > 0) && (System.currentTimeMillis() < deadline)) {
+			Thread.sleep(50);
+		}
+
+		Assert.assertEquals(0, cache.getTombstoneCount());
+
+		TestBridgeRequestScope bridgeRequestScope = new TestBridgeRequestScope("portlet", "dead");
+		cache.put(bridgeRequestScope.getId(), bridgeRequestScope);
+		Assert.assertSame(bridgeRequestScope, cache.get(bridgeRequestScope.getId()));
+		cache.shutdown();
+	}
+}
@@ -0,0 +1,206 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.scope;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+
+/**
+ * @author  Neil Griffin
+ */
+public class BoundedBridgeRequestScopeCacheTest {
+
+	@Test
+	public void testAdmissionFavorsFrequentlyReadScopes() {
+
+		BoundedBridgeRequestScopeCache cache = new BoundedBridgeRequestScopeCache(100);
+		List<String> frequentlyReadKeys = putScopes(cache, "frequentlyRead", 80);
+		putScopes(cache, "unread", 20);
+
+		for (int i = 0; i < 3; i++) {
+
+			for (String key : frequentlyReadKeys) {
+				Assert.assertNotNull(cache.get(key));
+			}
+		}
+
+		// Scopes that are never read lose the admission contest against the scopes that are read frequently, whether
+		// or not they have been read yet.
+		List<String> oneHitKeys = putScopes(cache, "oneHit", 50);
+		Assert.assertEquals(100, cache.size());
+		Assert.assertEquals(50L, cache.getEvictionCount());
+
+		for (String key : frequentlyReadKeys) {
+			Assert.assertTrue(key, cache.containsKey(key));
+		}
+
+		for (String key : oneHitKeys.subList(0, 30)) {
+			Assert.assertFalse(key, cache.containsKey(key));
+		}
+	}
+
+	@Test
+	public void testAdmissionOfRenderedScopes() {
+
+		BoundedBridgeRequestScopeCache cache = new BoundedBridgeRequestScopeCache(100);
+		final List<String> evictedKeys = new ArrayList<String>();
+		cache.addRemovalListener(new BoundedBridgeRequestScopeCache.RemovalListener() {
+
+				@Override
+				public void onRemoval(String key, BridgeRequestScope bridgeRequestScope,
+					BoundedBridgeRequestScopeCache.RemovalCause removalCause) {
+
+					Assert.assertEquals(BoundedBridgeRequestScopeCache.RemovalCause.SIZE, removalCause);
+					evictedKeys.add(key);
+				}
+			});
+
+		List<String> abandonedKeys = putScopes(cache, "abandoned", 80);
+		List<String> renderedKeys = putScopes(cache, "rendered", 20);
+
+		for (String key : renderedKeys) {
+			Assert.assertNotNull(cache.get(key));
+		}
+
+		// The scope that leaves the window has been read by its render, and so it is admitted at the expense of the
+		// least recently used scope whose render never arrived.
+		putScopes(cache, "new", 1);
+		Assert.assertEquals(100, cache.size());
+		Assert.assertEquals(1, evictedKeys.size());
+		Assert.assertEquals(abandonedKeys.get(0), evictedKeys.get(0));
+		Assert.assertTrue(cache.containsKey(renderedKeys.get(0)));
+	}
+
+	@Test
+	public void testEvictOldestFirst() {
+
+		BoundedBridgeRequestScopeCache cache = new BoundedBridgeRequestScopeCache(10);
+		List<TestBridgeRequestScope> bridgeRequestScopes = new ArrayList<TestBridgeRequestScope>();
+
+		for (int i = 0; i < 10; i++) {
+			TestBridgeRequestScope bridgeRequestScope = new TestBridgeRequestScope("portlet", "session");
+			bridgeRequestScope.setDateCreated(i + 1);
+			cache.put(bridgeRequestScope.getId(), bridgeRequestScope);
+			bridgeRequestScopes.add(bridgeRequestScope);
+		}
+
+		cache.setMaximumSize(4, true);
+		Assert.assertEquals(4, cache.size());
+		Assert.assertEquals(6L, cache.getEvictionCount());
+
+		for (int i = 0; i < 10; i++) {
+			Assert.assertEquals(i >= 6, cache.containsKey(bridgeRequestScopes.get(i).getId()));
+		}
+	}
+
+	@Test
+	public void testExpireAfterCreate() {
+
+		BoundedBridgeRequestScopeCache cache = new BoundedBridgeRequestScopeCache(10, 60000L, false);
+		final List<BoundedBridgeRequestScopeCache.RemovalCause> removalCauses =
+			new ArrayList<BoundedBridgeRequestScopeCache.RemovalCause>();
+		cache.addRemovalListener(new BoundedBridgeRequestScopeCache.RemovalListener() {
+
+				@Override
+				public void onRemoval(String key, BridgeRequestScope bridgeRequestScope,
+					BoundedBridgeRequestScopeCache.RemovalCause removalCause) {
+					removalCauses.add(removalCause);
+				}
+			});
+
+		TestBridgeRequestScope expiredScope = new TestBridgeRequestScope("portlet", "session");
+		expiredScope.setDateCreated(System.currentTimeMillis() - 60000L);
+		cache.put(expiredScope.getId(), expiredScope);
+
+		TestBridgeRequestScope liveScope = new TestBridgeRequestScope("portlet", "session");
+		cache.put(liveScope.getId(), liveScope);
+
+		// Expired scopes are hidden by get even though no sweeper thread has removed them.
+		Assert.assertNull(cache.get(expiredScope.getId()));
+		Assert.assertSame(liveScope, cache.get(liveScope.getId()));
+		Assert.assertEquals(1, cache.size());
+		Assert.assertEquals(1L, cache.getExpirationCount());
+		Assert.assertEquals(1, removalCauses.size());
+		Assert.assertEquals(BoundedBridgeRequestScopeCache.RemovalCause.EXPIRED, removalCauses.get(0));
+	}
+
+	@Test
+	public void testRemoveBridgeRequestScopesByPortlet() {
+
+		BoundedBridgeRequestScopeCache cache = new BoundedBridgeRequestScopeCache(100);
+		TestBridgeRequestScope scope1 = putScope(cache, "portlet1", "session1");
+		TestBridgeRequestScope scope2 = putScope(cache, "portlet1", "session2");
+		TestBridgeRequestScope scope3 = putScope(cache, "portlet2", "session1");
+
+		Assert.assertEquals(2, cache.removeBridgeRequestScopesByPortlet("portlet1"));
+		Assert.assertEquals(0, cache.removeBridgeRequestScopesByPortlet("portlet1"));
+		Assert.assertFalse(cache.containsKey(scope1.getId()));
+		Assert.assertFalse(cache.containsKey(scope2.getId()));
+		Assert.assertTrue(cache.containsKey(scope3.getId()));
+
+		// Removing a scope by key must also remove it from the indexes.
+		cache.remove(scope3.getId());
+		Assert.assertEquals(0, cache.removeBridgeRequestScopesByPortlet("portlet2"));
+		Assert.assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testRemoveBridgeRequestScopesBySession() {
+
+		BoundedBridgeRequestScopeCache cache = new BoundedBridgeRequestScopeCache(100);
+		TestBridgeRequestScope scope1 = putScope(cache, "portlet1", "session1");
+		TestBridgeRequestScope scope2 = putScope(cache, "portlet1", "session2");
+		TestBridgeRequestScope scope3 = putScope(cache, "portlet2", "session1");
+
+		Assert.assertEquals(2, cache.removeBridgeRequestScopesBySession("session1"));
+		Assert.assertFalse(cache.containsKey(scope1.getId()));
+		Assert.assertTrue(cache.containsKey(scope2.getId()));
+		Assert.assertFalse(cache.containsKey(scope3.getId()));
+		Assert.assertEquals(1, cache.removeBridgeRequestScopesBySession("session2"));
+		Assert.assertEquals(0, cache.size());
+	}
+
+	private static TestBridgeRequestScope putScope(BoundedBridgeRequestScopeCache cache, String portletName,
+		String sessionId) {
+
+		TestBridgeRequestScope bridgeRequestScope = new TestBridgeRequestScope(portletName, sessionId);
+		cache.put(bridgeRequestScope.getId(), bridgeRequestScope);
+
+		return bridgeRequestScope;
+	}
+
+	/**
+	 * Puts scopes with fixed keys, since the estimates of the frequency sketch (and therefore the admission decisions)
+	 * depend on the hash codes of the keys.
+	 */
+	private static List<String> putScopes(BoundedBridgeRequestScopeCache cache, String name, int count) {
+
+		List<String> keys = new ArrayList<String>(count);
+
+		for (int i = 0; i < count; i++) {
+			String key = "portlet" + BoundedBridgeRequestScopeCache.ID_SEPARATOR + "session" +
+				BoundedBridgeRequestScopeCache.ID_SEPARATOR + name + i;
+			cache.put(key, new TestBridgeRequestScope("portlet", "session"));
+			keys.add(key);
+		}
+
+		return keys;
+	}
+}
@@ -0,0 +1,429 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.scope;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.StreamCorruptedException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import javax.portlet.PortletMode;
+import javax.portlet.faces.Bridge;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+
+/**
+ * @author  Neil Griffin
+ */
+public class BridgeRequestScopeCodecTest {
+
+	private static void assertStateEquals(BridgeRequestScopeState expected, BridgeRequestScopeState actual) {
+
+		Assert.assertEquals(expected.getId(), actual.getId());
+		Assert.assertEquals(expected.getDateCreated(), actual.getDateCreated());
+		Assert.assertEquals(expected.getBeganInPhase(), actual.getBeganInPhase());
+		Assert.assertEquals(expected.getPortletMode(), actual.getPortletMode());
+		Assert.assertEquals(expected.isFacesLifecycleExecuted(), actual.isFacesLifecycleExecuted());
+		Assert.assertEquals(expected.isNavigationOccurred(), actual.isNavigationOccurred());
+		Assert.assertEquals(expected.isPortletModeChanged(), actual.isPortletModeChanged());
+		Assert.assertEquals(expected.isRedirectOccurred(), actual.isRedirectOccurred());
+		Assert.assertEquals(expected.getPreservedViewStateParam(), actual.getPreservedViewStateParam());
+		Assert.assertEquals(expected.isViewStateCompressed(), actual.isViewStateCompressed());
+		Assert.assertEquals(expected.getPreservedActionParameterMap(), actual.getPreservedActionParameterMap());
+		Assert.assertEquals(new ArrayList<String>(expected.getPreservedActionParameterMap().keySet()),
+			new ArrayList<String>(actual.getPreservedActionParameterMap().keySet()));
+		Assert.assertEquals(new ArrayList<String>(expected.getRemovedAttributeNames()),
+			new ArrayList<String>(actual.getRemovedAttributeNames()));
+		Assert.assertEquals(expected.getPreservedAttributes(), actual.getPreservedAttributes());
+		Assert.assertEquals(new ArrayList<String>(expected.getPreservedAttributes().keySet()),
+			new ArrayList<String>(actual.getPreservedAttributes().keySet()));
+	}
+
+	private static byte[] concat(byte[]... arrays) {
+
+		ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+
+		for (byte[] array : arrays) {
+			byteArrayOutputStream.write(array, 0, array.length);
+		}
+
+		return byteArrayOutputStream.toByteArray();
+	}
+
+	private static void decodeExpectingIOException(byte[] bytes) {
+
+		try {
+			BridgeRequestScopeCodec.decode(bytes);
+		}
+		catch (IOException e) {
+			// expected (the corruption may also go undetected if it only alters a value)
+		}
+		catch (ClassNotFoundException e) {
+			// expected for corrupted serialized values
+		}
+	}
+
+	private static Map<String, Object> newInlinePreservedAttributes() {
+
+		Map<String, Object> preservedAttributes = new LinkedHashMap<String, Object>();
+		preservedAttributes.put("string", "value é€😀");
+		preservedAttributes.put("emptyString", "");
+		preservedAttributes.put("booleanTrue", Boolean.TRUE);
+		preservedAttributes.put("booleanFalse", Boolean.FALSE);
+		preservedAttributes.put("intMin", Integer.MIN_VALUE);
+		preservedAttributes.put("intMax", Integer.MAX_VALUE);
+		preservedAttributes.put("intNegative", -1);
+		preservedAttributes.put("longMin", Long.MIN_VALUE);
+		preservedAttributes.put("longMax", Long.MAX_VALUE);
+		preservedAttributes.put("null", null);
+
+		return preservedAttributes;
+	}
+
+	private static Map<String, Object> newPreservedAttributes() {
+
+		Map<String, Object> preservedAttributes = newInlinePreservedAttributes();
+		preservedAttributes.put("date", new Date(1445400000000L));
+		preservedAttributes.put("list", new ArrayList<String>(Arrays.asList("a", "b", "c")));
+
+		return preservedAttributes;
+	}
+
+	private static BridgeRequestScopeState newState(String viewState, Map<String, Object> preservedAttributes,
+		ViewStateCompressor viewStateCompressor) {
+
+		Map<String, String> preservedActionParameterMap = new LinkedHashMap<String, String>();
+		preservedActionParameterMap.put("javax.faces.ViewState", "view-state-token");
+		preservedActionParameterMap.put("orderId", "1234");
+		preservedActionParameterMap.put("emptyValue", null);
+
+		Set<String> removedAttributeNames = new LinkedHashSet<String>(Arrays.asList("removed1", "orderId"));
+
+		return new BridgeRequestScopeState("orders_WAR_orders:::ABCDEF0123:::42", 1445400000000L,
+				Bridge.PortletPhase.ACTION_PHASE, PortletMode.EDIT, true, false, true, false, viewState, null,
+				preservedActionParameterMap, removedAttributeNames, preservedAttributes, viewStateCompressor);
+	}
+
+	private static byte[] varInt(long value) {
+
+		ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+
+		while ((value & ~0x7fL) != 0L) {
+			byteArrayOutputStream.write((int) ((value & 0x7f) | 0x80));
+			value >>>= 7;
+		}
+
+		byteArrayOutputStream.write((int) value);
+
+		return byteArrayOutputStream.toByteArray();
+	}
+
+	@Test
+	public void testCompressedViewStateLengthBound() throws Exception {
+
+		ViewStateCompressor viewStateCompressor = new ViewStateCompressor(16, null);
+		StringBuilder viewState = new StringBuilder();
+
+		for (int i = 0; i < 1000; i++) {
+			viewState.append("AAAA");
+		}
+
+		byte[] compressed = viewStateCompressor.compress(viewState.toString());
+		Assert.assertEquals(viewState.toString(), viewStateCompressor.decompress(compressed));
+
+		// A header that claims more than the compressed bytes can inflate to is rejected before allocating a buffer.
+		int[] hostileLengths = new int[] {
+				((compressed.length - 4) * 1032) + 1, ViewStateCompressor.MAXIMUM_LENGTH + 1, Integer.MAX_VALUE, -1
+			};
+
+		for (int hostileLength : hostileLengths) {
+
+			byte[] hostile = compressed.clone();
+			hostile[0] = (byte) (hostileLength >>> 24);
+			hostile[1] = (byte) (hostileLength >>> 16);
+			hostile[2] = (byte) (hostileLength >>> 8);
+			hostile[3] = (byte) hostileLength;
+
+			try {
+				viewStateCompressor.decompress(hostile);
+				Assert.fail("Expected StreamCorruptedException for length=[" + hostileLength + "]");
+			}
+			catch (StreamCorruptedException e) {
+				// expected
+			}
+		}
+
+		viewStateCompressor.shutdown();
+	}
+
+	@Test
+	public void testCompressedViewStateRoundTrip() throws Exception {
+
+		StringBuilder viewState = new StringBuilder();
+
+		for (int i = 0; i < 2000; i++) {
+			viewState.append("H4sIAAAAAAAAAK1").append(i % 7);
+		}
+
+		ViewStateCompressor viewStateCompressor = new ViewStateCompressor(1024, null);
+		BridgeRequestScopeState state = newState(viewState.toString(), newPreservedAttributes(), viewStateCompressor);
+		Assert.assertTrue(state.isViewStateCompressed());
+
+		byte[] bytes = BridgeRequestScopeCodec.encode(state);
+		Assert.assertTrue(bytes.length < viewState.length());
+		assertStateEquals(state, BridgeRequestScopeCodec.decode(bytes, viewStateCompressor));
+		viewStateCompressor.shutdown();
+	}
+
+	@Test
+	public void testEmptyStateRoundTrip() throws Exception {
+
+		BridgeRequestScopeState state = new BridgeRequestScopeState("id", 0L, null, null, false, false, false, false,
+				null, null, null, null, null, null);
+
+		assertStateEquals(state, BridgeRequestScopeCodec.decode(BridgeRequestScopeCodec.encode(state)));
+	}
+
+	@Test
+	public void testExternalizableRoundTrip() throws Exception {
+
+		BridgeRequestScopeState state = newState("view-state", newPreservedAttributes(), null);
+		ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+		ObjectOutputStream objectOutputStream = new ObjectOutputStream(byteArrayOutputStream);
+		objectOutputStream.writeObject(state);
+		objectOutputStream.close();
+
+		ObjectInputStream objectInputStream = new ObjectInputStream(new ByteArrayInputStream(
+					byteArrayOutputStream.toByteArray()));
+		assertStateEquals(state, (BridgeRequestScopeState) objectInputStream.readObject());
+	}
+
+	@Test
+	public void testHostileCounts() throws Exception {
+
+		byte[] header = concat(new byte[] { 2, 0 }, varInt(0), varInt(0));
+		long[] hostileCounts = new long[] { 0x7fffffffL, 0x80000000L, 0xffffffffL, 1000000L };
+
+		for (long hostileCount : hostileCounts) {
+
+			// A string table size that exceeds the remaining bytes.
+			try {
+				BridgeRequestScopeCodec.decode(concat(header, varInt(hostileCount)));
+				Assert.fail("Expected StreamCorruptedException for string table size=" + hostileCount);
+			}
+			catch (StreamCorruptedException e) {
+				// expected
+			}
+
+			// An attribute count that exceeds the remaining bytes (with an empty string table, a null id and mode,
+			// and no action parameters or removed attributes).
+			try {
+				BridgeRequestScopeCodec.decode(concat(header, varInt(0), varInt(0), varInt(0), varInt(0), varInt(0),
+						varInt(hostileCount)));
+				Assert.fail("Expected StreamCorruptedException for attribute count=" + hostileCount);
+			}
+			catch (StreamCorruptedException e) {
+				// expected
+			}
+
+			// A string reference that is out of range.
+			try {
+				BridgeRequestScopeCodec.decode(concat(header, varInt(0), varInt(hostileCount)));
+				Assert.fail("Expected StreamCorruptedException for string reference=" + hostileCount);
+			}
+			catch (StreamCorruptedException e) {
+				// expected
+			}
+		}
+
+		// A portlet phase ordinal that wraps to a negative int.
+		try {
+			BridgeRequestScopeCodec.decode(concat(new byte[] { 2, 0 }, varInt(0xffffffffL), varInt(0), varInt(0)));
+			Assert.fail("Expected StreamCorruptedException for a negative phase ordinal");
+		}
+		catch (StreamCorruptedException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testNotSerializableAttribute() throws Exception {
+
+		Map<String, Object> preservedAttributes = new LinkedHashMap<String, Object>();
+		preservedAttributes.put("notSerializable", new Object());
+
+		try {
+			BridgeRequestScopeCodec.encode(newState(null, preservedAttributes, null));
+			Assert.fail("Expected NotSerializableException");
+		}
+		catch (NotSerializableException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testRandomCorruption() throws Exception {
+
+		// Values that fall back to Java serialization are excluded, since the bytes of such a value are read by an
+		// ObjectInputStream rather than by the codec.
+		byte[] bytes = BridgeRequestScopeCodec.encode(newState("view-state", newInlinePreservedAttributes(), null));
+		Random random = new Random(329L);
+
+		for (int i = 0; i < 20000; i++) {
+
+			byte[] corruptBytes = bytes.clone();
+			int mutationCount = 1 + random.nextInt(4);
+
+			for (int j = 0; j < mutationCount; j++) {
+				corruptBytes[random.nextInt(corruptBytes.length)] = (byte) random.nextInt(256);
+			}
+
+			decodeExpectingIOException(corruptBytes);
+		}
+
+		for (int i = 0; i < 2000; i++) {
+
+			byte[] randomBytes = new byte[random.nextInt(64)];
+			random.nextBytes(randomBytes);
+
+			if (randomBytes.length > 0) {
+				randomBytes[0] = 2;
+			}
+
+			decodeExpectingIOException(randomBytes);
+		}
+	}
+
+	@Test
+	public void testRoundTrip() throws Exception {
+
+		BridgeRequestScopeState state = newState("view-state é", newPreservedAttributes(), null);
+		byte[] bytes = BridgeRequestScopeCodec.encode(state);
+		BridgeRequestScopeState decodedState = BridgeRequestScopeCodec.decode(bytes);
+
+		assertStateEquals(state, decodedState);
+		Assert.assertArrayEquals(bytes, BridgeRequestScopeCodec.encode(decodedState));
+	}
+
+	@Test
+	public void testRoundTripOfEveryPhaseAndMode() throws Exception {
+
+		List<PortletMode> portletModes = Arrays.asList(null, PortletMode.VIEW, PortletMode.EDIT, PortletMode.HELP,
+				new PortletMode("config"));
+		Map<String, Object> noAttributes = Collections.emptyMap();
+
+		for (Bridge.PortletPhase portletPhase : Bridge.PortletPhase.values()) {
+
+			for (PortletMode portletMode : portletModes) {
+
+				BridgeRequestScopeState state = new BridgeRequestScopeState("id", System.currentTimeMillis(),
+						portletPhase, portletMode, false, true, false, true, "", null, null, null, noAttributes,
+						null);
+
+				assertStateEquals(state, BridgeRequestScopeCodec.decode(BridgeRequestScopeCodec.encode(state)));
+			}
+		}
+	}
+
+	@Test
+	public void testTruncation() throws Exception {
+
+		byte[] bytes = BridgeRequestScopeCodec.encode(newState("view-state", newPreservedAttributes(), null));
+
+		for (int length = 0; length < bytes.length; length++) {
+
+			try {
+				BridgeRequestScopeCodec.decode(Arrays.copyOf(bytes, length));
+				Assert.fail("Expected IOException for length=" + length);
+			}
+			catch (IOException e) {
+				// expected
+			}
+		}
+	}
+
+	@Test
+	public void testSharedSerializedValues() throws Exception {
+
+		Date date = new Date(1445400000000L);
+		Map<String, Object> preservedAttributes = new LinkedHashMap<String, Object>();
+		preservedAttributes.put("date1", date);
+		preservedAttributes.put("string", "value");
+		preservedAttributes.put("date2", date);
+		preservedAttributes.put("date3", new Date(0L));
+
+		BridgeRequestScopeState state = BridgeRequestScopeCodec.decode(BridgeRequestScopeCodec.encode(
+					newState(null, preservedAttributes, null)));
+		Map<String, Object> decodedAttributes = state.getPreservedAttributes();
+
+		Assert.assertEquals(preservedAttributes, decodedAttributes);
+		Assert.assertEquals(new ArrayList<String>(preservedAttributes.keySet()),
+			new ArrayList<String>(decodedAttributes.keySet()));
+		Assert.assertSame(decodedAttributes.get("date1"), decodedAttributes.get("date2"));
+	}
+
+	@Test
+	public void testUnsupportedVersion() throws Exception {
+
+		byte[] bytes = BridgeRequestScopeCodec.encode(newState(null, newPreservedAttributes(), null));
+		bytes[0] = 99;
+
+		try {
+			BridgeRequestScopeCodec.decode(bytes);
+			Assert.fail("Expected StreamCorruptedException");
+		}
+		catch (StreamCorruptedException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testVersion2SerializedValue() throws Exception {
+
+		ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+		ObjectOutputStream objectOutputStream = new ObjectOutputStream(byteArrayOutputStream);
+		objectOutputStream.writeObject(new Date(1445400000000L));
+		objectOutputStream.close();
+
+		byte[] serializedValue = byteArrayOutputStream.toByteArray();
+
+		// A string table of one string ("a") that is referenced as the id and as the name of the only attribute, whose
+		// value is serialized inline (tag 6) as it was by version 2 of the codec.
+		byte[] bytes = concat(new byte[] { 2, 0 }, varInt(0), varInt(0), varInt(1), varInt(1), new byte[] { 'a' },
+				varInt(1), varInt(0), varInt(0), varInt(0), varInt(1), varInt(1), new byte[] { 6 },
+				varInt(serializedValue.length), serializedValue);
+
+		BridgeRequestScopeState state = BridgeRequestScopeCodec.decode(bytes);
+
+		Assert.assertEquals("a", state.getId());
+		Assert.assertEquals(Collections.singletonMap("a", new Date(1445400000000L)), state.getPreservedAttributes());
+	}
+}
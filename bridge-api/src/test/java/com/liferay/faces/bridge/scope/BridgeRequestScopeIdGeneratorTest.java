@@ -0,0 +1,187 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.scope;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+
+/**
+ * @author  Neil Griffin
+ */
+public class BridgeRequestScopeIdGeneratorTest {
+
+	// Private Constants
+	private static final String ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_";
+
+	/**
+	 * Returns the counter that is encoded by the specified id, after checking that the id has the prefix of the
+	 * specified generator and that the counter is encoded canonically (so that distinct counters imply distinct ids).
+	 */
+	private static long decodeCounter(BridgeRequestScopeIdGenerator generator, String id) {
+
+		String prefix = generator.getPrefix();
+		Assert.assertTrue(id, id.startsWith(prefix));
+
+		String encodedCounter = id.substring(prefix.length());
+		Assert.assertTrue(id, (encodedCounter.length() > 0) && (encodedCounter.length() <= 11));
+
+		long counter = 0L;
+
+		for (int i = 0; i < encodedCounter.length(); i++) {
+
+			int digit = ALPHABET.indexOf(encodedCounter.charAt(i));
+			Assert.assertTrue(id, digit >= 0);
+			counter = (counter << 6) | digit;
+		}
+
+		Assert.assertEquals(encode(counter), encodedCounter);
+
+		return counter;
+	}
+
+	private static String encode(long value) {
+
+		StringBuilder buf = new StringBuilder();
+		BridgeRequestScopeIdGenerator.appendEncoded(buf, value);
+
+		return buf.toString();
+	}
+
+	@Test
+	public void testBlockRollover() throws Exception {
+
+		final BridgeRequestScopeIdGenerator generator = new BridgeRequestScopeIdGenerator("node");
+		int blockSize = BridgeRequestScopeIdGenerator.BLOCK_SIZE;
+
+		// The first thread reserves the first block.
+		Assert.assertEquals(0L, decodeCounter(generator, generator.nextId()));
+
+		// Another thread reserves the next block rather than sharing the first.
+		ExecutorService executorService = Executors.newSingleThreadExecutor();
+
+		try {
+			String otherId = executorService.submit(new Callable<String>() {
+
+						@Override
+						public String call() {
+							return generator.nextId();
+						}
+					}).get();
+			Assert.assertEquals(blockSize, decodeCounter(generator, otherId));
+		}
+		finally {
+			executorService.shutdown();
+		}
+
+		// The first thread continues with its block until it is exhausted, and then reserves the third block.
+		for (long expectedCounter = 1L; expectedCounter < blockSize; expectedCounter++) {
+			Assert.assertEquals(expectedCounter, decodeCounter(generator, generator.nextId()));
+		}
+
+		Assert.assertEquals(2L * blockSize, decodeCounter(generator, generator.nextId()));
+		Assert.assertEquals((2L * blockSize) + 1L, decodeCounter(generator, generator.nextId()));
+	}
+
+	@Test
+	public void testConcurrentUniqueness() throws Exception {
+
+		final BridgeRequestScopeIdGenerator generator = new BridgeRequestScopeIdGenerator("node");
+		int threadCount = 8;
+		final int idsPerThread = 500000;
+		ExecutorService executorService = Executors.newFixedThreadPool(threadCount);
+		List<Future<long[]>> futures = new ArrayList<Future<long[]>>();
+
+		try {
+
+			for (int i = 0; i < threadCount; i++) {
+
+				futures.add(executorService.submit(new Callable<long[]>() {
+
+							@Override
+							public long[] call() {
+
+								long[] counters = new long[idsPerThread];
+
+								for (int j = 0; j < idsPerThread; j++) {
+									counters[j] = decodeCounter(generator, generator.nextId());
+								}
+
+								return counters;
+							}
+						}));
+			}
+
+			BitSet counters = new BitSet();
+			int blockSize = BridgeRequestScopeIdGenerator.BLOCK_SIZE;
+			long maximumCounter = (long) threadCount * (((idsPerThread + blockSize - 1) / blockSize) * blockSize);
+
+			for (Future<long[]> future : futures) {
+
+				for (long counter : future.get()) {
+					Assert.assertTrue("counter=" + counter, (counter >= 0L) && (counter < maximumCounter));
+					Assert.assertFalse("Duplicate counter=" + counter, counters.get((int) counter));
+					counters.set((int) counter);
+				}
+			}
+
+			Assert.assertEquals(threadCount * idsPerThread, counters.cardinality());
+		}
+		finally {
+			executorService.shutdown();
+		}
+	}
+
+	@Test
+	public void testIdLength() {
+
+		// A counter is encoded with at most 11 characters, and with 4 characters for the first 2^24 values.
+		Assert.assertEquals("A", encode(0L));
+		Assert.assertEquals("_", encode(63L));
+		Assert.assertEquals("BA", encode(64L));
+		Assert.assertEquals(4, encode((1L << 24) - 1L).length());
+		Assert.assertEquals(5, encode(1L << 24).length());
+		Assert.assertEquals(11, encode(Long.MAX_VALUE).length());
+		Assert.assertEquals(11, encode(-1L).length());
+
+		// The node token of the shared instance is derived from the time and random bits, and fits in 11 characters.
+		BridgeRequestScopeIdGenerator generator = BridgeRequestScopeIdGenerator.getInstance();
+		String prefix = generator.getPrefix();
+		Assert.assertTrue(prefix, prefix.length() <= 12);
+
+		String id = generator.nextId();
+		Assert.assertTrue(id, id.length() <= (prefix.length() + 11));
+		Assert.assertTrue(id, id.matches("[A-Za-z0-9_.-]+"));
+		Assert.assertFalse(id, id.contains(BoundedBridgeRequestScopeCache.ID_SEPARATOR));
+
+		String scopeId = generator.nextId("portlet:::session:::");
+		Assert.assertEquals("portlet", BoundedBridgeRequestScopeCache.parsePortletName(scopeId));
+		Assert.assertEquals("session", BoundedBridgeRequestScopeCache.parseSessionId(scopeId));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidNodeToken() {
+		new BridgeRequestScopeIdGenerator("node:::1");
+	}
+}
@@ -0,0 +1,138 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.scope;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+
+/**
+ * @author  Neil Griffin
+ */
+public class BridgeRequestScopeJournalTest {
+
+	// Private Constants
+	private static final int SEGMENT_SIZE = 64 * 1024;
+
+	// Public Data Members
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void testReplay() throws IOException {
+
+		File directory = temporaryFolder.newFolder();
+		BridgeRequestScopeMarshaller bridgeRequestScopeMarshaller = new SerializingBridgeRequestScopeMarshaller();
+		BridgeRequestScopeJournal bridgeRequestScopeJournal = newBridgeRequestScopeJournal(directory);
+		bridgeRequestScopeJournal.start();
+
+		JournalingBridgeRequestScopeCache journalingCache = new JournalingBridgeRequestScopeCache(
+				new BoundedBridgeRequestScopeCache(100), bridgeRequestScopeJournal, bridgeRequestScopeMarshaller);
+		TestBridgeRequestScope liveScope = putScope(journalingCache, "portlet1", "session1");
+		TestBridgeRequestScope removedScope = putScope(journalingCache, "portlet1", "session1");
+		TestBridgeRequestScope removedByPortletScope = putScope(journalingCache, "portlet2", "session2");
+		TestBridgeRequestScope removedBySessionScope = putScope(journalingCache, "portlet1", "session3");
+
+		// The latest state of a scope that is put again replaces the earlier one.
+		liveScope.put("attribute", "value");
+		journalingCache.put(liveScope.getId(), liveScope);
+
+		journalingCache.remove(removedScope.getId());
+		journalingCache.removeBridgeRequestScopesByPortlet("portlet2");
+		journalingCache.removeBridgeRequestScopesBySession("session3");
+		bridgeRequestScopeJournal.close();
+
+		BoundedBridgeRequestScopeCache reloadedCache = new BoundedBridgeRequestScopeCache(100);
+		BridgeRequestScopeJournal reloadedJournal = newBridgeRequestScopeJournal(directory);
+		Assert.assertEquals(1, reloadedJournal.reload(reloadedCache, bridgeRequestScopeMarshaller, 2));
+		Assert.assertEquals(1, reloadedJournal.getLiveCount());
+
+		BridgeRequestScope reloadedScope = reloadedCache.get(liveScope.getId());
+		Assert.assertNotNull(reloadedScope);
+		Assert.assertEquals("value", ((TestBridgeRequestScope) reloadedScope).get("attribute"));
+		Assert.assertFalse(reloadedCache.containsKey(removedScope.getId()));
+		Assert.assertFalse(reloadedCache.containsKey(removedByPortletScope.getId()));
+		Assert.assertFalse(reloadedCache.containsKey(removedBySessionScope.getId()));
+	}
+
+	@Test
+	public void testTornRecord() throws IOException {
+
+		File directory = temporaryFolder.newFolder();
+		BridgeRequestScopeMarshaller bridgeRequestScopeMarshaller = new SerializingBridgeRequestScopeMarshaller();
+		BridgeRequestScopeJournal bridgeRequestScopeJournal = newBridgeRequestScopeJournal(directory);
+		bridgeRequestScopeJournal.start();
+
+		TestBridgeRequestScope intactScope = new TestBridgeRequestScope("portlet", "session");
+		TestBridgeRequestScope tornScope = new TestBridgeRequestScope("portlet", "session");
+		TestBridgeRequestScope subsequentScope = new TestBridgeRequestScope("portlet", "session");
+
+		for (TestBridgeRequestScope bridgeRequestScope :
+				new TestBridgeRequestScope[] { intactScope, tornScope, subsequentScope }) {
+			bridgeRequestScopeJournal.appendPut(bridgeRequestScope.getId(),
+				bridgeRequestScopeMarshaller.marshal(bridgeRequestScope));
+		}
+
+		bridgeRequestScopeJournal.close();
+
+		// Simulate a crash while the body of the second record was being written by corrupting one of its bytes.
+		File[] segmentFiles = directory.listFiles();
+		Assert.assertEquals(1, segmentFiles.length);
+
+		RandomAccessFile randomAccessFile = new RandomAccessFile(segmentFiles[0], "rw");
+
+		try {
+			int secondRecordOffset = 8 + randomAccessFile.readInt();
+			long tornByteOffset = secondRecordOffset + 8 + 16;
+			randomAccessFile.seek(tornByteOffset);
+
+			int tornByte = randomAccessFile.read();
+			randomAccessFile.seek(tornByteOffset);
+			randomAccessFile.write(~tornByte);
+		}
+		finally {
+			randomAccessFile.close();
+		}
+
+		// The torn record and every subsequent record of its segment are ignored.
+		BoundedBridgeRequestScopeCache reloadedCache = new BoundedBridgeRequestScopeCache(100);
+		BridgeRequestScopeJournal reloadedJournal = newBridgeRequestScopeJournal(directory);
+		Assert.assertEquals(1, reloadedJournal.reload(reloadedCache, bridgeRequestScopeMarshaller, 2));
+		Assert.assertTrue(reloadedCache.containsKey(intactScope.getId()));
+		Assert.assertFalse(reloadedCache.containsKey(tornScope.getId()));
+		Assert.assertFalse(reloadedCache.containsKey(subsequentScope.getId()));
+	}
+
+	private static BridgeRequestScopeJournal newBridgeRequestScopeJournal(File directory) {
+		return new BridgeRequestScopeJournal(directory, SEGMENT_SIZE, BridgeRequestScopeJournal
+				.DEFAULT_COMPACTION_SEGMENT_COUNT, BridgeRequestScopeJournal.DEFAULT_QUEUE_CAPACITY);
+	}
+
+	private static TestBridgeRequestScope putScope(BridgeRequestScopeCache bridgeRequestScopeCache,
+		String portletName, String sessionId) {
+
+		TestBridgeRequestScope bridgeRequestScope = new TestBridgeRequestScope(portletName, sessionId);
+		bridgeRequestScopeCache.put(bridgeRequestScope.getId(), bridgeRequestScope);
+
+		return bridgeRequestScope;
+	}
+}
@@ -0,0 +1,95 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.scope;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+
+/**
+ * @author  Neil Griffin
+ */
+public class CachingRequestAttributeInspectorTest {
+
+	@Test
+	public void testSharedVerdictCache() {
+
+		CountingRequestAttributeInspector countingRequestAttributeInspector = new CountingRequestAttributeInspector(
+				true);
+		CachingRequestAttributeInspector.VerdictCache verdictCache =
+			new CachingRequestAttributeInspector.VerdictCache();
+
+		Assert.assertTrue(new CachingRequestAttributeInspector(countingRequestAttributeInspector, verdictCache)
+			.isExcludedByType("a", "value"));
+		Assert.assertTrue(new CachingRequestAttributeInspector(countingRequestAttributeInspector, verdictCache)
+			.isExcludedByType("b", "other value"));
+		Assert.assertEquals(1, countingRequestAttributeInspector.count);
+	}
+
+	@Test
+	public void testVerdictsAreNotSharedBetweenInspectors() {
+
+		CachingRequestAttributeInspector excludingInspector = new CachingRequestAttributeInspector(
+				new CountingRequestAttributeInspector(true));
+		CachingRequestAttributeInspector includingInspector = new CachingRequestAttributeInspector(
+				new CountingRequestAttributeInspector(false));
+
+		Assert.assertTrue(excludingInspector.isExcludedByType("a", "value"));
+		Assert.assertTrue(excludingInspector.isExcludedByAnnotation("a", "value"));
+		Assert.assertFalse(includingInspector.isExcludedByType("a", "value"));
+		Assert.assertFalse(includingInspector.isExcludedByAnnotation("a", "value"));
+	}
+
+	private static final class CountingRequestAttributeInspector implements RequestAttributeInspector {
+
+		// Private Data Members
+		private int count;
+		private final boolean excluded;
+
+		CountingRequestAttributeInspector(boolean excluded) {
+			this.excluded = excluded;
+		}
+
+		@Override
+		public boolean containsExcludedNamespace(String name) {
+			return false;
+		}
+
+		@Override
+		public boolean isExcludedByAnnotation(String name, Object value) {
+			count++;
+
+			return excluded;
+		}
+
+		@Override
+		public boolean isExcludedByConfig(String name, Object value) {
+			return false;
+		}
+
+		@Override
+		public boolean isExcludedByPreExisting(String name, Object value) {
+			return false;
+		}
+
+		@Override
+		public boolean isExcludedByType(String name, Object value) {
+			count++;
+
+			return excluded;
+		}
+	}
+}
@@ -0,0 +1,274 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.scope;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+
+/**
+ * @author  Neil Griffin
+ */
+public class ClusteredBridgeRequestScopeCacheTest {
+
+	@Test
+	public void testRemoteFailure() {
+
+		List<TestRemoteBridgeRequestScopeStore> cluster = new CopyOnWriteArrayList<TestRemoteBridgeRequestScopeStore>();
+		TestRemoteBridgeRequestScopeStore remoteStore = new TestRemoteBridgeRequestScopeStore(cluster);
+		ClusteredBridgeRequestScopeCache cache = new ClusteredBridgeRequestScopeCache(
+				new BoundedBridgeRequestScopeCache(100), remoteStore);
+		remoteStore.failing = true;
+
+		// Writes do not wait for the remote store, so the scope remains available on this node.
+		TestBridgeRequestScope bridgeRequestScope = putScope(cache, "portlet", "session");
+		Assert.assertSame(bridgeRequestScope, cache.get(bridgeRequestScope.getId()));
+		Assert.assertEquals(1L, cache.getNearHitCount());
+
+		// A read that misses the near-cache is regarded as a miss if the remote store fails.
+		Assert.assertNull(cache.get("portlet:::session:::missing"));
+		Assert.assertEquals(1L, cache.getRemoteFailureCount());
+
+		// Removals report the number of scopes that were removed from the near-cache.
+		Assert.assertEquals(1, cache.removeBridgeRequestScopesByPortlet("portlet"));
+		Assert.assertEquals(2L, cache.getRemoteFailureCount());
+		Assert.assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testRemoteHitAndInvalidation() {
+
+		List<TestRemoteBridgeRequestScopeStore> cluster = new CopyOnWriteArrayList<TestRemoteBridgeRequestScopeStore>();
+		ClusteredBridgeRequestScopeCache cache1 = new ClusteredBridgeRequestScopeCache(
+				new BoundedBridgeRequestScopeCache(100), new TestRemoteBridgeRequestScopeStore(cluster));
+		ClusteredBridgeRequestScopeCache cache2 = new ClusteredBridgeRequestScopeCache(
+				new BoundedBridgeRequestScopeCache(100), new TestRemoteBridgeRequestScopeStore(cluster));
+
+		// The scope that was put by the first node is fetched by the second node and added to its near-cache.
+		TestBridgeRequestScope bridgeRequestScope = putScope(cache1, "portlet", "session");
+		Assert.assertNotNull(cache2.get(bridgeRequestScope.getId()));
+		Assert.assertEquals(1L, cache2.getRemoteHitCount());
+		Assert.assertEquals(1, cache2.size());
+
+		// Putting the scope again on the first node invalidates the copy in the near-cache of the second node.
+		long invalidationCount = cache2.getInvalidationCount();
+		bridgeRequestScope.put("attribute", "value");
+		cache1.put(bridgeRequestScope.getId(), bridgeRequestScope);
+		Assert.assertEquals(invalidationCount + 1L, cache2.getInvalidationCount());
+		Assert.assertEquals(0, cache2.size());
+
+		TestBridgeRequestScope fetchedBridgeRequestScope = (TestBridgeRequestScope) cache2.get(
+				bridgeRequestScope.getId());
+		Assert.assertEquals("value", fetchedBridgeRequestScope.get("attribute"));
+
+		cache1.remove(bridgeRequestScope.getId());
+		Assert.assertNull(cache2.get(bridgeRequestScope.getId()));
+		Assert.assertEquals(1L, cache2.getRemoteMissCount());
+	}
+
+	@Test
+	public void testRemoteTimeout() {
+
+		List<TestRemoteBridgeRequestScopeStore> cluster = new CopyOnWriteArrayList<TestRemoteBridgeRequestScopeStore>();
+		TestRemoteBridgeRequestScopeStore remoteStore = new TestRemoteBridgeRequestScopeStore(cluster);
+		ClusteredBridgeRequestScopeCache cache = new ClusteredBridgeRequestScopeCache(
+				new BoundedBridgeRequestScopeCache(100), remoteStore, new SerializingBridgeRequestScopeMarshaller(),
+				10L);
+		remoteStore.hanging = true;
+
+		TestBridgeRequestScope bridgeRequestScope = putScope(cache, "portlet", "session");
+		Assert.assertSame(bridgeRequestScope, cache.get(bridgeRequestScope.getId()));
+		Assert.assertNull(cache.get("portlet:::session:::missing"));
+		Assert.assertEquals(1, cache.removeBridgeRequestScopesBySession("session"));
+		Assert.assertEquals(2L, cache.getRemoteFailureCount());
+	}
+
+	private static <T> Future<T> complete(Callable<T> callable) {
+
+		FutureTask<T> futureTask = new FutureTask<T>(callable);
+		futureTask.run();
+
+		return futureTask;
+	}
+
+	private static TestBridgeRequestScope putScope(BridgeRequestScopeCache bridgeRequestScopeCache,
+		String portletName, String sessionId) {
+
+		TestBridgeRequestScope bridgeRequestScope = new TestBridgeRequestScope(portletName, sessionId);
+		bridgeRequestScopeCache.put(bridgeRequestScope.getId(), bridgeRequestScope);
+
+		return bridgeRequestScope;
+	}
+
+	/**
+	 * A remote store that keeps the scopes of a cluster in memory and broadcasts invalidations synchronously. It can
+	 * be made to fail every operation, or to never complete them.
+	 */
+	private static final class TestRemoteBridgeRequestScopeStore implements RemoteBridgeRequestScopeStore {
+
+		// Private Data Members
+		private final List<TestRemoteBridgeRequestScopeStore> cluster;
+		private volatile boolean failing;
+		private volatile boolean hanging;
+		private final List<InvalidationListener> invalidationListeners =
+			new CopyOnWriteArrayList<InvalidationListener>();
+		private final Map<String, byte[]> data;
+
+		TestRemoteBridgeRequestScopeStore(List<TestRemoteBridgeRequestScopeStore> cluster) {
+
+			this.cluster = cluster;
+			this.data = cluster.isEmpty() ? new ConcurrentHashMap<String, byte[]>() : cluster.get(0).data;
+			cluster.add(this);
+		}
+
+		@Override
+		public void addInvalidationListener(InvalidationListener invalidationListener) {
+			invalidationListeners.add(invalidationListener);
+		}
+
+		@Override
+		public void close() {
+			cluster.remove(this);
+		}
+
+		@Override
+		public Future<byte[]> get(final String key) {
+			return execute(new Callable<byte[]>() {
+
+						@Override
+						public byte[] call() {
+							return data.get(key);
+						}
+					});
+		}
+
+		@Override
+		public Future<Void> put(final String key, final byte[] bytes) {
+			return execute(new Callable<Void>() {
+
+						@Override
+						public Void call() {
+							data.put(key, bytes);
+							invalidate(key);
+
+							return null;
+						}
+					});
+		}
+
+		@Override
+		public Future<Void> remove(final String key) {
+			return execute(new Callable<Void>() {
+
+						@Override
+						public Void call() {
+							data.remove(key);
+							invalidate(key);
+
+							return null;
+						}
+					});
+		}
+
+		@Override
+		public Future<Integer> removeByPortlet(final String portletName) {
+			return execute(new Callable<Integer>() {
+
+						@Override
+						public Integer call() {
+							return removeAll(portletName, true);
+						}
+					});
+		}
+
+		@Override
+		public Future<Integer> removeBySession(final String sessionId) {
+			return execute(new Callable<Integer>() {
+
+						@Override
+						public Integer call() {
+							return removeAll(sessionId, false);
+						}
+					});
+		}
+
+		@Override
+		public void removeInvalidationListener(InvalidationListener invalidationListener) {
+			invalidationListeners.remove(invalidationListener);
+		}
+
+		private <T> Future<T> execute(final Callable<T> callable) {
+
+			if (hanging) {
+
+				// The task is never run, so waiting for it times out.
+				return new FutureTask<T>(callable);
+			}
+			else if (failing) {
+				return complete(new Callable<T>() {
+
+							@Override
+							public T call() throws IOException {
+								throw new IOException("The remote store is unavailable");
+							}
+						});
+			}
+
+			return complete(callable);
+		}
+
+		private void invalidate(String key) {
+
+			for (TestRemoteBridgeRequestScopeStore node : cluster) {
+
+				if (node != this) {
+
+					for (InvalidationListener invalidationListener : node.invalidationListeners) {
+						invalidationListener.invalidated(key);
+					}
+				}
+			}
+		}
+
+		private int removeAll(String owner, boolean portlet) {
+
+			int count = 0;
+
+			for (String key : data.keySet()) {
+
+				String keyOwner = portlet ? BridgeRequestScopeIndex.parsePortletName(key)
+				                          : BridgeRequestScopeIndex.parseSessionId(key);
+
+				if (owner.equals(keyOwner)) {
+					data.remove(key);
+					invalidate(key);
+					count++;
+				}
+			}
+
+			return count;
+		}
+	}
+}
@@ -0,0 +1,76 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.scope;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+
+/**
+ * @author  Neil Griffin
+ */
+public class FrequencySketchTest {
+
+	@Test
+	public void testAging() {
+
+		// The counters are halved once the number of increments reaches ten times the maximum size.
+		FrequencySketch frequencySketch = new FrequencySketch(1);
+
+		for (int i = 0; i < 8; i++) {
+			frequencySketch.increment("a");
+		}
+
+		Assert.assertEquals(8, frequencySketch.frequency("a"));
+		frequencySketch.increment("b");
+		frequencySketch.increment("b");
+
+		int frequency = frequencySketch.frequency("a");
+		Assert.assertTrue(Integer.toString(frequency), (frequency >= 4) && (frequency <= 5));
+	}
+
+	@Test
+	public void testFrequency() {
+
+		FrequencySketch frequencySketch = new FrequencySketch(1024);
+		Assert.assertEquals(0, frequencySketch.frequency("a"));
+
+		for (int i = 0; i < 5; i++) {
+			frequencySketch.increment("a");
+		}
+
+		Assert.assertEquals(5, frequencySketch.frequency("a"));
+
+		// Since counters are shared, the estimate may exceed the true count but never fall below it.
+		for (int i = 0; i < 1000; i++) {
+			frequencySketch.increment(Integer.valueOf(i));
+		}
+
+		Assert.assertTrue(frequencySketch.frequency("a") >= 5);
+	}
+
+	@Test
+	public void testMaximumFrequency() {
+
+		FrequencySketch frequencySketch = new FrequencySketch(1024);
+
+		for (int i = 0; i < 100; i++) {
+			frequencySketch.increment("a");
+		}
+
+		Assert.assertEquals(15, frequencySketch.frequency("a"));
+	}
+}
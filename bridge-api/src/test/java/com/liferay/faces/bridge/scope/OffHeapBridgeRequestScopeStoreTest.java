@@ -0,0 +1,176 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.scope;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+
+/**
+ * @author  Neil Griffin
+ */
+public class OffHeapBridgeRequestScopeStoreTest {
+
+	@Test
+	public void testEvictedScopesAreFreed() throws IOException {
+
+		OffHeapBridgeRequestScopeStore offHeapBridgeRequestScopeStore = new OffHeapBridgeRequestScopeStore(
+				OffHeapBridgeRequestScopeStore.SLAB_SIZE);
+		OffHeapBridgeRequestScopeCache offHeapBridgeRequestScopeCache = new OffHeapBridgeRequestScopeCache(
+				new BoundedBridgeRequestScopeCache(2), offHeapBridgeRequestScopeStore);
+
+		for (int i = 0; i < 3; i++) {
+			TestBridgeRequestScope bridgeRequestScope = new TestBridgeRequestScope("portlet", "session" + i);
+			offHeapBridgeRequestScopeStore.put(bridgeRequestScope, newAttributes(10));
+			offHeapBridgeRequestScopeCache.put(bridgeRequestScope.getId(), bridgeRequestScope);
+		}
+
+		Assert.assertEquals(2, offHeapBridgeRequestScopeCache.size());
+		Assert.assertEquals(offHeapBridgeRequestScopeCache.keySet(),
+			new HashSet<String>(offHeapBridgeRequestScopeStore.getIds()));
+
+		offHeapBridgeRequestScopeCache.removeBridgeRequestScopesByPortlet("portlet");
+		Assert.assertEquals(0, offHeapBridgeRequestScopeStore.size());
+		Assert.assertEquals(0L, offHeapBridgeRequestScopeStore.getAllocatedBytes());
+	}
+
+	@Test
+	public void testFree() throws IOException, ClassNotFoundException {
+
+		OffHeapBridgeRequestScopeStore offHeapBridgeRequestScopeStore = new OffHeapBridgeRequestScopeStore(
+				4 * OffHeapBridgeRequestScopeStore.SLAB_SIZE);
+		TestBridgeRequestScope bridgeRequestScope = new TestBridgeRequestScope("portlet", "session");
+		Assert.assertTrue(offHeapBridgeRequestScopeStore.put(bridgeRequestScope, newAttributes(10)));
+		Assert.assertEquals(OffHeapBridgeRequestScopeStore.SLAB_SIZE,
+			offHeapBridgeRequestScopeStore.getReservedBytes());
+		Assert.assertTrue(offHeapBridgeRequestScopeStore.getAllocatedBytes() > 0L);
+
+		BridgeRequestScopeState bridgeRequestScopeState = offHeapBridgeRequestScopeStore.get(
+				bridgeRequestScope.getId());
+		Assert.assertEquals(newAttributes(10), bridgeRequestScopeState.getPreservedAttributes());
+
+		// Once its only chunk is freed, the slab is returned to the pool but remains reserved for reuse.
+		Assert.assertTrue(offHeapBridgeRequestScopeStore.free(bridgeRequestScope.getId()));
+		Assert.assertFalse(offHeapBridgeRequestScopeStore.free(bridgeRequestScope.getId()));
+		Assert.assertNull(offHeapBridgeRequestScopeStore.get(bridgeRequestScope.getId()));
+		Assert.assertEquals(0, offHeapBridgeRequestScopeStore.size());
+		Assert.assertEquals(0L, offHeapBridgeRequestScopeStore.getAllocatedBytes());
+		Assert.assertEquals(1, offHeapBridgeRequestScopeStore.getFreeSlabCount());
+		Assert.assertEquals(OffHeapBridgeRequestScopeStore.SLAB_SIZE,
+			offHeapBridgeRequestScopeStore.getReservedBytes());
+	}
+
+	@Test
+	public void testFreeByPortletAndSession() throws IOException {
+
+		OffHeapBridgeRequestScopeStore offHeapBridgeRequestScopeStore = new OffHeapBridgeRequestScopeStore(
+				OffHeapBridgeRequestScopeStore.SLAB_SIZE);
+		offHeapBridgeRequestScopeStore.put(new TestBridgeRequestScope("portlet1", "session1"), newAttributes(1));
+		offHeapBridgeRequestScopeStore.put(new TestBridgeRequestScope("portlet1", "session2"), newAttributes(1));
+		offHeapBridgeRequestScopeStore.put(new TestBridgeRequestScope("portlet2", "session1"), newAttributes(1));
+
+		Assert.assertEquals(2, offHeapBridgeRequestScopeStore.freeByPortlet("portlet1"));
+		Assert.assertEquals(1, offHeapBridgeRequestScopeStore.size());
+		Assert.assertEquals(1, offHeapBridgeRequestScopeStore.freeBySession("session1"));
+		Assert.assertEquals(0, offHeapBridgeRequestScopeStore.size());
+		Assert.assertEquals(0, offHeapBridgeRequestScopeStore.freeBySession("session1"));
+	}
+
+	@Test
+	public void testLargeState() throws IOException {
+
+		OffHeapBridgeRequestScopeStore offHeapBridgeRequestScopeStore = new OffHeapBridgeRequestScopeStore(
+				3 * OffHeapBridgeRequestScopeStore.SLAB_SIZE);
+		Map<String, Object> largeAttributes = Collections.<String, Object>singletonMap("large",
+				newString(OffHeapBridgeRequestScopeStore.SLAB_SIZE + 1));
+
+		// A state that is larger than a slab is stored in a dedicated buffer that is released when it is freed.
+		TestBridgeRequestScope bridgeRequestScope = new TestBridgeRequestScope("portlet", "session");
+		Assert.assertTrue(offHeapBridgeRequestScopeStore.put(bridgeRequestScope, largeAttributes));
+		Assert.assertTrue(offHeapBridgeRequestScopeStore.getReservedBytes() > OffHeapBridgeRequestScopeStore.SLAB_SIZE);
+		Assert.assertTrue(offHeapBridgeRequestScopeStore.free(bridgeRequestScope.getId()));
+		Assert.assertEquals(0L, offHeapBridgeRequestScopeStore.getReservedBytes());
+		Assert.assertEquals(0, offHeapBridgeRequestScopeStore.getFreeSlabCount());
+
+		// A state that does not fit in the remaining memory is not stored.
+		Map<String, Object> hugeAttributes = Collections.<String, Object>singletonMap("huge",
+				newString(3 * OffHeapBridgeRequestScopeStore.SLAB_SIZE));
+		Assert.assertFalse(offHeapBridgeRequestScopeStore.put(new TestBridgeRequestScope("portlet", "session"),
+				hugeAttributes));
+		Assert.assertEquals(0, offHeapBridgeRequestScopeStore.size());
+	}
+
+	@Test
+	public void testReplace() throws IOException {
+
+		OffHeapBridgeRequestScopeStore offHeapBridgeRequestScopeStore = new OffHeapBridgeRequestScopeStore(
+				OffHeapBridgeRequestScopeStore.SLAB_SIZE);
+		TestBridgeRequestScope bridgeRequestScope = new TestBridgeRequestScope("portlet", "session");
+		offHeapBridgeRequestScopeStore.put(bridgeRequestScope, newAttributes(10));
+
+		long allocatedBytes = offHeapBridgeRequestScopeStore.getAllocatedBytes();
+		offHeapBridgeRequestScopeStore.put(bridgeRequestScope, newAttributes(10));
+		Assert.assertEquals(1, offHeapBridgeRequestScopeStore.size());
+		Assert.assertEquals(allocatedBytes, offHeapBridgeRequestScopeStore.getAllocatedBytes());
+	}
+
+	@Test
+	public void testSlabReuseAcrossSizeClasses() throws IOException {
+
+		// The store may only reserve a single slab, so the second state can only be stored if the slab of the first
+		// one is returned to the pool and assigned to another size class.
+		OffHeapBridgeRequestScopeStore offHeapBridgeRequestScopeStore = new OffHeapBridgeRequestScopeStore(
+				OffHeapBridgeRequestScopeStore.SLAB_SIZE);
+		TestBridgeRequestScope smallScope = new TestBridgeRequestScope("portlet", "session");
+		Assert.assertTrue(offHeapBridgeRequestScopeStore.put(smallScope, newAttributes(1)));
+
+		TestBridgeRequestScope largeScope = new TestBridgeRequestScope("portlet", "session");
+		Map<String, Object> largeAttributes = Collections.<String, Object>singletonMap("large", newString(100000));
+		Assert.assertFalse(offHeapBridgeRequestScopeStore.put(largeScope, largeAttributes));
+
+		offHeapBridgeRequestScopeStore.free(smallScope.getId());
+		Assert.assertTrue(offHeapBridgeRequestScopeStore.put(largeScope, largeAttributes));
+		Assert.assertEquals(OffHeapBridgeRequestScopeStore.SLAB_SIZE,
+			offHeapBridgeRequestScopeStore.getReservedBytes());
+		Assert.assertEquals(0, offHeapBridgeRequestScopeStore.getFreeSlabCount());
+	}
+
+	private static Map<String, Object> newAttributes(int count) {
+
+		Map<String, Object> attributes = new HashMap<String, Object>();
+
+		for (int i = 0; i < count; i++) {
+			attributes.put("attribute" + i, "value" + i);
+		}
+
+		return attributes;
+	}
+
+	private static String newString(int length) {
+
+		char[] chars = new char[length];
+		Arrays.fill(chars, 'x');
+
+		return new String(chars);
+	}
+}
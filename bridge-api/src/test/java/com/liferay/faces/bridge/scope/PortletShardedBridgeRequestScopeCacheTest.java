@@ -0,0 +1,186 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.scope;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+
+/**
+ * @author  Neil Griffin
+ */
+public class PortletShardedBridgeRequestScopeCacheTest {
+
+	@Test
+	public void testConcurrentPutAndPortletRemoval() throws Exception {
+
+		for (int round = 0; round < 100; round++) {
+
+			final PortletShardedBridgeRequestScopeCache cache = new PortletShardedBridgeRequestScopeCache(100000, null,
+					0L);
+			final ConcurrentMap<String, AtomicInteger> removalCounts = new ConcurrentHashMap<String, AtomicInteger>();
+			cache.addRemovalListener(new BoundedBridgeRequestScopeCache.RemovalListener() {
+
+					@Override
+					public void onRemoval(String key, BridgeRequestScope bridgeRequestScope,
+						BoundedBridgeRequestScopeCache.RemovalCause removalCause) {
+
+						AtomicInteger removalCount = new AtomicInteger();
+						AtomicInteger existingRemovalCount = removalCounts.putIfAbsent(key, removalCount);
+
+						if (existingRemovalCount != null) {
+							removalCount = existingRemovalCount;
+						}
+
+						removalCount.incrementAndGet();
+					}
+				});
+
+			final List<String> keys = new ArrayList<String>();
+			final AtomicBoolean stop = new AtomicBoolean();
+			final CountDownLatch started = new CountDownLatch(1);
+			Thread putter = new Thread() {
+
+				@Override
+				public void run() {
+
+					while (!stop.get()) {
+						TestBridgeRequestScope bridgeRequestScope = new TestBridgeRequestScope("portlet", "session");
+						cache.put(bridgeRequestScope.getId(), bridgeRequestScope);
+						keys.add(bridgeRequestScope.getId());
+						started.countDown();
+					}
+				}
+			};
+
+			putter.start();
+			started.await();
+
+			for (int i = 0; i < 10; i++) {
+				cache.removeBridgeRequestScopesByPortlet("portlet");
+			}
+
+			stop.set(true);
+			putter.join();
+
+			// Each scope is either still cached and was never reported as removed, or was reported as removed exactly
+			// once and is no longer cached.
+			for (String key : keys) {
+
+				AtomicInteger removalCount = removalCounts.get(key);
+
+				if (cache.containsKey(key)) {
+					Assert.assertNull(key, removalCount);
+				}
+				else {
+					Assert.assertNotNull(key, removalCount);
+					Assert.assertEquals(key, 1, removalCount.get());
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testExpireScopes() throws Exception {
+
+		PortletShardedBridgeRequestScopeCache cache = new PortletShardedBridgeRequestScopeCache(100, null, 60000L);
+
+		try {
+			final AtomicInteger expirationCount = new AtomicInteger();
+			cache.addRemovalListener(new BoundedBridgeRequestScopeCache.RemovalListener() {
+
+					@Override
+					public void onRemoval(String key, BridgeRequestScope bridgeRequestScope,
+						BoundedBridgeRequestScopeCache.RemovalCause removalCause) {
+
+						if (removalCause == BoundedBridgeRequestScopeCache.RemovalCause.EXPIRED) {
+							expirationCount.incrementAndGet();
+						}
+					}
+				});
+
+			long dateCreated = System.currentTimeMillis() - 120000L;
+
+			for (int i = 0; i < 3; i++) {
+				TestBridgeRequestScope bridgeRequestScope = new TestBridgeRequestScope("portlet" + i, "session");
+				bridgeRequestScope.setDateCreated(dateCreated);
+				cache.put(bridgeRequestScope.getId(), bridgeRequestScope);
+			}
+
+			TestBridgeRequestScope bridgeRequestScope = new TestBridgeRequestScope("portlet0", "session");
+			cache.put(bridgeRequestScope.getId(), bridgeRequestScope);
+
+			// The timer wheel of each shard fires when it advances past the bucket of the scope, which is at most one
+			// tick (about one second) after the scope was scheduled.
+			Thread.sleep(1100L);
+			cache.expireScopes();
+			Assert.assertEquals(3, expirationCount.get());
+			Assert.assertEquals(1, cache.size());
+			Assert.assertSame(bridgeRequestScope, cache.get(bridgeRequestScope.getId()));
+		}
+		finally {
+			cache.shutdown();
+		}
+	}
+
+	@Test
+	public void testSingleSweeperThread() {
+
+		String shardSweeperName = BoundedBridgeRequestScopeCache.class.getSimpleName() + "-ExpirationSweeper";
+		int shardSweeperCount = countThreads(shardSweeperName);
+		PortletShardedBridgeRequestScopeCache cache = new PortletShardedBridgeRequestScopeCache(100, null, 60000L);
+
+		try {
+
+			for (int i = 0; i < 10; i++) {
+				TestBridgeRequestScope bridgeRequestScope = new TestBridgeRequestScope("portlet" + i, "session");
+				cache.put(bridgeRequestScope.getId(), bridgeRequestScope);
+			}
+
+			Assert.assertEquals(10, cache.getPortletNames().size());
+
+			// The shards do not start sweeper threads of their own (threads of other caches may only have exited).
+			Assert.assertTrue(countThreads(shardSweeperName) <= shardSweeperCount);
+			Assert.assertTrue(countThreads(PortletShardedBridgeRequestScopeCache.class.getSimpleName() +
+					"-ExpirationSweeper") >= 1);
+		}
+		finally {
+			cache.shutdown();
+		}
+	}
+
+	private static int countThreads(String name) {
+
+		int count = 0;
+
+		for (Thread thread : Thread.getAllStackTraces().keySet()) {
+
+			if (name.equals(thread.getName()) && thread.isAlive()) {
+				count++;
+			}
+		}
+
+		return count;
+	}
+}
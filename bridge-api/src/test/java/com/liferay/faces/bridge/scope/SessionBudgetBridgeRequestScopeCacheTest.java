@@ -0,0 +1,133 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.scope;
+
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+
+/**
+ * @author  Neil Griffin
+ */
+public class SessionBudgetBridgeRequestScopeCacheTest {
+
+	// Private Constants
+	private static final long SESSION_BUDGET_BYTES = 4 * SessionBudgetBridgeRequestScopeCache.ESTIMATED_SCOPE_BYTES;
+
+	@Test
+	public void testEvictOldestScopesOfSession() {
+
+		StripedBridgeRequestScopeMetrics stripedBridgeRequestScopeMetrics = new StripedBridgeRequestScopeMetrics();
+		SessionBudgetBridgeRequestScopeCache cache = new SessionBudgetBridgeRequestScopeCache(
+				new BoundedBridgeRequestScopeCache(100), SESSION_BUDGET_BYTES, stripedBridgeRequestScopeMetrics);
+		TestBridgeRequestScope otherSessionScope = putScope(cache, "session2", 0L);
+		TestBridgeRequestScope[] bridgeRequestScopes = new TestBridgeRequestScope[5];
+
+		// The scopes are put out of order in order to show that the oldest ones are evicted rather than the first ones.
+		for (int i : new int[] { 1, 0, 2, 3 }) {
+			bridgeRequestScopes[i] = putScope(cache, "session1", i + 1);
+		}
+
+		Assert.assertEquals(0L, cache.getBudgetExceededCount());
+
+		bridgeRequestScopes[4] = putScope(cache, "session1", 5L);
+		Assert.assertFalse(cache.containsKey(bridgeRequestScopes[0].getId()));
+
+		for (int i = 1; i < bridgeRequestScopes.length; i++) {
+			Assert.assertTrue(cache.containsKey(bridgeRequestScopes[i].getId()));
+		}
+
+		// The scopes of other sessions are not affected.
+		Assert.assertTrue(cache.containsKey(otherSessionScope.getId()));
+		Assert.assertEquals(1L, cache.getBudgetExceededCount());
+		Assert.assertEquals(1L, cache.getBudgetEvictionCount());
+		Assert.assertEquals(1L, stripedBridgeRequestScopeMetrics.getSessionBudgetExceededCount());
+		Assert.assertEquals(1L, stripedBridgeRequestScopeMetrics.getSessionBudgetEvictedScopeCount());
+		Assert.assertEquals(SessionBudgetBridgeRequestScopeCache.ESTIMATED_SCOPE_BYTES,
+			stripedBridgeRequestScopeMetrics.getSessionBudgetEvictedByteCount());
+	}
+
+	@Test
+	public void testOversizedScope() {
+
+		SessionBudgetBridgeRequestScopeCache cache = new SessionBudgetBridgeRequestScopeCache(
+				new BoundedBridgeRequestScopeCache(100), SESSION_BUDGET_BYTES, null);
+		TestBridgeRequestScope smallScope = putScope(cache, "session", 1L);
+		TestBridgeRequestScope oversizedScope = new TestBridgeRequestScope("portlet", "session");
+		oversizedScope.setDateCreated(2L);
+
+		char[] chars = new char[(int) SESSION_BUDGET_BYTES];
+		Arrays.fill(chars, 'x');
+		oversizedScope.put("attribute", new String(chars));
+
+		// A scope that exceeds the budget by itself evicts the other scopes of its session but never itself.
+		cache.put(oversizedScope.getId(), oversizedScope);
+		Assert.assertFalse(cache.containsKey(smallScope.getId()));
+		Assert.assertTrue(cache.containsKey(oversizedScope.getId()));
+		Assert.assertEquals(1L, cache.getBudgetEvictionCount());
+	}
+
+	@Test
+	public void testRemovalsReleaseBudget() {
+
+		SessionBudgetBridgeRequestScopeCache cache = new SessionBudgetBridgeRequestScopeCache(
+				new BoundedBridgeRequestScopeCache(100), SESSION_BUDGET_BYTES, null);
+		TestBridgeRequestScope removedScope = putScope(cache, "session1", 1L);
+
+		for (int i = 0; i < 3; i++) {
+			putScope(cache, "session1", 2L);
+		}
+
+		cache.remove(removedScope.getId());
+		putScope(cache, "session1", 3L);
+		Assert.assertEquals(0L, cache.getBudgetEvictionCount());
+
+		// Removing the scopes of a session discards its accounting.
+		cache.removeBridgeRequestScopesBySession("session1");
+
+		for (int i = 0; i < 4; i++) {
+			putScope(cache, "session1", 4L);
+		}
+
+		Assert.assertEquals(0L, cache.getBudgetEvictionCount());
+	}
+
+	@Test
+	public void testWrappedCacheEvictionsReleaseBudget() {
+
+		SessionBudgetBridgeRequestScopeCache cache = new SessionBudgetBridgeRequestScopeCache(
+				new BoundedBridgeRequestScopeCache(2), SESSION_BUDGET_BYTES, null);
+
+		for (int i = 0; i < 10; i++) {
+			putScope(cache, "session", i);
+		}
+
+		Assert.assertEquals(2, cache.size());
+		Assert.assertEquals(0L, cache.getBudgetEvictionCount());
+	}
+
+	private static TestBridgeRequestScope putScope(BridgeRequestScopeCache bridgeRequestScopeCache, String sessionId,
+		long dateCreated) {
+
+		TestBridgeRequestScope bridgeRequestScope = new TestBridgeRequestScope("portlet", sessionId);
+		bridgeRequestScope.setDateCreated(dateCreated);
+		bridgeRequestScopeCache.put(bridgeRequestScope.getId(), bridgeRequestScope);
+
+		return bridgeRequestScope;
+	}
+}
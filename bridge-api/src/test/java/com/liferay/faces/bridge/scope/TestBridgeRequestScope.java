@@ -0,0 +1,164 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.scope;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.faces.context.FacesContext;
+import javax.portlet.PortletMode;
+import javax.portlet.RenderRequest;
+import javax.portlet.faces.Bridge;
+
+
+/**
+ * This class is a minimal {@link BridgeRequestScope} for tests, whose preserved attributes are the entries of the map
+ * and whose id is the prefix followed by a unique suffix.
+ *
+ * @author  Neil Griffin
+ */
+public class TestBridgeRequestScope extends HashMap<String, Object> implements BridgeRequestScope {
+
+	// serialVersionUID
+	private static final long serialVersionUID = 2265815392851372061L;
+
+	// Private Constants
+	private static final AtomicLong SUFFIXES = new AtomicLong();
+
+	// Private Data Members
+	private long dateCreated = System.currentTimeMillis();
+	private boolean facesLifecycleExecuted;
+	private String idPrefix;
+	private final String idSuffix = Long.toString(SUFFIXES.incrementAndGet());
+	private boolean navigationOccurred;
+	private PortletMode portletMode;
+	private boolean portletModeChanged;
+	private boolean redirectOccurred;
+	private final Set<String> removedAttributeNames = new HashSet<String>();
+
+	public TestBridgeRequestScope(String portletName, String sessionId) {
+		this.idPrefix = portletName + BoundedBridgeRequestScopeCache.ID_SEPARATOR + sessionId +
+			BoundedBridgeRequestScopeCache.ID_SEPARATOR;
+	}
+
+	@Override
+	public void removeExcludedAttributes(RenderRequest renderRequest) {
+		// Not used by the tests.
+	}
+
+	@Override
+	public void restoreState(FacesContext facesContext) {
+		// Not used by the tests.
+	}
+
+	@Override
+	public void saveState(FacesContext facesContext) {
+		// Not used by the tests.
+	}
+
+	@Override
+	public Bridge.PortletPhase getBeganInPhase() {
+		return Bridge.PortletPhase.ACTION_PHASE;
+	}
+
+	@Override
+	public long getDateCreated() {
+		return dateCreated;
+	}
+
+	public void setDateCreated(long dateCreated) {
+		this.dateCreated = dateCreated;
+	}
+
+	@Override
+	public boolean isFacesLifecycleExecuted() {
+		return facesLifecycleExecuted;
+	}
+
+	@Override
+	public void setFacesLifecycleExecuted(boolean facesLifecycleExecuted) {
+		this.facesLifecycleExecuted = facesLifecycleExecuted;
+	}
+
+	@Override
+	public String getId() {
+		return idPrefix + idSuffix;
+	}
+
+	@Override
+	public void setIdPrefix(String idPrefix) {
+		this.idPrefix = idPrefix;
+	}
+
+	@Override
+	public boolean isNavigationOccurred() {
+		return navigationOccurred;
+	}
+
+	@Override
+	public void setNavigationOccurred(boolean navigationOccurred) {
+		this.navigationOccurred = navigationOccurred;
+	}
+
+	@Override
+	public PortletMode getPortletMode() {
+		return portletMode;
+	}
+
+	@Override
+	public void setPortletMode(PortletMode portletMode) {
+		this.portletMode = portletMode;
+	}
+
+	@Override
+	public boolean isPortletModeChanged() {
+		return portletModeChanged;
+	}
+
+	@Override
+	public void setPortletModeChanged(boolean portletModeChanged) {
+		this.portletModeChanged = portletModeChanged;
+	}
+
+	@Override
+	public Map<String, String> getPreservedActionParameterMap() {
+		return Collections.emptyMap();
+	}
+
+	@Override
+	public String getPreservedViewStateParam() {
+		return null;
+	}
+
+	@Override
+	public boolean isRedirectOccurred() {
+		return redirectOccurred;
+	}
+
+	@Override
+	public void setRedirectOccurred(boolean redirectOccurred) {
+		this.redirectOccurred = redirectOccurred;
+	}
+
+	@Override
+	public Set<String> getRemovedAttributeNames() {
+		return removedAttributeNames;
+	}
+}
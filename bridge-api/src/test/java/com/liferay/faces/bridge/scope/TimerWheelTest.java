@@ -0,0 +1,124 @@
+/**
+ * Copyright (c) 2000-2016 Liferay, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.liferay.faces.bridge.scope;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+
+/**
+ * @author  Neil Griffin
+ */
+public class TimerWheelTest {
+
+	// Private Constants
+	private static final long START_TIME = 1000000000L;
+
+	@Test
+	public void testAdvance() {
+
+		TimerWheel timerWheel = new TimerWheel(START_TIME);
+		TimerWheel.Timeout secondTimeout = newTimeout(START_TIME + 500L);
+		TimerWheel.Timeout minuteTimeout = newTimeout(START_TIME + 60000L);
+		TimerWheel.Timeout hourTimeout = newTimeout(START_TIME + 3600000L);
+		timerWheel.schedule(hourTimeout);
+		timerWheel.schedule(minuteTimeout);
+		timerWheel.schedule(secondTimeout);
+
+		List<TimerWheel.Timeout> expired = new ArrayList<TimerWheel.Timeout>();
+		timerWheel.advance(START_TIME + 2000L, expired);
+		Assert.assertEquals(1, expired.size());
+		Assert.assertSame(secondTimeout, expired.get(0));
+
+		// Timeouts that are scheduled in the coarse levels cascade into the finer levels rather than expiring early.
+		expired.clear();
+		timerWheel.advance(START_TIME + 30000L, expired);
+		Assert.assertTrue(expired.isEmpty());
+		timerWheel.advance(START_TIME + 62000L, expired);
+		Assert.assertEquals(1, expired.size());
+		Assert.assertSame(minuteTimeout, expired.get(0));
+
+		expired.clear();
+
+		for (long time = START_TIME + 62000L; time < (START_TIME + 3590000L); time += 50000L) {
+			timerWheel.advance(time, expired);
+		}
+
+		Assert.assertTrue(expired.isEmpty());
+		timerWheel.advance(START_TIME + 3700000L, expired);
+		Assert.assertEquals(1, expired.size());
+		Assert.assertSame(hourTimeout, expired.get(0));
+	}
+
+	@Test
+	public void testCancel() {
+
+		TimerWheel timerWheel = new TimerWheel(START_TIME);
+		TimerWheel.Timeout cancelledTimeout = newTimeout(START_TIME + 500L);
+		TimerWheel.Timeout timeout = newTimeout(START_TIME + 500L);
+		timerWheel.schedule(cancelledTimeout);
+		timerWheel.schedule(timeout);
+		timerWheel.cancel(cancelledTimeout);
+
+		// Cancelling a timeout that is not scheduled has no effect.
+		timerWheel.cancel(cancelledTimeout);
+
+		List<TimerWheel.Timeout> expired = new ArrayList<TimerWheel.Timeout>();
+		timerWheel.advance(START_TIME + 2000L, expired);
+		Assert.assertEquals(1, expired.size());
+		Assert.assertSame(timeout, expired.get(0));
+	}
+
+	@Test
+	public void testScheduleDueTimeout() {
+
+		TimerWheel timerWheel = new TimerWheel(START_TIME);
+		TimerWheel.Timeout timeout = newTimeout(START_TIME - 60000L);
+		timerWheel.schedule(timeout);
+
+		List<TimerWheel.Timeout> expired = new ArrayList<TimerWheel.Timeout>();
+		timerWheel.advance(START_TIME + 1024L, expired);
+		Assert.assertEquals(1, expired.size());
+		Assert.assertSame(timeout, expired.get(0));
+	}
+
+	@Test
+	public void testScheduleReschedules() {
+
+		TimerWheel timerWheel = new TimerWheel(START_TIME);
+		TimerWheel.Timeout timeout = newTimeout(START_TIME + 500L);
+		timerWheel.schedule(timeout);
+		timeout.expirationTime = START_TIME + 60000L;
+		timerWheel.schedule(timeout);
+
+		List<TimerWheel.Timeout> expired = new ArrayList<TimerWheel.Timeout>();
+		timerWheel.advance(START_TIME + 2000L, expired);
+		Assert.assertTrue(expired.isEmpty());
+		timerWheel.advance(START_TIME + 62000L, expired);
+		Assert.assertEquals(1, expired.size());
+	}
+
+	private static TimerWheel.Timeout newTimeout(long expirationTime) {
+
+		TimerWheel.Timeout timeout = new TimerWheel.Timeout();
+		timeout.expirationTime = expirationTime;
+
+		return timeout;
+	}
+}